@@ -13,9 +13,56 @@ type Signals = core.Signals
 type ScreenInfo = core.ScreenInfo
 type BotInfo = core.BotInfo
 type GPUInfo = core.GPUInfo
+type Fields = core.Fields
+type Stats = core.Stats
+type Aggregator = core.Aggregator
+type AggregateSnapshot = core.AggregateSnapshot
+type AggregateGroup = core.AggregateGroup
+
+// Projection masks for Parser.ParseFields; combine with |. The zero value
+// (AllFields) requests every section.
+const (
+	AllFields           = core.AllFields
+	FieldBrowser        = core.FieldBrowser
+	FieldOS             = core.FieldOS
+	FieldDevice         = core.FieldDevice
+	FieldCPU            = core.FieldCPU
+	FieldEngine         = core.FieldEngine
+	FieldCategory       = core.FieldCategory
+	FieldIsBot          = core.FieldIsBot
+	FieldIsAICrawler    = core.FieldIsAICrawler
+	FieldIsFrozenUA     = core.FieldIsFrozenUA
+	FieldIsMobile       = core.FieldIsMobile
+	FieldIsDesktop      = core.FieldIsDesktop
+	FieldIsTouchCapable = core.FieldIsTouchCapable
+	FieldIsChromeFamily = core.FieldIsChromeFamily
+	FieldIsAppleSilicon = core.FieldIsAppleSilicon
+	FieldAutomation     = core.FieldAutomation
+	FieldIntegrity      = core.FieldIntegrity
+	FieldSecurity       = core.FieldSecurity
+	FieldDetection      = core.FieldDetection
+	FieldClassHash      = core.FieldClassHash
+	FieldBot            = core.FieldBot
+	FieldGPU            = core.FieldGPU
+)
 
 // New creates a new Parser instance.
 // This is a wrapper around core.New to provide a cleaner public API.
 func New(cfg Config) (*Parser, error) {
 	return core.New(cfg)
 }
+
+// ParseFieldNames builds a projection mask from Result JSON keys.
+func ParseFieldNames(names []string) (Fields, error) {
+	return core.ParseFieldNames(names)
+}
+
+// AggregateDimensions lists the dimension names Parser.NewAggregator accepts.
+func AggregateDimensions() []string {
+	return core.AggregateDimensions()
+}
+
+// MarshalResult marshals res with only the sections in fields.
+func MarshalResult(res *Result, fields Fields) ([]byte, error) {
+	return core.MarshalResult(res, fields)
+}
@@ -0,0 +1,56 @@
+package com.github.octanium91.benchmarks;
+
+import com.github.octanium91.ParserBackend;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Raw backend cost: one JSON payload in, one JSON result string out, with no
+ * Gson on either side. The engine LRU is off, so every call runs the full
+ * pipeline; compare with ParseBenchmark to see the wrapper's share.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BackendBenchmark {
+
+    @Param({"jna", "wasm"})
+    public String backend;
+
+    @Param({"UA", "HEADERS"})
+    public InputMode mode;
+
+    private ParserBackend engine;
+    private List<String> payloads;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        engine = Engines.backend(backend);
+        engine.init(Engines.configJson(0));
+        payloads = Corpus.payloads(mode);
+    }
+
+    @Benchmark
+    public String parse() {
+        String payload = payloads.get(next);
+        next = next + 1 == payloads.size() ? 0 : next + 1;
+        return engine.parse(payload);
+    }
+}
@@ -0,0 +1,66 @@
+package com.github.octanium91.benchmarks;
+
+import com.github.octanium91.ParserBackend;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call cost of crossing into the native engine, JNA vs FFM. One payload
+ * is parsed repeatedly with the engine LRU on, so after the first call the
+ * engine does a cache lookup and the rest is binding overhead: argument
+ * marshalling, the transition itself and copying the result back.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CallOverheadBenchmark {
+
+    @Param({"jna", "ffm"})
+    public String backend;
+
+    private ParserBackend engine;
+    private String payload;
+    private ByteBuffer in;
+    private int inLen;
+    private ByteBuffer out;
+
+    @Setup
+    public void setUp() {
+        engine = Engines.backend(backend);
+        engine.init(Engines.configJson(1000, "binary"));
+        payload = Corpus.payloads(InputMode.UA).get(0);
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        in = ByteBuffer.allocateDirect(bytes.length);
+        in.put(bytes);
+        inLen = bytes.length;
+        out = ByteBuffer.allocateDirect(64 * 1024);
+    }
+
+    /** String in, JSON string out (Parse + FreeString). */
+    @Benchmark
+    public String string() {
+        return engine.parse(payload);
+    }
+
+    /** Direct buffers in and out (ParseBytes); no strings cross the boundary. */
+    @Benchmark
+    public int bytes() {
+        return engine.parseBytes(in, inLen, out);
+    }
+}
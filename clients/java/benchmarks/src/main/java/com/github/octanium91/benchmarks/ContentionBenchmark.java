@@ -0,0 +1,91 @@
+package com.github.octanium91.benchmarks;
+
+import com.github.octanium91.UaParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One shared UaParser hammered by 1, 4 and 16 threads. Reported throughput
+ * is the aggregate over all threads; flat or falling numbers as threads grow
+ * point at a serialization point (engine cache lock, WASM instance pool).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContentionBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Shared {
+        @Param({"auto"})
+        public String backend;
+
+        @Param({"0", "1000"})
+        public int lruCacheSize;
+
+        UaParser parser;
+        List<UaParser.Request> requests;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            parser = Engines.parser(backend, lruCacheSize);
+            requests = Corpus.requests(InputMode.HEADERS);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp(Shared shared) {
+            // Stagger threads so they do not walk the corpus in lockstep.
+            next = ThreadLocalRandom.current().nextInt(shared.requests.size());
+        }
+
+        UaParser.Request advance(List<UaParser.Request> requests) {
+            UaParser.Request r = requests.get(next);
+            next = next + 1 == requests.size() ? 0 : next + 1;
+            return r;
+        }
+    }
+
+    private static UaParser.Result parse(Shared shared, Cursor cursor) {
+        UaParser.Request r = cursor.advance(shared.requests);
+        return shared.parser.parse(r.ua, r.headers);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public UaParser.Result threads01(Shared shared, Cursor cursor) {
+        return parse(shared, cursor);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public UaParser.Result threads04(Shared shared, Cursor cursor) {
+        return parse(shared, cursor);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public UaParser.Result threads16(Shared shared, Cursor cursor) {
+        return parse(shared, cursor);
+    }
+}
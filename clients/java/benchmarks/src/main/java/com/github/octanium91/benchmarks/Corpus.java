@@ -0,0 +1,135 @@
+package com.github.octanium91.benchmarks;
+
+import com.github.octanium91.UaParser;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The shared input set: tools/compare/corpus.json (the same entries the
+ * comparison harness uses). Override the location with -Dua.corpus=PATH;
+ * otherwise it is looked up from the working directory upwards, so the
+ * benchmarks run from the repo root, clients/java or clients/java/benchmarks.
+ */
+final class Corpus {
+
+    static final class Entry {
+        String id;
+        String ua;
+        Map<String, String> headers;
+    }
+
+    private static volatile List<Entry> entries;
+
+    private Corpus() {
+    }
+
+    static List<Entry> entries() {
+        List<Entry> list = entries;
+        if (list == null) {
+            synchronized (Corpus.class) {
+                list = entries;
+                if (list == null) {
+                    list = load(locate());
+                    entries = list;
+                }
+            }
+        }
+        return list;
+    }
+
+    /** Parse requests for every entry, as the given input mode sees them. */
+    static List<UaParser.Request> requests(InputMode mode) {
+        List<UaParser.Request> out = new ArrayList<>();
+        for (Entry e : entries()) {
+            switch (mode) {
+                case UA:
+                    out.add(new UaParser.Request(e.ua, null));
+                    break;
+                case HEADERS:
+                    out.add(new UaParser.Request(e.ua, e.headers));
+                    break;
+                case SIGNALS:
+                    out.add(new UaParser.Request(e.ua, e.headers, signalsFor(e)));
+                    break;
+                default:
+                    throw new IllegalArgumentException(mode.name());
+            }
+        }
+        return out;
+    }
+
+    /** JSON payloads in the shape the backends accept ({"ua","headers","signals"}). */
+    static List<String> payloads(InputMode mode) {
+        Gson gson = new Gson();
+        List<String> out = new ArrayList<>();
+        for (UaParser.Request r : requests(mode)) {
+            Map<String, Object> payload = new HashMap<>();
+            payload.put("ua", r.ua);
+            payload.put("headers", r.headers == null ? new HashMap<String, String>() : r.headers);
+            if (r.signals != null) {
+                payload.put("signals", r.signals);
+            }
+            out.add(gson.toJson(payload));
+        }
+        return out;
+    }
+
+    // Plausible browser-side signals so the signals stage does real work;
+    // the corpus itself carries none.
+    private static UaParser.Signals signalsFor(Entry e) {
+        UaParser.Signals s = new UaParser.Signals();
+        String ua = e.ua.toLowerCase();
+        boolean mobile = ua.contains("mobile") || ua.contains("iphone") || ua.contains("android");
+        s.maxTouchPoints = mobile || ua.contains("ipad") ? 5 : 0;
+        s.platform = ua.contains("windows") ? "Win32" : ua.contains("mac") ? "MacIntel" : "Linux x86_64";
+        s.webglVendor = "Google Inc.";
+        s.webglRenderer = ua.contains("mac") ? "ANGLE (Apple, ANGLE Metal Renderer: Apple M2, Unspecified Version)"
+                : "ANGLE (NVIDIA, NVIDIA GeForce RTX 3060 Direct3D11 vs_5_0 ps_5_0, D3D11)";
+        s.screen = new UaParser.ScreenInfo();
+        s.screen.w = mobile ? 390 : 1920;
+        s.screen.h = mobile ? 844 : 1080;
+        s.screen.dpr = mobile ? 3 : 1;
+        s.hardwareConcurrency = 8;
+        return s;
+    }
+
+    private static Path locate() {
+        String override = System.getProperty("ua.corpus");
+        if (override != null && !override.isEmpty()) {
+            return Paths.get(override);
+        }
+        Path dir = Paths.get("").toAbsolutePath();
+        while (dir != null) {
+            Path candidate = dir.resolve("tools/compare/corpus.json");
+            if (Files.isRegularFile(candidate)) {
+                return candidate;
+            }
+            dir = dir.getParent();
+        }
+        throw new IllegalStateException("tools/compare/corpus.json not found; pass -Dua.corpus=PATH");
+    }
+
+    private static List<Entry> load(Path path) {
+        try (Reader r = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            List<Entry> list = new Gson().fromJson(r, new TypeToken<List<Entry>>() {}.getType());
+            if (list == null || list.isEmpty()) {
+                throw new IllegalStateException("empty corpus: " + path);
+            }
+            return list;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.github.octanium91.benchmarks;
+
+import com.github.octanium91.JnaBackend;
+import com.github.octanium91.ParserBackend;
+import com.github.octanium91.UaParser;
+import com.github.octanium91.WasmBackend;
+
+/**
+ * Engine construction shared by the benchmarks. Background updates are
+ * disabled so no fetch or hot-swap lands inside a measurement. The native
+ * engine is a process singleton whose first Init wins; JMH runs every
+ * parameter combination in its own fork, so each config takes effect.
+ */
+final class Engines {
+
+    private Engines() {
+    }
+
+    /**
+     * @param backend "jna", "ffm" (JDK 22+ and a client JAR built on JDK 22+),
+     *                "wasm", or "auto" (the client's own selection).
+     */
+    static ParserBackend backend(String backend) {
+        switch (backend) {
+            case "jna":
+                return new JnaBackend();
+            case "ffm":
+                // Only in the client's versions/22 layer; this module targets 11.
+                try {
+                    return (ParserBackend) Class.forName("com.github.octanium91.FfmBackend")
+                            .getConstructor().newInstance();
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException("FfmBackend unavailable: run on JDK 22+ against a client"
+                            + " JAR built on JDK 22+", e);
+                }
+            case "wasm":
+                return new WasmBackend();
+            default:
+                throw new IllegalArgumentException("unknown backend: " + backend);
+        }
+    }
+
+    static String configJson(int lruCacheSize) {
+        return configJson(lruCacheSize, "json");
+    }
+
+    /** @param resultEncoding "json" or "binary" (the ParseBytes path on native). */
+    static String configJson(int lruCacheSize, String resultEncoding) {
+        return configJson(lruCacheSize, resultEncoding, false);
+    }
+
+    /** @param lazyRegexes index the regex database at init, compiling each regex on first use. */
+    static String configJson(int lruCacheSize, String resultEncoding, boolean lazyRegexes) {
+        return "{\"disable_auto_update\":true,\"disable_corrections_update\":true,"
+                + "\"lru_cache_size\":" + lruCacheSize + ",\"result_encoding\":\"" + resultEncoding + "\","
+                + "\"lazy_regexes\":" + lazyRegexes + "}";
+    }
+
+    static UaParser parser(String backend, int lruCacheSize) {
+        return parser(backend, lruCacheSize, "json");
+    }
+
+    static UaParser parser(String backend, int lruCacheSize, String resultEncoding) {
+        UaParser parser = "auto".equals(backend) ? new UaParser() : new UaParser(backend(backend));
+        parser.init(configJson(lruCacheSize, resultEncoding));
+        return parser;
+    }
+}
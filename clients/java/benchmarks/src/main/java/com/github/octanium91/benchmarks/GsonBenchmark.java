@@ -0,0 +1,108 @@
+package com.github.octanium91.benchmarks;
+
+import com.github.octanium91.CompactResult;
+import com.github.octanium91.ResultView;
+import com.github.octanium91.UaParser;
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The JSON legs of a parse in isolation: encoding the request payload and
+ * decoding the engine's result into UaParser.Result. Result strings are
+ * captured from a real engine once in setup, so the decode input is exactly
+ * what the backends return. The read* pair compares a full decode with a
+ * lazy ResultView when the caller only reads three fields, and
+ * codeCompact shows the analytics path (CompactResult); run with
+ * {@code -prof gc} for the allocation per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GsonBenchmark {
+
+    @Param({"SIGNALS"})
+    public InputMode mode;
+
+    private final Gson gson = new Gson();
+    private final CompactResult.Dictionaries dictionaries = new CompactResult.Dictionaries();
+    private List<Map<String, Object>> payloads;
+    private List<String> results;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        payloads = new ArrayList<>();
+        for (UaParser.Request r : Corpus.requests(mode)) {
+            Map<String, Object> payload = new HashMap<>();
+            payload.put("ua", r.ua);
+            payload.put("headers", r.headers == null ? new HashMap<String, String>() : r.headers);
+            if (r.signals != null) {
+                payload.put("signals", r.signals);
+            }
+            payloads.add(payload);
+        }
+        UaParser parser = Engines.parser("auto", 0);
+        results = new ArrayList<>();
+        for (String payloadJson : Corpus.payloads(mode)) {
+            results.add(parser.parse(payloadJson));
+        }
+    }
+
+    private int advance() {
+        int i = next;
+        next = i + 1 == payloads.size() ? 0 : i + 1;
+        return i;
+    }
+
+    @Benchmark
+    public String encodePayload() {
+        return gson.toJson(payloads.get(advance()));
+    }
+
+    @Benchmark
+    public UaParser.Result decodeResult() {
+        return gson.fromJson(results.get(advance()), UaParser.Result.class);
+    }
+
+    @Benchmark
+    public void readThreeFieldsDecoded(Blackhole bh) {
+        UaParser.Result r = gson.fromJson(results.get(advance()), UaParser.Result.class);
+        bh.consume(r.browser.name);
+        bh.consume(r.os.platform);
+        bh.consume(r.isBot);
+    }
+
+    @Benchmark
+    public void readThreeFieldsView(Blackhole bh) {
+        ResultView v = ResultView.of(results.get(advance()));
+        bh.consume(v.browserName());
+        bh.consume(v.osPlatform());
+        bh.consume(v.isBot());
+    }
+
+    @Benchmark
+    public CompactResult codeCompact() {
+        return CompactResult.of(ResultView.of(results.get(advance())), dictionaries);
+    }
+}
@@ -0,0 +1,8 @@
+package com.github.octanium91.benchmarks;
+
+/** What each parse receives: the UA alone, plus Client Hints, plus signals. */
+public enum InputMode {
+    UA,
+    HEADERS,
+    SIGNALS
+}
@@ -0,0 +1,125 @@
+package com.github.octanium91.benchmarks;
+
+import com.github.octanium91.ParserBackend;
+import com.github.octanium91.UaParser;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The JVM result cache with a multi-million-entry working set, on-heap
+ * versus off-heap. The backend is an in-memory stub returning a full
+ * result, so only the cache is measured and no engine is needed. Setup
+ * prints the heap the populated cache retains; teardown prints the cache
+ * stats (hit rate, bytes). Run with {@code -prof gc} for allocation and GC
+ * counts per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx4g", "-XX:MaxDirectMemorySize=4g"})
+public class JvmCacheBenchmark {
+
+    @Param({"heap", "offheap"})
+    public String cache;
+
+    @Param({"1000000"})
+    public int entries;
+
+    private UaParser parser;
+    private String[] uas;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<UaParser.Request> corpus = Corpus.requests(InputMode.UA);
+        uas = new String[entries * 2];
+        for (int i = 0; i < uas.length; i++) {
+            uas[i] = corpus.get(i % corpus.size()).ua + " #" + i;
+        }
+        UaParser.Config cfg = new UaParser.Config();
+        cfg.jvmCacheSize = entries;
+        cfg.jvmCacheOffHeap = "offheap".equals(cache);
+        parser = new UaParser(new StubBackend());
+        parser.init(cfg);
+
+        long before = usedHeap();
+        for (int i = 0; i < entries; i++) {
+            parser.parse(uas[i], null);
+        }
+        System.out.printf("%n%s cache, %d entries: %d MB retained on heap%n",
+                cache, entries, (usedHeap() - before) >> 20);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.printf("%n%s%n", parser.getCacheStats());
+    }
+
+    /** Every lookup hits: the cost of serving a hit. */
+    @Benchmark
+    public UaParser.Result hit() {
+        return parser.parse(uas[ThreadLocalRandom.current().nextInt(entries)], null);
+    }
+
+    /** Keys from twice the capacity: about half miss and evict. */
+    @Benchmark
+    public UaParser.Result churn() {
+        return parser.parse(uas[ThreadLocalRandom.current().nextInt(uas.length)], null);
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /** Answers every payload with the same full result under its own UA. */
+    static final class StubBackend implements ParserBackend {
+        private static final String RESULT = "{\"result_version\":\"1.2\",\"ua\":\"\","
+                + "\"os\":{\"name\":\"Windows\",\"version\":\"10\",\"platform\":\"windows\","
+                + "\"version_name\":\"Windows 11\",\"version_raw\":\"15.0.0\"},"
+                + "\"browser\":{\"name\":\"Chrome\",\"version\":\"126.0.6478.127\",\"major\":\"126\","
+                + "\"type\":\"browser\"},"
+                + "\"device\":{\"model\":\"\",\"vendor\":\"\",\"type\":\"desktop\",\"form_factor\":\"desktop\"},"
+                + "\"cpu\":{\"architecture\":\"amd64\",\"bitness\":\"64\"},"
+                + "\"engine\":{\"name\":\"Blink\",\"version\":\"126.0.6478.127\"},\"category\":\"desktop\","
+                + "\"is_bot\":false,\"is_ai_crawler\":false,\"is_frozen_ua\":true,\"is_mobile\":false,"
+                + "\"is_desktop\":true,\"is_touch_capable\":false,\"is_chrome_family\":true,"
+                + "\"is_apple_silicon\":false,"
+                + "\"automation\":{\"headless\":false,\"electron\":false,\"webdriver\":false},"
+                + "\"integrity\":{\"spoofed\":false,\"reasons\":[]},\"security\":{\"suspicious\":false},"
+                + "\"detection\":{\"client_hints_used\":true,\"high_entropy\":true,\"signals_used\":false},"
+                + "\"class_hash\":\"5d41402abc4b2a76\"}";
+
+        @Override
+        public void init(String configJson) {
+        }
+
+        @Override
+        public String parse(String payloadJson) {
+            JsonObject result = JsonParser.parseString(RESULT).getAsJsonObject();
+            result.add("ua", JsonParser.parseString(payloadJson).getAsJsonObject().get("ua"));
+            return result.toString();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.github.octanium91.benchmarks;
+
+import com.github.octanium91.UaParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end UaParser.parse (payload encode, backend, result decode) over
+ * the corpus, by input richness, engine LRU size and result encoding. With 52 corpus entries,
+ * lru_cache_size=16 thrashes (near-uncached) and 1000 holds every entry.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+
+    @Param({"auto"})
+    public String backend;
+
+    @Param({"UA", "HEADERS", "SIGNALS"})
+    public InputMode mode;
+
+    @Param({"0", "16", "1000"})
+    public int lruCacheSize;
+
+    /** "binary" takes the ParseBytes path on the native backend. */
+    @Param({"json", "binary"})
+    public String resultEncoding;
+
+    private UaParser parser;
+    private List<UaParser.Request> requests;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        parser = Engines.parser(backend, lruCacheSize, resultEncoding);
+        requests = Corpus.requests(mode);
+    }
+
+    @Benchmark
+    public UaParser.Result parse() {
+        UaParser.Request r = requests.get(next);
+        next = next + 1 == requests.size() ? 0 : next + 1;
+        return parser.parse(r.ua, r.headers, r.signals);
+    }
+}
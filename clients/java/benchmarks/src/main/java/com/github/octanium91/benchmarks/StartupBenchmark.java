@@ -0,0 +1,61 @@
+package com.github.octanium91.benchmarks;
+
+import com.github.octanium91.ParserBackend;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Engine start up to the first result, eager vs lazy regex compilation.
+ * {@code init} is where the regex database is compiled (or, with
+ * {@code lazy_regexes}, only indexed); {@code initAndFirstParse} adds the
+ * first uncached parse, which in lazy mode compiles the regexes it reaches.
+ * One shot per fresh JVM so no earlier engine warms anything.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(5)
+public class StartupBenchmark {
+
+    @Param({"jna", "wasm"})
+    public String backend;
+
+    @Param({"eager", "lazy"})
+    public String regexes;
+
+    private String config;
+    private String payload;
+
+    @Setup
+    public void setUp() {
+        config = Engines.configJson(0, "json", "lazy".equals(regexes));
+        payload = Corpus.payloads(InputMode.UA).get(0);
+    }
+
+    @Benchmark
+    public ParserBackend init() {
+        ParserBackend engine = Engines.backend(backend);
+        engine.init(config);
+        return engine;
+    }
+
+    @Benchmark
+    public String initAndFirstParse() {
+        ParserBackend engine = Engines.backend(backend);
+        engine.init(config);
+        return engine.parse(payload);
+    }
+}
@@ -0,0 +1,53 @@
+package com.github.octanium91.benchmarks;
+
+import com.github.octanium91.WasmBackend;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold start of the WASM backend: module load, translation to JVM bytecode
+ * (or loading the build-time translation), instantiation and engine init,
+ * up to the first parse result. One shot per fresh JVM, since both the
+ * module and its compiled classes are cached for the life of the process.
+ *
+ * {@code compilation=aot} needs a client JAR built with ua-parser.wasm staged
+ * (the wasm-aot profile); otherwise both points measure runtime compilation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(5)
+public class WasmStartupBenchmark {
+
+    @Param({"aot", "runtime"})
+    public String compilation;
+
+    private String payload;
+
+    @Setup
+    public void setUp() {
+        // Read once by WasmBackend, on first use; nothing has touched it yet.
+        System.setProperty("ua-parser.wasm.precompiled", String.valueOf("aot".equals(compilation)));
+        payload = Corpus.payloads(InputMode.UA).get(0);
+    }
+
+    @Benchmark
+    public String coldStart() {
+        WasmBackend backend = new WasmBackend();
+        backend.init(Engines.configJson(0));
+        return backend.parse(payload);
+    }
+}
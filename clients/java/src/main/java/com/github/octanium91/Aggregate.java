@@ -0,0 +1,180 @@
+package com.github.octanium91;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Grouped counts from an {@link Aggregator}, as returned by
+ * {@link Aggregator#snapshot()}: how many parses produced each combination
+ * of dimension values. Groups are ordered by descending count, then by
+ * values. Booleans are {@code "true"} or {@code "false"}; an absent value
+ * (no bot section, say) is {@code ""}.
+ *
+ * Aggregates over the same dimensions add up with {@link #merge}, whether
+ * they come from other threads' aggregators or, through {@link #toJson()}
+ * and {@link #fromJson}, from other JVMs. The JSON is the engine's own
+ * snapshot format, so Go and WASM hosts can contribute too.
+ */
+public final class Aggregate {
+    private static final Gson GSON = new Gson();
+
+    /** Result paths grouped by, in the order of {@link Group#values}. */
+    public List<String> dimensions;
+    /** Parses counted, over all groups. */
+    public long total;
+    public List<Group> groups;
+
+    /** One combination of dimension values and its parse count. */
+    public static final class Group {
+        public List<String> values;
+        public long count;
+
+        public Group() {
+        }
+
+        public Group(List<String> values, long count) {
+            this.values = values;
+            this.count = count;
+        }
+
+        @Override
+        public String toString() {
+            return values + "=" + count;
+        }
+    }
+
+    public Aggregate() {
+    }
+
+    public Aggregate(List<String> dimensions, long total, List<Group> groups) {
+        this.dimensions = dimensions;
+        this.total = total;
+        this.groups = groups;
+        sort(groups);
+    }
+
+    /** The count of the group with exactly {@code values}, or 0. */
+    public long count(String... values) {
+        List<String> wanted = Arrays.asList(values);
+        for (Group g : groups()) {
+            if (g.values.equals(wanted)) {
+                return g.count;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the sum of this aggregate and {@code other}; neither changes.
+     * @throws IllegalArgumentException when the dimensions differ or a group
+     *         has the wrong number of values.
+     */
+    public Aggregate merge(Aggregate other) {
+        if (!dimensions.equals(other.dimensions)) {
+            throw new IllegalArgumentException("cannot merge aggregate over " + other.dimensions
+                    + " with one over " + dimensions);
+        }
+        Map<List<String>, Group> merged = new HashMap<>();
+        List<Group> out = new ArrayList<>();
+        for (Aggregate a : Arrays.asList(this, other)) {
+            for (Group g : a.groups()) {
+                if (g.values == null || g.values.size() != dimensions.size()) {
+                    throw new IllegalArgumentException("aggregate group " + g + " does not match " + dimensions);
+                }
+                Group sum = merged.get(g.values);
+                if (sum == null) {
+                    sum = new Group(g.values, 0);
+                    merged.put(g.values, sum);
+                    out.add(sum);
+                }
+                sum.count += g.count;
+            }
+        }
+        return new Aggregate(dimensions, total + other.total, out);
+    }
+
+    /** The engine's snapshot JSON; read back with {@link #fromJson}. */
+    public String toJson() {
+        return GSON.toJson(this);
+    }
+
+    /**
+     * Reads an aggregate written by {@link #toJson()} or an engine snapshot.
+     * A JSON array of snapshots (one per pooled WASM instance) is summed.
+     * @throws IllegalArgumentException for an engine error or malformed JSON.
+     */
+    public static Aggregate fromJson(String json) {
+        JsonElement tree;
+        try {
+            tree = json == null ? null : JsonParser.parseString(json);
+        } catch (RuntimeException malformed) {
+            throw new IllegalArgumentException("Malformed aggregate: " + json, malformed);
+        }
+        if (tree == null || tree.isJsonNull()) {
+            throw new IllegalArgumentException("Malformed aggregate: " + json);
+        }
+        if (tree.isJsonArray()) {
+            Aggregate sum = null;
+            for (JsonElement part : tree.getAsJsonArray()) {
+                Aggregate a = of(part);
+                sum = sum == null ? a : sum.merge(a);
+            }
+            if (sum == null) {
+                throw new IllegalArgumentException("Empty aggregate array");
+            }
+            return sum;
+        }
+        return of(tree);
+    }
+
+    private static Aggregate of(JsonElement tree) {
+        if (!tree.isJsonObject() || tree.getAsJsonObject().has("error")) {
+            throw new IllegalArgumentException("Aggregation failed: " + tree);
+        }
+        Aggregate a = GSON.fromJson(tree, Aggregate.class);
+        if (a.dimensions == null) {
+            throw new IllegalArgumentException("Malformed aggregate: " + tree);
+        }
+        if (a.groups == null) {
+            a.groups = new ArrayList<>();
+        }
+        sort(a.groups);
+        return a;
+    }
+
+    private List<Group> groups() {
+        return groups == null ? Collections.emptyList() : groups;
+    }
+
+    // sort matches the engine's order, so equal aggregates serialize alike.
+    static void sort(List<Group> groups) {
+        if (groups == null) {
+            return;
+        }
+        groups.sort((x, y) -> {
+            if (x.count != y.count) {
+                return Long.compare(y.count, x.count);
+            }
+            for (int i = 0; i < Math.min(x.values.size(), y.values.size()); i++) {
+                int c = x.values.get(i).compareTo(y.values.get(i));
+                if (c != 0) {
+                    return c;
+                }
+            }
+            return Integer.compare(x.values.size(), y.values.size());
+        });
+    }
+
+    @Override
+    public String toString() {
+        return "Aggregate" + dimensions + " total=" + total + " " + groups();
+    }
+}
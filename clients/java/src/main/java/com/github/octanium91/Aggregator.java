@@ -0,0 +1,202 @@
+package com.github.octanium91;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An aggregation session, created by {@link UaParser#aggregator}: parses
+ * batches of requests and keeps only counts grouped by a fixed list of
+ * dimensions, so a dashboard over a log window never decodes a
+ * {@link UaParser.Result} per line. With an engine that supports sessions
+ * the counting happens inside it and only the grouped counts cross back;
+ * older engines fall back to batch parses counted in the JVM.
+ *
+ * Thread-safe: feed one aggregator from many threads, or give each thread
+ * its own and {@link Aggregate#merge} the snapshots. Close it to release
+ * the engine-side session.
+ */
+public final class Aggregator implements AutoCloseable {
+
+    // Mirrors the engine's dimension table (pkg/core aggregate.go), so both
+    // paths accept the same names; the flag marks booleans.
+    private static final Map<String, Boolean> DIMENSIONS = new LinkedHashMap<>();
+
+    static {
+        for (String name : new String[]{"browser.name", "browser.version", "browser.major", "browser.type",
+                "os.name", "os.version", "os.platform", "os.version_name",
+                "device.model", "device.vendor", "device.type", "device.form_factor",
+                "cpu.architecture", "cpu.bitness", "engine.name", "category", "security.category",
+                "class_hash", "bot.name", "bot.category", "bot.vendor", "gpu.vendor"}) {
+            DIMENSIONS.put(name, false);
+        }
+        for (String name : new String[]{"is_bot", "is_ai_crawler", "is_frozen_ua", "is_mobile", "is_desktop",
+                "is_touch_capable", "is_chrome_family", "is_apple_silicon",
+                "automation.headless", "automation.electron", "automation.webdriver", "integrity.spoofed",
+                "security.suspicious", "detection.client_hints_used", "detection.high_entropy",
+                "detection.signals_used"}) {
+            DIMENSIONS.put(name, true);
+        }
+    }
+
+    private final UaParser parser;
+    private final List<String> dimensions;
+    // The engine-side session, or 0 when counting in the JVM.
+    private final long session;
+    // JVM fallback counts, guarded by this.
+    private Map<List<String>, long[]> groups = new HashMap<>();
+    private long total;
+    private volatile boolean closed;
+
+    Aggregator(UaParser parser, List<String> dimensions, long session) {
+        this.parser = parser;
+        this.dimensions = dimensions;
+        this.session = session;
+    }
+
+    /** The dimension names {@link UaParser#aggregator} accepts. */
+    public static List<String> availableDimensions() {
+        return Collections.unmodifiableList(new ArrayList<>(DIMENSIONS.keySet()));
+    }
+
+    // checkDimensions validates and copies the requested dimensions.
+    static List<String> checkDimensions(String... dimensions) {
+        if (dimensions == null || dimensions.length == 0) {
+            throw new IllegalArgumentException("aggregation needs at least one dimension");
+        }
+        List<String> dims = Collections.unmodifiableList(new ArrayList<>(Arrays.asList(dimensions)));
+        for (int i = 0; i < dims.size(); i++) {
+            String name = dims.get(i);
+            if (!DIMENSIONS.containsKey(name)) {
+                throw new IllegalArgumentException("unknown aggregation dimension \"" + name + "\"");
+            }
+            if (dims.subList(0, i).contains(name)) {
+                throw new IllegalArgumentException("repeated aggregation dimension \"" + name + "\"");
+            }
+        }
+        return dims;
+    }
+
+    public List<String> dimensions() {
+        return dimensions;
+    }
+
+    /** True when the engine counts; false on the JVM fallback. */
+    public boolean inEngine() {
+        return session != 0;
+    }
+
+    /**
+     * Parses {@code requests} and counts each in its group.
+     * {@link UaParser.Request#options} is ignored.
+     * @throws IllegalStateException after {@link #close()}.
+     */
+    public void add(List<UaParser.Request> requests) {
+        checkOpen();
+        if (session != 0) {
+            parser.aggregate(session, requests);
+            return;
+        }
+        List<JsonElement> parsed = parser.parseTrees(requests);
+        List<List<String>> keys = new ArrayList<>(parsed.size());
+        for (JsonElement tree : parsed) {
+            keys.add(valuesOf(tree));
+        }
+        synchronized (this) {
+            for (List<String> key : keys) {
+                groups.computeIfAbsent(key, k -> new long[1])[0]++;
+            }
+            total += keys.size();
+        }
+    }
+
+    /** Parses and counts one request; prefer batches of many. */
+    public void add(String userAgent, Map<String, String> headers) {
+        add(Collections.singletonList(new UaParser.Request(userAgent, headers)));
+    }
+
+    /** The counts so far. */
+    public Aggregate snapshot() {
+        return snapshot(false);
+    }
+
+    /**
+     * The counts so far, starting them over in the same step: consecutive
+     * calls partition the stream (hourly windows, say) without losing or
+     * double-counting a parse.
+     */
+    public Aggregate snapshotAndReset() {
+        return snapshot(true);
+    }
+
+    private Aggregate snapshot(boolean reset) {
+        checkOpen();
+        if (session != 0) {
+            return Aggregate.fromJson(parser.backend().aggregatorSnapshot(session, reset));
+        }
+        Map<List<String>, long[]> counted;
+        long counts;
+        synchronized (this) {
+            counted = groups;
+            counts = total;
+            if (reset) {
+                groups = new HashMap<>();
+                total = 0;
+            } else {
+                counted = new HashMap<>(counted);
+                counted.replaceAll((k, v) -> v.clone());
+            }
+        }
+        List<Aggregate.Group> out = new ArrayList<>(counted.size());
+        counted.forEach((values, count) -> out.add(new Aggregate.Group(values, count[0])));
+        return new Aggregate(dimensions, counts, out);
+    }
+
+    /** Releases the engine-side session; later calls throw. Idempotent. */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        if (session != 0) {
+            parser.backend().closeAggregator(session);
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("aggregator is closed");
+        }
+    }
+
+    // valuesOf reads the dimensions out of one result tree.
+    private List<String> valuesOf(JsonElement tree) {
+        String[] values = new String[dimensions.size()];
+        for (int i = 0; i < values.length; i++) {
+            String name = dimensions.get(i);
+            JsonElement e = tree;
+            for (String part : name.split("\\.")) {
+                e = e != null && e.isJsonObject() ? ((JsonObject) e).get(part) : null;
+            }
+            if (e != null && e.isJsonPrimitive()) {
+                values[i] = e.getAsString();
+            } else {
+                values[i] = DIMENSIONS.get(name) ? "false" : "";
+            }
+        }
+        return Arrays.asList(values);
+    }
+}
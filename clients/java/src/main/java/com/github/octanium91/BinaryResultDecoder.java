@@ -0,0 +1,266 @@
+package com.github.octanium91;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hand-written decoder for the engine's compact binary result format
+ * (pkg/core/binary.go). Fills {@link UaParser.Result} directly: no
+ * reflection, no intermediate JSON tree, and repeated strings are
+ * materialized once per message.
+ *
+ * The dictionary, field order and flag bits below are format version 1 and
+ * must stay in lockstep with the Go encoder.
+ */
+final class BinaryResultDecoder {
+
+    static final int FORMAT_VERSION = 1;
+
+    /** Mirrors binaryDictionary in pkg/core/binary.go (ref 1 = index 0). */
+    static final String[] DICTIONARY = {
+            "1.2", "Other",
+            // browsers
+            "Chrome", "Chrome Mobile", "Chrome Mobile WebView", "Chrome Mobile iOS",
+            "Firefox", "Firefox Mobile", "Safari", "Mobile Safari", "Edge", "Edge Mobile",
+            "Opera", "Samsung Internet", "Yandex Browser", "UC Browser",
+            // operating systems
+            "Windows", "Mac OS X", "macOS", "iOS", "iPadOS", "Android", "Linux",
+            "Ubuntu", "Chrome OS", "Windows 10", "Windows 11",
+            // os.platform
+            "windows", "macos", "ios", "android", "linux", "chromeos", "tizen",
+            "playstation", "other",
+            // device/category/form factor
+            "desktop", "mobile", "tablet", "tv", "console", "wearable", "xr",
+            "automotive", "watch", "bot",
+            // browser.type
+            "browser", "email", "library",
+            // vendors/models
+            "Apple", "Samsung", "Google", "Huawei", "Xiaomi", "Generic", "Mac",
+            "iPhone", "iPad", "K", "Spider",
+            // engines / cpu
+            "Blink", "WebKit", "Gecko", "Trident", "EdgeHTML", "Presto",
+            "amd64", "arm64", "x86", "64", "32",
+            // bot categories
+            "training", "search", "user-fetch", "agent", "search-crawler", "seo",
+            "monitoring", "social-preview",
+            // security categories
+            "scanner", "sql-injection", "xss", "path-traversal", "jndi",
+    };
+
+    // Flag bits (binFlag* in pkg/core/binary.go).
+    private static final int IS_BOT = 0;
+    private static final int IS_AI_CRAWLER = 1;
+    private static final int IS_FROZEN_UA = 2;
+    private static final int IS_MOBILE = 3;
+    private static final int IS_DESKTOP = 4;
+    private static final int IS_TOUCH_CAPABLE = 5;
+    private static final int IS_CHROME_FAMILY = 6;
+    private static final int IS_APPLE_SILICON = 7;
+    private static final int HEADLESS = 8;
+    private static final int ELECTRON = 9;
+    private static final int WEBDRIVER = 10;
+    private static final int SPOOFED = 11;
+    private static final int SUSPICIOUS = 12;
+    private static final int CLIENT_HINTS_USED = 13;
+    private static final int HIGH_ENTROPY = 14;
+    private static final int SIGNALS_USED = 15;
+    private static final int HAS_BOT = 16;
+    private static final int HAS_GPU = 17;
+
+    private final byte[] buf;
+    private final int limit;
+    private int pos;
+    private String[] table;
+
+    private BinaryResultDecoder(byte[] buf, int limit) {
+        this.buf = buf;
+        this.limit = limit;
+    }
+
+    /**
+     * @return true when {@code data} starts with the binary magic; anything
+     * else is the engine's JSON (error) text.
+     */
+    static boolean isBinary(byte[] data) {
+        return data != null && isBinary(data, data.length);
+    }
+
+    /** {@link #isBinary(byte[])} over the first {@code length} bytes of a reused buffer. */
+    static boolean isBinary(byte[] data, int length) {
+        return length >= 3 && data[0] == 'U' && data[1] == 'B';
+    }
+
+    /**
+     * @throws UnsupportedOperationException for a format version this client
+     *         does not know (newer engine); callers fall back to JSON.
+     * @throws IllegalArgumentException on a malformed buffer.
+     */
+    static UaParser.Result decode(byte[] data) {
+        return decode(data, data.length);
+    }
+
+    /** Decodes the first {@code length} bytes of {@code data} (a reused buffer). */
+    static UaParser.Result decode(byte[] data, int length) {
+        if (!isBinary(data, length)) {
+            throw new IllegalArgumentException("not a binary ua-parser result");
+        }
+        if (data[2] != FORMAT_VERSION) {
+            throw new UnsupportedOperationException("unsupported binary result format version " + data[2]);
+        }
+        BinaryResultDecoder d = new BinaryResultDecoder(data, length);
+        d.pos = 3;
+        return d.read();
+    }
+
+    private UaParser.Result read() {
+        long flags = varint();
+        int tableSize = length();
+        table = new String[tableSize];
+        for (int i = 0; i < tableSize; i++) {
+            int len = length();
+            if (len > limit - pos) {
+                throw truncated();
+            }
+            table[i] = new String(buf, pos, len, StandardCharsets.UTF_8);
+            pos += len;
+        }
+
+        UaParser.Result r = new UaParser.Result();
+        r.resultVersion = str();
+        r.ua = str();
+
+        r.browser = new UaParser.BrowserInfo();
+        r.browser.name = str();
+        r.browser.version = str();
+        r.browser.major = str();
+        r.browser.type = str();
+
+        r.os = new UaParser.OSInfo();
+        r.os.name = str();
+        r.os.version = str();
+        r.os.platform = str();
+        r.os.versionName = str();
+        r.os.versionRaw = str();
+
+        r.device = new UaParser.DeviceInfo();
+        r.device.model = str();
+        r.device.vendor = str();
+        r.device.type = str();
+        r.device.formFactor = str();
+
+        r.cpu = new UaParser.CPUInfo();
+        r.cpu.architecture = str();
+        r.cpu.bitness = str();
+
+        r.engine = new UaParser.EngineInfo();
+        r.engine.name = str();
+        r.engine.version = str();
+
+        r.category = str();
+
+        r.security = new UaParser.SecurityInfo();
+        r.security.category = emptyToNull(str()); // omitempty in JSON
+        r.security.suspicious = bit(flags, SUSPICIOUS);
+
+        r.classHash = str();
+
+        r.integrity = new UaParser.IntegrityInfo();
+        r.integrity.spoofed = bit(flags, SPOOFED);
+        int reasons = length();
+        if (reasons > 0) {
+            List<String> list = new ArrayList<>(reasons - 1);
+            for (int i = 1; i < reasons; i++) {
+                list.add(str());
+            }
+            r.integrity.reasons = list;
+        }
+
+        if (bit(flags, HAS_BOT)) {
+            r.bot = new UaParser.BotInfo();
+            r.bot.name = str();
+            r.bot.category = str();
+            r.bot.vendor = str();
+        }
+        if (bit(flags, HAS_GPU)) {
+            r.gpu = new UaParser.GPUInfo();
+            r.gpu.vendor = str();
+            r.gpu.renderer = str();
+        }
+
+        r.isBot = bit(flags, IS_BOT);
+        r.isAiCrawler = bit(flags, IS_AI_CRAWLER);
+        r.isFrozenUa = bit(flags, IS_FROZEN_UA);
+        r.isMobile = bit(flags, IS_MOBILE);
+        r.isDesktop = bit(flags, IS_DESKTOP);
+        r.isTouchCapable = bit(flags, IS_TOUCH_CAPABLE);
+        r.isChromeFamily = bit(flags, IS_CHROME_FAMILY);
+        r.isAppleSilicon = bit(flags, IS_APPLE_SILICON);
+
+        r.automation = new UaParser.AutomationInfo();
+        r.automation.headless = bit(flags, HEADLESS);
+        r.automation.electron = bit(flags, ELECTRON);
+        r.automation.webdriver = bit(flags, WEBDRIVER);
+
+        r.detection = new UaParser.DetectionInfo();
+        r.detection.clientHintsUsed = bit(flags, CLIENT_HINTS_USED);
+        r.detection.highEntropy = bit(flags, HIGH_ENTROPY);
+        r.detection.signalsUsed = bit(flags, SIGNALS_USED);
+
+        if (pos != limit) {
+            throw new IllegalArgumentException("trailing bytes in binary ua-parser result");
+        }
+        return r;
+    }
+
+    private String str() {
+        long ref = varint();
+        if (ref == 0) {
+            return "";
+        }
+        if (ref <= DICTIONARY.length) {
+            return DICTIONARY[(int) ref - 1];
+        }
+        long idx = ref - DICTIONARY.length - 1;
+        if (idx >= table.length) {
+            throw new IllegalArgumentException("string ref out of range: " + ref);
+        }
+        return table[(int) idx];
+    }
+
+    private int length() {
+        long v = varint();
+        if (v > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("length out of range: " + v);
+        }
+        return (int) v;
+    }
+
+    // varint reads an unsigned LEB128 value (Go's binary.Uvarint).
+    private long varint() {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (pos >= limit) {
+                throw truncated();
+            }
+            byte b = buf[pos++];
+            v |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return v;
+            }
+        }
+        throw new IllegalArgumentException("varint overflow");
+    }
+
+    private static boolean bit(long flags, int bit) {
+        return (flags & (1L << bit)) != 0;
+    }
+
+    private static String emptyToNull(String s) {
+        return s.isEmpty() ? null : s;
+    }
+
+    private static IllegalArgumentException truncated() {
+        return new IllegalArgumentException("truncated binary ua-parser result");
+    }
+}
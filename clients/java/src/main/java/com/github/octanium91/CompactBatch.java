@@ -0,0 +1,138 @@
+package com.github.octanium91;
+
+import java.util.Arrays;
+
+/**
+ * Many {@link CompactResult} rows as primitive arrays (struct of arrays):
+ * one {@code char[]} of codes per {@link CompactResult.Column} and one
+ * {@code int[]} of flags, 16 bytes per row and no object per row. Twenty
+ * million rows take about 320 MB; pass the expected row count to the
+ * constructor so the arrays are not regrown and copied on the way.
+ *
+ * Rows are appended by {@link UaParser#parseCompactBatch} or
+ * {@link #add(CompactResult)}; all of them are coded with this batch's
+ * {@link CompactResult.Dictionaries}. Not thread-safe: give each thread
+ * its own batch, optionally sharing one Dictionaries instance.
+ */
+public final class CompactBatch {
+
+    /** Codes are stored unsigned in 16 bits. */
+    public static final int MAX_CODE = Character.MAX_VALUE;
+
+    private static final CompactResult.Column[] COLUMNS = CompactResult.Column.values();
+
+    private final CompactResult.Dictionaries dictionaries;
+    private final char[][] codes = new char[COLUMNS.length][];
+    private int[] flags;
+    private int size;
+
+    /** An empty batch with its own dictionaries. */
+    public CompactBatch() {
+        this(new CompactResult.Dictionaries(), 1024);
+    }
+
+    public CompactBatch(CompactResult.Dictionaries dictionaries, int initialCapacity) {
+        if (initialCapacity < 1) {
+            throw new IllegalArgumentException("initialCapacity must be positive");
+        }
+        this.dictionaries = dictionaries;
+        for (int c = 0; c < codes.length; c++) {
+            codes[c] = new char[initialCapacity];
+        }
+        flags = new int[initialCapacity];
+    }
+
+    public CompactResult.Dictionaries dictionaries() {
+        return dictionaries;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Appends a row.
+     * @throws IllegalArgumentException when {@code row} was coded with other dictionaries.
+     * @throws IllegalStateException when a code exceeds {@link #MAX_CODE}.
+     */
+    public void add(CompactResult row) {
+        if (row.dictionaries() != dictionaries) {
+            throw new IllegalArgumentException("row was coded with different dictionaries");
+        }
+        ensureCapacity(size + 1);
+        for (CompactResult.Column c : COLUMNS) {
+            int code = row.code(c);
+            if (code > MAX_CODE) {
+                throw new IllegalStateException(c + " has more than " + MAX_CODE + " distinct values");
+            }
+            codes[c.ordinal()][size] = (char) code;
+        }
+        flags[size] = row.flags();
+        size++;
+    }
+
+    /** The code of {@code column} in row {@code row}; 0 when absent. */
+    public int code(int row, CompactResult.Column column) {
+        checkRow(row);
+        return codes[column.ordinal()][row];
+    }
+
+    public String value(int row, CompactResult.Column column) {
+        return dictionaries.get(column).value(code(row, column));
+    }
+
+    /** The {@link CompactResult.Flag} bitset of row {@code row}. */
+    public int flags(int row) {
+        checkRow(row);
+        return flags[row];
+    }
+
+    public boolean has(int row, CompactResult.Flag flag) {
+        return (flags(row) & flag.mask) != 0;
+    }
+
+    /** Row {@code row} as an object, for code that prefers one. */
+    public CompactResult get(int row) {
+        checkRow(row);
+        int[] rowCodes = new int[COLUMNS.length];
+        for (int c = 0; c < COLUMNS.length; c++) {
+            rowCodes[c] = codes[c][row];
+        }
+        return new CompactResult(dictionaries, rowCodes, flags[row]);
+    }
+
+    /**
+     * The backing code array of {@code column}, for tight loops: valid up to
+     * {@link #size()} and replaced when the batch grows.
+     */
+    public char[] codes(CompactResult.Column column) {
+        return codes[column.ordinal()];
+    }
+
+    /** The backing flags array; see {@link #codes(CompactResult.Column)}. */
+    public int[] flags() {
+        return flags;
+    }
+
+    /** Drops every row and keeps the arrays (and the dictionaries). */
+    public void clear() {
+        size = 0;
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= flags.length) {
+            return;
+        }
+        int capacity = Math.max(needed, flags.length + (flags.length >> 1));
+        for (int c = 0; c < codes.length; c++) {
+            codes[c] = Arrays.copyOf(codes[c], capacity);
+        }
+        flags = Arrays.copyOf(flags, capacity);
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("row " + row + " of " + size);
+        }
+    }
+}
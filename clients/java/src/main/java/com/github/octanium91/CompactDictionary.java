@@ -0,0 +1,140 @@
+package com.github.octanium91;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Interns the values of one {@link CompactResult} column and hands out
+ * stable int codes: 0 stands for null (absent), the first distinct value
+ * gets 1, the next 2, and so on. Codes are stable for the life of the
+ * dictionary, so they can be stored, counted and compared instead of the
+ * Strings.
+ *
+ * Lookups are lock-free and allocate nothing for a value already seen;
+ * only a new value takes a lock and republishes the table. That suits the
+ * columns it is built for (browser families, platforms, device types),
+ * which have at most a few hundred values. Codes are local to a
+ * dictionary: to combine rows coded elsewhere (another JVM), translate
+ * them through {@link #values()}.
+ */
+public final class CompactDictionary {
+
+    /** Immutable snapshot; a new value publishes a new one. */
+    private static final class Table {
+        // values[code - 1]; may be longer than size, entries past it unused.
+        final String[] values;
+        final int size;
+        // Open addressing over codes, 0 = empty.
+        final int[] slots;
+
+        Table(String[] values, int size, int[] slots) {
+            this.values = values;
+            this.size = size;
+            this.slots = slots;
+        }
+
+        int find(String src, int start, int end, int hash) {
+            int mask = slots.length - 1;
+            int len = end - start;
+            for (int i = hash & mask; ; i = (i + 1) & mask) {
+                int code = slots[i];
+                if (code == 0) {
+                    return 0;
+                }
+                String v = values[code - 1];
+                if (v.length() == len && src.regionMatches(start, v, 0, len)) {
+                    return code;
+                }
+            }
+        }
+    }
+
+    private volatile Table table = new Table(new String[16], 0, new int[32]);
+
+    /** The code of {@code value}, interning it on first sight; 0 for null. */
+    public int code(String value) {
+        return value == null ? 0 : code(value, 0, value.length());
+    }
+
+    /** The code of {@code value} if it was interned already, else 0. */
+    public int find(String value) {
+        return value == null ? 0 : table.find(value, 0, value.length(), hash(value, 0, value.length()));
+    }
+
+    // The code of src[start..end), interning a copy on first sight.
+    int code(String src, int start, int end) {
+        int hash = hash(src, start, end);
+        int code = table.find(src, start, end, hash);
+        return code != 0 ? code : intern(src.substring(start, end), hash);
+    }
+
+    private synchronized int intern(String value, int hash) {
+        Table t = table;
+        int code = t.find(value, 0, value.length(), hash);
+        if (code != 0) {
+            return code;
+        }
+        String[] values = t.values;
+        if (t.size == values.length) {
+            values = Arrays.copyOf(values, values.length * 2);
+        }
+        // Slots written past an older snapshot's size are never read by it.
+        values[t.size] = value;
+        int size = t.size + 1;
+        int[] slots = size * 2 > t.slots.length ? new int[t.slots.length * 2] : t.slots.clone();
+        if (slots.length != t.slots.length) {
+            for (int c = 1; c < size; c++) {
+                String v = values[c - 1];
+                insert(slots, hash(v, 0, v.length()), c);
+            }
+        }
+        insert(slots, hash, size);
+        table = new Table(values, size, slots);
+        return size;
+    }
+
+    private static void insert(int[] slots, int hash, int code) {
+        int mask = slots.length - 1;
+        int i = hash & mask;
+        while (slots[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        slots[i] = code;
+    }
+
+    /**
+     * The value behind {@code code}; null for 0.
+     * @throws IllegalArgumentException for a code this dictionary never issued.
+     */
+    public String value(int code) {
+        if (code == 0) {
+            return null;
+        }
+        Table t = table;
+        if (code < 0 || code > t.size) {
+            throw new IllegalArgumentException("unknown code " + code);
+        }
+        return t.values[code - 1];
+    }
+
+    /** The number of interned values (the highest code issued). */
+    public int size() {
+        return table.size;
+    }
+
+    /** The interned values in code order: element i has code i + 1. */
+    public List<String> values() {
+        Table t = table;
+        return Collections.unmodifiableList(Arrays.asList(Arrays.copyOf(t.values, t.size)));
+    }
+
+    private static int hash(String s, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + s.charAt(i);
+        }
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
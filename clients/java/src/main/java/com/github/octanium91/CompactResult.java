@@ -0,0 +1,215 @@
+package com.github.octanium91;
+
+import java.util.EnumSet;
+
+/**
+ * The categorical part of a result for analytics: six dictionary-coded
+ * columns ({@link Column}) and every boolean as one bit ({@link Flag}),
+ * about 48 bytes per instance against several hundred for a
+ * {@link UaParser.Result}. For many rows use {@link CompactBatch}, which
+ * stores the same data as primitive arrays.
+ *
+ * Codes come from the {@link Dictionaries} the result was built with;
+ * rows built with the same instance are directly comparable.
+ */
+public final class CompactResult {
+
+    /** The coded columns. Code 0 means the value was absent (null). */
+    public enum Column {
+        /** browser.name, the browser family. */
+        BROWSER_NAME,
+        OS_PLATFORM,
+        DEVICE_TYPE,
+        DEVICE_FORM_FACTOR,
+        CATEGORY,
+        /** bot.category, for declared bots. */
+        BOT_CATEGORY
+    }
+
+    /** The boolean fields, bit {@code ordinal()} of {@link #flags()}. */
+    public enum Flag {
+        IS_BOT,
+        IS_AI_CRAWLER,
+        IS_FROZEN_UA,
+        IS_MOBILE,
+        IS_DESKTOP,
+        IS_TOUCH_CAPABLE,
+        IS_CHROME_FAMILY,
+        IS_APPLE_SILICON,
+        HEADLESS,
+        ELECTRON,
+        WEBDRIVER,
+        SPOOFED,
+        SUSPICIOUS,
+        CLIENT_HINTS_USED,
+        HIGH_ENTROPY,
+        SIGNALS_USED,
+        /** The result has a bot section. */
+        HAS_BOT,
+        /** The result has a gpu section. */
+        HAS_GPU;
+
+        public final int mask = 1 << ordinal();
+    }
+
+    /** One {@link CompactDictionary} per {@link Column}; thread-safe. */
+    public static final class Dictionaries {
+        private final CompactDictionary[] byColumn = new CompactDictionary[Column.values().length];
+
+        public Dictionaries() {
+            for (int i = 0; i < byColumn.length; i++) {
+                byColumn[i] = new CompactDictionary();
+            }
+        }
+
+        public CompactDictionary get(Column column) {
+            return byColumn[column.ordinal()];
+        }
+    }
+
+    /**
+     * The sections a compact result reads; {@link UaParser#parseCompact}
+     * requests only these from the engine.
+     */
+    static final UaParser.ParseOptions FIELDS;
+
+    static {
+        EnumSet<UaParser.ParseOptions.Field> fields = EnumSet.allOf(UaParser.ParseOptions.Field.class);
+        fields.removeAll(EnumSet.of(UaParser.ParseOptions.Field.CPU, UaParser.ParseOptions.Field.ENGINE,
+                UaParser.ParseOptions.Field.CLASS_HASH));
+        FIELDS = UaParser.ParseOptions.builder().fields(fields.toArray(new UaParser.ParseOptions.Field[0])).build();
+    }
+
+    private final Dictionaries dictionaries;
+    private final int browserName;
+    private final int osPlatform;
+    private final int deviceType;
+    private final int deviceFormFactor;
+    private final int category;
+    private final int botCategory;
+    private final int flags;
+
+    CompactResult(Dictionaries dictionaries, int[] codes, int flags) {
+        this.dictionaries = dictionaries;
+        this.browserName = codes[Column.BROWSER_NAME.ordinal()];
+        this.osPlatform = codes[Column.OS_PLATFORM.ordinal()];
+        this.deviceType = codes[Column.DEVICE_TYPE.ordinal()];
+        this.deviceFormFactor = codes[Column.DEVICE_FORM_FACTOR.ordinal()];
+        this.category = codes[Column.CATEGORY.ordinal()];
+        this.botCategory = codes[Column.BOT_CATEGORY.ordinal()];
+        this.flags = flags;
+    }
+
+    /** Codes a decoded result, e.g. one served by the JVM result cache. */
+    public static CompactResult of(UaParser.Result result, Dictionaries dictionaries) {
+        int[] codes = new int[Column.values().length];
+        codes[Column.BROWSER_NAME.ordinal()] = code(dictionaries, Column.BROWSER_NAME,
+                result.browser == null ? null : result.browser.name);
+        codes[Column.OS_PLATFORM.ordinal()] = code(dictionaries, Column.OS_PLATFORM,
+                result.os == null ? null : result.os.platform);
+        codes[Column.DEVICE_TYPE.ordinal()] = code(dictionaries, Column.DEVICE_TYPE,
+                result.device == null ? null : result.device.type);
+        codes[Column.DEVICE_FORM_FACTOR.ordinal()] = code(dictionaries, Column.DEVICE_FORM_FACTOR,
+                result.device == null ? null : result.device.formFactor);
+        codes[Column.CATEGORY.ordinal()] = code(dictionaries, Column.CATEGORY, result.category);
+        codes[Column.BOT_CATEGORY.ordinal()] = code(dictionaries, Column.BOT_CATEGORY,
+                result.bot == null ? null : result.bot.category);
+
+        int flags = 0;
+        flags |= bit(Flag.IS_BOT, result.isBot);
+        flags |= bit(Flag.IS_AI_CRAWLER, result.isAiCrawler);
+        flags |= bit(Flag.IS_FROZEN_UA, result.isFrozenUa);
+        flags |= bit(Flag.IS_MOBILE, result.isMobile);
+        flags |= bit(Flag.IS_DESKTOP, result.isDesktop);
+        flags |= bit(Flag.IS_TOUCH_CAPABLE, result.isTouchCapable);
+        flags |= bit(Flag.IS_CHROME_FAMILY, result.isChromeFamily);
+        flags |= bit(Flag.IS_APPLE_SILICON, result.isAppleSilicon);
+        if (result.automation != null) {
+            flags |= bit(Flag.HEADLESS, result.automation.headless);
+            flags |= bit(Flag.ELECTRON, result.automation.electron);
+            flags |= bit(Flag.WEBDRIVER, result.automation.webdriver);
+        }
+        if (result.integrity != null) {
+            flags |= bit(Flag.SPOOFED, result.integrity.spoofed);
+        }
+        if (result.security != null) {
+            flags |= bit(Flag.SUSPICIOUS, result.security.suspicious);
+        }
+        if (result.detection != null) {
+            flags |= bit(Flag.CLIENT_HINTS_USED, result.detection.clientHintsUsed);
+            flags |= bit(Flag.HIGH_ENTROPY, result.detection.highEntropy);
+            flags |= bit(Flag.SIGNALS_USED, result.detection.signalsUsed);
+        }
+        flags |= bit(Flag.HAS_BOT, result.bot != null);
+        flags |= bit(Flag.HAS_GPU, result.gpu != null);
+        return new CompactResult(dictionaries, codes, flags);
+    }
+
+    /**
+     * Codes the result JSON behind a view without decoding its Strings: a
+     * value the dictionary already holds is matched in place.
+     */
+    public static CompactResult of(ResultView view, Dictionaries dictionaries) {
+        int[] codes = new int[Column.values().length];
+        for (Column c : Column.values()) {
+            codes[c.ordinal()] = view.code(c, dictionaries.get(c));
+        }
+        return new CompactResult(dictionaries, codes, view.flags());
+    }
+
+    private static int code(Dictionaries dictionaries, Column column, String value) {
+        return dictionaries.get(column).code(value);
+    }
+
+    private static int bit(Flag flag, boolean set) {
+        return set ? flag.mask : 0;
+    }
+
+    public Dictionaries dictionaries() {
+        return dictionaries;
+    }
+
+    /** The dictionary code of {@code column}; 0 when absent. */
+    public int code(Column column) {
+        switch (column) {
+            case BROWSER_NAME: return browserName;
+            case OS_PLATFORM: return osPlatform;
+            case DEVICE_TYPE: return deviceType;
+            case DEVICE_FORM_FACTOR: return deviceFormFactor;
+            case CATEGORY: return category;
+            case BOT_CATEGORY: return botCategory;
+            default: throw new IllegalArgumentException(column.name());
+        }
+    }
+
+    /** The value of {@code column}, looked up in the dictionary. */
+    public String value(Column column) {
+        return dictionaries.get(column).value(code(column));
+    }
+
+    /** Every {@link Flag} as a bitset. */
+    public int flags() {
+        return flags;
+    }
+
+    public boolean has(Flag flag) {
+        return (flags & flag.mask) != 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("CompactResult{");
+        for (Column c : Column.values()) {
+            sb.append(c.name().toLowerCase()).append('=').append(value(c)).append(", ");
+        }
+        sb.append("flags=[");
+        String sep = "";
+        for (Flag f : Flag.values()) {
+            if (has(f)) {
+                sb.append(sep).append(f.name().toLowerCase());
+                sep = ",";
+            }
+        }
+        return sb.append("]}").toString();
+    }
+}
@@ -0,0 +1,199 @@
+package com.github.octanium91;
+
+import com.google.gson.annotations.SerializedName;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Snapshot of the Go engine's counters, as returned by
+ * {@link UaParser#getEngineStats()}. Cumulative since the engine started.
+ * The cache, latency and correction-hit sections are populated only when
+ * the engine runs with {@link UaParser.Config#collectStats}; generation and
+ * updater results are always reported. On the WASM backend each pooled
+ * instance is its own engine and the snapshot is their sum.
+ */
+public final class EngineStats {
+    /** Whether the engine collects per-parse counters (collect_stats). */
+    public boolean collecting;
+    /** Hot-swap generation: bumped by every regex or corrections swap. */
+    public long generation;
+    public CacheCounters cache;
+    @SerializedName("parse_latency")
+    public ParseLatency parseLatency;
+    public Corrections corrections;
+    public Updates updates;
+
+    /** Engine result-cache counters (not the JVM cache; see {@link UaParser#getCacheStats()}). */
+    public static final class CacheCounters {
+        public long hits;
+        public long misses;
+        public long evictions;
+        public int size;
+        public int capacity;
+        /** Estimated memory held by cached entries; 0 unless {@code cacheMaxBytes} is set. */
+        public long bytes;
+        @SerializedName("max_bytes")
+        public long maxBytes;
+
+        /** @return hits / (hits + misses), or 0 before the first lookup. */
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+
+    /** Core parse latency, split by engine cache outcome. */
+    public static final class ParseLatency {
+        public Histogram hit;
+        public Histogram miss;
+    }
+
+    /**
+     * Latency distribution: {@code counts[i]} samples were faster than
+     * {@code boundsNanos[i]}; the extra last count holds slower ones.
+     */
+    public static final class Histogram {
+        public long count;
+        @SerializedName("sum_ns")
+        public long sumNanos;
+        @SerializedName("bounds_ns")
+        public long[] boundsNanos;
+        public long[] counts;
+
+        public double meanNanos() {
+            return count == 0 ? 0 : (double) sumNanos / count;
+        }
+
+        /**
+         * @return the upper bound of the bucket holding quantile {@code q}
+         * (0..1), i.e. an upper estimate; {@link Long#MAX_VALUE} when it
+         * falls in the overflow bucket, 0 without samples.
+         */
+        public long quantileUpperBoundNanos(double q) {
+            if (count == 0 || counts == null) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(q * count);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank && seen > 0) {
+                    return i < boundsNanos.length ? boundsNanos[i] : Long.MAX_VALUE;
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /** Active correction set and how often its rules fired. */
+    public static final class Corrections {
+        public String version;
+        public int rules;
+        public long hits;
+        /** Applications per rule id; only rules that fired are listed. */
+        @SerializedName("rule_hits")
+        public Map<String, Long> ruleHits;
+    }
+
+    public static final class Updates {
+        public UpdateCounters regexes;
+        public UpdateCounters corrections;
+    }
+
+    /** Update attempts by outcome for one resource (regexes or corrections). */
+    public static final class UpdateCounters {
+        public long updated;
+        @SerializedName("not_modified")
+        public long notModified;
+        public long failed;
+        @SerializedName("last_error")
+        public String lastError;
+        /** RFC 3339 time of the last applied update; null before the first. */
+        @SerializedName("last_updated")
+        public String lastUpdated;
+    }
+
+    // merge sums per-instance snapshots of a pooled backend into one.
+    static EngineStats merge(List<EngineStats> parts) {
+        if (parts.size() == 1) {
+            return parts.get(0);
+        }
+        EngineStats m = new EngineStats();
+        m.cache = new CacheCounters();
+        m.parseLatency = new ParseLatency();
+        m.corrections = new Corrections();
+        m.updates = new Updates();
+        m.updates.regexes = new UpdateCounters();
+        m.updates.corrections = new UpdateCounters();
+        for (EngineStats p : parts) {
+            m.collecting |= p.collecting;
+            m.generation = Math.max(m.generation, p.generation);
+            if (p.cache != null) {
+                m.cache.hits += p.cache.hits;
+                m.cache.misses += p.cache.misses;
+                m.cache.evictions += p.cache.evictions;
+                m.cache.size += p.cache.size;
+                m.cache.capacity += p.cache.capacity;
+                m.cache.bytes += p.cache.bytes;
+                m.cache.maxBytes += p.cache.maxBytes;
+            }
+            if (p.parseLatency != null) {
+                m.parseLatency.hit = add(m.parseLatency.hit, p.parseLatency.hit);
+                m.parseLatency.miss = add(m.parseLatency.miss, p.parseLatency.miss);
+            }
+            if (p.corrections != null) {
+                if (m.corrections.version == null) {
+                    m.corrections.version = p.corrections.version;
+                    m.corrections.rules = p.corrections.rules;
+                }
+                m.corrections.hits += p.corrections.hits;
+                if (p.corrections.ruleHits != null) {
+                    if (m.corrections.ruleHits == null) {
+                        m.corrections.ruleHits = new HashMap<>();
+                    }
+                    p.corrections.ruleHits.forEach((id, n) -> m.corrections.ruleHits.merge(id, n, Long::sum));
+                }
+            }
+            if (p.updates != null) {
+                add(m.updates.regexes, p.updates.regexes);
+                add(m.updates.corrections, p.updates.corrections);
+            }
+        }
+        return m;
+    }
+
+    private static Histogram add(Histogram sum, Histogram h) {
+        if (h == null) {
+            return sum;
+        }
+        if (sum == null) {
+            sum = new Histogram();
+            sum.boundsNanos = h.boundsNanos;
+            sum.counts = new long[h.counts.length];
+        }
+        sum.count += h.count;
+        sum.sumNanos += h.sumNanos;
+        for (int i = 0; i < h.counts.length && i < sum.counts.length; i++) {
+            sum.counts[i] += h.counts[i];
+        }
+        return sum;
+    }
+
+    private static void add(UpdateCounters sum, UpdateCounters c) {
+        if (c == null) {
+            return;
+        }
+        sum.updated += c.updated;
+        sum.notModified += c.notModified;
+        sum.failed += c.failed;
+        if (c.lastError != null) {
+            sum.lastError = c.lastError;
+        }
+        // RFC 3339 UTC timestamps of equal length compare lexicographically.
+        if (c.lastUpdated != null && (sum.lastUpdated == null || c.lastUpdated.compareTo(sum.lastUpdated) > 0)) {
+            sum.lastUpdated = c.lastUpdated;
+        }
+    }
+}
@@ -2,41 +2,197 @@ package com.github.octanium91;
 
 import com.sun.jna.Library;
 import com.sun.jna.Native;
+import com.sun.jna.NativeLibrary;
 import com.sun.jna.Platform;
 import com.sun.jna.Pointer;
+import com.sun.jna.ptr.PointerByReference;
 
 import java.io.File;
+import java.nio.ByteBuffer;
 
 public class JnaBackend implements ParserBackend {
     public interface UaParserLib extends Library {
         Pointer Init(String configJSON);
         Pointer Parse(String payloadJSON);
+        Pointer ParseBatch(String payloadsJSON);
+        Pointer ParseBinary(String payloadJSON);
+        Pointer Stats();
+        Pointer SaveWarmup(String path, int entries);
         void FreeString(Pointer ptr);
+
+        // Handle-based engines: one per backend, each with its own config and cache.
+        long InitHandle(String configJSON, PointerByReference errOut);
+        Pointer ParseHandle(long handle, String payloadJSON);
+        Pointer ParseBatchHandle(long handle, String payloadsJSON);
+        Pointer ParseBinaryHandle(long handle, String payloadJSON);
+        Pointer StatsHandle(long handle);
+        Pointer SaveWarmupHandle(long handle, String path, int entries);
+        void CloseHandle(long handle);
+
+        // Aggregation sessions; absent from libraries predating them.
+        long AggregatorOpen(String dimensionsJSON, PointerByReference errOut);
+        long AggregatorOpenHandle(long handle, String dimensionsJSON, PointerByReference errOut);
+        Pointer AggregatorAdd(long session, String payloadsJSON);
+        Pointer AggregatorSnapshot(long session, int reset);
+        void AggregatorClose(long session);
+    }
+
+    /**
+     * Direct-mapped (JNI-style) binding for the hot byte path: unlike the
+     * interface proxy above it boxes no arguments and allocates no argument
+     * array per call, and direct ByteBuffers are passed by address.
+     * Native.register binds a class's natives once per JVM, so only the
+     * first library to bind gets the byte path; backends over any other
+     * library (another path passed to {@link #JnaBackend(String)}) must not
+     * call into it, and use the other paths instead.
+     */
+    static final class Direct {
+        private static NativeLibrary bound;
+        private static boolean failed;
+
+        private Direct() {
+        }
+
+        static native int ParseBytes(ByteBuffer in, int inLen, ByteBuffer out, int outCap);
+
+        // bind returns whether ParseBytes calls reach libName.
+        static synchronized boolean bind(String libName) {
+            NativeLibrary lib = NativeLibrary.getInstance(libName);
+            if (bound == null && !failed) {
+                try {
+                    Native.register(Direct.class, lib);
+                    bound = lib;
+                } catch (LinkageError | IllegalArgumentException missing) {
+                    // Libraries predating ParseBytes: stay on the other paths.
+                    failed = true;
+                }
+            }
+            return bound == lib;
+        }
     }
 
+    /**
+     * Same as {@link Direct} for ParseBytesHandle; bound separately so a
+     * library with ParseBytes but no handle exports still binds the former.
+     */
+    static final class DirectHandle {
+        private static NativeLibrary bound;
+        private static boolean failed;
+
+        private DirectHandle() {
+        }
+
+        static native int ParseBytesHandle(long handle, ByteBuffer in, int inLen, ByteBuffer out, int outCap);
+
+        static synchronized boolean bind(String libName) {
+            NativeLibrary lib = NativeLibrary.getInstance(libName);
+            if (bound == null && !failed) {
+                try {
+                    Native.register(DirectHandle.class, lib);
+                    bound = lib;
+                } catch (LinkageError | IllegalArgumentException missing) {
+                    failed = true;
+                }
+            }
+            return bound == lib;
+        }
+    }
+
+    // Never returned by InitHandle; routes calls after close() to the handle
+    // exports, which answer with an error result.
+    private static final long CLOSED = -1L;
+
     private final UaParserLib lib;
+    private final String libName;
+    // This backend's engine; 0 while on the process-global engine (before
+    // init, or with libraries predating InitHandle).
+    private volatile long handle;
+    private volatile boolean handlesSupported = true;
+    // Cleared on the first lookup failure: libraries older than the
+    // ParseBatch export keep working through the per-item path.
+    private volatile boolean batchSupported = true;
+    // Same for ParseBinary.
+    private volatile boolean binarySupported = true;
+    // Same for Stats / StatsHandle.
+    private volatile boolean statsSupported = true;
+    // Same for SaveWarmup / SaveWarmupHandle.
+    private volatile boolean warmupSupported = true;
+    // Same for the Aggregator* exports.
+    private volatile boolean aggregationSupported = true;
+    // Whether Direct / DirectHandle are bound to this backend's library;
+    // null until the first byte parse asks.
+    private volatile Boolean directBound;
+    private volatile Boolean directHandleBound;
 
     public JnaBackend() {
-        this.lib = loadLibrary();
+        this.libName = resolveLibrary();
+        this.lib = Native.load(libName, UaParserLib.class);
     }
 
     public JnaBackend(String libPath) {
+        this.libName = libPath;
         this.lib = Native.load(libPath, UaParserLib.class);
     }
 
+    /**
+     * Creates this backend's own engine. A repeated init replaces it with a
+     * fresh engine built from the new config. Libraries predating InitHandle
+     * fall back to the process-global engine, where only the first Init in
+     * the process takes effect.
+     */
     @Override
-    public void init(String configJson) {
+    public synchronized void init(String configJson) {
+        if (handle == CLOSED) {
+            throw new IllegalStateException("JNA parser is closed");
+        }
+        if (handlesSupported) {
+            PointerByReference errOut = new PointerByReference();
+            long created;
+            try {
+                created = lib.InitHandle(configJson, errOut);
+            } catch (UnsatisfiedLinkError missing) {
+                handlesSupported = false;
+                created = 0;
+            }
+            if (handlesSupported) {
+                if (created == 0) {
+                    throw new RuntimeException("Failed to initialize JNA parser: " + takeString(errOut.getValue()));
+                }
+                long previous = handle;
+                handle = created;
+                if (previous != 0) {
+                    lib.CloseHandle(previous);
+                }
+                return;
+            }
+        }
         Pointer errPtr = lib.Init(configJson);
         if (errPtr != null) {
-            String err = errPtr.getString(0);
-            lib.FreeString(errPtr);
-            throw new RuntimeException("Failed to initialize JNA parser: " + err);
+            throw new RuntimeException("Failed to initialize JNA parser: " + takeString(errPtr));
+        }
+    }
+
+    /**
+     * Releases this backend's engine (its cache and background updater).
+     * Later parses return the engine's error result. A no-op on the
+     * process-global engine, which lives as long as the process.
+     */
+    @Override
+    public synchronized void close() {
+        long h = handle;
+        if (h != 0 && h != CLOSED) {
+            handle = CLOSED;
+            lib.CloseHandle(h);
         }
     }
 
     @Override
     public String parse(String payloadJson) {
-        Pointer resPtr = lib.Parse(payloadJson);
+        long h = handle;
+        return takeString(h != 0 ? lib.ParseHandle(h, payloadJson) : lib.Parse(payloadJson));
+    }
+
+    private String takeString(Pointer resPtr) {
         if (resPtr != null) {
             String res = resPtr.getString(0);
             lib.FreeString(resPtr);
@@ -45,43 +201,164 @@ public class JnaBackend implements ParserBackend {
         return null;
     }
 
+    @Override
+    public String parseBatch(String payloadsJson) {
+        if (!batchSupported) {
+            throw new UnsupportedOperationException("native library predates ParseBatch");
+        }
+        long h = handle;
+        if (h != 0) {
+            return takeString(lib.ParseBatchHandle(h, payloadsJson));
+        }
+        try {
+            return takeString(lib.ParseBatch(payloadsJson));
+        } catch (UnsatisfiedLinkError missing) {
+            batchSupported = false;
+            throw new UnsupportedOperationException("native library predates ParseBatch", missing);
+        }
+    }
+
+    @Override
+    public byte[] parseBinary(String payloadJson) {
+        if (!binarySupported) {
+            throw new UnsupportedOperationException("native library predates ParseBinary");
+        }
+        long h = handle;
+        Pointer resPtr;
+        try {
+            resPtr = h != 0 ? lib.ParseBinaryHandle(h, payloadJson) : lib.ParseBinary(payloadJson);
+        } catch (UnsatisfiedLinkError missing) {
+            binarySupported = false;
+            throw new UnsupportedOperationException("native library predates ParseBinary", missing);
+        }
+        if (resPtr == null) {
+            return null;
+        }
+        try {
+            // [uint32 little-endian length][payload]; the payload may hold NULs.
+            byte[] prefix = resPtr.getByteArray(0, 4);
+            int len = (prefix[0] & 0xFF) | (prefix[1] & 0xFF) << 8
+                    | (prefix[2] & 0xFF) << 16 | (prefix[3] & 0xFF) << 24;
+            return resPtr.getByteArray(4, len);
+        } finally {
+            lib.FreeString(resPtr);
+        }
+    }
+
+    @Override
+    public String stats() {
+        if (!statsSupported) {
+            throw new UnsupportedOperationException("native library predates Stats");
+        }
+        long h = handle;
+        try {
+            return takeString(h != 0 ? lib.StatsHandle(h) : lib.Stats());
+        } catch (UnsatisfiedLinkError missing) {
+            statsSupported = false;
+            throw new UnsupportedOperationException("native library predates Stats", missing);
+        }
+    }
+
+    @Override
+    public void saveWarmup(String path, int entries) {
+        if (!warmupSupported) {
+            throw new UnsupportedOperationException("native library predates SaveWarmup");
+        }
+        long h = handle;
+        String err;
+        try {
+            err = takeString(h != 0 ? lib.SaveWarmupHandle(h, path, entries) : lib.SaveWarmup(path, entries));
+        } catch (UnsatisfiedLinkError missing) {
+            warmupSupported = false;
+            throw new UnsupportedOperationException("native library predates SaveWarmup", missing);
+        }
+        if (err != null) {
+            throw new RuntimeException("Failed to save warm-up snapshot: " + err);
+        }
+    }
+
+    @Override
+    public long openAggregator(String dimensionsJson) {
+        if (!aggregationSupported) {
+            throw new UnsupportedOperationException("native library predates AggregatorOpen");
+        }
+        long h = handle;
+        PointerByReference errOut = new PointerByReference();
+        long session;
+        try {
+            session = h != 0 ? lib.AggregatorOpenHandle(h, dimensionsJson, errOut)
+                    : lib.AggregatorOpen(dimensionsJson, errOut);
+        } catch (UnsatisfiedLinkError missing) {
+            aggregationSupported = false;
+            throw new UnsupportedOperationException("native library predates AggregatorOpen", missing);
+        }
+        if (session == 0) {
+            throw new IllegalArgumentException("Failed to open aggregator: " + takeString(errOut.getValue()));
+        }
+        return session;
+    }
+
+    @Override
+    public void aggregate(long session, String payloadsJson) {
+        String err = takeString(lib.AggregatorAdd(session, payloadsJson));
+        if (err != null) {
+            throw new RuntimeException("Failed to aggregate: " + err);
+        }
+    }
+
+    @Override
+    public String aggregatorSnapshot(long session, boolean reset) {
+        return takeString(lib.AggregatorSnapshot(session, reset ? 1 : 0));
+    }
+
+    @Override
+    public void closeAggregator(long session) {
+        lib.AggregatorClose(session);
+    }
+
+    @Override
+    public int parseBytes(ByteBuffer in, int inLen, ByteBuffer out) {
+        long h = handle;
+        if (h != 0) {
+            Boolean bound = directHandleBound;
+            if (bound == null) {
+                bound = DirectHandle.bind(libName);
+                directHandleBound = bound;
+            }
+            if (!bound) {
+                throw new UnsupportedOperationException(
+                        "ParseBytesHandle unavailable: library predates it or another library holds the binding");
+            }
+            return DirectHandle.ParseBytesHandle(h, in, inLen, out, out.capacity());
+        }
+        Boolean bound = directBound;
+        if (bound == null) {
+            bound = Direct.bind(libName);
+            directBound = bound;
+        }
+        if (!bound) {
+            throw new UnsupportedOperationException(
+                    "ParseBytes unavailable: library predates it or another library holds the binding");
+        }
+        return Direct.ParseBytes(in, inLen, out, out.capacity());
+    }
+
     static boolean isMusl() {
         return new File("/lib/ld-musl-x86_64.so.1").exists() ||
                new File("/lib/ld-musl-aarch64.so.1").exists();
     }
 
-    private static UaParserLib loadLibrary() {
+    // resolveLibrary returns what to hand to Native.load: an extracted file
+    // path, or a bare name resolved through JNA's classpath convention.
+    private static String resolveLibrary() {
         if (Platform.isLinux()) {
-            String arch = Platform.is64Bit() && "x86-64".equals(Platform.ARCH) ? "linux-x86-64" :
-                    (Platform.is64Bit() && "aarch64".equals(Platform.ARCH) ? "linux-aarch64" : null);
-
-            if (arch != null) {
-                if (isMusl()) {
-                    // musl's dynamic loader rejects dlopen of Go c-shared libraries
-                    // (initial-exec TLS, golang/go#54805) on every Go release up to and
-                    // including 1.26.x. We still attempt the musl build so deployments
-                    // pick up native mode automatically once a fixed Go toolchain ships,
-                    // but we never try the glibc build here: it cannot load on musl and
-                    // its error would mask the real reason.
-                    String muslPath = "/" + arch + "-musl/libua_parser.so";
-                    File muslLib = NativeLoader.extractLibrary(muslPath);
-                    if (muslLib == null) {
-                        throw new UnsatisfiedLinkError(
-                                "ua-parser: musl native library not found in JAR resources: " + muslPath);
-                    }
-                    return Native.load(muslLib.getAbsolutePath(), UaParserLib.class);
-                }
-
-                String resourcePath = "/" + arch + "/libua_parser.so";
-                File libFile = NativeLoader.extractLibrary(resourcePath);
-                if (libFile != null) {
-                    return Native.load(libFile.getAbsolutePath(), UaParserLib.class);
-                }
+            File libFile = NativeLoader.locateLibrary();
+            if (libFile != null) {
+                return libFile.getAbsolutePath();
             }
         }
-
         // Windows and macOS resolve via JNA's classpath convention
         // ({os-arch}/mapped-name inside the JAR); also the last resort elsewhere.
-        return Native.load("ua-parser", UaParserLib.class);
+        return "ua-parser";
     }
 }
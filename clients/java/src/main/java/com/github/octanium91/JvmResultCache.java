@@ -0,0 +1,21 @@
+package com.github.octanium91;
+
+/**
+ * The JVM result cache consulted before the backend: on-heap
+ * ({@link ResultCache}) or off-heap ({@link OffHeapResultCache}, see
+ * {@link UaParser.Config#jvmCacheOffHeap}). Either way every hit is a
+ * private copy, so callers may mutate what they get.
+ */
+interface JvmResultCache {
+
+    /** @return a private copy of the cached result, or null on a miss. */
+    UaParser.Result get(String key);
+
+    /** Caches {@code value}; the caller keeps ownership of its object. */
+    void put(String key, UaParser.Result value);
+
+    /** Drops every entry (e.g. after the engine swapped its rules). */
+    void clear();
+
+    UaParser.CacheStats stats();
+}
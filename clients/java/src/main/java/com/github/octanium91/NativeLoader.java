@@ -1,5 +1,7 @@
 package com.github.octanium91;
 
+import com.sun.jna.Platform;
+
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -17,6 +19,42 @@ public class NativeLoader {
 
     private static final Map<String, File> EXTRACTED = new ConcurrentHashMap<>();
 
+    /**
+     * Extracts the bundled library for this platform. Linux picks the glibc
+     * or musl build; elsewhere the JNA resource layout is used
+     * ({os-arch}/mapped-name, e.g. win32-x86-64/ua-parser.dll).
+     *
+     * @return the extracted file, or null when the JAR has no library for
+     * this platform (JNA can still try its own search path then).
+     * @throws UnsatisfiedLinkError on musl without a bundled musl build: the
+     * glibc build cannot load there and its error would mask the real reason.
+     */
+    static File locateLibrary() {
+        if (Platform.isLinux()) {
+            String arch = Platform.is64Bit() && "x86-64".equals(Platform.ARCH) ? "linux-x86-64" :
+                    (Platform.is64Bit() && "aarch64".equals(Platform.ARCH) ? "linux-aarch64" : null);
+            if (arch == null) {
+                return null;
+            }
+            if (JnaBackend.isMusl()) {
+                // musl's dynamic loader rejects dlopen of Go c-shared libraries
+                // (initial-exec TLS, golang/go#54805) on every Go release up to and
+                // including 1.26.x. We still attempt the musl build so deployments
+                // pick up native mode automatically once a fixed Go toolchain ships,
+                // but we never try the glibc build here.
+                String muslPath = "/" + arch + "-musl/libua_parser.so";
+                File muslLib = extractLibrary(muslPath);
+                if (muslLib == null) {
+                    throw new UnsatisfiedLinkError(
+                            "ua-parser: musl native library not found in JAR resources: " + muslPath);
+                }
+                return muslLib;
+            }
+            return extractLibrary("/" + arch + "/libua_parser.so");
+        }
+        return extractLibrary("/" + Platform.RESOURCE_PREFIX + "/" + System.mapLibraryName("ua-parser"));
+    }
+
     static File extractLibrary(String resourcePath) {
         return EXTRACTED.computeIfAbsent(resourcePath, NativeLoader::doExtract);
     }
@@ -0,0 +1,646 @@
+package com.github.octanium91;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Off-heap JVM result cache ({@link UaParser.Config#jvmCacheOffHeap}) for
+ * working sets of millions of entries. Each stripe owns one direct
+ * ByteBuffer holding its entries (UTF-8 key plus the result in a compact
+ * encoding) as a circular log, and a {@code long[]} open-addressing index
+ * of key hash and offset. Neither holds object references, so the cached
+ * set adds nothing for the GC to trace however large it grows; the cost
+ * moves to the hit, which decodes a fresh Result.
+ *
+ * Eviction is CLOCK over the log: the entry at the tail is dropped unless
+ * it was hit since it was written, in which case it loses its reference bit
+ * and is moved to the head instead. Lookups verify the stored key, so hash
+ * collisions only cost a probe.
+ *
+ * The whole byte budget is allocated up front (direct memory, see
+ * {@code -XX:MaxDirectMemorySize}) and released with the cache.
+ */
+final class OffHeapResultCache implements JvmResultCache {
+
+    /** Per-entry budget assumed when only an entry count is configured. */
+    static final int DEFAULT_ENTRY_BYTES = 512;
+
+    // A direct ByteBuffer is int-indexed; offsets also fit the index's low
+    // 32 bits this way.
+    private static final int MAX_STRIPE_BYTES = 1 << 30;
+    private static final int MIN_STRIPE_BYTES = 64 << 10;
+    private static final int MIN_INDEX = 64;
+
+    // Entry layout: header, UTF-8 key, encoded value.
+    private static final int SIZE = 0;
+    private static final int HASH = 4;
+    private static final int KEY_LEN = 8;
+    private static final int VALUE_LEN = 12;
+    private static final int REFERENCED = 16;
+    private static final int HEADER = 17;
+
+    private static final class Stripe {
+        final ByteBuffer data;
+        final int maxEntries; // 0: bounded by bytes only
+        // 0 = empty slot, else hash << 32 | (offset + 1).
+        long[] index;
+        // Live entries are [tail, head), or [tail, wrapAt) + [0, head)
+        // once the head has wrapped around.
+        int head;
+        int tail;
+        int wrapAt;
+        boolean wrapped;
+        int count;
+        long bytes;
+        byte[] scratch = new byte[256];
+
+        Stripe(int capacity, int maxEntries) {
+            this.data = ByteBuffer.allocateDirect(capacity);
+            this.maxEntries = maxEntries;
+            int slots = MIN_INDEX;
+            while (maxEntries > 0 && slots < 2 * maxEntries && slots < 1 << 30) {
+                slots <<= 1;
+            }
+            this.index = new long[slots];
+        }
+    }
+
+    private final Stripe[] stripes;
+    private final long maxBytes;
+    private final int maxEntries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxEntries maximum entries; 0 means bounded by bytes alone.
+     * @param maxBytes off-heap bytes for entries (keys and encoded results).
+     */
+    OffHeapResultCache(int maxEntries, long maxBytes, int maxStripes) {
+        if (maxBytes <= 0 || maxEntries < 0) {
+            throw new IllegalArgumentException("off-heap cache needs a byte budget: " + maxEntries
+                    + " entries, " + maxBytes + " bytes");
+        }
+        // Power-of-two stripe count: enough that no stripe exceeds what one
+        // buffer can address, otherwise as many as allowed while each
+        // stripe keeps a useful share of the budget.
+        int stripeCount = 1;
+        while (stripeCount < maxStripes && maxBytes / (stripeCount * 2L) >= MIN_STRIPE_BYTES) {
+            stripeCount <<= 1;
+        }
+        while (maxBytes / stripeCount > MAX_STRIPE_BYTES) {
+            stripeCount <<= 1;
+        }
+        int perStripeEntries = maxEntries == 0 ? 0 : Math.max(1, (maxEntries + stripeCount - 1) / stripeCount);
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe((int) (maxBytes / stripeCount), perStripeEntries);
+        }
+        this.maxBytes = maxBytes / stripeCount * stripeCount;
+        this.maxEntries = perStripeEntries * stripeCount;
+    }
+
+    @Override
+    public UaParser.Result get(String key) {
+        byte[] k = key.getBytes(StandardCharsets.UTF_8);
+        int h = key.hashCode();
+        Stripe s = stripeOf(h);
+        byte[] value;
+        synchronized (s) {
+            int slot = find(s, h, k);
+            if (slot < 0) {
+                misses.increment();
+                return null;
+            }
+            int off = offset(s.index[slot]);
+            ByteBuffer data = s.data;
+            data.put(off + REFERENCED, (byte) 1);
+            value = new byte[data.getInt(off + VALUE_LEN)];
+            data.position(off + HEADER + k.length);
+            data.get(value);
+        }
+        hits.increment();
+        return decode(value);
+    }
+
+    /**
+     * Caches an encoded copy of {@code value}. An entry larger than a
+     * stripe's share of the budget is not cached.
+     */
+    @Override
+    public void put(String key, UaParser.Result value) {
+        if (value == null) {
+            return;
+        }
+        byte[] k = key.getBytes(StandardCharsets.UTF_8);
+        byte[] v = encode(value);
+        long size = (long) HEADER + k.length + v.length;
+        int h = key.hashCode();
+        Stripe s = stripeOf(h);
+        if (size > s.data.capacity()) {
+            return;
+        }
+        synchronized (s) {
+            if (find(s, h, k) >= 0) {
+                return; // a concurrent miss on the same key got here first
+            }
+            while (s.maxEntries > 0 && s.count >= s.maxEntries) {
+                evictAtTail(s);
+            }
+            int off = allocate(s, (int) size);
+            ByteBuffer data = s.data;
+            data.putInt(off + SIZE, (int) size);
+            data.putInt(off + HASH, h);
+            data.putInt(off + KEY_LEN, k.length);
+            data.putInt(off + VALUE_LEN, v.length);
+            data.put(off + REFERENCED, (byte) 0);
+            data.position(off + HEADER);
+            data.put(k);
+            data.put(v);
+            if ((s.count + 1) * 2L > s.index.length) {
+                growIndex(s);
+            }
+            insert(s.index, h, off);
+            s.count++;
+            s.bytes += size;
+        }
+    }
+
+    // Evicts from the tail until size contiguous bytes are free at the head.
+    private void makeRoom(Stripe s, int size) {
+        while (true) {
+            if (s.count == 0) {
+                s.head = 0;
+                s.tail = 0;
+                s.wrapped = false;
+            }
+            if (!s.wrapped) {
+                if (s.data.capacity() - s.head >= size) {
+                    return;
+                }
+                s.wrapAt = s.head;
+                s.head = 0;
+                s.wrapped = true;
+                continue;
+            }
+            if (s.tail - s.head >= size) {
+                return;
+            }
+            evictAtTail(s);
+        }
+    }
+
+    private int allocate(Stripe s, int size) {
+        makeRoom(s, size);
+        int off = s.head;
+        s.head += size;
+        return off;
+    }
+
+    // Drops the entry at the tail, or gives it a second chance by moving it
+    // to the head when it was hit since it was written (or last moved).
+    private void evictAtTail(Stripe s) {
+        ByteBuffer data = s.data;
+        int off = s.tail;
+        int size = data.getInt(off + SIZE);
+        int h = data.getInt(off + HASH);
+        int slot = slotOf(s.index, h, off);
+        // A wrapped log has the head behind the tail, so the entry always
+        // fits there once it leaves the tail; otherwise the end must have room.
+        boolean movable = s.wrapped || data.capacity() - s.head >= size;
+        if (data.get(off + REFERENCED) != 0 && movable) {
+            if (s.head != off) {
+                if (s.scratch.length < size) {
+                    s.scratch = new byte[Math.max(size, s.scratch.length * 2)];
+                }
+                data.position(off);
+                data.get(s.scratch, 0, size);
+                data.position(s.head);
+                data.put(s.scratch, 0, size);
+            }
+            data.put(s.head + REFERENCED, (byte) 0);
+            s.index[slot] = entrySlot(h, s.head);
+            s.head += size;
+        } else {
+            removeSlot(s.index, slot);
+            s.count--;
+            s.bytes -= size;
+            evictions.increment();
+        }
+        s.tail += size;
+        if (s.wrapped && s.tail == s.wrapAt) {
+            s.tail = 0;
+            s.wrapped = false;
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (Stripe s : stripes) {
+            synchronized (s) {
+                Arrays.fill(s.index, 0);
+                s.head = 0;
+                s.tail = 0;
+                s.wrapped = false;
+                s.count = 0;
+                s.bytes = 0;
+            }
+        }
+    }
+
+    @Override
+    public UaParser.CacheStats stats() {
+        long bytes = 0;
+        int size = 0;
+        for (Stripe s : stripes) {
+            synchronized (s) {
+                bytes += s.bytes;
+                size += s.count;
+            }
+        }
+        return new UaParser.CacheStats(hits.sum(), misses.sum(), evictions.sum(), size, maxEntries,
+                bytes, maxBytes);
+    }
+
+    private Stripe stripeOf(int h) {
+        return stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
+    }
+
+    // --- index: linear probing over hash << 32 | (offset + 1) ---
+
+    private static long entrySlot(int h, int off) {
+        return (long) h << 32 | (off + 1L);
+    }
+
+    private static int offset(long slot) {
+        return (int) slot - 1;
+    }
+
+    // Fibonacci hashing, so the bits that picked the stripe do not also
+    // pick the bucket.
+    private static int bucket(int h, int length) {
+        return (h * 0x9E3779B9) >>> (32 - Integer.numberOfTrailingZeros(length));
+    }
+
+    private static int find(Stripe s, int h, byte[] key) {
+        long[] index = s.index;
+        int mask = index.length - 1;
+        for (int i = bucket(h, index.length); ; i = (i + 1) & mask) {
+            long slot = index[i];
+            if (slot == 0) {
+                return -1;
+            }
+            if ((int) (slot >>> 32) == h && keyEquals(s.data, offset(slot), key)) {
+                return i;
+            }
+        }
+    }
+
+    private static boolean keyEquals(ByteBuffer data, int off, byte[] key) {
+        if (data.getInt(off + KEY_LEN) != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (data.get(off + HEADER + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int slotOf(long[] index, int h, int off) {
+        int mask = index.length - 1;
+        long want = entrySlot(h, off);
+        for (int i = bucket(h, index.length); ; i = (i + 1) & mask) {
+            if (index[i] == want) {
+                return i;
+            }
+        }
+    }
+
+    private static void insert(long[] index, int h, int off) {
+        int mask = index.length - 1;
+        int i = bucket(h, index.length);
+        while (index[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        index[i] = entrySlot(h, off);
+    }
+
+    // Backward-shift deletion: no tombstones, so probes stay short.
+    private static void removeSlot(long[] index, int i) {
+        int mask = index.length - 1;
+        for (int j = (i + 1) & mask; index[j] != 0; j = (j + 1) & mask) {
+            int home = bucket((int) (index[j] >>> 32), index.length);
+            boolean stays = i <= j ? i < home && home <= j : i < home || home <= j;
+            if (!stays) {
+                index[i] = index[j];
+                i = j;
+            }
+        }
+        index[i] = 0;
+    }
+
+    private static void growIndex(Stripe s) {
+        long[] old = s.index;
+        long[] index = new long[old.length * 2];
+        for (long slot : old) {
+            if (slot != 0) {
+                insert(index, (int) (slot >>> 32), offset(slot));
+            }
+        }
+        s.index = index;
+    }
+
+    // --- value encoding ---
+    //
+    // varint (sections << 16 | flags), then the strings of the top level and
+    // of every present section in declaration order. A string is a varint
+    // ref: 0 null, 1..D an entry of the binary format's dictionary, else
+    // D + 1 + its UTF-8 length, followed by the bytes. Unlike the engine's
+    // binary format this keeps nulls, so a hit equals what was put.
+
+    private static final int OS = 0;
+    private static final int BROWSER = 1;
+    private static final int DEVICE = 2;
+    private static final int CPU = 3;
+    private static final int ENGINE = 4;
+    private static final int AUTOMATION = 5;
+    private static final int INTEGRITY = 6;
+    private static final int REASONS = 7;
+    private static final int SECURITY = 8;
+    private static final int DETECTION = 9;
+    private static final int BOT = 10;
+    private static final int GPU = 11;
+
+    private static final String[] DICTIONARY = BinaryResultDecoder.DICTIONARY;
+    private static final Map<String, Integer> REFS = new HashMap<>();
+
+    static {
+        for (int i = 0; i < DICTIONARY.length; i++) {
+            REFS.put(DICTIONARY[i], i + 1);
+        }
+    }
+
+    static byte[] encode(UaParser.Result r) {
+        long sections = bit(r.os != null, OS) | bit(r.browser != null, BROWSER)
+                | bit(r.device != null, DEVICE) | bit(r.cpu != null, CPU) | bit(r.engine != null, ENGINE)
+                | bit(r.automation != null, AUTOMATION) | bit(r.integrity != null, INTEGRITY)
+                | bit(r.integrity != null && r.integrity.reasons != null, REASONS)
+                | bit(r.security != null, SECURITY) | bit(r.detection != null, DETECTION)
+                | bit(r.bot != null, BOT) | bit(r.gpu != null, GPU);
+        long flags = bit(r.isBot, 0) | bit(r.isAiCrawler, 1) | bit(r.isFrozenUa, 2) | bit(r.isMobile, 3)
+                | bit(r.isDesktop, 4) | bit(r.isTouchCapable, 5) | bit(r.isChromeFamily, 6)
+                | bit(r.isAppleSilicon, 7);
+        if (r.automation != null) {
+            flags |= bit(r.automation.headless, 8) | bit(r.automation.electron, 9)
+                    | bit(r.automation.webdriver, 10);
+        }
+        if (r.integrity != null) {
+            flags |= bit(r.integrity.spoofed, 11);
+        }
+        if (r.security != null) {
+            flags |= bit(r.security.suspicious, 12);
+        }
+        if (r.detection != null) {
+            flags |= bit(r.detection.clientHintsUsed, 13) | bit(r.detection.highEntropy, 14)
+                    | bit(r.detection.signalsUsed, 15);
+        }
+
+        Encoder e = new Encoder();
+        e.varint(sections << 16 | flags);
+        e.str(r.resultVersion);
+        e.str(r.ua);
+        e.str(r.category);
+        e.str(r.classHash);
+        if (r.os != null) {
+            e.str(r.os.name);
+            e.str(r.os.version);
+            e.str(r.os.platform);
+            e.str(r.os.versionName);
+            e.str(r.os.versionRaw);
+        }
+        if (r.browser != null) {
+            e.str(r.browser.name);
+            e.str(r.browser.version);
+            e.str(r.browser.major);
+            e.str(r.browser.type);
+        }
+        if (r.device != null) {
+            e.str(r.device.model);
+            e.str(r.device.vendor);
+            e.str(r.device.type);
+            e.str(r.device.formFactor);
+        }
+        if (r.cpu != null) {
+            e.str(r.cpu.architecture);
+            e.str(r.cpu.bitness);
+        }
+        if (r.engine != null) {
+            e.str(r.engine.name);
+            e.str(r.engine.version);
+        }
+        if (r.integrity != null && r.integrity.reasons != null) {
+            e.varint(r.integrity.reasons.size());
+            for (String reason : r.integrity.reasons) {
+                e.str(reason);
+            }
+        }
+        if (r.security != null) {
+            e.str(r.security.category);
+        }
+        if (r.bot != null) {
+            e.str(r.bot.name);
+            e.str(r.bot.category);
+            e.str(r.bot.vendor);
+        }
+        if (r.gpu != null) {
+            e.str(r.gpu.vendor);
+            e.str(r.gpu.renderer);
+        }
+        return Arrays.copyOf(e.buf, e.len);
+    }
+
+    static UaParser.Result decode(byte[] value) {
+        Decoder d = new Decoder(value);
+        long bits = d.varint();
+        long sections = bits >>> 16;
+
+        UaParser.Result r = new UaParser.Result();
+        r.resultVersion = d.str();
+        r.ua = d.str();
+        r.category = d.str();
+        r.classHash = d.str();
+        r.isBot = has(bits, 0);
+        r.isAiCrawler = has(bits, 1);
+        r.isFrozenUa = has(bits, 2);
+        r.isMobile = has(bits, 3);
+        r.isDesktop = has(bits, 4);
+        r.isTouchCapable = has(bits, 5);
+        r.isChromeFamily = has(bits, 6);
+        r.isAppleSilicon = has(bits, 7);
+        if (has(sections, OS)) {
+            r.os = new UaParser.OSInfo();
+            r.os.name = d.str();
+            r.os.version = d.str();
+            r.os.platform = d.str();
+            r.os.versionName = d.str();
+            r.os.versionRaw = d.str();
+        }
+        if (has(sections, BROWSER)) {
+            r.browser = new UaParser.BrowserInfo();
+            r.browser.name = d.str();
+            r.browser.version = d.str();
+            r.browser.major = d.str();
+            r.browser.type = d.str();
+        }
+        if (has(sections, DEVICE)) {
+            r.device = new UaParser.DeviceInfo();
+            r.device.model = d.str();
+            r.device.vendor = d.str();
+            r.device.type = d.str();
+            r.device.formFactor = d.str();
+        }
+        if (has(sections, CPU)) {
+            r.cpu = new UaParser.CPUInfo();
+            r.cpu.architecture = d.str();
+            r.cpu.bitness = d.str();
+        }
+        if (has(sections, ENGINE)) {
+            r.engine = new UaParser.EngineInfo();
+            r.engine.name = d.str();
+            r.engine.version = d.str();
+        }
+        if (has(sections, AUTOMATION)) {
+            r.automation = new UaParser.AutomationInfo();
+            r.automation.headless = has(bits, 8);
+            r.automation.electron = has(bits, 9);
+            r.automation.webdriver = has(bits, 10);
+        }
+        if (has(sections, INTEGRITY)) {
+            r.integrity = new UaParser.IntegrityInfo();
+            r.integrity.spoofed = has(bits, 11);
+            if (has(sections, REASONS)) {
+                int n = (int) d.varint();
+                List<String> reasons = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    reasons.add(d.str());
+                }
+                r.integrity.reasons = reasons;
+            }
+        }
+        if (has(sections, SECURITY)) {
+            r.security = new UaParser.SecurityInfo();
+            r.security.suspicious = has(bits, 12);
+            r.security.category = d.str();
+        }
+        if (has(sections, DETECTION)) {
+            r.detection = new UaParser.DetectionInfo();
+            r.detection.clientHintsUsed = has(bits, 13);
+            r.detection.highEntropy = has(bits, 14);
+            r.detection.signalsUsed = has(bits, 15);
+        }
+        if (has(sections, BOT)) {
+            r.bot = new UaParser.BotInfo();
+            r.bot.name = d.str();
+            r.bot.category = d.str();
+            r.bot.vendor = d.str();
+        }
+        if (has(sections, GPU)) {
+            r.gpu = new UaParser.GPUInfo();
+            r.gpu.vendor = d.str();
+            r.gpu.renderer = d.str();
+        }
+        return r;
+    }
+
+    private static long bit(boolean set, int bit) {
+        return set ? 1L << bit : 0;
+    }
+
+    private static boolean has(long bits, int bit) {
+        return (bits & (1L << bit)) != 0;
+    }
+
+    private static final class Encoder {
+        byte[] buf = new byte[256];
+        int len;
+
+        void varint(long v) {
+            while ((v & ~0x7FL) != 0) {
+                put((byte) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            put((byte) v);
+        }
+
+        void str(String s) {
+            if (s == null) {
+                varint(0);
+                return;
+            }
+            Integer ref = REFS.get(s);
+            if (ref != null) {
+                varint(ref);
+                return;
+            }
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            varint(DICTIONARY.length + 1L + b.length);
+            ensure(b.length);
+            System.arraycopy(b, 0, buf, len, b.length);
+            len += b.length;
+        }
+
+        private void put(byte b) {
+            ensure(1);
+            buf[len++] = b;
+        }
+
+        private void ensure(int n) {
+            if (len + n > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(len + n, buf.length * 2));
+            }
+        }
+    }
+
+    private static final class Decoder {
+        final byte[] buf;
+        int pos;
+
+        Decoder(byte[] buf) {
+            this.buf = buf;
+        }
+
+        long varint() {
+            long v = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = buf[pos++];
+                v |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return v;
+                }
+            }
+        }
+
+        String str() {
+            long ref = varint();
+            if (ref == 0) {
+                return null;
+            }
+            if (ref <= DICTIONARY.length) {
+                return DICTIONARY[(int) ref - 1];
+            }
+            int n = (int) (ref - DICTIONARY.length - 1);
+            String s = new String(buf, pos, n, StandardCharsets.UTF_8);
+            pos += n;
+            return s;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.github.octanium91;
+
+/**
+ * Receives stage timings for every {@link UaParser} parse call; install one
+ * with {@link UaParser#setParseListener(ParseListener)}. Without a listener
+ * the parser reads no clocks at all.
+ *
+ * <p>Stages, in nanoseconds:
+ * <ul>
+ *   <li>encode: building the engine payload (Gson, or the hand-written
+ *       payload of the binary path);</li>
+ *   <li>backend: the backend call, i.e. the FFI/WASM crossing plus the core
+ *       parse (the core's own share is in {@link EngineStats#parseLatency});</li>
+ *   <li>decode: turning the engine's answer into {@link UaParser.Result}
+ *       objects (Gson or {@link BinaryResultDecoder}).</li>
+ * </ul>
+ *
+ * Called on the parsing thread after the result is ready, so it must be
+ * thread-safe and cheap; {@link ParseMetrics} is a ready-made implementation.
+ */
+public interface ParseListener {
+
+    /**
+     * One {@code parse} call. On a JVM result-cache hit nothing reaches the
+     * engine: {@code jvmCacheHit} is true and all stage times are 0.
+     */
+    void onParse(long encodeNanos, long backendNanos, long decodeNanos, boolean jvmCacheHit);
+
+    /**
+     * One {@code parseBatch} call of {@code requests} entries, of which
+     * {@code enginePayloads} reached the engine (the rest were duplicates
+     * or JVM cache hits). The default does nothing.
+     */
+    default void onBatch(int requests, int enginePayloads, long encodeNanos, long backendNanos, long decodeNanos) {
+    }
+}
@@ -0,0 +1,116 @@
+package com.github.octanium91;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link ParseListener} that sums stage timings into contention-free
+ * counters. Install it with {@link UaParser#setParseListener} and read it
+ * with {@link #snapshot()}; pair the snapshot with
+ * {@link UaParser#getEngineStats()} to split the backend stage into the
+ * core parse and the FFI/WASM crossing.
+ */
+public final class ParseMetrics implements ParseListener {
+    private final LongAdder parses = new LongAdder();
+    private final LongAdder jvmCacheHits = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchRequests = new LongAdder();
+    private final LongAdder enginePayloads = new LongAdder();
+    private final LongAdder encodeNanos = new LongAdder();
+    private final LongAdder backendNanos = new LongAdder();
+    private final LongAdder decodeNanos = new LongAdder();
+
+    @Override
+    public void onParse(long encode, long backend, long decode, boolean jvmCacheHit) {
+        parses.increment();
+        if (jvmCacheHit) {
+            jvmCacheHits.increment();
+            return;
+        }
+        enginePayloads.increment();
+        add(encode, backend, decode);
+    }
+
+    @Override
+    public void onBatch(int requests, int payloads, long encode, long backend, long decode) {
+        batches.increment();
+        batchRequests.add(requests);
+        enginePayloads.add(payloads);
+        add(encode, backend, decode);
+    }
+
+    private void add(long encode, long backend, long decode) {
+        encodeNanos.add(encode);
+        backendNanos.add(backend);
+        decodeNanos.add(decode);
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(parses.sum(), jvmCacheHits.sum(), batches.sum(), batchRequests.sum(),
+                enginePayloads.sum(), encodeNanos.sum(), backendNanos.sum(), decodeNanos.sum());
+    }
+
+    /** Clears every counter, e.g. after a warm-up phase. */
+    public void reset() {
+        parses.reset();
+        jvmCacheHits.reset();
+        batches.reset();
+        batchRequests.reset();
+        enginePayloads.reset();
+        encodeNanos.reset();
+        backendNanos.reset();
+        decodeNanos.reset();
+    }
+
+    /** Point-in-time totals of a {@link ParseMetrics}. */
+    public static final class Snapshot {
+        /** Single {@code parse} calls, including JVM cache hits. */
+        public final long parses;
+        public final long jvmCacheHits;
+        public final long batches;
+        /** Requests across all batches. */
+        public final long batchRequests;
+        /** Payloads that reached the engine, single and batched. */
+        public final long enginePayloads;
+        public final long encodeNanos;
+        public final long backendNanos;
+        public final long decodeNanos;
+
+        Snapshot(long parses, long jvmCacheHits, long batches, long batchRequests, long enginePayloads,
+                 long encodeNanos, long backendNanos, long decodeNanos) {
+            this.parses = parses;
+            this.jvmCacheHits = jvmCacheHits;
+            this.batches = batches;
+            this.batchRequests = batchRequests;
+            this.enginePayloads = enginePayloads;
+            this.encodeNanos = encodeNanos;
+            this.backendNanos = backendNanos;
+            this.decodeNanos = decodeNanos;
+        }
+
+        /**
+         * Time spent crossing into the engine and back: the backend stage
+         * minus the core's own parse time from {@code engine} (which must
+         * collect stats and cover the same period). Never negative.
+         */
+        public long crossingNanos(EngineStats engine) {
+            long core = 0;
+            if (engine != null && engine.parseLatency != null) {
+                if (engine.parseLatency.hit != null) {
+                    core += engine.parseLatency.hit.sumNanos;
+                }
+                if (engine.parseLatency.miss != null) {
+                    core += engine.parseLatency.miss.sumNanos;
+                }
+            }
+            return Math.max(0, backendNanos - core);
+        }
+
+        @Override
+        public String toString() {
+            return "ParseMetrics{parses=" + parses + ", jvmCacheHits=" + jvmCacheHits + ", batches=" + batches
+                    + ", batchRequests=" + batchRequests + ", enginePayloads=" + enginePayloads
+                    + ", encodeNanos=" + encodeNanos + ", backendNanos=" + backendNanos
+                    + ", decodeNanos=" + decodeNanos + "}";
+        }
+    }
+}
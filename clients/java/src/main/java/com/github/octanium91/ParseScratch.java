@@ -0,0 +1,240 @@
+package com.github.octanium91;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * Per-thread reusable buffers for the byte-oriented parse path
+ * ({@link ParserBackend#parseBytes}). The request payload is written as
+ * UTF-8 JSON straight into a reused array (no HashMap, no Gson, no String)
+ * and copied into a direct buffer the engine reads in place; the result is
+ * written by the engine into a second direct buffer and copied into a reused
+ * array for decoding. In steady state, once the buffers have grown to the
+ * largest payload and result seen, a parse allocates nothing here.
+ */
+final class ParseScratch {
+    private static final int INITIAL_CAPACITY = 2048;
+    private static final byte[] HEX = "0123456789abcdef".getBytes(java.nio.charset.StandardCharsets.US_ASCII);
+
+    private static final ThreadLocal<ParseScratch> LOCAL = ThreadLocal.withInitial(ParseScratch::new);
+
+    private byte[] payload = new byte[INITIAL_CAPACITY];
+    private int len;
+
+    ByteBuffer in = ByteBuffer.allocateDirect(INITIAL_CAPACITY);
+    ByteBuffer out = ByteBuffer.allocateDirect(INITIAL_CAPACITY);
+    byte[] result = new byte[INITIAL_CAPACITY];
+
+    static ParseScratch get() {
+        return LOCAL.get();
+    }
+
+    /**
+     * Encodes the request into {@link #in}.
+     *
+     * @return payload length in bytes.
+     */
+    int writePayload(String ua, Map<String, String> headers, UaParser.Signals signals) {
+        return writePayload(ua, headers, signals, UaParser.ParseOptions.ALL);
+    }
+
+    /** As above, plus the options' field projection when it is not ALL. */
+    int writePayload(String ua, Map<String, String> headers, UaParser.Signals signals,
+                     UaParser.ParseOptions options) {
+        len = 0;
+        ascii("{\"ua\":");
+        string(ua);
+        ascii(",\"headers\":{");
+        if (headers != null) {
+            boolean first = true;
+            for (Map.Entry<String, String> e : headers.entrySet()) {
+                if (e.getKey() == null || e.getValue() == null) {
+                    continue; // absent and null read the same in the engine
+                }
+                if (!first) {
+                    put((byte) ',');
+                }
+                first = false;
+                string(e.getKey());
+                put((byte) ':');
+                string(e.getValue());
+            }
+        }
+        put((byte) '}');
+        if (signals != null) {
+            ascii(",\"signals\":{\"max_touch_points\":");
+            number(signals.maxTouchPoints);
+            if (signals.platform != null) {
+                ascii(",\"platform\":");
+                string(signals.platform);
+            }
+            if (signals.webglVendor != null) {
+                ascii(",\"webgl_vendor\":");
+                string(signals.webglVendor);
+            }
+            if (signals.webglRenderer != null) {
+                ascii(",\"webgl_renderer\":");
+                string(signals.webglRenderer);
+            }
+            if (signals.screen != null) {
+                ascii(",\"screen\":{\"w\":");
+                number(signals.screen.w);
+                ascii(",\"h\":");
+                number(signals.screen.h);
+                ascii(",\"dpr\":");
+                number(signals.screen.dpr);
+                put((byte) '}');
+            }
+            ascii(",\"device_memory\":");
+            number(signals.deviceMemory);
+            ascii(",\"hardware_concurrency\":");
+            number(signals.hardwareConcurrency);
+            ascii(signals.webdriver ? ",\"webdriver\":true}" : ",\"webdriver\":false}");
+        }
+        if (!options.isAll()) {
+            ascii(",\"fields\":[");
+            for (int i = 0; i < options.fieldNames.size(); i++) {
+                if (i > 0) {
+                    put((byte) ',');
+                }
+                string(options.fieldNames.get(i));
+            }
+            put((byte) ']');
+        }
+        put((byte) '}');
+
+        if (in.capacity() < len) {
+            in = ByteBuffer.allocateDirect(Math.max(len, in.capacity() * 2));
+        }
+        in.clear();
+        in.put(payload, 0, len);
+        return len;
+    }
+
+    /** Grows {@link #out} so the engine can write a {@code needed}-byte result. */
+    void ensureOutCapacity(int needed) {
+        if (out.capacity() < needed) {
+            out = ByteBuffer.allocateDirect(Math.max(needed, out.capacity() * 2));
+        }
+    }
+
+    /** Copies the first {@code n} result bytes out of {@link #out} into {@link #result}. */
+    void readResult(int n) {
+        if (result.length < n) {
+            result = new byte[Math.max(n, result.length * 2)];
+        }
+        out.clear();
+        out.get(result, 0, n);
+    }
+
+    // --- JSON writing (UTF-8, RFC 8259 escaping) ---
+
+    private void ascii(String s) {
+        ensure(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            payload[len++] = (byte) s.charAt(i);
+        }
+    }
+
+    private void string(String s) {
+        if (s == null) {
+            ascii("null");
+            return;
+        }
+        // Worst case per char: 6 bytes (\\u00XX escape or an escaped lone surrogate).
+        ensure(s.length() * 6 + 2);
+        byte[] b = payload;
+        int p = len;
+        b[p++] = '"';
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (c == '"' || c == '\\') {
+                    b[p++] = '\\';
+                    b[p++] = (byte) c;
+                } else if (c < 0x20) {
+                    p = escape(b, p, c);
+                } else {
+                    b[p++] = (byte) c;
+                }
+            } else if (c < 0x800) {
+                b[p++] = (byte) (0xC0 | (c >> 6));
+                b[p++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length()
+                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                b[p++] = (byte) (0xF0 | (cp >> 18));
+                b[p++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                b[p++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                b[p++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                p = escape(b, p, c); // lone surrogate: not encodable as UTF-8
+            } else {
+                b[p++] = (byte) (0xE0 | (c >> 12));
+                b[p++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                b[p++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        b[p++] = '"';
+        len = p;
+    }
+
+    private static int escape(byte[] b, int p, char c) {
+        b[p++] = '\\';
+        b[p++] = 'u';
+        b[p++] = HEX[(c >> 12) & 0xF];
+        b[p++] = HEX[(c >> 8) & 0xF];
+        b[p++] = HEX[(c >> 4) & 0xF];
+        b[p++] = HEX[c & 0xF];
+        return p;
+    }
+
+    private void number(long v) {
+        ensure(20);
+        if (v == 0) {
+            payload[len++] = '0';
+            return;
+        }
+        if (v < 0) {
+            if (v == Long.MIN_VALUE) {
+                ascii(Long.toString(v));
+                return;
+            }
+            payload[len++] = '-';
+            v = -v;
+        }
+        int start = len;
+        while (v > 0) {
+            payload[len++] = (byte) ('0' + (v % 10));
+            v /= 10;
+        }
+        for (int i = start, j = len - 1; i < j; i++, j--) {
+            byte t = payload[i];
+            payload[i] = payload[j];
+            payload[j] = t;
+        }
+    }
+
+    private void number(double v) {
+        if (v == (long) v) {
+            number((long) v); // the common case (0, 1, 2, 8, ...) stays allocation-free
+        } else if (Double.isFinite(v)) {
+            ascii(Double.toString(v));
+        } else {
+            ascii("0"); // JSON has no NaN/Infinity
+        }
+    }
+
+    private void ensure(int extra) {
+        if (len + extra > payload.length) {
+            byte[] grown = new byte[Math.max(len + extra, payload.length * 2)];
+            System.arraycopy(payload, 0, grown, 0, len);
+            payload = grown;
+        }
+    }
+
+    private void put(byte b) {
+        ensure(1);
+        payload[len++] = b;
+    }
+}
@@ -1,11 +1,14 @@
 package com.github.octanium91;
 
-import java.util.Map;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+
+import java.nio.ByteBuffer;
 
 /**
  * Common interface for User-Agent parsing backends.
  */
-public interface ParserBackend {
+public interface ParserBackend extends AutoCloseable {
     /**
      * Initializes the parser backend with a configuration.
      * @param configJson JSON string representing the configuration.
@@ -18,4 +21,124 @@ public interface ParserBackend {
      * @return JSON string representing the result.
      */
     String parse(String payloadJson);
+
+    /**
+     * Parses a JSON array of payloads in one backend call.
+     * @param payloadsJson JSON array of {"ua", "headers", "signals"} payloads.
+     * @return JSON array of results in input order.
+     * @throws UnsupportedOperationException when the loaded engine predates
+     *         the batch export; callers fall back to {@link #parse(String)}.
+     */
+    default String parseBatch(String payloadsJson) {
+        throw new UnsupportedOperationException("batch parse not supported by " + getClass().getSimpleName());
+    }
+
+    /**
+     * Parses the payload JSON and returns the result in the engine's compact
+     * binary format (decoded by {@link BinaryResultDecoder}).
+     * @param payloadJson JSON string with "ua", "headers" and "signals".
+     * @return encoded result, or the engine's JSON error text on failure.
+     * @throws UnsupportedOperationException when the loaded engine predates
+     *         the binary export; callers fall back to {@link #parse(String)}.
+     */
+    default byte[] parseBinary(String payloadJson) {
+        throw new UnsupportedOperationException("binary parse not supported by " + getClass().getSimpleName());
+    }
+
+    /**
+     * Byte-oriented parse without per-call allocation: reads {@code inLen}
+     * bytes of payload JSON from the direct buffer {@code in} and writes the
+     * binary result (or the engine's JSON error text) into the direct buffer
+     * {@code out}, from position 0; buffer positions are not used.
+     * @return bytes written, or the negated required capacity when
+     *         {@code out} is too small (nothing is written then).
+     * @throws UnsupportedOperationException when the backend or the loaded
+     *         engine has no byte-oriented export.
+     */
+    default int parseBytes(ByteBuffer in, int inLen, ByteBuffer out) {
+        throw new UnsupportedOperationException("byte parse not supported by " + getClass().getSimpleName());
+    }
+
+    /**
+     * Returns the engine's counters as JSON (see {@link EngineStats}); a
+     * pooled backend returns a JSON array with one object per engine.
+     * @throws UnsupportedOperationException when the loaded engine predates
+     *         the stats export.
+     */
+    default String stats() {
+        throw new UnsupportedOperationException("stats not supported by " + getClass().getSimpleName());
+    }
+
+    /**
+     * Returns the engine's hot-swap generation ({@link EngineStats#generation}),
+     * which the JVM result cache polls to drop results computed under
+     * replaced regexes or corrections; -1 when it is not known. The default
+     * reads it from {@link #stats()}.
+     */
+    default long generation() {
+        String json;
+        try {
+            json = stats();
+        } catch (UnsupportedOperationException unsupported) {
+            return -1;
+        }
+        JsonElement tree = json == null ? null : JsonParser.parseString(json);
+        if (tree == null || !tree.isJsonObject() || !tree.getAsJsonObject().has("generation")) {
+            return -1;
+        }
+        return tree.getAsJsonObject().get("generation").getAsLong();
+    }
+
+    /**
+     * Writes the engine's warm-up snapshot (up to {@code entries} of its
+     * hottest cache keys; 0 = engine default) to {@code path}. See
+     * {@link UaParser.Config#warmupFile}.
+     * @throws UnsupportedOperationException when the loaded engine predates
+     *         warm-up snapshots.
+     */
+    default void saveWarmup(String path, int entries) {
+        throw new UnsupportedOperationException("warm-up snapshots not supported by " + getClass().getSimpleName());
+    }
+
+    /**
+     * Starts an aggregation session grouping by {@code dimensionsJson}, a JSON
+     * array of Result paths (see {@link Aggregator}). Returns a session id
+     * for the other aggregator calls.
+     * @throws IllegalArgumentException for unknown or repeated dimensions.
+     * @throws UnsupportedOperationException when the loaded engine predates
+     *         aggregation sessions.
+     */
+    default long openAggregator(String dimensionsJson) {
+        throw new UnsupportedOperationException("aggregation not supported by " + getClass().getSimpleName());
+    }
+
+    /**
+     * Parses a JSON array of payloads (the {@link #parseBatch} shape) into
+     * the session's counts; nothing is returned per payload.
+     */
+    default void aggregate(long session, String payloadsJson) {
+        throw new UnsupportedOperationException("aggregation not supported by " + getClass().getSimpleName());
+    }
+
+    /**
+     * Returns the session's counts as JSON (see {@link Aggregate}), starting
+     * them over in the same step when {@code reset} is set; a pooled backend
+     * returns a JSON array with one snapshot per engine.
+     */
+    default String aggregatorSnapshot(long session, boolean reset) {
+        throw new UnsupportedOperationException("aggregation not supported by " + getClass().getSimpleName());
+    }
+
+    /** Releases an aggregation session. Closing twice is a no-op. */
+    default void closeAggregator(long session) {
+        throw new UnsupportedOperationException("aggregation not supported by " + getClass().getSimpleName());
+    }
+
+    /**
+     * Releases engine resources owned by this backend. The default does
+     * nothing (backends sharing a process-wide engine own nothing to free).
+     */
+    @Override
+    default void close() {
+    }
 }
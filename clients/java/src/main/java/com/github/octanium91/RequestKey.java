@@ -0,0 +1,111 @@
+package com.github.octanium91;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Builds a key over exactly the inputs the engine consumes, mirroring the Go
+ * core's {@code buildCacheKey}: the UA, the headers in {@code cacheKeyHeaders}
+ * (matched case-insensitively) and the consumed signal fields. Two requests
+ * with equal keys produce equal results, which is what batch deduplication
+ * relies on.
+ */
+final class RequestKey {
+
+    /**
+     * Headers consumed by the pipeline; must match {@code cacheKeyHeaders} in
+     * pkg/core/parser.go. A header that affects output but is missing here
+     * would merge requests that the engine tells apart.
+     */
+    static final String[] CONSUMED_HEADERS = {
+            "sec-ch-ua",
+            "sec-ch-ua-mobile",
+            "sec-ch-ua-platform",
+            "sec-ch-ua-platform-version",
+            "sec-ch-ua-model",
+            "sec-ch-ua-arch",
+            "sec-ch-ua-bitness",
+            "sec-ch-ua-full-version-list",
+            "sec-ch-ua-form-factors",
+            "x-requested-with",
+    };
+
+    private RequestKey() {
+    }
+
+    /**
+     * Resolves the consumed headers (names matched case-insensitively) into
+     * an array aligned with {@link #CONSUMED_HEADERS}; absent ones are null.
+     */
+    static String[] consumedHeaders(Map<String, String> headers) {
+        String[] values = new String[CONSUMED_HEADERS.length];
+        if (headers == null || headers.isEmpty()) {
+            return values;
+        }
+        for (Map.Entry<String, String> e : headers.entrySet()) {
+            String name = e.getKey();
+            if (name == null) {
+                continue;
+            }
+            String lower = name.toLowerCase(Locale.ROOT);
+            for (int i = 0; i < CONSUMED_HEADERS.length; i++) {
+                if (CONSUMED_HEADERS[i].equals(lower)) {
+                    values[i] = e.getValue();
+                    break;
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Length-prefixed ("len:value") so the encoding stays injective whatever
+     * bytes the fields contain.
+     */
+    static String of(String ua, Map<String, String> headers, UaParser.Signals signals) {
+        return of(ua, headers, signals, UaParser.ParseOptions.ALL);
+    }
+
+    /**
+     * As above, with a projection other than ALL appended last (as in the Go
+     * key), so projected and full results never share an entry.
+     */
+    static String of(String ua, Map<String, String> headers, UaParser.Signals signals,
+                     UaParser.ParseOptions options) {
+        StringBuilder b = new StringBuilder((ua == null ? 0 : ua.length()) + 64);
+        field(b, ua);
+        for (String value : consumedHeaders(headers)) {
+            field(b, value);
+        }
+        if (signals != null) {
+            b.append('S'); // distinguishes "no signals" from all-zero signals
+            field(b, Integer.toString(signals.maxTouchPoints));
+            field(b, signals.platform);
+            field(b, signals.webglVendor);
+            field(b, signals.webglRenderer);
+            if (signals.webdriver) {
+                b.append('W');
+            }
+            if (signals.screen != null) {
+                b.append('D');
+                field(b, Integer.toString(signals.screen.w));
+                field(b, Integer.toString(signals.screen.h));
+            }
+            // device_memory / hardware_concurrency only feed
+            // detection.signals_used (any non-zero value counts as provided).
+            if (signals.deviceMemory != 0 || signals.hardwareConcurrency != 0) {
+                b.append('P');
+            }
+        }
+        if (!options.isAll()) {
+            b.append('F');
+            field(b, Integer.toString(options.mask));
+        }
+        return b.toString();
+    }
+
+    private static void field(StringBuilder b, String value) {
+        String v = value == null ? "" : value;
+        b.append(v.length()).append(':').append(v);
+    }
+}
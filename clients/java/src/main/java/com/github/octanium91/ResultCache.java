@@ -0,0 +1,292 @@
+package com.github.octanium91;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-JVM result cache in front of the backend. Reads are lock-free (one
+ * ConcurrentHashMap lookup plus a saturating frequency bump); writes take one
+ * of several stripe locks. Eviction is CLOCK with 2-bit frequency counters
+ * per stripe: the hand decrements counters until it finds an entry that has
+ * not been hit since its last pass, so one-off UAs are evicted before the hot
+ * set that makes up most traffic.
+ *
+ * With a byte budget ({@link UaParser.Config#jvmCacheMaxBytes}) every entry
+ * is weighed by {@link #weigh} and the hand keeps evicting until the new
+ * entry fits its stripe's share of the budget; the entry count is then
+ * capped only by the configured size, if any.
+ *
+ * Values are stored as private copies and every hit returns a fresh deep
+ * copy, so callers may mutate what they get.
+ */
+final class ResultCache implements JvmResultCache {
+    private static final int MAX_FREQ = 3;
+
+    // Smallest weight weigh() can return (empty key, empty Result); sizes
+    // the rings of a cache bounded by bytes alone.
+    static final int MIN_WEIGHT = 200;
+
+    private static final class Node {
+        final String key;
+        final UaParser.Result value;
+        final int weight;
+        // Racy increments are fine: the counter is only an eviction hint.
+        volatile int freq;
+
+        Node(String key, UaParser.Result value, int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    private static final class Stripe {
+        final Node[] ring;
+        // Slots emptied by evictions beyond the one at the hand; reused
+        // before never-used slots.
+        final int[] free;
+        final long budget;
+        int freeCount;
+        int fill;
+        int hand;
+        int count;
+        long bytes;
+
+        Stripe(int capacity, long budget) {
+            this.ring = new Node[capacity];
+            this.free = new int[capacity];
+            this.budget = budget;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Node> map;
+    private final Stripe[] stripes;
+    private final int capacity;
+    private final long maxBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    ResultCache(int capacity) {
+        this(capacity, 0, defaultStripes());
+    }
+
+    ResultCache(int capacity, int maxStripes) {
+        this(capacity, 0, maxStripes);
+    }
+
+    /**
+     * @param capacity maximum entries; 0 with a byte budget means bounded by
+     *        bytes alone.
+     * @param maxBytes byte budget over {@link #weigh} estimates; 0 for none.
+     */
+    ResultCache(int capacity, long maxBytes, int maxStripes) {
+        if (maxBytes < 0 || capacity < 0 || (capacity == 0 && maxBytes == 0)) {
+            throw new IllegalArgumentException("cache capacity must be positive: " + capacity
+                    + " entries, " + maxBytes + " bytes");
+        }
+        if (capacity == 0) {
+            capacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, maxBytes / MIN_WEIGHT));
+        }
+        // Power-of-two stripe count, never more stripes than entries.
+        int stripeCount = 1;
+        while (stripeCount < maxStripes && stripeCount * 2 <= capacity) {
+            stripeCount <<= 1;
+        }
+        this.stripes = new Stripe[stripeCount];
+        int perStripe = (capacity + stripeCount - 1) / stripeCount;
+        long budget = maxBytes > 0 ? maxBytes / stripeCount : Long.MAX_VALUE;
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(perStripe, budget);
+        }
+        this.capacity = perStripe * stripeCount;
+        this.maxBytes = maxBytes;
+        this.map = new ConcurrentHashMap<>(Math.min(this.capacity, 1 << 16));
+    }
+
+    /**
+     * @return a private copy of the cached result, or null on a miss.
+     */
+    @Override
+    public UaParser.Result get(String key) {
+        Node node = map.get(key);
+        if (node == null) {
+            misses.increment();
+            return null;
+        }
+        if (node.freq < MAX_FREQ) {
+            node.freq = node.freq + 1;
+        }
+        hits.increment();
+        return node.value.copy();
+    }
+
+    /**
+     * Caches a copy of {@code value}; the caller keeps ownership of its object.
+     * An entry heavier than a stripe's share of the byte budget is not cached.
+     */
+    @Override
+    public void put(String key, UaParser.Result value) {
+        if (value == null) {
+            return;
+        }
+        UaParser.Result copy = value.copy();
+        int weight = maxBytes > 0 ? (int) Math.min(Integer.MAX_VALUE, weigh(key, copy)) : 0;
+        Stripe stripe = stripes[spread(key.hashCode()) & (stripes.length - 1)];
+        if (weight > stripe.budget) {
+            return;
+        }
+        Node node = new Node(key, copy, weight);
+        synchronized (stripe) {
+            if (map.containsKey(key)) {
+                return; // a concurrent miss on the same key got here first
+            }
+            boolean evicted = false;
+            while (stripe.count == stripe.ring.length || stripe.bytes + weight > stripe.budget) {
+                if (evicted) {
+                    // the previous victim's slot stays empty
+                    stripe.free[stripe.freeCount++] = stripe.hand;
+                    stripe.hand = (stripe.hand + 1) % stripe.ring.length;
+                }
+                evictAtHand(stripe);
+                evicted = true;
+            }
+            Node[] ring = stripe.ring;
+            if (evicted) {
+                ring[stripe.hand] = node;
+                stripe.hand = (stripe.hand + 1) % ring.length;
+            } else if (stripe.freeCount > 0) {
+                ring[stripe.free[--stripe.freeCount]] = node;
+            } else {
+                ring[stripe.fill++] = node;
+            }
+            stripe.count++;
+            stripe.bytes += weight;
+            map.put(key, node);
+        }
+    }
+
+    // Advances the hand to the next entry not hit since the hand's last pass
+    // and removes it, leaving the hand on the emptied slot.
+    private void evictAtHand(Stripe stripe) {
+        Node[] ring = stripe.ring;
+        while (true) {
+            Node candidate = ring[stripe.hand];
+            if (candidate == null) {
+                stripe.hand = (stripe.hand + 1) % ring.length;
+                continue;
+            }
+            if (candidate.freq > 0) {
+                candidate.freq = candidate.freq - 1;
+                stripe.hand = (stripe.hand + 1) % ring.length;
+                continue;
+            }
+            map.remove(candidate.key, candidate);
+            ring[stripe.hand] = null;
+            stripe.count--;
+            stripe.bytes -= candidate.weight;
+            evictions.increment();
+            return;
+        }
+    }
+
+    /** Drops every entry (e.g. after the engine swapped its rules). */
+    @Override
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                for (int i = 0; i < stripe.fill; i++) {
+                    Node node = stripe.ring[i];
+                    if (node != null) {
+                        map.remove(node.key, node);
+                        stripe.ring[i] = null;
+                    }
+                }
+                stripe.count = 0;
+                stripe.fill = 0;
+                stripe.freeCount = 0;
+                stripe.hand = 0;
+                stripe.bytes = 0;
+            }
+        }
+    }
+
+    @Override
+    public UaParser.CacheStats stats() {
+        long bytes = 0;
+        if (maxBytes > 0) {
+            for (Stripe stripe : stripes) {
+                synchronized (stripe) {
+                    bytes += stripe.bytes;
+                }
+            }
+        }
+        return new UaParser.CacheStats(hits.sum(), misses.sum(), evictions.sum(), map.size(), capacity,
+                bytes, maxBytes);
+    }
+
+    // Retained-size estimate of one entry: the map and CLOCK nodes, the key,
+    // and the Result copy with its sections and strings (compressed oops and
+    // Latin-1 compact strings assumed, as for virtually every UA).
+    static long weigh(String key, UaParser.Result r) {
+        long n = 64 + str(key) + 96;
+        n += str(r.resultVersion) + str(r.ua) + str(r.category) + str(r.classHash);
+        if (r.os != null) {
+            n += 32 + str(r.os.name) + str(r.os.version) + str(r.os.platform)
+                    + str(r.os.versionName) + str(r.os.versionRaw);
+        }
+        if (r.browser != null) {
+            n += 32 + str(r.browser.name) + str(r.browser.version) + str(r.browser.major) + str(r.browser.type);
+        }
+        if (r.device != null) {
+            n += 32 + str(r.device.model) + str(r.device.vendor) + str(r.device.type) + str(r.device.formFactor);
+        }
+        if (r.cpu != null) {
+            n += 24 + str(r.cpu.architecture) + str(r.cpu.bitness);
+        }
+        if (r.engine != null) {
+            n += 24 + str(r.engine.name) + str(r.engine.version);
+        }
+        if (r.automation != null) {
+            n += 16;
+        }
+        if (r.integrity != null) {
+            n += 16;
+            List<String> reasons = r.integrity.reasons;
+            if (reasons != null) {
+                n += 40 + 4L * reasons.size();
+                for (String reason : reasons) {
+                    n += str(reason);
+                }
+            }
+        }
+        if (r.security != null) {
+            n += 24 + str(r.security.category);
+        }
+        if (r.detection != null) {
+            n += 16;
+        }
+        if (r.bot != null) {
+            n += 24 + str(r.bot.name) + str(r.bot.category) + str(r.bot.vendor);
+        }
+        if (r.gpu != null) {
+            n += 24 + str(r.gpu.vendor) + str(r.gpu.renderer);
+        }
+        return n;
+    }
+
+    private static long str(String s) {
+        return s == null ? 0 : 40 + s.length();
+    }
+
+    static int defaultStripes() {
+        return Math.min(64, Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    // spread mixes high hash bits into the low bits used for stripe selection.
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,637 @@
+package com.github.octanium91;
+
+import com.google.gson.Gson;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Read-only view of one engine result, backed by the result JSON exactly as
+ * the backend returned it (see {@link UaParser#parseView}). Construction
+ * indexes where every known field's value starts in one forward scan; a
+ * getter decodes only its own field, on every call. Reading a few fields
+ * therefore allocates a few Strings instead of a whole {@link UaParser.Result}
+ * graph, and no reflection is involved.
+ *
+ * Getters follow the JSON shape: a section the result does not carry (bot,
+ * gpu, or one left out by a {@link UaParser.ParseOptions} projection) reads
+ * as null strings and false flags, as on {@link UaParser.Result}.
+ */
+public final class ResultView {
+
+    private static final Gson GSON = new Gson();
+
+    // Top-level fields, then one id per section (its object), then every
+    // section's fields. Ids index offsets.
+    private static final String[] TOP = {
+            "result_version", "ua", "category", "class_hash", "error",
+            "is_bot", "is_ai_crawler", "is_frozen_ua", "is_mobile", "is_desktop",
+            "is_touch_capable", "is_chrome_family", "is_apple_silicon",
+    };
+    private static final String[] SECTIONS = {
+            "os", "browser", "device", "cpu", "engine", "automation", "integrity",
+            "security", "detection", "bot", "gpu",
+    };
+    private static final String[][] SECTION_FIELDS = {
+            {"name", "version", "platform", "version_name", "version_raw"},
+            {"name", "version", "major", "type"},
+            {"model", "vendor", "type", "form_factor"},
+            {"architecture", "bitness"},
+            {"name", "version"},
+            {"headless", "electron", "webdriver"},
+            {"spoofed", "reasons"},
+            {"suspicious", "category"},
+            {"client_hints_used", "high_entropy", "signals_used"},
+            {"name", "category", "vendor"},
+            {"vendor", "renderer"},
+    };
+    private static final int[] SECTION_BASE = new int[SECTIONS.length];
+    private static final int FIELD_COUNT;
+
+    static {
+        int id = TOP.length + SECTIONS.length;
+        for (int s = 0; s < SECTIONS.length; s++) {
+            SECTION_BASE[s] = id;
+            id += SECTION_FIELDS[s].length;
+        }
+        FIELD_COUNT = id;
+    }
+
+    private static final int RESULT_VERSION = top("result_version");
+    private static final int UA = top("ua");
+    private static final int CATEGORY = top("category");
+    private static final int CLASS_HASH = top("class_hash");
+    private static final int ERROR = top("error");
+    private static final int IS_BOT = top("is_bot");
+    private static final int IS_AI_CRAWLER = top("is_ai_crawler");
+    private static final int IS_FROZEN_UA = top("is_frozen_ua");
+    private static final int IS_MOBILE = top("is_mobile");
+    private static final int IS_DESKTOP = top("is_desktop");
+    private static final int IS_TOUCH_CAPABLE = top("is_touch_capable");
+    private static final int IS_CHROME_FAMILY = top("is_chrome_family");
+    private static final int IS_APPLE_SILICON = top("is_apple_silicon");
+    private static final int BOT = section("bot");
+    private static final int GPU = section("gpu");
+    private static final int OS_NAME = field("os", "name");
+    private static final int OS_VERSION = field("os", "version");
+    private static final int OS_PLATFORM = field("os", "platform");
+    private static final int OS_VERSION_NAME = field("os", "version_name");
+    private static final int OS_VERSION_RAW = field("os", "version_raw");
+    private static final int BROWSER_NAME = field("browser", "name");
+    private static final int BROWSER_VERSION = field("browser", "version");
+    private static final int BROWSER_MAJOR = field("browser", "major");
+    private static final int BROWSER_TYPE = field("browser", "type");
+    private static final int DEVICE_MODEL = field("device", "model");
+    private static final int DEVICE_VENDOR = field("device", "vendor");
+    private static final int DEVICE_TYPE = field("device", "type");
+    private static final int DEVICE_FORM_FACTOR = field("device", "form_factor");
+    private static final int CPU_ARCHITECTURE = field("cpu", "architecture");
+    private static final int CPU_BITNESS = field("cpu", "bitness");
+    private static final int ENGINE_NAME = field("engine", "name");
+    private static final int ENGINE_VERSION = field("engine", "version");
+    private static final int HEADLESS = field("automation", "headless");
+    private static final int ELECTRON = field("automation", "electron");
+    private static final int WEBDRIVER = field("automation", "webdriver");
+    private static final int SPOOFED = field("integrity", "spoofed");
+    private static final int REASONS = field("integrity", "reasons");
+    private static final int SUSPICIOUS = field("security", "suspicious");
+    private static final int SECURITY_CATEGORY = field("security", "category");
+    private static final int CLIENT_HINTS_USED = field("detection", "client_hints_used");
+    private static final int HIGH_ENTROPY = field("detection", "high_entropy");
+    private static final int SIGNALS_USED = field("detection", "signals_used");
+    private static final int BOT_NAME = field("bot", "name");
+    private static final int BOT_CATEGORY = field("bot", "category");
+    private static final int BOT_VENDOR = field("bot", "vendor");
+    private static final int GPU_VENDOR = field("gpu", "vendor");
+    private static final int GPU_RENDERER = field("gpu", "renderer");
+
+    // Flag fields in CompactResult.Flag order, up to HAS_BOT and HAS_GPU.
+    private static final int[] FLAG_FIELDS = {
+            IS_BOT, IS_AI_CRAWLER, IS_FROZEN_UA, IS_MOBILE, IS_DESKTOP, IS_TOUCH_CAPABLE,
+            IS_CHROME_FAMILY, IS_APPLE_SILICON, HEADLESS, ELECTRON, WEBDRIVER, SPOOFED,
+            SUSPICIOUS, CLIENT_HINTS_USED, HIGH_ENTROPY, SIGNALS_USED,
+    };
+
+    private final String json;
+    // Start of each field's value in json, -1 when absent.
+    private final int[] offsets = new int[FIELD_COUNT];
+    // Offset just past the object.
+    private final int end;
+
+    // Indexes the object at or after json[start]: the whole document, or one
+    // element of a batch result array.
+    private ResultView(String json, int start) {
+        this.json = json;
+        Arrays.fill(offsets, -1);
+        int p = ws(start);
+        if (p >= json.length() || json.charAt(p) != '{') {
+            throw malformed(p);
+        }
+        end = scanObject(p, -1);
+    }
+
+    /**
+     * Indexes a result JSON document (the engine's, or a REST response body).
+     * @throws IllegalArgumentException when it is not a JSON object.
+     */
+    public static ResultView of(String resultJson) {
+        return new ResultView(resultJson, 0);
+    }
+
+    /**
+     * Indexes every element of a batch result array; a JSON null element
+     * yields a null view. Views share the array String.
+     */
+    static List<ResultView> ofArray(String resultsJson) {
+        List<ResultView> views = new ArrayList<>();
+        int p = ws(resultsJson, 0);
+        if (p >= resultsJson.length() || resultsJson.charAt(p) != '[') {
+            throw malformed(p);
+        }
+        p = ws(resultsJson, p + 1);
+        if (p < resultsJson.length() && resultsJson.charAt(p) == ']') {
+            return views;
+        }
+        while (true) {
+            if (resultsJson.startsWith("null", p)) {
+                views.add(null);
+                p += 4;
+            } else {
+                ResultView v = new ResultView(resultsJson, p);
+                views.add(v);
+                p = v.end;
+            }
+            p = ws(resultsJson, p);
+            if (p >= resultsJson.length()) {
+                throw malformed(p);
+            }
+            char c = resultsJson.charAt(p);
+            if (c == ']') {
+                return views;
+            }
+            if (c != ',') {
+                throw malformed(p);
+            }
+            p = ws(resultsJson, p + 1);
+        }
+    }
+
+    /** The JSON this view reads. */
+    public String json() {
+        return json;
+    }
+
+    /** Fully decodes the result, as {@link UaParser#parse} would have returned it. */
+    public UaParser.Result toResult() {
+        return GSON.fromJson(json, UaParser.Result.class);
+    }
+
+    /** The engine's error message, or null for a result. */
+    public String error() {
+        return string(ERROR);
+    }
+
+    public String resultVersion() {
+        return string(RESULT_VERSION);
+    }
+
+    public String ua() {
+        return string(UA);
+    }
+
+    public String category() {
+        return string(CATEGORY);
+    }
+
+    public String classHash() {
+        return string(CLASS_HASH);
+    }
+
+    public boolean isBot() {
+        return bool(IS_BOT);
+    }
+
+    public boolean isAiCrawler() {
+        return bool(IS_AI_CRAWLER);
+    }
+
+    public boolean isFrozenUa() {
+        return bool(IS_FROZEN_UA);
+    }
+
+    public boolean isMobile() {
+        return bool(IS_MOBILE);
+    }
+
+    public boolean isDesktop() {
+        return bool(IS_DESKTOP);
+    }
+
+    public boolean isTouchCapable() {
+        return bool(IS_TOUCH_CAPABLE);
+    }
+
+    public boolean isChromeFamily() {
+        return bool(IS_CHROME_FAMILY);
+    }
+
+    public boolean isAppleSilicon() {
+        return bool(IS_APPLE_SILICON);
+    }
+
+    public String osName() {
+        return string(OS_NAME);
+    }
+
+    public String osVersion() {
+        return string(OS_VERSION);
+    }
+
+    public String osPlatform() {
+        return string(OS_PLATFORM);
+    }
+
+    public String osVersionName() {
+        return string(OS_VERSION_NAME);
+    }
+
+    public String osVersionRaw() {
+        return string(OS_VERSION_RAW);
+    }
+
+    public String browserName() {
+        return string(BROWSER_NAME);
+    }
+
+    public String browserVersion() {
+        return string(BROWSER_VERSION);
+    }
+
+    public String browserMajor() {
+        return string(BROWSER_MAJOR);
+    }
+
+    public String browserType() {
+        return string(BROWSER_TYPE);
+    }
+
+    public String deviceModel() {
+        return string(DEVICE_MODEL);
+    }
+
+    public String deviceVendor() {
+        return string(DEVICE_VENDOR);
+    }
+
+    public String deviceType() {
+        return string(DEVICE_TYPE);
+    }
+
+    public String deviceFormFactor() {
+        return string(DEVICE_FORM_FACTOR);
+    }
+
+    public String cpuArchitecture() {
+        return string(CPU_ARCHITECTURE);
+    }
+
+    public String cpuBitness() {
+        return string(CPU_BITNESS);
+    }
+
+    public String engineName() {
+        return string(ENGINE_NAME);
+    }
+
+    public String engineVersion() {
+        return string(ENGINE_VERSION);
+    }
+
+    public boolean headless() {
+        return bool(HEADLESS);
+    }
+
+    public boolean electron() {
+        return bool(ELECTRON);
+    }
+
+    public boolean webdriver() {
+        return bool(WEBDRIVER);
+    }
+
+    public boolean spoofed() {
+        return bool(SPOOFED);
+    }
+
+    /** A new list on every call; null when the result carries none. */
+    public List<String> integrityReasons() {
+        int p = offsets[REASONS];
+        if (p < 0 || json.charAt(p) != '[') {
+            return null;
+        }
+        List<String> reasons = new ArrayList<>();
+        p = ws(p + 1);
+        if (json.charAt(p) == ']') {
+            return reasons;
+        }
+        while (true) {
+            if (json.charAt(p) != '"') {
+                throw malformed(p);
+            }
+            int end = stringEnd(p);
+            reasons.add(decode(p, end));
+            p = ws(end + 1);
+            char c = json.charAt(p);
+            if (c == ']') {
+                return reasons;
+            }
+            if (c != ',') {
+                throw malformed(p);
+            }
+            p = ws(p + 1);
+        }
+    }
+
+    public boolean suspicious() {
+        return bool(SUSPICIOUS);
+    }
+
+    public String securityCategory() {
+        return string(SECURITY_CATEGORY);
+    }
+
+    public boolean clientHintsUsed() {
+        return bool(CLIENT_HINTS_USED);
+    }
+
+    public boolean highEntropy() {
+        return bool(HIGH_ENTROPY);
+    }
+
+    public boolean signalsUsed() {
+        return bool(SIGNALS_USED);
+    }
+
+    /** Whether the result carries a bot section (declared bots only). */
+    public boolean hasBot() {
+        return present(BOT);
+    }
+
+    public String botName() {
+        return string(BOT_NAME);
+    }
+
+    public String botCategory() {
+        return string(BOT_CATEGORY);
+    }
+
+    public String botVendor() {
+        return string(BOT_VENDOR);
+    }
+
+    /** Whether the result carries a gpu section (WebGL signals only). */
+    public boolean hasGpu() {
+        return present(GPU);
+    }
+
+    public String gpuVendor() {
+        return string(GPU_VENDOR);
+    }
+
+    public String gpuRenderer() {
+        return string(GPU_RENDERER);
+    }
+
+    @Override
+    public String toString() {
+        return json;
+    }
+
+    // --- compact codes ---
+
+    // Dictionary code of a CompactResult column, without materializing the
+    // value when the dictionary already holds it; 0 when absent or null.
+    int code(CompactResult.Column column, CompactDictionary dictionary) {
+        int p = offsets[columnField(column)];
+        if (p < 0 || json.charAt(p) != '"') {
+            return 0;
+        }
+        int close = stringEnd(p);
+        int escape = json.indexOf('\\', p + 1);
+        if (escape >= 0 && escape < close) {
+            return dictionary.code(decode(p, close));
+        }
+        return dictionary.code(json, p + 1, close);
+    }
+
+    // The boolean fields as a CompactResult.Flag bitset.
+    int flags() {
+        int flags = 0;
+        for (int i = 0; i < FLAG_FIELDS.length; i++) {
+            if (bool(FLAG_FIELDS[i])) {
+                flags |= 1 << i;
+            }
+        }
+        if (hasBot()) {
+            flags |= CompactResult.Flag.HAS_BOT.mask;
+        }
+        if (hasGpu()) {
+            flags |= CompactResult.Flag.HAS_GPU.mask;
+        }
+        return flags;
+    }
+
+    private static int columnField(CompactResult.Column column) {
+        switch (column) {
+            case BROWSER_NAME: return BROWSER_NAME;
+            case OS_PLATFORM: return OS_PLATFORM;
+            case DEVICE_TYPE: return DEVICE_TYPE;
+            case DEVICE_FORM_FACTOR: return DEVICE_FORM_FACTOR;
+            case CATEGORY: return CATEGORY;
+            case BOT_CATEGORY: return BOT_CATEGORY;
+            default: throw new IllegalArgumentException(column.name());
+        }
+    }
+
+    // --- field access ---
+
+    private String string(int id) {
+        int p = offsets[id];
+        if (p < 0 || json.charAt(p) != '"') {
+            return null; // absent, or JSON null
+        }
+        return decode(p, stringEnd(p));
+    }
+
+    private boolean bool(int id) {
+        int p = offsets[id];
+        return p >= 0 && json.startsWith("true", p);
+    }
+
+    private boolean present(int id) {
+        int p = offsets[id];
+        return p >= 0 && json.charAt(p) == '{';
+    }
+
+    // Decodes the string literal json[open..close] (both quotes).
+    private String decode(int open, int close) {
+        int escape = json.indexOf('\\', open + 1);
+        if (escape < 0 || escape > close) {
+            return json.substring(open + 1, close);
+        }
+        StringBuilder sb = new StringBuilder(close - open);
+        sb.append(json, open + 1, escape);
+        for (int i = escape; i < close; i++) {
+            char c = json.charAt(i);
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            char e = json.charAt(++i);
+            switch (e) {
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'u':
+                    sb.append((char) Integer.parseInt(json.substring(i + 1, i + 5), 16));
+                    i += 4;
+                    break;
+                default: sb.append(e); // \" \\ \/
+            }
+        }
+        return sb.toString();
+    }
+
+    // --- indexing scan ---
+
+    // Scans the object at p ('{'), recording the value offsets of known
+    // keys; section is -1 at the top level. Returns the offset after '}'.
+    private int scanObject(int p, int section) {
+        p = ws(p + 1);
+        if (at(p) == '}') {
+            return p + 1;
+        }
+        while (true) {
+            if (at(p) != '"') {
+                throw malformed(p);
+            }
+            int keyEnd = stringEnd(p);
+            int key = p + 1;
+            p = ws(keyEnd + 1);
+            if (at(p) != ':') {
+                throw malformed(p);
+            }
+            p = ws(p + 1);
+            int child = section < 0 ? indexOf(SECTIONS, key, keyEnd) : -1;
+            if (child >= 0 && at(p) == '{') {
+                offsets[TOP.length + child] = p;
+                p = scanObject(p, child);
+            } else {
+                int id = section < 0 ? indexOf(TOP, key, keyEnd) : indexOf(SECTION_FIELDS[section], key, keyEnd);
+                if (id >= 0) {
+                    offsets[section < 0 ? id : SECTION_BASE[section] + id] = p;
+                }
+                p = skipValue(p);
+            }
+            p = ws(p);
+            char c = at(p);
+            if (c == '}') {
+                return p + 1;
+            }
+            if (c != ',') {
+                throw malformed(p);
+            }
+            p = ws(p + 1);
+        }
+    }
+
+    private int indexOf(String[] names, int start, int end) {
+        int len = end - start;
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].length() == len && json.regionMatches(start, names[i], 0, len)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int skipValue(int p) {
+        char c = at(p);
+        if (c == '"') {
+            return stringEnd(p) + 1;
+        }
+        if (c == '{' || c == '[') {
+            int depth = 0;
+            for (int i = p; i < json.length(); i++) {
+                char d = json.charAt(i);
+                if (d == '"') {
+                    i = stringEnd(i);
+                } else if (d == '{' || d == '[') {
+                    depth++;
+                } else if ((d == '}' || d == ']') && --depth == 0) {
+                    return i + 1;
+                }
+            }
+            throw malformed(p);
+        }
+        int i = p;
+        while (i < json.length() && ",}] \t\r\n".indexOf(json.charAt(i)) < 0) {
+            i++;
+        }
+        if (i == p) {
+            throw malformed(p);
+        }
+        return i;
+    }
+
+    // Offset of the closing quote of the string starting at p.
+    private int stringEnd(int p) {
+        for (int i = p + 1; i < json.length(); i++) {
+            char c = json.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '"') {
+                return i;
+            }
+        }
+        throw malformed(p);
+    }
+
+    private int ws(int p) {
+        return ws(json, p);
+    }
+
+    static int ws(String s, int p) {
+        while (p < s.length() && s.charAt(p) <= ' ') {
+            p++;
+        }
+        return p;
+    }
+
+    private char at(int p) {
+        if (p >= json.length()) {
+            throw malformed(p);
+        }
+        return json.charAt(p);
+    }
+
+    private static IllegalArgumentException malformed(int p) {
+        return new IllegalArgumentException("malformed result JSON at offset " + p);
+    }
+
+    private static int top(String name) {
+        return Arrays.asList(TOP).indexOf(name);
+    }
+
+    private static int section(String name) {
+        return TOP.length + Arrays.asList(SECTIONS).indexOf(name);
+    }
+
+    private static int field(String section, String name) {
+        int s = Arrays.asList(SECTIONS).indexOf(section);
+        return SECTION_BASE[s] + Arrays.asList(SECTION_FIELDS[s]).indexOf(name);
+    }
+}
@@ -0,0 +1,62 @@
+package com.github.octanium91;
+
+/**
+ * Splits one parse call into the {@link ParseListener} stages. Each mark adds
+ * the time since the previous mark to its stage, so a fallback that repeats a
+ * stage (e.g. re-encoding as JSON after the binary path is refused) is
+ * charged to it twice rather than lost. One instance per thread; {@link #OFF}
+ * stands in when no listener is installed and never reads the clock.
+ */
+final class StageTimer {
+    static final StageTimer OFF = new StageTimer(false);
+
+    private static final ThreadLocal<StageTimer> LOCAL = ThreadLocal.withInitial(() -> new StageTimer(true));
+
+    private final boolean on;
+    private long mark;
+    long encodeNanos;
+    long backendNanos;
+    long decodeNanos;
+
+    private StageTimer(boolean on) {
+        this.on = on;
+    }
+
+    /** @return this thread's timer, reset and started, or {@link #OFF} without a listener. */
+    static StageTimer start(ParseListener listener) {
+        if (listener == null) {
+            return OFF;
+        }
+        StageTimer t = LOCAL.get();
+        t.encodeNanos = 0;
+        t.backendNanos = 0;
+        t.decodeNanos = 0;
+        t.mark = System.nanoTime();
+        return t;
+    }
+
+    void encoded() {
+        if (on) {
+            encodeNanos += lap();
+        }
+    }
+
+    void crossed() {
+        if (on) {
+            backendNanos += lap();
+        }
+    }
+
+    void decoded() {
+        if (on) {
+            decodeNanos += lap();
+        }
+    }
+
+    private long lap() {
+        long now = System.nanoTime();
+        long d = now - mark;
+        mark = now;
+        return d;
+    }
+}
@@ -1,28 +1,83 @@
 package com.github.octanium91;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonParser;
 import com.google.gson.annotations.SerializedName;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 /**
  * Universal User-Agent Parser Java Wrapper with Native (JNA) and WASM fallback.
  */
-public class UaParser {
-    private final ParserBackend backend;
+public class UaParser implements AutoCloseable {
+    // Null until an async start (createAsync) has selected the backend; read
+    // through backend(), which waits for readiness.
+    private volatile ParserBackend backend;
+    // Completed with this parser once the backend is selected and initialized;
+    // already complete for the blocking constructors.
+    private final CompletableFuture<UaParser> readiness;
     private final Gson gson;
     // Guards the corrections-push daemon so repeated init() calls never spawn
     // more than one pusher thread (init is otherwise not idempotent).
     private final java.util.concurrent.atomic.AtomicBoolean correctionsPushStarted =
             new java.util.concurrent.atomic.AtomicBoolean(false);
+    private volatile Thread correctionsPusher;
+    // Cleared once the backend reports no batch export; later batches go
+    // straight to the per-payload path.
+    private volatile boolean batchSupported = true;
+    // Set by init when Config.resultEncoding is "binary"; cleared if the
+    // engine turns out not to support it.
+    private volatile boolean binaryResults;
+    // Cleared when the backend has no byte-oriented export (WASM, older
+    // native libraries); binary results then go through parseBinary.
+    private volatile boolean bytesSupported = true;
+    // In-JVM result cache; null unless Config.jvmCacheSize or jvmCacheMaxBytes > 0.
+    private volatile JvmResultCache cache;
+    // Engine hot-swap generation the cache's entries were computed under (-1
+    // until first polled), and when the next poll is due; see cacheGeneration.
+    private volatile long cacheGeneration = -1;
+    private final AtomicLong nextGenerationCheck = new AtomicLong();
+    private volatile long generationCheckNanos = TimeUnit.SECONDS.toNanos(1);
+    // Stage timing is off (no clock reads) while this is null.
+    private volatile ParseListener listener;
+    // Config.warmupFile / warmupEntries of the last init; the WASM host side
+    // of warm-up snapshots (native engines handle the file themselves).
+    private volatile String warmupFile;
+    private volatile int warmupEntries;
+    // Codes for parseCompact; shared by every caller so rows compare.
+    private final CompactResult.Dictionaries compactDictionaries = new CompactResult.Dictionaries();
 
     public UaParser() {
-        this.gson = new Gson();
+        this(selectBackend());
+    }
+
+    // selectBackend is the automatic choice behind UaParser() and
+    // createAsync(Config): FFM, then JNA, then WASM.
+    private static ParserBackend selectBackend() {
         ParserBackend selected;
         try {
-            // Try to run at maximum speed (native)
-            selected = new JnaBackend();
+            // Try to run at maximum speed (native): FFM downcalls on JDK 22+,
+            // JNA everywhere else or when FFM is unavailable.
+            ParserBackend ffm = ffmBackend();
+            selected = ffm != null ? ffm : new JnaBackend();
         } catch (LinkageError | RuntimeException nativeFailure) {
             // LinkageError covers UnsatisfiedLinkError on first JNA touch and
             // NoClassDefFoundError on any subsequent one.
@@ -43,19 +98,120 @@ public class UaParser {
                 throw wasmFailure;
             }
         }
-        this.backend = selected;
+        return selected;
+    }
+
+    // ffmBackend loads FfmBackend from the multi-release JAR's versions/22
+    // layer; null on older JVMs, JARs built without it, or any load failure
+    // (JNA then gets its own attempt and reports the reason).
+    private static ParserBackend ffmBackend() {
+        if (Runtime.version().feature() < 22) {
+            return null;
+        }
+        try {
+            return (ParserBackend) Class.forName("com.github.octanium91.FfmBackend")
+                    .getConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException unavailable) {
+            return null;
+        }
     }
 
     /**
-     * @return the active backend implementation name ("JnaBackend" or "WasmBackend").
+     * @return the active backend implementation name ("FfmBackend",
+     * "JnaBackend" or "WasmBackend"); waits for a parser from
+     * {@link #createAsync(Config)} to become ready.
      */
     public String getBackendName() {
-        return backend.getClass().getSimpleName();
+        return backend().getClass().getSimpleName();
     }
 
     public UaParser(String libPath) {
+        this(new JnaBackend(libPath));
+    }
+
+    /**
+     * Uses the given backend instead of auto-selecting one, e.g.
+     * {@code new UaParser(new WasmBackend(4))} to force the WASM engine.
+     */
+    public UaParser(ParserBackend backend) {
         this.gson = new Gson();
-        this.backend = new JnaBackend(libPath);
+        this.backend = backend;
+        this.readiness = CompletableFuture.completedFuture(this);
+    }
+
+    private UaParser(CompletableFuture<UaParser> readiness) {
+        this.gson = new Gson();
+        this.readiness = readiness;
+    }
+
+    /**
+     * Returns immediately with a parser whose backend selection (as in
+     * {@link #UaParser()}) and {@code init(config)} run on a background
+     * daemon thread. Use {@link #readiness()} to learn when it is ready, and
+     * the {@code parseAsync} methods to parse without ever blocking on it;
+     * the synchronous methods wait for readiness.
+     */
+    public static UaParser createAsync(Config config) {
+        return createAsync(config, UaParser::startThread);
+    }
+
+    /** As {@link #createAsync(Config)}, with startup run on {@code executor}. */
+    public static UaParser createAsync(Config config, Executor executor) {
+        return createAsync(UaParser::selectBackend, config, executor);
+    }
+
+    /**
+     * As {@link #createAsync(Config, Executor)}, with the backend created by
+     * {@code backend} instead of auto-selected, e.g. {@code WasmBackend::new}.
+     */
+    public static UaParser createAsync(Supplier<? extends ParserBackend> backend, Config config, Executor executor) {
+        UaParser parser = new UaParser(new CompletableFuture<>());
+        String configJson = parser.gson.toJson(config);
+        try {
+            executor.execute(() -> parser.start(backend, configJson));
+        } catch (RejectedExecutionException rejected) {
+            parser.readiness.completeExceptionally(rejected);
+        }
+        return parser;
+    }
+
+    private void start(Supplier<? extends ParserBackend> factory, String configJson) {
+        try {
+            backend = factory.get();
+            initBackend(configJson);
+            readiness.complete(this);
+        } catch (Throwable failure) {
+            readiness.completeExceptionally(failure);
+        }
+    }
+
+    private static void startThread(Runnable startup) {
+        Thread t = new Thread(startup, "ua-parser-init");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * Completes with this parser once its engine is ready (immediately for
+     * the blocking constructors), or exceptionally if startup failed: the
+     * hook for health checks and readiness probes.
+     */
+    public CompletableFuture<UaParser> readiness() {
+        return readiness;
+    }
+
+    // backend returns the initialized backend, waiting for an async start.
+    // Package-private for Aggregator.
+    ParserBackend backend() {
+        if (!readiness.isDone() || readiness.isCompletedExceptionally()) {
+            try {
+                readiness.join();
+            } catch (CompletionException | CancellationException failed) {
+                Throwable cause = failed.getCause() != null ? failed.getCause() : failed;
+                throw new IllegalStateException("ua-parser failed to start: " + cause, cause);
+            }
+        }
+        return backend;
     }
 
     public static class Config {
@@ -65,6 +221,48 @@ public class UaParser {
         @SerializedName("lru_cache_size")
         public int lruCacheSize;
 
+        /**
+         * Splits the engine LRU into this many independently locked shards
+         * (power of two, at most 256), so parses from many JVM threads stop
+         * serializing on one cache lock. 0 or 1 = a single LRU.
+         */
+        @SerializedName("cache_shards")
+        public int cacheShards;
+
+        /**
+         * Bounds the engine cache by the estimated memory of its entries
+         * (cache key plus result) instead of their number, so it can be sized
+         * against a container limit. With lruCacheSize also set, both limits
+         * apply. Usage is reported in {@link EngineStats.CacheCounters#bytes}.
+         */
+        @SerializedName("cache_max_bytes")
+        public long cacheMaxBytes;
+
+        /**
+         * Evaluates only the uap-core regexes whose literal tokens occur in
+         * the UA. Results are unchanged; cache misses get faster at the cost
+         * of a larger engine footprint.
+         */
+        @SerializedName("regex_prefilter")
+        public boolean regexPrefilter;
+
+        /**
+         * Makes init index the regex database without compiling it: each
+         * regex compiles the first time a parse needs it. Results are
+         * unchanged; init gets much faster (most visible on the WASM backend)
+         * and early uncached parses pay for the regexes they reach.
+         */
+        @SerializedName("lazy_regexes")
+        public boolean lazyRegexes;
+
+        /**
+         * With {@link #lazyRegexes}, compiles the remaining regexes on an
+         * engine goroutine after init. On the WASM backend goroutines only run
+         * inside calls, so this work lands in the first parses instead.
+         */
+        @SerializedName("compile_in_background")
+        public boolean compileInBackground;
+
         @SerializedName("update_url")
         public String updateUrl;
 
@@ -78,6 +276,101 @@ public class UaParser {
         /** Disables runtime correction updates (embedded snapshot stays). */
         @SerializedName("disable_corrections_update")
         public boolean disableCorrectionsUpdate;
+
+        /**
+         * WASM fallback only: number of independent engine instances parses
+         * are spread across (0 or 1 = a single instance). Each instance holds
+         * its own engine and LRU cache; the native backend ignores it.
+         */
+        @SerializedName("wasm_pool_size")
+        public int wasmPoolSize;
+
+        /**
+         * Entries in the in-JVM result cache consulted before the backend
+         * (0 = disabled). A hit skips payload encoding, the native/WASM
+         * crossing and JSON decoding entirely. Keyed on exactly the inputs the
+         * engine consumes; when the engine hot-swaps its regexes or
+         * corrections (auto-update, a corrections push) the cache is dropped
+         * within {@link #jvmCacheRevalidateMillis}. The engine-side LRU
+         * (lruCacheSize, re-warmed by a swap with rewarmEntries) still backs
+         * JVM misses.
+         */
+        @SerializedName("jvm_cache_size")
+        public int jvmCacheSize;
+
+        /**
+         * Bounds the in-JVM result cache by the estimated heap its entries
+         * retain (key plus Result copy) instead of their number; alone it
+         * enables the cache, together with jvmCacheSize both limits apply.
+         * Current usage is {@link CacheStats#bytes}.
+         */
+        @SerializedName("jvm_cache_max_bytes")
+        public long jvmCacheMaxBytes;
+
+        /**
+         * Keeps the in-JVM result cache off-heap: entries live encoded in
+         * direct memory with a primitive index, so millions of them add no
+         * objects for the GC to trace; every hit decodes a fresh Result.
+         * jvmCacheMaxBytes is then the direct memory reserved up front
+         * (default: jvmCacheSize x 512 bytes) and jvmCacheSize, if set, still
+         * caps the entry count.
+         */
+        @SerializedName("jvm_cache_off_heap")
+        public boolean jvmCacheOffHeap;
+
+        /**
+         * How often, at most, the JVM result cache asks the engine whether it
+         * has hot-swapped its rules, in milliseconds (0 = 1000). The check
+         * runs on whichever parse is due, so hits in between cost no
+         * crossing; cached results lag a swap by up to this long.
+         */
+        @SerializedName("jvm_cache_revalidate_millis")
+        public long jvmCacheRevalidateMillis;
+
+        /**
+         * Wire format of single-parse results between engine and JVM: "json"
+         * (default) or "binary". Binary skips JSON marshalling in the engine
+         * and reflection-based decoding here; engines predating the binary
+         * export are detected and served over JSON transparently. With the
+         * native backend, binary also switches to the ParseBytes path:
+         * reusable per-thread buffers, no per-call Strings or maps.
+         */
+        @SerializedName("result_encoding")
+        public String resultEncoding;
+
+        /**
+         * Makes the engine count cache hits, misses and evictions, per-rule
+         * correction hits and parse latency histograms, exposed through
+         * {@link UaParser#getEngineStats()}. Off by default: it costs two
+         * clock reads and a few atomic increments per parse.
+         */
+        @SerializedName("collect_stats")
+        public boolean collectStats;
+
+        /**
+         * Warm-up snapshot file. At init the hottest UAs of the previous run
+         * are re-parsed into the engine cache in the background, so the
+         * first traffic after a restart is served from a warm cache; on
+         * {@link UaParser#close()} the current hottest keys are written back.
+         * The file holds cache keys, never results. The native engine reads
+         * and writes it itself; with WASM this class does it for the engine.
+         * Needs lruCacheSize &gt; 0.
+         */
+        @SerializedName("warmup_file")
+        public String warmupFile;
+
+        /** Entries a warm-up snapshot keeps (0 = engine default, 10,000). */
+        @SerializedName("warmup_entries")
+        public int warmupEntries;
+
+        /**
+         * Hottest engine cache entries re-parsed against new regexes or
+         * corrections before a hot-swap goes live (0 = off). The engine cache
+         * is then still warm after an update instead of every hot UA missing
+         * at the same moment; in WASM mode this covers the corrections push.
+         */
+        @SerializedName("rewarm_entries")
+        public int rewarmEntries;
     }
 
     public static class OSInfo {
@@ -91,6 +384,16 @@ public class UaParser {
         /** Exact CH platform-version ("19.0.0" behind Windows "11"), or the UA version. */
         @SerializedName("version_raw")
         public String versionRaw;
+
+        OSInfo copy() {
+            OSInfo c = new OSInfo();
+            c.name = name;
+            c.version = version;
+            c.platform = platform;
+            c.versionName = versionName;
+            c.versionRaw = versionRaw;
+            return c;
+        }
     }
 
     public static class BrowserInfo {
@@ -98,6 +401,15 @@ public class UaParser {
         public String version;
         public String major;
         public String type;
+
+        BrowserInfo copy() {
+            BrowserInfo c = new BrowserInfo();
+            c.name = name;
+            c.version = version;
+            c.major = major;
+            c.type = type;
+            return c;
+        }
     }
 
     public static class DeviceInfo {
@@ -107,17 +419,40 @@ public class UaParser {
 
         @SerializedName("form_factor")
         public String formFactor;
+
+        DeviceInfo copy() {
+            DeviceInfo c = new DeviceInfo();
+            c.model = model;
+            c.vendor = vendor;
+            c.type = type;
+            c.formFactor = formFactor;
+            return c;
+        }
     }
 
     public static class CPUInfo {
         public String architecture;
         /** "64", "32", or "". */
         public String bitness;
+
+        CPUInfo copy() {
+            CPUInfo c = new CPUInfo();
+            c.architecture = architecture;
+            c.bitness = bitness;
+            return c;
+        }
     }
 
     public static class EngineInfo {
         public String name;
         public String version;
+
+        EngineInfo copy() {
+            EngineInfo c = new EngineInfo();
+            c.name = name;
+            c.version = version;
+            return c;
+        }
     }
 
     /** Classified bot identity; null for non-bot traffic. */
@@ -125,12 +460,27 @@ public class UaParser {
         public String name;
         public String category;
         public String vendor;
+
+        BotInfo copy() {
+            BotInfo c = new BotInfo();
+            c.name = name;
+            c.category = category;
+            c.vendor = vendor;
+            return c;
+        }
     }
 
     /** GPU info; populated only when a WebGL signal was supplied, else null. */
     public static class GPUInfo {
         public String vendor;
         public String renderer;
+
+        GPUInfo copy() {
+            GPUInfo c = new GPUInfo();
+            c.vendor = vendor;
+            c.renderer = renderer;
+            return c;
+        }
     }
 
     /** Undeclared automation (unlike is_bot): headless / Electron / webdriver. */
@@ -138,18 +488,40 @@ public class UaParser {
         public boolean headless;
         public boolean electron;
         public boolean webdriver;
+
+        AutomationInfo copy() {
+            AutomationInfo c = new AutomationInfo();
+            c.headless = headless;
+            c.electron = electron;
+            c.webdriver = webdriver;
+            return c;
+        }
     }
 
     /** UA vs Client Hints vs signals consistency; reasons is empty when consistent. */
     public static class IntegrityInfo {
         public boolean spoofed;
         public java.util.List<String> reasons;
+
+        IntegrityInfo copy() {
+            IntegrityInfo c = new IntegrityInfo();
+            c.spoofed = spoofed;
+            c.reasons = reasons == null ? null : new java.util.ArrayList<>(reasons);
+            return c;
+        }
     }
 
     /** Attack payload in the UA string (scanners, SQL-injection, XSS). */
     public static class SecurityInfo {
         public boolean suspicious;
         public String category;
+
+        SecurityInfo copy() {
+            SecurityInfo c = new SecurityInfo();
+            c.suspicious = suspicious;
+            c.category = category;
+            return c;
+        }
     }
 
     /** Which inputs drove the result (data-quality provenance). */
@@ -160,6 +532,14 @@ public class UaParser {
         public boolean highEntropy;
         @SerializedName("signals_used")
         public boolean signalsUsed;
+
+        DetectionInfo copy() {
+            DetectionInfo c = new DetectionInfo();
+            c.clientHintsUsed = clientHintsUsed;
+            c.highEntropy = highEntropy;
+            c.signalsUsed = signalsUsed;
+            return c;
+        }
     }
 
     public static class Result {
@@ -167,6 +547,10 @@ public class UaParser {
         @SerializedName("result_version")
         public String resultVersion;
 
+        // Set on the empty Result an engine error reply decodes to, so it is
+        // never cached as if it were a parse. Not serialized.
+        transient boolean engineError;
+
         public String ua;
         public OSInfo os;
         public BrowserInfo browser;
@@ -210,6 +594,77 @@ public class UaParser {
 
         /** Non-null only when a WebGL signal was provided. */
         public GPUInfo gpu;
+
+        /**
+         * @return a deep copy; the JVM result cache hands these out so cached
+         * entries are never exposed to caller mutation.
+         */
+        public Result copy() {
+            Result c = new Result();
+            c.resultVersion = resultVersion;
+            c.ua = ua;
+            c.os = os == null ? null : os.copy();
+            c.browser = browser == null ? null : browser.copy();
+            c.device = device == null ? null : device.copy();
+            c.cpu = cpu == null ? null : cpu.copy();
+            c.engine = engine == null ? null : engine.copy();
+            c.category = category;
+            c.isBot = isBot;
+            c.isAiCrawler = isAiCrawler;
+            c.isFrozenUa = isFrozenUa;
+            c.isMobile = isMobile;
+            c.isDesktop = isDesktop;
+            c.isTouchCapable = isTouchCapable;
+            c.isChromeFamily = isChromeFamily;
+            c.isAppleSilicon = isAppleSilicon;
+            c.automation = automation == null ? null : automation.copy();
+            c.integrity = integrity == null ? null : integrity.copy();
+            c.security = security == null ? null : security.copy();
+            c.detection = detection == null ? null : detection.copy();
+            c.classHash = classHash;
+            c.bot = bot == null ? null : bot.copy();
+            c.gpu = gpu == null ? null : gpu.copy();
+            return c;
+        }
+    }
+
+    /** Point-in-time counters of the JVM result cache (see {@link Config#jvmCacheSize}). */
+    public static class CacheStats {
+        public final long hits;
+        public final long misses;
+        public final long evictions;
+        public final int size;
+        /** Maximum entries; 0 for an off-heap cache bounded by bytes alone. */
+        public final int capacity;
+        /**
+         * Estimated heap held by cached entries, 0 without
+         * {@link Config#jvmCacheMaxBytes}; off-heap, the direct memory used.
+         */
+        public final long bytes;
+        public final long maxBytes;
+
+        CacheStats(long hits, long misses, long evictions, int size, int capacity, long bytes, long maxBytes) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.size = size;
+            this.capacity = capacity;
+            this.bytes = bytes;
+            this.maxBytes = maxBytes;
+        }
+
+        /** @return hits / (hits + misses), or 0 before the first lookup. */
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+
+        @Override
+        public String toString() {
+            return "CacheStats{hits=" + hits + ", misses=" + misses + ", evictions=" + evictions
+                    + ", size=" + size + ", capacity=" + capacity
+                    + (maxBytes > 0 ? ", bytes=" + bytes + ", maxBytes=" + maxBytes : "") + "}";
+        }
     }
 
     /**
@@ -223,8 +678,141 @@ public class UaParser {
      * Initializes the parser with a JSON configuration string.
      */
     public void init(String configJson) {
+        backend();
+        initBackend(configJson);
+    }
+
+    private void initBackend(String configJson) {
+        Config cfg;
+        try {
+            cfg = gson.fromJson(configJson, Config.class);
+        } catch (RuntimeException invalid) {
+            cfg = null;
+        }
+        if (cfg != null && cfg.wasmPoolSize > 1 && backend instanceof WasmBackend) {
+            // Grow before init so the fan-out below configures every instance.
+            ((WasmBackend) backend).ensurePoolSize(cfg.wasmPoolSize);
+        }
         backend.init(configJson);
-        startCorrectionsPush(configJson);
+        // Re-init may change engine behavior: start from an empty cache.
+        int cacheSize = cfg == null ? 0 : Math.max(0, cfg.jvmCacheSize);
+        long cacheBytes = cfg == null ? 0 : Math.max(0, cfg.jvmCacheMaxBytes);
+        cache = cacheSize > 0 || cacheBytes > 0 ? newCache(cacheSize, cacheBytes, cfg.jvmCacheOffHeap) : null;
+        long revalidateMillis = cfg == null ? 0 : cfg.jvmCacheRevalidateMillis;
+        generationCheckNanos = TimeUnit.MILLISECONDS.toNanos(revalidateMillis > 0 ? revalidateMillis : 1000);
+        cacheGeneration = -1;
+        nextGenerationCheck.set(System.nanoTime());
+        binaryResults = cfg != null && "binary".equalsIgnoreCase(cfg.resultEncoding);
+        warmupFile = cfg == null || cfg.warmupFile == null || cfg.warmupFile.isEmpty() ? null : cfg.warmupFile;
+        warmupEntries = cfg == null ? 0 : cfg.warmupEntries;
+        startCorrectionsPush(cfg);
+        startWarmup();
+    }
+
+    private static JvmResultCache newCache(int size, long maxBytes, boolean offHeap) {
+        if (!offHeap) {
+            return new ResultCache(size, maxBytes, ResultCache.defaultStripes());
+        }
+        if (maxBytes == 0) {
+            maxBytes = (long) size * OffHeapResultCache.DEFAULT_ENTRY_BYTES;
+        }
+        return new OffHeapResultCache(size, maxBytes, ResultCache.defaultStripes());
+    }
+
+    /**
+     * @return JVM result cache counters, or null when the cache is disabled.
+     */
+    public CacheStats getCacheStats() {
+        JvmResultCache c = cache;
+        return c == null ? null : c.stats();
+    }
+
+    /**
+     * @return the engine's counters (see {@link EngineStats}), or null when
+     * the backend's engine predates the stats export. On the WASM backend the
+     * pooled instances are summed.
+     */
+    public EngineStats getEngineStats() {
+        String json;
+        try {
+            json = backend().stats();
+        } catch (UnsupportedOperationException unsupported) {
+            return null;
+        }
+        JsonElement tree = json == null ? null : JsonParser.parseString(json);
+        if (tree != null && tree.isJsonArray()) {
+            List<EngineStats> parts = new ArrayList<>();
+            for (JsonElement part : tree.getAsJsonArray()) {
+                parts.add(statsOf(part));
+            }
+            return parts.isEmpty() ? null : EngineStats.merge(parts);
+        }
+        return tree == null ? null : statsOf(tree);
+    }
+
+    private EngineStats statsOf(JsonElement tree) {
+        if (tree.isJsonObject() && tree.getAsJsonObject().has("error")) {
+            throw new RuntimeException("Engine stats failed: " + tree);
+        }
+        return gson.fromJson(tree, EngineStats.class);
+    }
+
+    /**
+     * Installs a listener that receives per-stage timings (payload encoding,
+     * backend call, result decoding) of every parse and batch; null removes
+     * it. See {@link ParseMetrics} for a ready-made aggregate.
+     */
+    public void setParseListener(ParseListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Drops every JVM-cached result. Engine rule swaps need no call: the
+     * cache follows them by itself (see {@link Config#jvmCacheRevalidateMillis}).
+     */
+    public void clearCache() {
+        JvmResultCache c = cache;
+        if (c != null) {
+            c.clear();
+        }
+    }
+
+    /**
+     * Returns the engine generation the JVM cache holds results of. When a
+     * poll is due and the engine has hot-swapped its regexes or corrections
+     * since the last one, the cache is dropped first.
+     */
+    private long cacheGeneration(JvmResultCache c) {
+        long due = nextGenerationCheck.get();
+        long now = System.nanoTime();
+        if (now - due >= 0 && nextGenerationCheck.compareAndSet(due, now + generationCheckNanos)) {
+            long gen;
+            try {
+                gen = backend.generation();
+            } catch (RuntimeException e) {
+                gen = -1; // a failed poll keeps the cache; the next one retries
+            }
+            if (gen >= 0 && gen != cacheGeneration) {
+                // Bumped before the clear: parses still running under the
+                // old rules see another generation and skip their put.
+                cacheGeneration = gen;
+                c.clear();
+            }
+        }
+        return cacheGeneration;
+    }
+
+    // cachePut caches a result computed while the cache held generation gen.
+    // A swap noticed before the put skips it; one noticed during it may have
+    // cleared first, so the cache is dropped again.
+    private void cachePut(JvmResultCache c, long gen, String key, Result result) {
+        if (gen != cacheGeneration) {
+            return;
+        }
+        c.put(key, result);
+        if (gen != cacheGeneration) {
+            c.clear();
+        }
     }
 
     /**
@@ -234,7 +822,7 @@ public class UaParser {
      * then daily, on a daemon thread. Failures are non-fatal: the embedded
      * snapshot keeps serving.
      */
-    private void startCorrectionsPush(String configJson) {
+    private void startCorrectionsPush(Config cfg) {
         if (!(backend instanceof WasmBackend)) {
             return;
         }
@@ -242,12 +830,6 @@ public class UaParser {
         if (!correctionsPushStarted.compareAndSet(false, true)) {
             return;
         }
-        Config cfg;
-        try {
-            cfg = gson.fromJson(configJson, Config.class);
-        } catch (RuntimeException invalid) {
-            cfg = null;
-        }
         if (cfg != null && cfg.disableCorrectionsUpdate) {
             return;
         }
@@ -282,6 +864,8 @@ public class UaParser {
                             System.err.println("WARN: ua-parser corrections fetch status " + code + " (embedded rules stay active)");
                         } else if (!wasm.pushCorrections(out.toByteArray())) {
                             System.err.println("WARN: ua-parser corrections rejected by engine (keeping last good)");
+                        } else {
+                            clearCache(); // cached results predate the new rules
                         }
                     }
                 } catch (Exception e) {
@@ -296,9 +880,87 @@ public class UaParser {
             }
         }, "ua-parser-corrections");
         pusher.setDaemon(true);
+        correctionsPusher = pusher;
         pusher.start();
     }
 
+    /**
+     * WASM only: the module has no file access, so the host replays
+     * {@link Config#warmupFile} into the pooled instances, on a daemon thread
+     * so init returns at once.
+     */
+    private void startWarmup() {
+        String file = warmupFile;
+        if (file == null || !(backend instanceof WasmBackend)) {
+            return;
+        }
+        WasmBackend wasm = (WasmBackend) backend;
+        Thread loader = new Thread(() -> {
+            byte[] snapshot;
+            try {
+                snapshot = java.nio.file.Files.readAllBytes(java.nio.file.Paths.get(file));
+            } catch (java.nio.file.NoSuchFileException first) {
+                return; // first start: nothing saved yet
+            } catch (Exception e) {
+                System.err.println("WARN: ua-parser warm-up snapshot not read: " + e);
+                return;
+            }
+            if (!wasm.loadWarmup(snapshot)) {
+                System.err.println("WARN: ua-parser warm-up snapshot rejected by engine");
+            }
+        }, "ua-parser-warmup");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Writes a warm-up snapshot of the engine's hottest cache keys to
+     * {@code file} (see {@link Config#warmupFile}); {@link #close()} does
+     * this automatically when the config names a file.
+     *
+     * @throws UnsupportedOperationException when the engine predates warm-up
+     *         snapshots.
+     */
+    public void saveWarmup(java.nio.file.Path file) {
+        backend().saveWarmup(file.toString(), warmupEntries);
+    }
+
+    /**
+     * Releases the engine this parser owns (native backends create one per
+     * parser; see {@link JnaBackend#close()}), saves the warm-up snapshot if
+     * configured and stops the WASM corrections push. Parses after close
+     * return error results; the JVM result cache is dropped so it does not
+     * keep answering them.
+     */
+    @Override
+    public void close() {
+        // A parser still starting is closed as soon as its startup ends.
+        readiness.whenComplete((ready, failed) -> {
+            JvmResultCache c = cache;
+            cache = null;
+            if (c != null) {
+                c.clear();
+            }
+            Thread pusher = correctionsPusher;
+            if (pusher != null) {
+                pusher.interrupt();
+            }
+            ParserBackend b = backend;
+            String file = warmupFile;
+            if (file != null && b instanceof WasmBackend) {
+                // Native engines save their own snapshot when closed.
+                try {
+                    b.saveWarmup(file, warmupEntries);
+                } catch (RuntimeException e) {
+                    System.err.println("WARN: ua-parser warm-up snapshot not saved: " + e);
+                }
+            }
+            if (b != null) {
+                b.close();
+            }
+        });
+    }
+
     /** Screen geometry signal ({w, h, dpr}). */
     public static class ScreenInfo {
         public int w;
@@ -324,6 +986,155 @@ public class UaParser {
         public boolean webdriver;
     }
 
+    /**
+     * Per-call options. Today this holds the field projection: request only
+     * the {@link Result} sections you read and the engine skips enrichment
+     * nobody asked for (automation, integrity, security, detection, OS labels,
+     * class hash) and leaves the other sections out of the result. Unrequested
+     * object sections come back {@code null}, booleans {@code false};
+     * {@code resultVersion} and {@code ua} are always set.
+     *
+     * <pre>{@code
+     * ParseOptions opts = ParseOptions.builder()
+     *         .fields(Field.BROWSER, Field.OS, Field.DEVICE, Field.IS_BOT)
+     *         .build();
+     * Result r = parser.parse(ua, headers, null, opts);
+     * }</pre>
+     *
+     * Immutable and thread-safe; build once and reuse. Projected results are
+     * cached apart from full ones.
+     */
+    public static final class ParseOptions {
+        /** Every section, the behavior of the overloads without options. */
+        public static final ParseOptions ALL = new ParseOptions(EnumSet.allOf(Field.class));
+
+        /** Top-level {@link Result} sections, named by their JSON key. */
+        public enum Field {
+            BROWSER("browser"),
+            OS("os"),
+            DEVICE("device"),
+            CPU("cpu"),
+            ENGINE("engine"),
+            CATEGORY("category"),
+            IS_BOT("is_bot"),
+            IS_AI_CRAWLER("is_ai_crawler"),
+            IS_FROZEN_UA("is_frozen_ua"),
+            IS_MOBILE("is_mobile"),
+            IS_DESKTOP("is_desktop"),
+            IS_TOUCH_CAPABLE("is_touch_capable"),
+            IS_CHROME_FAMILY("is_chrome_family"),
+            IS_APPLE_SILICON("is_apple_silicon"),
+            AUTOMATION("automation"),
+            INTEGRITY("integrity"),
+            SECURITY("security"),
+            DETECTION("detection"),
+            CLASS_HASH("class_hash"),
+            BOT("bot"),
+            GPU("gpu");
+
+            final String jsonName;
+
+            Field(String jsonName) {
+                this.jsonName = jsonName;
+            }
+        }
+
+        private final Set<Field> fields;
+        private final boolean all;
+        // Engine payload form, e.g. ["browser","is_bot"]; null for ALL.
+        final List<String> fieldNames;
+        // Bit per Field ordinal, part of the request key; 0 for ALL.
+        final int mask;
+
+        private ParseOptions(EnumSet<Field> fields) {
+            this.fields = Collections.unmodifiableSet(fields);
+            this.all = fields.size() == Field.values().length;
+            int m = 0;
+            List<String> names = new ArrayList<>(fields.size());
+            for (Field f : fields) {
+                m |= 1 << f.ordinal();
+                names.add(f.jsonName);
+            }
+            this.mask = all ? 0 : m;
+            this.fieldNames = all ? null : Collections.unmodifiableList(names);
+        }
+
+        public static Builder builder() {
+            return new Builder();
+        }
+
+        /** Shorthand for {@code builder().fields(fields).build()}. */
+        public static ParseOptions fields(Field... fields) {
+            return builder().fields(fields).build();
+        }
+
+        /** The requested sections (all of them for {@link #ALL}). */
+        public Set<Field> fields() {
+            return fields;
+        }
+
+        public boolean includes(Field field) {
+            return fields.contains(field);
+        }
+
+        boolean isAll() {
+            return all;
+        }
+
+        // Clears the sections this projection excludes. The engine already
+        // leaves them out of JSON results; the binary encoding has fixed
+        // slots and carries them as zero values.
+        void project(Result r) {
+            if (all || r == null) {
+                return;
+            }
+            if (!includes(Field.BROWSER)) r.browser = null;
+            if (!includes(Field.OS)) r.os = null;
+            if (!includes(Field.DEVICE)) r.device = null;
+            if (!includes(Field.CPU)) r.cpu = null;
+            if (!includes(Field.ENGINE)) r.engine = null;
+            if (!includes(Field.CATEGORY)) r.category = null;
+            if (!includes(Field.IS_BOT)) r.isBot = false;
+            if (!includes(Field.IS_AI_CRAWLER)) r.isAiCrawler = false;
+            if (!includes(Field.IS_FROZEN_UA)) r.isFrozenUa = false;
+            if (!includes(Field.IS_MOBILE)) r.isMobile = false;
+            if (!includes(Field.IS_DESKTOP)) r.isDesktop = false;
+            if (!includes(Field.IS_TOUCH_CAPABLE)) r.isTouchCapable = false;
+            if (!includes(Field.IS_CHROME_FAMILY)) r.isChromeFamily = false;
+            if (!includes(Field.IS_APPLE_SILICON)) r.isAppleSilicon = false;
+            if (!includes(Field.AUTOMATION)) r.automation = null;
+            if (!includes(Field.INTEGRITY)) r.integrity = null;
+            if (!includes(Field.SECURITY)) r.security = null;
+            if (!includes(Field.DETECTION)) r.detection = null;
+            if (!includes(Field.CLASS_HASH)) r.classHash = null;
+            if (!includes(Field.BOT)) r.bot = null;
+            if (!includes(Field.GPU)) r.gpu = null;
+        }
+
+        @Override
+        public String toString() {
+            return all ? "ParseOptions{ALL}" : "ParseOptions{fields=" + fieldNames + "}";
+        }
+
+        public static final class Builder {
+            private final EnumSet<Field> fields = EnumSet.noneOf(Field.class);
+
+            private Builder() {
+            }
+
+            /** Adds sections to the projection; call repeatedly or with several. */
+            public Builder fields(Field... fields) {
+                Collections.addAll(this.fields, fields);
+                return this;
+            }
+
+            /** Sections added so far; no sections at all means {@link #ALL}. */
+            public ParseOptions build() {
+                return fields.isEmpty() ? ALL : new ParseOptions(EnumSet.copyOf(fields));
+            }
+        }
+    }
+
     /**
      * Parses a User-Agent string with optional headers.
      */
@@ -337,24 +1148,567 @@ public class UaParser {
      * Hints cannot — e.g. iPads posing as Macs in Safari.
      */
     public Result parse(String userAgent, Map<String, String> headers, Signals signals) {
-        if (headers == null) {
-            headers = new HashMap<>();
+        return parse(userAgent, headers, signals, ParseOptions.ALL);
+    }
+
+    /**
+     * {@link #parse(String, Map, Signals)} restricted to the sections in
+     * {@code options} (see {@link ParseOptions}).
+     */
+    public Result parse(String userAgent, Map<String, String> headers, Signals signals, ParseOptions options) {
+        backend(); // an async start settles the cache and encoding first
+        ParseListener l = listener;
+        JvmResultCache c = cache;
+        String key = null;
+        long gen = -1;
+        if (c != null) {
+            gen = cacheGeneration(c);
+            key = RequestKey.of(userAgent, headers, signals, options);
+            Result hit = c.get(key);
+            if (hit != null) {
+                if (l != null) {
+                    l.onParse(0, 0, 0, true);
+                }
+                return hit;
+            }
+        }
+        StageTimer t = StageTimer.start(l);
+        Result result = binaryResults && bytesSupported
+                ? parseDirect(userAgent, headers, signals, options, t)
+                : parseResult(gson.toJson(payloadOf(userAgent, headers, signals, options)), t);
+        options.project(result);
+        t.decoded();
+        if (c != null && result != null && !result.engineError) {
+            cachePut(c, gen, key, result);
+        }
+        if (l != null) {
+            l.onParse(t.encodeNanos, t.backendNanos, t.decodeNanos, false);
+        }
+        return result;
+    }
+
+    /**
+     * Parses like {@link #parse(String, Map)} but returns a {@link ResultView}
+     * over the engine's result JSON: fields are decoded only when read, so a
+     * caller needing two or three of them skips building the Result graph.
+     */
+    public ResultView parseView(String userAgent, Map<String, String> headers) {
+        return parseView(userAgent, headers, null, ParseOptions.ALL);
+    }
+
+    /**
+     * {@link #parseView(String, Map)} with signals and a field projection.
+     * Views always use the JSON result encoding and bypass the JVM result
+     * cache, which holds decoded Results.
+     */
+    public ResultView parseView(String userAgent, Map<String, String> headers, Signals signals,
+                                ParseOptions options) {
+        ParseListener l = listener;
+        StageTimer t = StageTimer.start(l);
+        String payloadJson = gson.toJson(payloadOf(userAgent, headers, signals, options));
+        t.encoded();
+        String resJson = parse(payloadJson);
+        t.crossed();
+        ResultView view = ResultView.of(resJson);
+        t.decoded();
+        if (l != null) {
+            l.onParse(t.encodeNanos, t.backendNanos, t.decodeNanos, false);
+        }
+        return view;
+    }
+
+    /**
+     * Parses into a {@link CompactResult}: the categorical columns as codes
+     * of {@link #compactDictionaries()} and every boolean as a bit, coded
+     * straight from the engine's result JSON without decoding a Result.
+     * Like views, compact results bypass the JVM result cache.
+     */
+    public CompactResult parseCompact(String userAgent, Map<String, String> headers) {
+        return parseCompact(userAgent, headers, null);
+    }
+
+    /** {@link #parseCompact(String, Map)} with browser signals. */
+    public CompactResult parseCompact(String userAgent, Map<String, String> headers, Signals signals) {
+        ResultView view = parseView(userAgent, headers, signals, CompactResult.FIELDS);
+        return CompactResult.of(view, compactDictionaries);
+    }
+
+    /** The dictionaries behind {@link #parseCompact} codes. */
+    public CompactResult.Dictionaries compactDictionaries() {
+        return compactDictionaries;
+    }
+
+    /**
+     * {@link #parseBatch(List)} for analytics: appends one row per request,
+     * in order, to {@code into}, coded with its dictionaries. Duplicate
+     * requests are parsed and coded once; no per-row object is created.
+     * {@link Request#options} is ignored, the engine is asked only for the
+     * sections a compact row reads.
+     */
+    public void parseCompactBatch(List<Request> requests, CompactBatch into) {
+        backend(); // see parse
+        ParseListener l = listener;
+        StageTimer t = StageTimer.start(l);
+        int n = requests.size();
+        Map<String, Integer> uniqueIndex = new HashMap<>();
+        List<Map<String, Object>> uniquePayloads = new ArrayList<>();
+        int[] slot = new int[n];
+        for (int i = 0; i < n; i++) {
+            Request r = requests.get(i);
+            String key = RequestKey.of(r.ua, r.headers, r.signals, CompactResult.FIELDS);
+            Integer u = uniqueIndex.get(key);
+            if (u == null) {
+                u = uniquePayloads.size();
+                uniqueIndex.put(key, u);
+                uniquePayloads.add(payloadOf(r.ua, r.headers, r.signals, CompactResult.FIELDS));
+            }
+            slot[i] = u;
+        }
+        t.encoded();
+
+        CompactResult.Dictionaries dictionaries = into.dictionaries();
+        CompactResult[] rows = new CompactResult[uniquePayloads.size()];
+        for (int from = 0; from < rows.length; from += MAX_BATCH_CHUNK) {
+            int to = Math.min(from + MAX_BATCH_CHUNK, rows.length);
+            List<ResultView> views = parseChunkViews(uniquePayloads.subList(from, to), t);
+            for (int u = from; u < to; u++) {
+                ResultView v = views.get(u - from);
+                rows[u] = v == null
+                        ? new CompactResult(dictionaries, new int[CompactResult.Column.values().length], 0)
+                        : CompactResult.of(v, dictionaries);
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            into.add(rows[slot[i]]);
+        }
+        t.decoded();
+        if (l != null) {
+            l.onBatch(n, uniquePayloads.size(), t.encodeNanos, t.backendNanos, t.decodeNanos);
+        }
+    }
+
+    /**
+     * Starts an aggregation session grouping by {@code dimensions}, Result
+     * JSON paths such as {@code "browser.name"}, {@code "os.platform"} or
+     * {@code "is_bot"} (see {@link Aggregator#availableDimensions()}). The
+     * engine counts and returns only grouped counts; engines predating
+     * aggregation sessions are counted in the JVM instead.
+     * @throws IllegalArgumentException for unknown, repeated or no dimensions.
+     */
+    public Aggregator aggregator(String... dimensions) {
+        List<String> dims = Aggregator.checkDimensions(dimensions);
+        long session;
+        try {
+            session = backend().openAggregator(gson.toJson(dims));
+        } catch (UnsupportedOperationException unsupported) {
+            session = 0;
         }
+        return new Aggregator(this, dims, session);
+    }
+
+    // aggregate feeds requests to an engine-side session, MAX_BATCH_CHUNK at
+    // a time. No dedupe: every request counts, and repeats hit the engine cache.
+    void aggregate(long session, List<Request> requests) {
+        ParseListener l = listener;
+        StageTimer t = StageTimer.start(l);
+        int n = requests.size();
+        for (int from = 0; from < n; from += MAX_BATCH_CHUNK) {
+            int to = Math.min(from + MAX_BATCH_CHUNK, n);
+            List<Map<String, Object>> payloads = new ArrayList<>(to - from);
+            for (Request r : requests.subList(from, to)) {
+                payloads.add(payloadOf(r.ua, r.headers, r.signals, ParseOptions.ALL));
+            }
+            String batchJson = gson.toJson(payloads);
+            t.encoded();
+            backend().aggregate(session, batchJson);
+            t.crossed();
+        }
+        t.decoded();
+        if (l != null) {
+            l.onBatch(n, n, t.encodeNanos, t.backendNanos, t.decodeNanos);
+        }
+    }
+
+    // parseTrees is parseBatch without decoding: one result tree per request,
+    // in order, duplicates sharing one (read-only) tree. Bypasses the JVM
+    // cache; used by the JVM aggregation fallback.
+    List<JsonElement> parseTrees(List<Request> requests) {
+        backend(); // see parse
+        ParseListener l = listener;
+        StageTimer t = StageTimer.start(l);
+        int n = requests.size();
+        Map<String, Integer> uniqueIndex = new HashMap<>();
+        List<Map<String, Object>> uniquePayloads = new ArrayList<>();
+        int[] slot = new int[n];
+        for (int i = 0; i < n; i++) {
+            Request r = requests.get(i);
+            String key = RequestKey.of(r.ua, r.headers, r.signals, ParseOptions.ALL);
+            Integer u = uniqueIndex.get(key);
+            if (u == null) {
+                u = uniquePayloads.size();
+                uniqueIndex.put(key, u);
+                uniquePayloads.add(payloadOf(r.ua, r.headers, r.signals, ParseOptions.ALL));
+            }
+            slot[i] = u;
+        }
+        t.encoded();
+
+        JsonArray parsed = new JsonArray(uniquePayloads.size());
+        for (int from = 0; from < uniquePayloads.size(); from += MAX_BATCH_CHUNK) {
+            int to = Math.min(from + MAX_BATCH_CHUNK, uniquePayloads.size());
+            for (JsonElement element : parseChunk(uniquePayloads.subList(from, to), t)) {
+                parsed.add(element);
+            }
+        }
+        List<JsonElement> trees = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            trees.add(parsed.get(slot[i]));
+        }
+        t.decoded();
+        if (l != null) {
+            l.onBatch(n, uniquePayloads.size(), t.encodeNanos, t.backendNanos, t.decodeNanos);
+        }
+        return trees;
+    }
+
+    /**
+     * {@link #parse(String, Map)} on the default async executor: virtual
+     * threads on JDK 21+, otherwise a daemon pool sized to the CPU count.
+     * Never blocks the caller, including while the parser is still starting.
+     */
+    public CompletableFuture<Result> parseAsync(String userAgent, Map<String, String> headers) {
+        return parseAsync(userAgent, headers, null, AsyncExecutor.INSTANCE);
+    }
+
+    /** {@link #parse(String, Map, Signals)} on the default async executor. */
+    public CompletableFuture<Result> parseAsync(String userAgent, Map<String, String> headers, Signals signals) {
+        return parseAsync(userAgent, headers, signals, AsyncExecutor.INSTANCE);
+    }
+
+    /**
+     * {@link #parse(String, Map, Signals)} on {@code executor}, once the
+     * parser is ready; completes exceptionally if startup failed.
+     */
+    public CompletableFuture<Result> parseAsync(String userAgent, Map<String, String> headers, Signals signals,
+                                                Executor executor) {
+        return parseAsync(userAgent, headers, signals, ParseOptions.ALL, executor);
+    }
+
+    /** {@link #parse(String, Map, Signals, ParseOptions)} on the default async executor. */
+    public CompletableFuture<Result> parseAsync(String userAgent, Map<String, String> headers, Signals signals,
+                                                ParseOptions options) {
+        return parseAsync(userAgent, headers, signals, options, AsyncExecutor.INSTANCE);
+    }
+
+    /** {@link #parse(String, Map, Signals, ParseOptions)} on {@code executor}, once the parser is ready. */
+    public CompletableFuture<Result> parseAsync(String userAgent, Map<String, String> headers, Signals signals,
+                                                ParseOptions options, Executor executor) {
+        return readiness.thenApplyAsync(ready -> parse(userAgent, headers, signals, options), executor);
+    }
+
+    /** {@link #parseBatch(List)} on the default async executor. */
+    public CompletableFuture<List<Result>> parseBatchAsync(List<Request> requests) {
+        return parseBatchAsync(requests, AsyncExecutor.INSTANCE);
+    }
+
+    /** {@link #parseBatch(List)} on {@code executor}, once the parser is ready. */
+    public CompletableFuture<List<Result>> parseBatchAsync(List<Request> requests, Executor executor) {
+        return readiness.thenApplyAsync(ready -> parseBatch(requests), executor);
+    }
+
+    // Default executor of the parseAsync family, created on first use.
+    private static final class AsyncExecutor {
+        static final Executor INSTANCE = create();
+
+        private static Executor create() {
+            if (Runtime.version().feature() >= 21) {
+                // Executors.newVirtualThreadPerTaskExecutor, absent from the
+                // Java 11 API this class compiles against.
+                try {
+                    return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                } catch (ReflectiveOperationException | RuntimeException unavailable) {
+                    // fall through to platform threads
+                }
+            }
+            return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), task -> {
+                Thread t = new Thread(task, "ua-parser-async");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    // parseDirect is the allocation-free request path: payload written into
+    // thread-local buffers by hand, result decoded from a reused array.
+    private Result parseDirect(String userAgent, Map<String, String> headers, Signals signals, ParseOptions options,
+                               StageTimer t) {
+        ParseScratch scratch = ParseScratch.get();
+        try {
+            int inLen = scratch.writePayload(userAgent, headers, signals, options);
+            t.encoded();
+            ParserBackend backend = backend();
+            int n = backend.parseBytes(scratch.in, inLen, scratch.out);
+            if (n < 0) {
+                // First result larger than the buffer: grow once and retry
+                // (the retry is an engine-cache hit when the LRU is on).
+                scratch.ensureOutCapacity(-n);
+                n = backend.parseBytes(scratch.in, inLen, scratch.out);
+                if (n < 0) {
+                    throw new RuntimeException("ParseBytes result does not fit in " + scratch.out.capacity() + " bytes");
+                }
+            }
+            scratch.readResult(n);
+            t.crossed();
+            if (!BinaryResultDecoder.isBinary(scratch.result, n)) {
+                // The engine's JSON error text, decoded as on the JSON path.
+                return errorResult(new String(scratch.result, 0, n, java.nio.charset.StandardCharsets.UTF_8));
+            }
+            return BinaryResultDecoder.decode(scratch.result, n);
+        } catch (UnsupportedOperationException unsupported) {
+            bytesSupported = false;
+            return parseResult(gson.toJson(payloadOf(userAgent, headers, signals, options)), t);
+        }
+    }
+
+    private Result parseResult(String payloadJson, StageTimer t) {
+        t.encoded();
+        if (binaryResults) {
+            try {
+                byte[] res = backend().parseBinary(payloadJson);
+                t.crossed();
+                if (res == null || BinaryResultDecoder.isBinary(res)) {
+                    return res == null ? null : BinaryResultDecoder.decode(res);
+                }
+                // Not binary: the engine's JSON error text, decoded as on the JSON path.
+                return errorResult(new String(res, java.nio.charset.StandardCharsets.UTF_8));
+            } catch (UnsupportedOperationException unsupported) {
+                // Engine without the export, or a newer format version.
+                binaryResults = false;
+            }
+        }
+        String resJson = parse(payloadJson);
+        t.crossed();
+        return isErrorJson(resJson) ? errorResult(resJson) : gson.fromJson(resJson, Result.class);
+    }
+
+    // errorResult decodes an engine error reply, flagged so it is not cached.
+    private Result errorResult(String json) {
+        Result result = gson.fromJson(json, Result.class);
+        if (result == null) {
+            result = new Result();
+        }
+        result.engineError = true;
+        return result;
+    }
+
+    // isErrorJson tells an engine error reply ({"error": ...}) from a result
+    // without parsing it: results never start with an "error" member.
+    static boolean isErrorJson(String json) {
+        if (json == null) {
+            return false;
+        }
+        int i = ResultView.ws(json, 0);
+        if (i >= json.length() || json.charAt(i) != '{') {
+            return false;
+        }
+        i = ResultView.ws(json, i + 1);
+        return json.startsWith("\"error\"", i);
+    }
+
+    /** One entry of a {@link #parseBatch(List)} call. */
+    public static class Request {
+        public String ua;
+        public Map<String, String> headers;
+        public Signals signals;
+        /** Field projection for this entry; null means {@link ParseOptions#ALL}. */
+        public ParseOptions options;
+
+        public Request(String ua, Map<String, String> headers) {
+            this(ua, headers, null);
+        }
+
+        public Request(String ua, Map<String, String> headers, Signals signals) {
+            this(ua, headers, signals, null);
+        }
+
+        public Request(String ua, Map<String, String> headers, Signals signals, ParseOptions options) {
+            this.ua = ua;
+            this.headers = headers;
+            this.signals = signals;
+            this.options = options;
+        }
+    }
+
+    // Upper bound on unique payloads per backend call, so one huge batch
+    // never materializes a multi-hundred-MB JSON string on either side.
+    private static final int MAX_BATCH_CHUNK = 1024;
+
+    /**
+     * Parses many requests with as few backend crossings as possible.
+     * Requests with identical consumed inputs (UA, Client Hint headers,
+     * signals) are parsed once per batch; every input position still gets its
+     * own {@link Result} instance. Results are returned in input order.
+     */
+    public List<Result> parseBatch(List<Request> requests) {
+        backend(); // see parse
+        ParseListener l = listener;
+        StageTimer t = StageTimer.start(l);
+        int n = requests.size();
+
+        JvmResultCache c = cache;
+        Result[] cached = c == null ? null : new Result[n];
+        long gen = c == null ? -1 : cacheGeneration(c);
+
+        // Dedupe: slot[i] is the index of request i's unique payload, or -1
+        // when the JVM cache already answered it.
+        Map<String, Integer> uniqueIndex = new HashMap<>();
+        List<Map<String, Object>> uniquePayloads = new ArrayList<>();
+        List<String> uniqueKeys = new ArrayList<>();
+        List<ParseOptions> uniqueOptions = new ArrayList<>();
+        int[] slot = new int[n];
+        for (int i = 0; i < n; i++) {
+            Request r = requests.get(i);
+            ParseOptions options = r.options == null ? ParseOptions.ALL : r.options;
+            String key = RequestKey.of(r.ua, r.headers, r.signals, options);
+            Integer u = uniqueIndex.get(key);
+            if (u == null) {
+                if (c != null) {
+                    Result hit = c.get(key);
+                    if (hit != null) {
+                        cached[i] = hit;
+                        slot[i] = -1;
+                        continue;
+                    }
+                }
+                u = uniquePayloads.size();
+                uniqueIndex.put(key, u);
+                uniqueKeys.add(key);
+                uniqueOptions.add(options);
+                uniquePayloads.add(payloadOf(r.ua, r.headers, r.signals, options));
+            }
+            slot[i] = u;
+        }
+        t.encoded();
+
+        JsonArray parsed = new JsonArray(uniquePayloads.size());
+        for (int from = 0; from < uniquePayloads.size(); from += MAX_BATCH_CHUNK) {
+            int to = Math.min(from + MAX_BATCH_CHUNK, uniquePayloads.size());
+            for (JsonElement element : parseChunk(uniquePayloads.subList(from, to), t)) {
+                parsed.add(element);
+            }
+        }
+
+        if (c != null) {
+            for (int u = 0; u < uniqueKeys.size(); u++) {
+                JsonElement element = parsed.get(u);
+                // Engine errors and missing replies are answered, never cached.
+                if (element.isJsonObject() && !element.getAsJsonObject().has("error")) {
+                    cachePut(c, gen, uniqueKeys.get(u), decode(element, uniqueOptions.get(u)));
+                }
+            }
+        }
+
+        List<Result> results = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            // Decode per position: duplicates never share a mutable Result.
+            results.add(slot[i] < 0 ? cached[i] : decode(parsed.get(slot[i]), uniqueOptions.get(slot[i])));
+        }
+        t.decoded();
+        if (l != null) {
+            l.onBatch(n, uniquePayloads.size(), t.encodeNanos, t.backendNanos, t.decodeNanos);
+        }
+        return results;
+    }
+
+    private Result decode(JsonElement element, ParseOptions options) {
+        Result result = gson.fromJson(element, Result.class);
+        options.project(result);
+        return result;
+    }
+
+    private JsonArray parseChunk(List<Map<String, Object>> payloads, StageTimer t) {
+        if (batchSupported) {
+            try {
+                String batchJson = gson.toJson(payloads);
+                t.encoded();
+                String resJson = backend().parseBatch(batchJson);
+                t.crossed();
+                JsonElement tree = resJson == null ? null : JsonParser.parseString(resJson);
+                if (tree == null || !tree.isJsonArray() || tree.getAsJsonArray().size() != payloads.size()) {
+                    throw new RuntimeException("Batch parse failed: " + resJson);
+                }
+                t.decoded();
+                return tree.getAsJsonArray();
+            } catch (UnsupportedOperationException unsupported) {
+                batchSupported = false;
+            }
+        }
+        // Engine predates the batch export: one crossing per unique payload.
+        JsonArray out = new JsonArray(payloads.size());
+        for (Map<String, Object> payload : payloads) {
+            String payloadJson = gson.toJson(payload);
+            t.encoded();
+            String resJson = parse(payloadJson);
+            t.crossed();
+            out.add(resJson == null ? JsonNull.INSTANCE : JsonParser.parseString(resJson));
+            t.decoded();
+        }
+        return out;
+    }
+
+    // parseChunk for compact rows: the result array is indexed, not decoded.
+    private List<ResultView> parseChunkViews(List<Map<String, Object>> payloads, StageTimer t) {
+        if (batchSupported) {
+            try {
+                String batchJson = gson.toJson(payloads);
+                t.encoded();
+                String resJson = backend().parseBatch(batchJson);
+                t.crossed();
+                List<ResultView> views;
+                try {
+                    views = resJson == null ? null : ResultView.ofArray(resJson);
+                } catch (IllegalArgumentException malformed) {
+                    views = null;
+                }
+                if (views == null || views.size() != payloads.size()) {
+                    throw new RuntimeException("Batch parse failed: " + resJson);
+                }
+                t.decoded();
+                return views;
+            } catch (UnsupportedOperationException unsupported) {
+                batchSupported = false;
+            }
+        }
+        List<ResultView> views = new ArrayList<>(payloads.size());
+        for (Map<String, Object> payload : payloads) {
+            String payloadJson = gson.toJson(payload);
+            t.encoded();
+            String resJson = parse(payloadJson);
+            t.crossed();
+            views.add(resJson == null ? null : ResultView.of(resJson));
+            t.decoded();
+        }
+        return views;
+    }
+
+    private static Map<String, Object> payloadOf(String userAgent, Map<String, String> headers, Signals signals,
+                                                 ParseOptions options) {
         Map<String, Object> payload = new HashMap<>();
         payload.put("ua", userAgent);
-        payload.put("headers", headers);
+        payload.put("headers", headers == null ? new HashMap<String, String>() : headers);
         if (signals != null) {
             payload.put("signals", signals);
         }
-
-        String resJson = parse(gson.toJson(payload));
-        return gson.fromJson(resJson, Result.class);
+        if (!options.isAll()) {
+            payload.put("fields", options.fieldNames);
+        }
+        return payload;
     }
 
     /**
      * Parses data and returns a JSON result string.
      */
     public String parse(String payloadJson) {
-        return backend.parse(payloadJson);
+        return backend().parse(payloadJson);
     }
 }
\ No newline at end of file
@@ -2,8 +2,10 @@ package com.github.octanium91;
 
 import com.dylibso.chicory.compiler.MachineFactoryCompiler;
 import com.dylibso.chicory.runtime.ByteArrayMemory;
+import com.dylibso.chicory.runtime.CompiledModule;
 import com.dylibso.chicory.runtime.Instance;
 import com.dylibso.chicory.runtime.ImportValues;
+import com.dylibso.chicory.runtime.Machine;
 import com.dylibso.chicory.runtime.Memory;
 import com.dylibso.chicory.runtime.ExportFunction;
 import com.dylibso.chicory.wasm.Parser;
@@ -11,88 +13,253 @@ import com.dylibso.chicory.wasm.WasmModule;
 import com.dylibso.chicory.wasi.WasiOptions;
 import com.dylibso.chicory.wasi.WasiPreview1;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
+/**
+ * WASM fallback backend. A Chicory instance is single-threaded (a WASI
+ * preview1 reactor), so the backend keeps a bounded pool of independent
+ * instances built from the same parsed and compiled module: parse checks one
+ * out and returns it, while init and pushCorrections fan out to every
+ * instance. Each instance owns its own engine and LRU cache.
+ */
 public class WasmBackend implements ParserBackend {
-    // Parsing the 5+ MB module is expensive; do it once per JVM.
+    // Parsing the 5+ MB module and compiling it to JVM bytecode are both
+    // expensive; do each once per JVM and share them across pool instances.
+    // Unused when the JAR carries the precompiled module.
     private static volatile WasmModule cachedModule;
+    private static volatile Function<Instance, Machine> cachedMachineFactory;
 
-    private final Instance instance;
-    private final Memory memory;
-    private final ExportFunction malloc;
-    private final ExportFunction free;
-    private final ExportFunction initUA;
-    private final ExportFunction parseUA;
-    private final ExportFunction updateCorrections; // null on wasm modules predating the export
-    private final WasiPreview1 wasi;
+    // Every instance ever created (fan-out target) vs the ones currently idle.
+    private final List<WasmEngine> engines = new CopyOnWriteArrayList<>();
+    // Unbounded queue type, but it only ever holds pool members, so at most
+    // getPoolSize() entries; parse blocks in take() while all are busy.
+    private final BlockingQueue<WasmEngine> idle = new LinkedBlockingQueue<>();
 
-    public WasmBackend() {
-        try {
-            WasiOptions options = WasiOptions.builder()
-                    .withStdout(System.out)
-                    .withStderr(System.err)
-                    .build();
-            this.wasi = WasiPreview1.builder().withOptions(options).build();
-
-            ImportValues imports = ImportValues.builder()
-                    .withFunctions(Arrays.asList(wasi.toHostFunctions()))
-                    .build();
-
-            this.instance = Instance.builder(loadModule())
-                    .withImportValues(imports)
-                    // Translate WASM to JVM bytecode instead of interpreting:
-                    // cuts init and parse latency by orders of magnitude.
-                    .withMachineFactory(MachineFactoryCompiler::compile)
-                    .withMemoryFactory(ByteArrayMemory::new)
-                    .build();
+    // Runs fan-out work (instance init, corrections pushes and their
+    // re-warm parses) one thread per instance at most. Not the common
+    // ForkJoinPool: these tasks compile whole regex databases, and the
+    // application's own common-pool work must not queue behind them. Idle
+    // threads time out, so a quiet backend holds none.
+    private final ThreadPoolExecutor fanOutExecutor;
+
+    // Replayed onto instances added by a later resize, so every pool member
+    // runs the same config and correction rules.
+    private volatile byte[] lastConfig;
+    private volatile byte[] lastCorrections;
+    // Bumped by every corrections push; see generation().
+    private volatile long generation;
 
-            this.memory = instance.memory();
-            this.malloc = instance.export("malloc");
-            this.free = instance.export("free");
-            this.initUA = instance.export("initUA");
-            this.parseUA = instance.export("parseUA");
-            this.updateCorrections = tryExport(instance, "updateCorrections");
+    // Aggregation sessions by Java-side id. Each opens an engine-side session
+    // lazily on whichever instance first takes one of its batches.
+    private final Map<Long, PooledAggregator> aggregators = new ConcurrentHashMap<>();
+    private final AtomicLong nextAggregator = new AtomicLong();
 
-            // Go wasip1 reactors require _initialize before any other export.
-            instance.export("_initialize").apply();
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to initialize WASM backend", e);
+    public WasmBackend() {
+        this(1);
+    }
+
+    /**
+     * @param poolSize number of independent WASM instances (at least 1).
+     */
+    public WasmBackend(int poolSize) {
+        int size = Math.max(1, poolSize);
+        fanOutExecutor = newFanOutExecutor(size);
+        for (int i = 0; i < size; i++) {
+            WasmEngine engine = new WasmEngine();
+            engines.add(engine);
+            idle.add(engine);
         }
     }
 
-    // tryExport resolves an optional export: older bundled wasm modules
-    // predate updateCorrections and must keep working.
-    private static ExportFunction tryExport(Instance instance, String name) {
-        try {
-            return instance.export(name);
-        } catch (RuntimeException missing) {
-            return null;
+    /**
+     * @return the number of WASM instances in the pool.
+     */
+    public int getPoolSize() {
+        return engines.size();
+    }
+
+    /**
+     * Grows the pool to {@code poolSize} instances (never shrinks). New
+     * instances are initialized with the last config and corrections pushed
+     * into the pool, so they are indistinguishable from the existing ones.
+     * If any of them fails to initialize, none is added and the pool keeps
+     * its size.
+     */
+    public synchronized void ensurePoolSize(int poolSize) {
+        int current = engines.size();
+        if (poolSize <= current) {
+            return;
         }
+        List<WasmEngine> added = new ArrayList<>(poolSize - current);
+        for (int i = current; i < poolSize; i++) {
+            added.add(new WasmEngine());
+        }
+        fanOutExecutor.setMaximumPoolSize(poolSize);
+        fanOutExecutor.setCorePoolSize(poolSize);
+        byte[] config = lastConfig;
+        byte[] corrections = lastCorrections;
+        Map<WasmEngine, RuntimeException> failures = new IdentityHashMap<>();
+        fanOut(fanOutExecutor, added, engine -> initEngine(engine, config, corrections), failures);
+        if (!failures.isEmpty()) {
+            throw failure("Failed to initialize " + failures.size() + " added WASM instance(s)", failures);
+        }
+        engines.addAll(added);
+        release(added);
     }
 
     /**
-     * Pushes a corrections.yaml payload into the engine (validated inside;
-     * whole-file reject keeps the last good rules).
+     * Pushes a corrections.yaml payload into every engine in the pool
+     * (validated inside; whole-file reject keeps the last good rules).
      *
      * @return true when the engine accepted the payload.
      */
     public synchronized boolean pushCorrections(byte[] yaml) {
-        if (updateCorrections == null || yaml == null || yaml.length == 0) {
+        if (yaml == null || yaml.length == 0) {
             return false;
         }
-        long ptr = malloc.apply((long) yaml.length)[0];
+        List<WasmEngine> all = drainAll();
         try {
-            memory.write((int) ptr, yaml);
-            long rc = updateCorrections.apply(ptr, (long) yaml.length)[0];
-            return (int) rc == 0;
+            // In parallel: with rewarm_entries each push also re-parses the
+            // hottest keys, and the whole pool is drained until all are done.
+            // Every instance validates the same bytes, so they normally agree;
+            // if not (or one fails outright), the ones that took the new rules
+            // get the previous ones back, so the pool never serves two rule sets.
+            Map<WasmEngine, RuntimeException> failures = new IdentityHashMap<>();
+            Map<WasmEngine, Boolean> results = fanOut(fanOutExecutor, all, engine -> engine.pushCorrections(yaml),
+                    failures);
+            boolean accepted = failures.isEmpty() && !results.containsValue(Boolean.FALSE);
+            if (accepted) {
+                lastCorrections = yaml.clone();
+                return true;
+            }
+            List<WasmEngine> updated = new ArrayList<>();
+            results.forEach((engine, ok) -> {
+                if (ok) {
+                    updated.add(engine);
+                }
+            });
+            byte[] previous = lastCorrections;
+            if (previous != null && !updated.isEmpty()) {
+                fanOut(fanOutExecutor, updated, engine -> engine.pushCorrections(previous), failures);
+            }
+            if (!failures.isEmpty()) {
+                throw failure("Failed to push corrections to " + failures.size() + " WASM instance(s)", failures);
+            }
+            return false;
         } finally {
-            free.apply(ptr);
+            // Accepted or rolled back, results may have changed meanwhile.
+            generation++;
+            release(all);
         }
     }
 
+    // fanOut runs task on every target on executor and waits for all of them,
+    // even after one fails: the targets are out of the pool and must not be
+    // returned while still busy. Results are keyed by target; failures are
+    // added to failures instead of thrown.
+    static <E, T> Map<E, T> fanOut(ExecutorService executor, List<E> targets, Function<E, T> task,
+                                   Map<E, RuntimeException> failures) {
+        List<Future<T>> futures = new ArrayList<>(targets.size());
+        for (E target : targets) {
+            futures.add(executor.submit(() -> task.apply(target)));
+        }
+        Map<E, T> results = new IdentityHashMap<>();
+        boolean interrupted = false;
+        for (int i = 0; i < targets.size(); i++) {
+            while (true) {
+                try {
+                    results.put(targets.get(i), futures.get(i).get());
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true; // finish waiting; re-asserted below
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    failures.put(targets.get(i), cause instanceof RuntimeException
+                            ? (RuntimeException) cause : new RuntimeException(cause));
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return results;
+    }
+
+    // failure reports every per-instance failure: the first as the cause, the
+    // rest suppressed.
+    static RuntimeException failure(String message, Map<?, RuntimeException> failures) {
+        RuntimeException first = null;
+        RuntimeException out = null;
+        for (RuntimeException f : failures.values()) {
+            if (out == null) {
+                first = f;
+                out = new RuntimeException(message + ": " + f.getMessage(), f);
+            } else if (f != first) {
+                out.addSuppressed(f);
+            }
+        }
+        return out;
+    }
+
+    private static Boolean initEngine(WasmEngine engine, byte[] config, byte[] corrections) {
+        if (config != null) {
+            engine.init(config);
+        }
+        if (corrections != null) {
+            engine.pushCorrections(corrections);
+        }
+        return Boolean.TRUE;
+    }
+
+    private static ThreadPoolExecutor newFanOutExecutor(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), task -> {
+                    Thread t = new Thread(task, "ua-parser-wasm-fanout-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * @return true when this JAR carries the build-time compiled module (the
+     * wasm-aot profile), so instances skip runtime parsing and compilation.
+     */
+    public static boolean isPrecompiled() {
+        return Precompiled.MODULE != null;
+    }
+
     private static WasmModule loadModule() {
+        if (Precompiled.MODULE != null) {
+            return Precompiled.MODULE.wasmModule();
+        }
         WasmModule module = cachedModule;
         if (module == null) {
             synchronized (WasmBackend.class) {
@@ -110,46 +277,626 @@ public class WasmBackend implements ParserBackend {
         return module;
     }
 
+    private static Function<Instance, Machine> machineFactory(WasmModule module) {
+        if (Precompiled.MODULE != null) {
+            return Precompiled.MODULE.machineFactory();
+        }
+        Function<Instance, Machine> factory = cachedMachineFactory;
+        if (factory == null) {
+            synchronized (WasmBackend.class) {
+                factory = cachedMachineFactory;
+                if (factory == null) {
+                    // Translate WASM to JVM bytecode instead of interpreting:
+                    // cuts init and parse latency by orders of magnitude.
+                    // Compiled once; every pool instance reuses the classes.
+                    factory = MachineFactoryCompiler.compile(module);
+                    cachedMachineFactory = factory;
+                }
+            }
+        }
+        return factory;
+    }
+
     @Override
     public synchronized void init(String configJson) {
         byte[] configBytes = configJson.getBytes(StandardCharsets.UTF_8);
-
-        long ptr = malloc.apply((long) configBytes.length)[0];
+        List<WasmEngine> all = drainAll();
         try {
-            memory.write((int) ptr, configBytes);
-            long rc = initUA.apply(ptr, (long) configBytes.length)[0];
-            if ((int) rc != 0) {
-                throw new RuntimeException("WASM parser initialization failed (rc=" + (int) rc + ")");
+            // Engine init compiles the regex database inside each instance;
+            // run the instances side by side instead of one after another.
+            // A fresh engine starts without corrections: replay the last
+            // accepted ones, as ensurePoolSize does for added instances.
+            byte[] corrections = lastCorrections;
+            Map<WasmEngine, RuntimeException> failures = new IdentityHashMap<>();
+            Map<WasmEngine, Boolean> done = fanOut(fanOutExecutor, all,
+                    engine -> initEngine(engine, configBytes, corrections), failures);
+            if (failures.isEmpty()) {
+                lastConfig = configBytes;
+                return;
+            }
+            // Put the instances that took the new config back on the previous
+            // one (failed instances never left it), so the pool stays uniform.
+            byte[] previous = lastConfig;
+            if (previous != null) {
+                fanOut(fanOutExecutor, new ArrayList<>(done.keySet()),
+                        engine -> initEngine(engine, previous, corrections), failures);
             }
+            throw failure("WASM parser initialization failed on " + failures.size() + " instance(s)", failures);
         } finally {
-            free.apply(ptr);
+            release(all);
         }
     }
 
     @Override
-    public synchronized String parse(String payloadJson) {
+    public String parse(String payloadJson) {
         byte[] inputBytes = payloadJson.getBytes(StandardCharsets.UTF_8);
-        int len = inputBytes.length;
+        WasmEngine engine = checkout();
+        try {
+            byte[] res = engine.parse(inputBytes);
+            return res == null ? null : new String(res, StandardCharsets.UTF_8);
+        } finally {
+            release(engine);
+        }
+    }
+
+    @Override
+    public String parseBatch(String payloadsJson) {
+        byte[] inputBytes = payloadsJson.getBytes(StandardCharsets.UTF_8);
+        WasmEngine engine = checkout();
+        try {
+            byte[] res = engine.parseBatch(inputBytes);
+            return res == null ? null : new String(res, StandardCharsets.UTF_8);
+        } finally {
+            release(engine);
+        }
+    }
+
+    @Override
+    public byte[] parseBinary(String payloadJson) {
+        byte[] inputBytes = payloadJson.getBytes(StandardCharsets.UTF_8);
+        WasmEngine engine = checkout();
+        try {
+            return engine.parseBinary(inputBytes);
+        } finally {
+            release(engine);
+        }
+    }
+
+    /** One JSON object per pooled instance, as a JSON array. */
+    @Override
+    public synchronized String stats() {
+        List<WasmEngine> all = drainAll();
+        try {
+            StringBuilder out = new StringBuilder().append('[');
+            for (WasmEngine engine : all) {
+                byte[] res = engine.stats();
+                if (res == null) {
+                    continue; // instance not initialized yet
+                }
+                if (out.length() > 1) {
+                    out.append(',');
+                }
+                out.append(new String(res, StandardCharsets.UTF_8));
+            }
+            return out.append(']').toString();
+        } finally {
+            release(all);
+        }
+    }
+
+    /**
+     * Counts corrections pushes instead of asking the instances: they have
+     * no network, so a push is the only way their rules change, and polling
+     * {@link #stats()} would drain the whole pool.
+     */
+    @Override
+    public long generation() {
+        return generation;
+    }
+
+    /**
+     * Opens the session on one instance up front, so unknown dimensions fail
+     * here rather than on the first batch.
+     */
+    @Override
+    public long openAggregator(String dimensionsJson) {
+        PooledAggregator session = new PooledAggregator(dimensionsJson.getBytes(StandardCharsets.UTF_8));
+        WasmEngine engine = checkout();
+        try {
+            session.on(engine);
+        } finally {
+            release(engine);
+        }
+        long id = nextAggregator.incrementAndGet();
+        aggregators.put(id, session);
+        return id;
+    }
+
+    @Override
+    public void aggregate(long session, String payloadsJson) {
+        PooledAggregator pooled = aggregator(session);
+        byte[] inputBytes = payloadsJson.getBytes(StandardCharsets.UTF_8);
+        WasmEngine engine = checkout();
+        try {
+            engine.aggregatorAdd(pooled.on(engine), inputBytes);
+        } finally {
+            release(engine);
+        }
+    }
+
+    /**
+     * One snapshot per instance the session has reached, as a JSON array.
+     * The pool is drained meanwhile, so a reset snapshot cuts every instance
+     * at the same point of the stream.
+     */
+    @Override
+    public synchronized String aggregatorSnapshot(long session, boolean reset) {
+        PooledAggregator pooled = aggregator(session);
+        List<WasmEngine> all = drainAll();
+        try {
+            StringBuilder out = new StringBuilder().append('[');
+            for (WasmEngine engine : all) {
+                Integer id = pooled.ids.get(engine);
+                byte[] res = id == null ? null : engine.aggregatorSnapshot(id, reset);
+                if (res == null) {
+                    continue; // the session never reached this instance
+                }
+                if (out.length() > 1) {
+                    out.append(',');
+                }
+                out.append(new String(res, StandardCharsets.UTF_8));
+            }
+            return out.append(']').toString();
+        } finally {
+            release(all);
+        }
+    }
+
+    @Override
+    public synchronized void closeAggregator(long session) {
+        PooledAggregator pooled = aggregators.remove(session);
+        if (pooled == null) {
+            return;
+        }
+        List<WasmEngine> all = drainAll();
+        try {
+            for (WasmEngine engine : all) {
+                Integer id = pooled.ids.get(engine);
+                if (id != null) {
+                    engine.aggregatorClose(id);
+                }
+            }
+        } finally {
+            release(all);
+        }
+    }
+
+    private PooledAggregator aggregator(long session) {
+        PooledAggregator pooled = aggregators.get(session);
+        if (pooled == null) {
+            throw new IllegalStateException("Invalid or closed aggregation session");
+        }
+        return pooled;
+    }
+
+    /** An aggregation session's dimensions and its per-instance session ids. */
+    private static final class PooledAggregator {
+        final byte[] dimensions;
+        final Map<WasmEngine, Integer> ids = new ConcurrentHashMap<>();
+
+        PooledAggregator(byte[] dimensions) {
+            this.dimensions = dimensions;
+        }
+
+        // on returns the session id on engine, opening it there first if
+        // needed; the caller holds engine exclusively.
+        int on(WasmEngine engine) {
+            Integer id = ids.get(engine);
+            if (id == null) {
+                id = engine.aggregatorOpen(dimensions);
+                ids.put(engine, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * Writes the warm-up snapshots of all pooled instances, concatenated, to
+     * {@code path} (the engine reads concatenated snapshots as one). The file
+     * is replaced atomically.
+     */
+    @Override
+    public synchronized void saveWarmup(String path, int entries) {
+        Path target = Paths.get(path).toAbsolutePath();
+        Path tmp = null;
+        List<WasmEngine> all = drainAll();
+        try {
+            tmp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                for (WasmEngine engine : all) {
+                    byte[] snapshot = engine.warmupSnapshot(entries);
+                    if (snapshot != null) {
+                        out.write(snapshot);
+                    }
+                }
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to save warm-up snapshot: " + e, e);
+        } finally {
+            release(all);
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException ignored) {
+                    // best effort; the snapshot itself was written or reported
+                }
+            }
+        }
+    }
+
+    /**
+     * Replays a warm-up snapshot into every pooled instance. Each instance
+     * decodes it up front, then re-parses {@code WARMUP_STEP} entries per
+     * checkout of that instance, so parses keep flowing through the pool
+     * meanwhile. Blocks until done; callers run it on a background thread.
+     *
+     * @return false when the module predates warm-up snapshots or rejects
+     * this one.
+     */
+    public boolean loadWarmup(byte[] snapshot) {
+        List<WasmEngine> pending = new ArrayList<>();
+        boolean accepted = true;
+        synchronized (this) {
+            List<WasmEngine> all = drainAll();
+            try {
+                // The first instance validates the snapshot, so a rejected one
+                // is never left decoded in the others. Instances run the same
+                // module, so the rest agree; any that did not load it are
+                // skipped while the loaded ones still replay (and free) theirs.
+                for (WasmEngine engine : all) {
+                    if (engine.loadWarmup(snapshot) >= 0) {
+                        pending.add(engine);
+                    } else if (pending.isEmpty()) {
+                        return false;
+                    } else {
+                        accepted = false;
+                    }
+                }
+            } finally {
+                release(all);
+            }
+        }
+        while (!pending.isEmpty()) {
+            WasmEngine engine = claim(pending);
+            try {
+                if (engine.warmupStep(WARMUP_STEP) == 0) {
+                    pending.remove(engine);
+                }
+            } finally {
+                release(engine);
+            }
+        }
+        return accepted;
+    }
+
+    // Entries replayed per instance checkout: long enough to amortize the
+    // checkout, short enough not to stall parses queued behind it.
+    private static final int WARMUP_STEP = 64;
+
+    // Warm-up threads waiting in claim(); release() only notifies while
+    // there are any. Changed under the released monitor.
+    private final Object released = new Object();
+    private volatile int claimWaiters;
 
-        long ptr = malloc.apply((long) len)[0];
+    // claim takes one of the wanted instances out of the pool, waiting while
+    // all of them are busy; other instances are left to parses.
+    private WasmEngine claim(List<WasmEngine> wanted) {
+        synchronized (released) {
+            claimWaiters++;
+            try {
+                while (true) {
+                    for (WasmEngine engine : wanted) {
+                        if (idle.remove(engine)) {
+                            return engine;
+                        }
+                    }
+                    released.wait();
+                }
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for a WASM instance", interrupted);
+            } finally {
+                claimWaiters--;
+            }
+        }
+    }
+
+    // release returns instances to the pool, waking a waiting claim().
+    private void release(WasmEngine engine) {
+        idle.add(engine);
+        if (claimWaiters > 0) {
+            synchronized (released) {
+                released.notifyAll();
+            }
+        }
+    }
+
+    private void release(List<WasmEngine> all) {
+        idle.addAll(all);
+        if (claimWaiters > 0) {
+            synchronized (released) {
+                released.notifyAll();
+            }
+        }
+    }
+
+    private WasmEngine checkout() {
         try {
-            memory.write((int) ptr, inputBytes);
+            return idle.take();
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for a WASM instance", interrupted);
+        }
+    }
+
+    // drainAll takes every instance out of the pool, blocking until in-flight
+    // parses return theirs. Callers hold the backend monitor, so concurrent
+    // fan-outs and resizes never interleave; parses keep running until their
+    // instance is taken.
+    private List<WasmEngine> drainAll() {
+        List<WasmEngine> all = new ArrayList<>(engines.size());
+        while (all.size() < engines.size()) {
+            all.add(checkout());
+        }
+        return all;
+    }
+
+    /**
+     * The module translated to JVM bytecode at build time by Chicory's
+     * compiler plugin (pom.xml, wasm-aot profile). Absent from source builds
+     * without a staged ua-parser.wasm; then the module is parsed and compiled
+     * at runtime as before. {@code -Dua-parser.wasm.precompiled=false} forces
+     * the runtime path.
+     */
+    private static final class Precompiled {
+        static final String CLASS_NAME = "com.github.octanium91.UaParserWasmModule";
+        static final CompiledModule MODULE = load();
+
+        private static CompiledModule load() {
+            if (!Boolean.parseBoolean(System.getProperty("ua-parser.wasm.precompiled", "true"))) {
+                return null;
+            }
+            try {
+                return (CompiledModule) Class.forName(CLASS_NAME).getConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError absent) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * One Chicory instance with its resolved exports. Not thread-safe: the
+     * enclosing pool guarantees exclusive use.
+     */
+    private static final class WasmEngine {
+        private final Memory memory;
+        private final ExportFunction malloc;
+        private final ExportFunction free;
+        private final ExportFunction initUA;
+        private final ExportFunction parseUA;
+        private final ExportFunction parseBatch; // null on wasm modules predating the export
+        private final ExportFunction parseBinary; // null on wasm modules predating the export
+        private final ExportFunction updateCorrections; // null on wasm modules predating the export
+        private final ExportFunction stats; // null on wasm modules predating the export
+        // All null on wasm modules predating warm-up snapshots.
+        private final ExportFunction loadWarmup;
+        private final ExportFunction warmupStep;
+        private final ExportFunction warmupSnapshot;
+        // All null on wasm modules predating aggregation sessions.
+        private final ExportFunction aggregatorOpen;
+        private final ExportFunction aggregatorAdd;
+        private final ExportFunction aggregatorSnapshot;
+        private final ExportFunction aggregatorClose;
+
+        WasmEngine() {
+            try {
+                WasiOptions options = WasiOptions.builder()
+                        .withStdout(System.out)
+                        .withStderr(System.err)
+                        .build();
+                WasiPreview1 wasi = WasiPreview1.builder().withOptions(options).build();
+
+                ImportValues imports = ImportValues.builder()
+                        .withFunctions(Arrays.asList(wasi.toHostFunctions()))
+                        .build();
+
+                WasmModule module = loadModule();
+                Instance instance = Instance.builder(module)
+                        .withImportValues(imports)
+                        .withMachineFactory(machineFactory(module))
+                        .withMemoryFactory(ByteArrayMemory::new)
+                        .build();
 
-            long resultPacked = parseUA.apply(ptr, (long) len)[0];
+                this.memory = instance.memory();
+                this.malloc = instance.export("malloc");
+                this.free = instance.export("free");
+                this.initUA = instance.export("initUA");
+                this.parseUA = instance.export("parseUA");
+                this.parseBatch = tryExport(instance, "parseBatch");
+                this.parseBinary = tryExport(instance, "parseUABinary");
+                this.updateCorrections = tryExport(instance, "updateCorrections");
+                this.stats = tryExport(instance, "stats");
+                this.loadWarmup = tryExport(instance, "loadWarmup");
+                this.warmupStep = tryExport(instance, "warmupStep");
+                this.warmupSnapshot = tryExport(instance, "warmupSnapshot");
+                this.aggregatorOpen = tryExport(instance, "aggregatorOpen");
+                this.aggregatorAdd = tryExport(instance, "aggregatorAdd");
+                this.aggregatorSnapshot = tryExport(instance, "aggregatorSnapshot");
+                this.aggregatorClose = tryExport(instance, "aggregatorClose");
 
+                // Go wasip1 reactors require _initialize before any other export.
+                instance.export("_initialize").apply();
+            } catch (Exception e) {
+                throw new RuntimeException("Failed to initialize WASM backend", e);
+            }
+        }
+
+        // tryExport resolves an optional export: older bundled wasm modules
+        // predate updateCorrections / parseBatch / parseUABinary and must keep
+        // working.
+        private static ExportFunction tryExport(Instance instance, String name) {
+            try {
+                return instance.export(name);
+            } catch (RuntimeException missing) {
+                return null;
+            }
+        }
+
+        void init(byte[] configBytes) {
+            long ptr = malloc.apply((long) configBytes.length)[0];
+            try {
+                memory.write((int) ptr, configBytes);
+                long rc = initUA.apply(ptr, (long) configBytes.length)[0];
+                if ((int) rc != 0) {
+                    throw new RuntimeException("WASM parser initialization failed (rc=" + (int) rc + ")");
+                }
+            } finally {
+                free.apply(ptr);
+            }
+        }
+
+        boolean pushCorrections(byte[] yaml) {
+            if (updateCorrections == null) {
+                return false;
+            }
+            long ptr = malloc.apply((long) yaml.length)[0];
+            try {
+                memory.write((int) ptr, yaml);
+                long rc = updateCorrections.apply(ptr, (long) yaml.length)[0];
+                return (int) rc == 0;
+            } finally {
+                free.apply(ptr);
+            }
+        }
+
+        byte[] parse(byte[] inputBytes) {
+            return call(parseUA, inputBytes);
+        }
+
+        byte[] parseBatch(byte[] inputBytes) {
+            if (parseBatch == null) {
+                throw new UnsupportedOperationException("ua-parser.wasm predates parseBatch");
+            }
+            return call(parseBatch, inputBytes);
+        }
+
+        byte[] parseBinary(byte[] inputBytes) {
+            if (parseBinary == null) {
+                throw new UnsupportedOperationException("ua-parser.wasm predates parseUABinary");
+            }
+            return call(parseBinary, inputBytes);
+        }
+
+        byte[] stats() {
+            if (stats == null) {
+                throw new UnsupportedOperationException("ua-parser.wasm predates stats");
+            }
+            return take(stats.apply()[0]);
+        }
+
+        // loadWarmup returns the snapshot's entry count, or -1 when rejected
+        // or unsupported.
+        int loadWarmup(byte[] snapshot) {
+            if (loadWarmup == null || snapshot.length == 0) {
+                return -1;
+            }
+            long ptr = malloc.apply((long) snapshot.length)[0];
+            try {
+                memory.write((int) ptr, snapshot);
+                return (int) loadWarmup.apply(ptr, (long) snapshot.length)[0];
+            } finally {
+                free.apply(ptr);
+            }
+        }
+
+        // warmupStep replays up to max loaded entries; returns how many are left.
+        int warmupStep(int max) {
+            return warmupStep == null ? 0 : (int) warmupStep.apply((long) max)[0];
+        }
+
+        byte[] warmupSnapshot(int max) {
+            if (warmupSnapshot == null) {
+                throw new UnsupportedOperationException("ua-parser.wasm predates warm-up snapshots");
+            }
+            return take(warmupSnapshot.apply((long) max)[0]);
+        }
+
+        int aggregatorOpen(byte[] dimensions) {
+            if (aggregatorOpen == null) {
+                throw new UnsupportedOperationException("ua-parser.wasm predates aggregation sessions");
+            }
+            long ptr = malloc.apply((long) dimensions.length)[0];
+            try {
+                memory.write((int) ptr, dimensions);
+                int id = (int) aggregatorOpen.apply(ptr, (long) dimensions.length)[0];
+                if (id < 0) {
+                    throw new IllegalArgumentException("Failed to open aggregator: invalid dimensions "
+                            + new String(dimensions, StandardCharsets.UTF_8));
+                }
+                return id;
+            } finally {
+                free.apply(ptr);
+            }
+        }
+
+        void aggregatorAdd(int id, byte[] payloads) {
+            long ptr = malloc.apply((long) payloads.length)[0];
+            try {
+                memory.write((int) ptr, payloads);
+                if ((int) aggregatorAdd.apply((long) id, ptr, (long) payloads.length)[0] != 0) {
+                    throw new RuntimeException("Failed to aggregate: invalid batch payload");
+                }
+            } finally {
+                free.apply(ptr);
+            }
+        }
+
+        byte[] aggregatorSnapshot(int id, boolean reset) {
+            return take(aggregatorSnapshot.apply((long) id, reset ? 1L : 0L)[0]);
+        }
+
+        void aggregatorClose(int id) {
+            aggregatorClose.apply((long) id);
+        }
+
+        // call copies the input into WASM memory, invokes an export that
+        // returns a packed (length << 32) | ptr buffer, and copies it out.
+        private byte[] call(ExportFunction export, byte[] inputBytes) {
+            int len = inputBytes.length;
+
+            long ptr = malloc.apply((long) len)[0];
+            try {
+                memory.write((int) ptr, inputBytes);
+
+                return take(export.apply(ptr, (long) len)[0]);
+            } finally {
+                free.apply(ptr);
+            }
+        }
+
+        // take copies out and frees a packed (length << 32) | ptr result.
+        private byte[] take(long resultPacked) {
             int resLen = (int) (resultPacked >> 32);
             int resPtr = (int) (resultPacked & 0xFFFFFFFFL);
 
             if (resPtr == 0) return null;
 
             try {
-                byte[] resBytes = memory.readBytes(resPtr, resLen);
-                return new String(resBytes, StandardCharsets.UTF_8);
+                return memory.readBytes(resPtr, resLen);
             } finally {
                 free.apply((long) resPtr);
             }
-        } finally {
-            free.apply(ptr);
         }
     }
 }
@@ -0,0 +1,129 @@
+package com.github.octanium91.bulk;
+
+import com.github.octanium91.UaParser;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Command-line front end of {@link BulkParser}:
+ *
+ * <pre>
+ * java -cp ua-parser.jar com.github.octanium91.bulk.BulkParseCli \
+ *     --input access.log --output access.jsonl [--format nginx|alb|field:N|tsv:N|csv:N|regex:P] \
+ *     [--output-format jsonl|csv] [--threads N] [--window N] [--chunk N] \
+ *     [--resume-from OFFSET] [--include-line] [--progress-seconds N]
+ * </pre>
+ *
+ * Progress and the final report go to stderr. With {@code --resume-from} the
+ * output file is appended to.
+ */
+public final class BulkParseCli {
+
+    private BulkParseCli() {
+    }
+
+    public static void main(String[] args) {
+        try {
+            System.exit(run(args));
+        } catch (IllegalArgumentException e) {
+            System.err.println("ERROR: " + e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+    }
+
+    private static final String USAGE = "usage: BulkParseCli --input FILE --output FILE"
+            + " [--format nginx|alb|field:N|tsv:N|csv:N|regex:PATTERN] [--output-format jsonl|csv]"
+            + " [--threads N] [--window N] [--chunk N] [--resume-from OFFSET] [--include-line]"
+            + " [--progress-seconds N]";
+
+    static int run(String[] args) {
+        BulkParser.Options opts = new BulkParser.Options();
+        Path input = null;
+        Path output = null;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--input":
+                    input = Paths.get(value(args, ++i, arg));
+                    break;
+                case "--output":
+                    output = Paths.get(value(args, ++i, arg));
+                    break;
+                case "--format":
+                    opts.format = LogFormat.parse(value(args, ++i, arg));
+                    break;
+                case "--output-format":
+                    opts.outputFormat = BulkParser.OutputFormat.valueOf(value(args, ++i, arg).toUpperCase());
+                    break;
+                case "--threads":
+                    opts.threads = number(args, ++i, arg);
+                    break;
+                case "--window":
+                    opts.window = number(args, ++i, arg);
+                    break;
+                case "--chunk":
+                    opts.chunkLines = number(args, ++i, arg);
+                    break;
+                case "--resume-from":
+                    opts.startOffset = Long.parseLong(value(args, ++i, arg));
+                    break;
+                case "--include-line":
+                    opts.includeLine = true;
+                    break;
+                case "--progress-seconds":
+                    opts.progressIntervalMillis = number(args, ++i, arg) * 1000L;
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown option: " + arg);
+            }
+        }
+        if (input == null || output == null) {
+            throw new IllegalArgumentException("--input and --output are required");
+        }
+        if (opts.threads <= 0) {
+            opts.threads = Runtime.getRuntime().availableProcessors();
+        }
+        opts.progress = report -> System.err.println("progress: " + report);
+
+        UaParser.Config cfg = new UaParser.Config();
+        cfg.disableAutoUpdate = true;
+        cfg.wasmPoolSize = opts.threads; // one engine per worker when on WASM
+        StandardOpenOption mode = opts.startOffset > 0 ? StandardOpenOption.APPEND
+                : StandardOpenOption.TRUNCATE_EXISTING;
+        try (UaParser parser = new UaParser();
+             OutputStream out = Files.newOutputStream(output, StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, mode)) {
+            parser.init(cfg);
+            BulkReport report = new BulkParser(parser, opts).run(input, out);
+            System.err.println("done: " + report);
+            return 0;
+        } catch (IOException e) {
+            System.err.println("ERROR: " + e.getMessage());
+            if (e.getCause() != null) {
+                System.err.println("CAUSE: " + e.getCause());
+            }
+            return 1;
+        }
+    }
+
+    private static String value(String[] args, int i, String option) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException(option + " needs a value");
+        }
+        return args[i];
+    }
+
+    private static int number(String[] args, int i, String option) {
+        try {
+            return Integer.parseInt(value(args, i, option));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(option + " needs a number");
+        }
+    }
+}
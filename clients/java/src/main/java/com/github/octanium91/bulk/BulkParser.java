@@ -0,0 +1,389 @@
+package com.github.octanium91.bulk;
+
+import com.github.octanium91.UaParser;
+import com.github.octanium91.UaParser.ParseOptions;
+import com.github.octanium91.UaParser.ParseOptions.Field;
+import com.github.octanium91.UaParser.Request;
+import com.github.octanium91.UaParser.Result;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Enriches an access log with parse results, streaming: one reader thread
+ * splits the file and extracts UAs, chunks of lines are parsed as batches on
+ * a worker pool, and the calling thread writes the output in input order.
+ *
+ * <p>Repeated UAs are parsed once per dedupe window (the most recently seen
+ * {@link Options#window} distinct UAs), on top of the per-batch dedupe of
+ * {@link UaParser#parseBatch(List)}. Output is flushed per chunk, so after a
+ * failure every line before {@link BulkReport#committedOffset()} is written
+ * and a run with that {@link Options#startOffset} picks up exactly there.
+ *
+ * <pre>{@code
+ * BulkParser.Options opts = new BulkParser.Options();
+ * opts.format = LogFormat.nginxCombined();
+ * try (OutputStream out = Files.newOutputStream(Paths.get("access.jsonl"))) {
+ *     BulkReport report = new BulkParser(parser, opts).run(Paths.get("access.log"), out);
+ * }
+ * }</pre>
+ */
+public class BulkParser {
+
+    public enum OutputFormat {
+        /**
+         * One JSON object per line: {@code offset} (input byte offset of the
+         * line), {@code line} when {@link Options#includeLine} is set, then
+         * the result fields; {@code "ua":null} for lines without a UA.
+         */
+        JSONL,
+        /**
+         * Flat columns (see {@link #CSV_HEADER}); empty cells for lines
+         * without a UA and {@code line} last when {@link Options#includeLine}
+         * is set.
+         */
+        CSV
+    }
+
+    public static final String CSV_HEADER = "offset,ua,browser_name,browser_version,os_name,os_version,"
+            + "device_type,device_vendor,device_model,category,is_bot,is_ai_crawler";
+
+    // The sections the CSV columns read; CSV runs without explicit
+    // parseOptions project to these.
+    private static final ParseOptions CSV_FIELDS = ParseOptions.fields(
+            Field.BROWSER, Field.OS, Field.DEVICE, Field.CATEGORY, Field.IS_BOT, Field.IS_AI_CRAWLER);
+
+    public static class Options {
+        /** Where the UA sits in a line; nginx/Apache combined by default. */
+        public LogFormat format = LogFormat.nginxCombined();
+        public OutputFormat outputFormat = OutputFormat.JSONL;
+        /** Worker threads issuing batches; default: available processors. */
+        public int threads;
+        /** Distinct UAs remembered for dedupe; 0 or less disables it. */
+        public int window = 100_000;
+        /** Lines per batch and per output flush. */
+        public int chunkLines = 4096;
+        /**
+         * Input byte offset to start at; must be a line start, e.g. a
+         * previous run's {@link BulkReport#committedOffset()}.
+         */
+        public long startOffset;
+        /** Field projection for every parse; null means the output format's needs. */
+        public ParseOptions parseOptions;
+        /** Copy each input line into the output. */
+        public boolean includeLine;
+        /** Called on the writing thread at most every progressIntervalMillis. */
+        public Consumer<BulkReport> progress;
+        public long progressIntervalMillis = 10_000;
+    }
+
+    private final UaParser parser;
+    private final Options options;
+    private final ParseOptions parseOptions;
+    private final Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+
+    public BulkParser(UaParser parser, Options options) {
+        if (options.chunkLines <= 0) {
+            throw new IllegalArgumentException("chunkLines must be > 0: " + options.chunkLines);
+        }
+        this.parser = parser;
+        this.options = options;
+        this.parseOptions = options.parseOptions != null ? options.parseOptions
+                : options.outputFormat == OutputFormat.CSV ? CSV_FIELDS : ParseOptions.ALL;
+    }
+
+    // One chunk of input lines; bodies[i] completes with line i's formatted
+    // result (everything after the offset) once its batch is parsed.
+    private static final class Chunk {
+        static final Chunk END = new Chunk(0);
+
+        final long[] offsets;
+        final String[] lines;
+        final List<CompletableFuture<String>> bodies;
+        long endOffset;
+        int size;
+        Throwable error;
+
+        Chunk(int capacity) {
+            offsets = new long[capacity];
+            lines = new String[capacity];
+            bodies = new ArrayList<>(capacity);
+        }
+    }
+
+    /**
+     * Parses {@code input} from {@link Options#startOffset} to its end and
+     * writes one output record per line to {@code out} (not closed). The CSV
+     * header is written only when starting at offset 0, so a resumed run can
+     * append to the earlier output.
+     *
+     * @throws IOException on read or write failure, or when a batch fails to
+     *         parse; the message names the offset to resume from.
+     */
+    public BulkReport run(Path input, OutputStream out) throws IOException {
+        int threads = options.threads > 0 ? options.threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger workerId = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "ua-bulk-worker-" + workerId.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        // Bounds the chunks in flight: the reader blocks once the writer
+        // falls this far behind.
+        BlockingQueue<Chunk> queue = new ArrayBlockingQueue<>(threads * 2);
+        long[] counts = new long[3]; // missing, parsed, window hits; written by the reader
+        LineReader reader = new LineReader(input, options.startOffset);
+        Thread readerThread = new Thread(() -> read(reader, workers, queue, counts), "ua-bulk-reader");
+        readerThread.setDaemon(true);
+
+        long start = System.nanoTime();
+        long lines = 0;
+        long committed = options.startOffset;
+        long lastProgress = start;
+        Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+        StringBuilder record = new StringBuilder(512);
+        try {
+            readerThread.start();
+            if (options.outputFormat == OutputFormat.CSV && options.startOffset == 0) {
+                w.write(options.includeLine ? CSV_HEADER + ",line\n" : CSV_HEADER + "\n");
+            }
+            while (true) {
+                Chunk chunk = queue.take();
+                if (chunk == Chunk.END) {
+                    break;
+                }
+                if (chunk.error != null) {
+                    throw failure("reading", committed, chunk.error);
+                }
+                for (int i = 0; i < chunk.size; i++) {
+                    String body;
+                    try {
+                        body = chunk.bodies.get(i).join();
+                    } catch (CompletionException e) {
+                        throw failure("parsing", committed, e.getCause());
+                    }
+                    record.setLength(0);
+                    appendRecord(record, chunk.offsets[i], chunk.lines[i], body);
+                    w.append(record);
+                }
+                w.flush();
+                lines += chunk.size;
+                committed = chunk.endOffset;
+                if (options.progress != null) {
+                    long now = System.nanoTime();
+                    if (now - lastProgress >= options.progressIntervalMillis * 1_000_000) {
+                        lastProgress = now;
+                        options.progress.accept(report(lines, counts, committed, now - start));
+                    }
+                }
+            }
+            w.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted; resume from offset " + committed, e);
+        } finally {
+            readerThread.interrupt();
+            workers.shutdownNow();
+            try {
+                readerThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            reader.close();
+        }
+        return report(lines, counts, committed, System.nanoTime() - start);
+    }
+
+    private BulkReport report(long lines, long[] counts, long committed, long elapsed) {
+        synchronized (counts) {
+            return new BulkReport(lines, counts[0], counts[1], counts[2],
+                    committed - options.startOffset, committed, elapsed);
+        }
+    }
+
+    private static IOException failure(String stage, long committed, Throwable cause) {
+        return new IOException(stage + " failed; output is complete up to input offset " + committed
+                + ", resume from there", cause);
+    }
+
+    // Reader thread: splits lines, dedupes UAs through the window, hands
+    // each full chunk's unique UAs to a worker and queues the chunk for the
+    // writer in input order.
+    private void read(LineReader reader, ExecutorService workers, BlockingQueue<Chunk> queue, long[] counts) {
+        CompletableFuture<String> noUa = CompletableFuture.completedFuture(
+                options.outputFormat == OutputFormat.CSV ? ",,,,,,,,,," : "\"ua\":null}");
+        Map<String, CompletableFuture<String>> window = options.window > 0 ? new Window(options.window) : null;
+        LogFormat format = options.format;
+        Chunk chunk = new Chunk(options.chunkLines);
+        List<Request> requests = new ArrayList<>();
+        List<CompletableFuture<String>> pending = new ArrayList<>();
+        try {
+            while (reader.next()) {
+                int n = chunk.size++;
+                chunk.offsets[n] = reader.lineOffset();
+                if (options.includeLine) {
+                    chunk.lines[n] = new String(reader.buffer(), reader.from(), reader.to() - reader.from(),
+                            StandardCharsets.UTF_8);
+                }
+                String ua = format.extract(reader.buffer(), reader.from(), reader.to());
+                CompletableFuture<String> body;
+                synchronized (counts) {
+                    if (ua == null) {
+                        body = noUa;
+                        counts[0]++;
+                    } else if (window != null && (body = window.get(ua)) != null) {
+                        counts[2]++;
+                    } else {
+                        body = new CompletableFuture<>();
+                        if (window != null) {
+                            window.put(ua, body);
+                        }
+                        requests.add(new Request(ua, null, null, parseOptions));
+                        pending.add(body);
+                        counts[1]++;
+                    }
+                }
+                chunk.bodies.add(body);
+                if (chunk.size == options.chunkLines) {
+                    chunk.endOffset = reader.nextOffset();
+                    submit(workers, requests, pending);
+                    queue.put(chunk);
+                    chunk = new Chunk(options.chunkLines);
+                    requests = new ArrayList<>();
+                    pending = new ArrayList<>();
+                }
+            }
+            if (chunk.size > 0) {
+                chunk.endOffset = reader.nextOffset();
+                submit(workers, requests, pending);
+                queue.put(chunk);
+            }
+            queue.put(Chunk.END);
+        } catch (InterruptedException e) {
+            // the writer gave up
+        } catch (IOException | RuntimeException e) {
+            Chunk failed = new Chunk(0);
+            failed.error = e;
+            try {
+                queue.put(failed);
+            } catch (InterruptedException ignored) {
+                // the writer gave up
+            }
+        }
+    }
+
+    private void submit(ExecutorService workers, List<Request> requests, List<CompletableFuture<String>> pending) {
+        if (requests.isEmpty()) {
+            return;
+        }
+        workers.execute(() -> {
+            try {
+                List<Result> results = parser.parseBatch(requests);
+                StringBuilder sb = new StringBuilder(512);
+                for (int i = 0; i < results.size(); i++) {
+                    sb.setLength(0);
+                    appendBody(sb, results.get(i));
+                    pending.get(i).complete(sb.toString());
+                }
+            } catch (Throwable t) {
+                for (CompletableFuture<String> f : pending) {
+                    f.completeExceptionally(t);
+                }
+            }
+        });
+    }
+
+    // Formats everything after the offset column, so a body is shared by
+    // every line with the same UA.
+    private void appendBody(StringBuilder sb, Result r) {
+        if (options.outputFormat == OutputFormat.JSONL) {
+            String json = gson.toJson(r);
+            sb.append(json, 1, json.length()); // drop '{', the offset leads
+            return;
+        }
+        csv(sb, r.ua).append(',');
+        csv(sb, r.browser == null ? null : r.browser.name).append(',');
+        csv(sb, r.browser == null ? null : r.browser.version).append(',');
+        csv(sb, r.os == null ? null : r.os.name).append(',');
+        csv(sb, r.os == null ? null : r.os.version).append(',');
+        csv(sb, r.device == null ? null : r.device.type).append(',');
+        csv(sb, r.device == null ? null : r.device.vendor).append(',');
+        csv(sb, r.device == null ? null : r.device.model).append(',');
+        csv(sb, r.category).append(',');
+        sb.append(r.isBot).append(',').append(r.isAiCrawler);
+    }
+
+    private void appendRecord(StringBuilder sb, long offset, String line, String body) {
+        if (options.outputFormat == OutputFormat.JSONL) {
+            sb.append("{\"offset\":").append(offset).append(',');
+            if (line != null) {
+                sb.append("\"line\":").append(gson.toJson(line)).append(',');
+            }
+            sb.append(body);
+        } else {
+            sb.append(offset).append(',').append(body);
+            if (line != null) {
+                csv(sb.append(','), line);
+            }
+        }
+        sb.append('\n');
+    }
+
+    // RFC 4180 quoting, only where needed.
+    private static StringBuilder csv(StringBuilder sb, String value) {
+        if (value == null) {
+            return sb;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            return sb.append(value);
+        }
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                sb.append('"');
+            }
+            sb.append(c);
+        }
+        return sb.append('"');
+    }
+
+    // The dedupe window: the most recently seen distinct UAs.
+    private static final class Window extends LinkedHashMap<String, CompletableFuture<String>> {
+        private final int capacity;
+
+        Window(int capacity) {
+            super(Math.min(capacity, 1 << 16), 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<String>> eldest) {
+            return size() > capacity;
+        }
+    }
+}
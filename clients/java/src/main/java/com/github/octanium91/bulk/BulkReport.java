@@ -0,0 +1,79 @@
+package com.github.octanium91.bulk;
+
+/**
+ * Progress of a {@link BulkParser} run. Everything counts from the run's
+ * start offset; {@link #committedOffset()} is where a resumed run continues.
+ */
+public final class BulkReport {
+    private final long lines;
+    private final long missing;
+    private final long parsed;
+    private final long windowHits;
+    private final long bytes;
+    private final long committedOffset;
+    private final long elapsedNanos;
+
+    BulkReport(long lines, long missing, long parsed, long windowHits, long bytes,
+               long committedOffset, long elapsedNanos) {
+        this.lines = lines;
+        this.missing = missing;
+        this.parsed = parsed;
+        this.windowHits = windowHits;
+        this.bytes = bytes;
+        this.committedOffset = committedOffset;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /** Lines written to the output. */
+    public long lines() {
+        return lines;
+    }
+
+    /** Lines the log format found no UA in. */
+    public long missing() {
+        return missing;
+    }
+
+    /** UAs sent to the engine (one per distinct UA in the dedupe window). */
+    public long parsed() {
+        return parsed;
+    }
+
+    /** Lines answered by an earlier line's parse through the dedupe window. */
+    public long windowHits() {
+        return windowHits;
+    }
+
+    /** Input bytes covered by the written lines. */
+    public long bytes() {
+        return bytes;
+    }
+
+    /**
+     * Input offset just past the last written line: every line before it is
+     * in the output, so {@code --resume-from} this offset after a failure.
+     */
+    public long committedOffset() {
+        return committedOffset;
+    }
+
+    public long elapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double linesPerSecond() {
+        return elapsedNanos == 0 ? 0 : lines * 1e9 / elapsedNanos;
+    }
+
+    public double megabytesPerSecond() {
+        return elapsedNanos == 0 ? 0 : bytes * 1e9 / elapsedNanos / (1 << 20);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d lines (%d without UA, %d parsed, %d window hits), %.1f MB in %.1f s:"
+                        + " %.0f lines/s, %.1f MB/s; committed offset %d",
+                lines, missing, parsed, windowHits, bytes / (double) (1 << 20), elapsedNanos / 1e9,
+                linesPerSecond(), megabytesPerSecond(), committedOffset);
+    }
+}
@@ -0,0 +1,141 @@
+package com.github.octanium91.bulk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Splits a file into lines straight out of large channel reads, tracking the
+ * byte offset of every line so a run can be resumed exactly. The current line
+ * is {@code buffer()[from(), to())} without its terminator (a trailing
+ * {@code \r} is dropped too) and stays valid until the next {@link #next()}.
+ */
+final class LineReader implements Closeable {
+
+    static final int DEFAULT_BLOCK = 8 << 20;
+    static final int MAX_LINE = 64 << 20;
+
+    private final FileChannel channel;
+    private final int maxLine;
+    private byte[] buf;
+    private ByteBuffer view;
+    private int pos;
+    private int limit;
+    // File offset of buf[0].
+    private long base;
+    private boolean eof;
+
+    private int from;
+    private int to;
+    private long lineOffset;
+    private long nextOffset;
+
+    LineReader(Path file, long startOffset) throws IOException {
+        this(file, startOffset, DEFAULT_BLOCK, MAX_LINE);
+    }
+
+    LineReader(Path file, long startOffset, int block, int maxLine) throws IOException {
+        if (startOffset < 0) {
+            throw new IllegalArgumentException("start offset must be >= 0: " + startOffset);
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        if (startOffset > channel.size()) {
+            channel.close();
+            throw new IOException("start offset " + startOffset + " is past the end of " + file
+                    + " (" + channel.size() + " bytes)");
+        }
+        channel.position(startOffset);
+        this.maxLine = maxLine;
+        this.buf = new byte[block];
+        this.view = ByteBuffer.wrap(buf);
+        this.base = startOffset;
+        this.nextOffset = startOffset;
+    }
+
+    /** Advances to the next line; false at end of file. */
+    boolean next() throws IOException {
+        int scan = pos;
+        while (true) {
+            for (int i = scan; i < limit; i++) {
+                if (buf[i] == '\n') {
+                    emit(i, i + 1);
+                    return true;
+                }
+            }
+            if (eof) {
+                if (pos == limit) {
+                    return false;
+                }
+                emit(limit, limit); // last line without a terminator
+                return true;
+            }
+            scan = limit - pos;
+            fill();
+        }
+    }
+
+    private void emit(int end, int after) {
+        from = pos;
+        to = end > pos && buf[end - 1] == '\r' ? end - 1 : end;
+        lineOffset = base + pos;
+        nextOffset = base + after;
+        pos = after;
+    }
+
+    // Moves the unread tail to the front, growing the buffer when a single
+    // line fills it, and reads the next block behind it.
+    private void fill() throws IOException {
+        int pending = limit - pos;
+        if (pending == buf.length) {
+            if (buf.length >= maxLine) {
+                throw new IOException("line at offset " + (base + pos) + " is longer than " + maxLine + " bytes");
+            }
+            byte[] grown = new byte[(int) Math.min((long) buf.length * 2, maxLine)];
+            System.arraycopy(buf, pos, grown, 0, pending);
+            buf = grown;
+            view = ByteBuffer.wrap(buf);
+        } else if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, pending);
+        }
+        base += pos;
+        pos = 0;
+        limit = pending;
+        view.limit(buf.length).position(limit);
+        int n = channel.read(view);
+        if (n < 0) {
+            eof = true;
+        } else {
+            limit += n;
+        }
+    }
+
+    byte[] buffer() {
+        return buf;
+    }
+
+    int from() {
+        return from;
+    }
+
+    int to() {
+        return to;
+    }
+
+    /** File offset of the current line's first byte. */
+    long lineOffset() {
+        return lineOffset;
+    }
+
+    /** File offset just past the current line's terminator. */
+    long nextOffset() {
+        return nextOffset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
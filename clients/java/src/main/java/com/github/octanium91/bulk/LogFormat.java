@@ -0,0 +1,247 @@
+package com.github.octanium91.bulk;
+
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Where the User-Agent sits in one access-log line. Extraction works on the
+ * raw UTF-8 bytes of the line, so only the UA field itself is ever decoded
+ * (the regex format is the exception: it needs the whole line as text).
+ *
+ * <p>A UA logged as {@code -} or left empty is reported as absent (null).
+ */
+public abstract class LogFormat {
+
+    LogFormat() {
+    }
+
+    /**
+     * @return the UA of the line {@code line[from, to)} (no line terminator),
+     * or null when the line has none.
+     */
+    public abstract String extract(byte[] line, int from, int to);
+
+    /**
+     * nginx/Apache "combined" format: the 9th field, counting a quoted
+     * string or a bracketed time as one field.
+     */
+    public static LogFormat nginxCombined() {
+        return field(8);
+    }
+
+    /** AWS Application Load Balancer access logs: the user_agent field. */
+    public static LogFormat alb() {
+        return field(13);
+    }
+
+    /**
+     * The {@code index}-th (0-based) whitespace-separated field, where a
+     * {@code "quoted string"} (with nginx {@code \"}, {@code \\} and
+     * {@code \xHH} escapes) or a {@code [bracketed]} value counts as one field.
+     */
+    public static LogFormat field(int index) {
+        if (index < 0) {
+            throw new IllegalArgumentException("field index must be >= 0: " + index);
+        }
+        return new Fields(index);
+    }
+
+    /**
+     * The {@code column}-th (0-based) column of a line split on
+     * {@code separator} (e.g. '\t' for TSV), taken verbatim.
+     */
+    public static LogFormat delimited(char separator, int column) {
+        if (column < 0) {
+            throw new IllegalArgumentException("column must be >= 0: " + column);
+        }
+        if (separator > 0x7F) {
+            throw new IllegalArgumentException("separator must be ASCII: " + separator);
+        }
+        return new Delimited((byte) separator, column);
+    }
+
+    /**
+     * The group named {@code ua}, or else group 1, of the first match of
+     * {@code regex} in the line.
+     */
+    public static LogFormat regex(String regex) {
+        return new Regex(Pattern.compile(regex));
+    }
+
+    /**
+     * Parses a command-line spec: {@code nginx}, {@code alb},
+     * {@code field:N}, {@code tsv:N}, {@code csv:N} or {@code regex:PATTERN}.
+     */
+    public static LogFormat parse(String spec) {
+        int colon = spec.indexOf(':');
+        String kind = colon < 0 ? spec : spec.substring(0, colon);
+        String arg = colon < 0 ? null : spec.substring(colon + 1);
+        try {
+            switch (kind) {
+                case "nginx":
+                case "combined":
+                    return nginxCombined();
+                case "alb":
+                    return alb();
+                case "field":
+                    return field(Integer.parseInt(arg));
+                case "tsv":
+                    return delimited('\t', Integer.parseInt(arg));
+                case "csv":
+                    return delimited(',', Integer.parseInt(arg));
+                case "regex":
+                    if (arg != null) {
+                        return regex(arg);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        } catch (NumberFormatException invalid) {
+            // reported below
+        }
+        throw new IllegalArgumentException("unknown log format: " + spec
+                + " (expected nginx, alb, field:N, tsv:N, csv:N or regex:PATTERN)");
+    }
+
+    private static String absentIfDash(String ua) {
+        return ua.isEmpty() || ua.equals("-") ? null : ua;
+    }
+
+    private static final class Fields extends LogFormat {
+        private final int index;
+
+        Fields(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public String extract(byte[] b, int from, int to) {
+            int i = from;
+            for (int field = 0; ; field++) {
+                while (i < to && (b[i] == ' ' || b[i] == '\t')) {
+                    i++;
+                }
+                if (i >= to) {
+                    return null;
+                }
+                int start;
+                int end;
+                boolean escaped = false;
+                if (b[i] == '"') {
+                    start = ++i;
+                    while (i < to && b[i] != '"') {
+                        if (b[i] == '\\' && i + 1 < to) {
+                            escaped = true;
+                            i++;
+                        }
+                        i++;
+                    }
+                    end = i++;
+                } else if (b[i] == '[') {
+                    start = ++i;
+                    while (i < to && b[i] != ']') {
+                        i++;
+                    }
+                    end = i++;
+                } else {
+                    start = i;
+                    while (i < to && b[i] != ' ' && b[i] != '\t') {
+                        i++;
+                    }
+                    end = i;
+                }
+                if (field == index) {
+                    return absentIfDash(escaped ? unescape(b, start, end)
+                            : new String(b, start, end - start, StandardCharsets.UTF_8));
+                }
+            }
+        }
+
+        // Undoes nginx's escaping of quoted log values.
+        private static String unescape(byte[] b, int from, int to) {
+            byte[] out = new byte[to - from];
+            int n = 0;
+            for (int i = from; i < to; i++) {
+                byte c = b[i];
+                if (c == '\\' && i + 1 < to) {
+                    byte e = b[++i];
+                    if (e == 'x' && i + 2 < to && hex(b[i + 1]) >= 0 && hex(b[i + 2]) >= 0) {
+                        c = (byte) (hex(b[i + 1]) << 4 | hex(b[i + 2]));
+                        i += 2;
+                    } else {
+                        c = e;
+                    }
+                }
+                out[n++] = c;
+            }
+            return new String(out, 0, n, StandardCharsets.UTF_8);
+        }
+
+        private static int hex(byte c) {
+            if (c >= '0' && c <= '9') {
+                return c - '0';
+            }
+            if (c >= 'a' && c <= 'f') {
+                return c - 'a' + 10;
+            }
+            if (c >= 'A' && c <= 'F') {
+                return c - 'A' + 10;
+            }
+            return -1;
+        }
+    }
+
+    private static final class Delimited extends LogFormat {
+        private final byte separator;
+        private final int column;
+
+        Delimited(byte separator, int column) {
+            this.separator = separator;
+            this.column = column;
+        }
+
+        @Override
+        public String extract(byte[] b, int from, int to) {
+            int start = from;
+            for (int col = 0; col < column; col++) {
+                while (start < to && b[start] != separator) {
+                    start++;
+                }
+                if (start >= to) {
+                    return null;
+                }
+                start++;
+            }
+            int end = start;
+            while (end < to && b[end] != separator) {
+                end++;
+            }
+            return absentIfDash(new String(b, start, end - start, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static final class Regex extends LogFormat {
+        private final Pattern pattern;
+        private final boolean named;
+
+        Regex(Pattern pattern) {
+            this.pattern = pattern;
+            this.named = pattern.pattern().contains("(?<ua>");
+            if (!named && pattern.matcher("").groupCount() < 1) {
+                throw new IllegalArgumentException("regex needs a (?<ua>...) or a first capturing group: " + pattern);
+            }
+        }
+
+        @Override
+        public String extract(byte[] b, int from, int to) {
+            Matcher m = pattern.matcher(new String(b, from, to - from, StandardCharsets.UTF_8));
+            if (!m.find()) {
+                return null;
+            }
+            String ua = named ? m.group("ua") : m.group(1);
+            return ua == null ? null : absentIfDash(ua);
+        }
+    }
+}
@@ -0,0 +1,424 @@
+package com.github.octanium91;
+
+import java.io.File;
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SymbolLookup;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+
+/**
+ * Native backend over the Foreign Function &amp; Memory API (JDK 22+). Same
+ * C exports as {@link JnaBackend}, but called through linker downcall
+ * handles: no reflection proxy, no boxing, no per-call argument arrays, and
+ * strings are marshalled into a confined arena freed as soon as the call
+ * returns.
+ *
+ * Lives in the versions/22 layer of the multi-release JAR; on older JVMs the
+ * class is absent and {@link UaParser#UaParser()} keeps using JNA.
+ */
+public final class FfmBackend implements ParserBackend {
+    private static final Linker LINKER = Linker.nativeLinker();
+    private static final ValueLayout.OfInt LENGTH_PREFIX =
+            ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    private static final FunctionDescriptor STRING_TO_STRING =
+            FunctionDescriptor.of(ValueLayout.ADDRESS, ValueLayout.ADDRESS);
+
+    // Segments over the caller's direct buffers, cached per thread: ParseScratch
+    // reuses the same two buffers until it has to grow them.
+    private static final ThreadLocal<BufferSegments> SEGMENTS = ThreadLocal.withInitial(BufferSegments::new);
+
+    // Never returned by InitHandle; see JnaBackend.
+    private static final long CLOSED = -1L;
+
+    private final MethodHandle init;
+    private final MethodHandle parse;
+    private final MethodHandle freeString;
+    // Null when the library predates the export.
+    private final MethodHandle parseBatch;
+    private final MethodHandle parseBinary;
+    private final MethodHandle parseBytes;
+    private final MethodHandle stats;
+    private final MethodHandle statsHandle;
+    private final MethodHandle saveWarmup;
+    private final MethodHandle saveWarmupHandle;
+    // Aggregation sessions; null together on libraries predating them.
+    private final MethodHandle aggregatorOpen;
+    private final MethodHandle aggregatorOpenHandle;
+    private final MethodHandle aggregatorAdd;
+    private final MethodHandle aggregatorSnapshot;
+    private final MethodHandle aggregatorClose;
+    // Handle-based exports (one engine per backend); all null together on
+    // libraries predating InitHandle.
+    private final MethodHandle initHandle;
+    private final MethodHandle parseHandle;
+    private final MethodHandle parseBatchHandle;
+    private final MethodHandle parseBinaryHandle;
+    private final MethodHandle parseBytesHandle;
+    private final MethodHandle closeHandle;
+
+    // This backend's engine; 0 while on the process-global engine.
+    private volatile long handle;
+
+    public FfmBackend() {
+        this(bundledLibrary());
+    }
+
+    public FfmBackend(String libPath) {
+        // The library is a process-wide singleton: never unloaded.
+        SymbolLookup lib = SymbolLookup.libraryLookup(Path.of(libPath), Arena.global());
+        this.init = LINKER.downcallHandle(required(lib, "Init"), STRING_TO_STRING);
+        this.parse = LINKER.downcallHandle(required(lib, "Parse"), STRING_TO_STRING);
+        this.freeString = LINKER.downcallHandle(required(lib, "FreeString"),
+                FunctionDescriptor.ofVoid(ValueLayout.ADDRESS));
+        this.parseBatch = lib.find("ParseBatch")
+                .map(s -> LINKER.downcallHandle(s, STRING_TO_STRING)).orElse(null);
+        this.parseBinary = lib.find("ParseBinary")
+                .map(s -> LINKER.downcallHandle(s, STRING_TO_STRING)).orElse(null);
+        this.parseBytes = lib.find("ParseBytes")
+                .map(s -> LINKER.downcallHandle(s, FunctionDescriptor.of(ValueLayout.JAVA_INT,
+                        ValueLayout.ADDRESS, ValueLayout.JAVA_INT, ValueLayout.ADDRESS, ValueLayout.JAVA_INT)))
+                .orElse(null);
+        this.stats = lib.find("Stats")
+                .map(s -> LINKER.downcallHandle(s, FunctionDescriptor.of(ValueLayout.ADDRESS))).orElse(null);
+        this.statsHandle = lib.find("StatsHandle")
+                .map(s -> LINKER.downcallHandle(s, FunctionDescriptor.of(ValueLayout.ADDRESS, ValueLayout.JAVA_LONG)))
+                .orElse(null);
+
+        this.saveWarmup = lib.find("SaveWarmup")
+                .map(s -> LINKER.downcallHandle(s, FunctionDescriptor.of(ValueLayout.ADDRESS,
+                        ValueLayout.ADDRESS, ValueLayout.JAVA_INT)))
+                .orElse(null);
+        this.saveWarmupHandle = lib.find("SaveWarmupHandle")
+                .map(s -> LINKER.downcallHandle(s, FunctionDescriptor.of(ValueLayout.ADDRESS,
+                        ValueLayout.JAVA_LONG, ValueLayout.ADDRESS, ValueLayout.JAVA_INT)))
+                .orElse(null);
+
+        FunctionDescriptor handleAndString = FunctionDescriptor.of(ValueLayout.ADDRESS,
+                ValueLayout.JAVA_LONG, ValueLayout.ADDRESS);
+        if (lib.find("AggregatorOpen").isPresent()) {
+            this.aggregatorOpen = LINKER.downcallHandle(required(lib, "AggregatorOpen"),
+                    FunctionDescriptor.of(ValueLayout.JAVA_LONG, ValueLayout.ADDRESS, ValueLayout.ADDRESS));
+            this.aggregatorOpenHandle = LINKER.downcallHandle(required(lib, "AggregatorOpenHandle"),
+                    FunctionDescriptor.of(ValueLayout.JAVA_LONG,
+                            ValueLayout.JAVA_LONG, ValueLayout.ADDRESS, ValueLayout.ADDRESS));
+            this.aggregatorAdd = LINKER.downcallHandle(required(lib, "AggregatorAdd"), handleAndString);
+            this.aggregatorSnapshot = LINKER.downcallHandle(required(lib, "AggregatorSnapshot"),
+                    FunctionDescriptor.of(ValueLayout.ADDRESS, ValueLayout.JAVA_LONG, ValueLayout.JAVA_INT));
+            this.aggregatorClose = LINKER.downcallHandle(required(lib, "AggregatorClose"),
+                    FunctionDescriptor.ofVoid(ValueLayout.JAVA_LONG));
+        } else {
+            this.aggregatorOpen = null;
+            this.aggregatorOpenHandle = null;
+            this.aggregatorAdd = null;
+            this.aggregatorSnapshot = null;
+            this.aggregatorClose = null;
+        }
+        if (lib.find("InitHandle").isPresent()) {
+            this.initHandle = LINKER.downcallHandle(required(lib, "InitHandle"),
+                    FunctionDescriptor.of(ValueLayout.JAVA_LONG, ValueLayout.ADDRESS, ValueLayout.ADDRESS));
+            this.parseHandle = LINKER.downcallHandle(required(lib, "ParseHandle"), handleAndString);
+            this.parseBatchHandle = LINKER.downcallHandle(required(lib, "ParseBatchHandle"), handleAndString);
+            this.parseBinaryHandle = LINKER.downcallHandle(required(lib, "ParseBinaryHandle"), handleAndString);
+            this.parseBytesHandle = LINKER.downcallHandle(required(lib, "ParseBytesHandle"),
+                    FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.JAVA_LONG,
+                            ValueLayout.ADDRESS, ValueLayout.JAVA_INT, ValueLayout.ADDRESS, ValueLayout.JAVA_INT));
+            this.closeHandle = LINKER.downcallHandle(required(lib, "CloseHandle"),
+                    FunctionDescriptor.ofVoid(ValueLayout.JAVA_LONG));
+        } else {
+            this.initHandle = null;
+            this.parseHandle = null;
+            this.parseBatchHandle = null;
+            this.parseBinaryHandle = null;
+            this.parseBytesHandle = null;
+            this.closeHandle = null;
+        }
+    }
+
+    /**
+     * Creates this backend's own engine (replaced by a repeated init); see
+     * {@link JnaBackend#init(String)} for libraries predating InitHandle.
+     */
+    @Override
+    public synchronized void init(String configJson) {
+        if (handle == CLOSED) {
+            throw new IllegalStateException("FFM parser is closed");
+        }
+        if (initHandle == null) {
+            String err = call(init, configJson);
+            if (err != null) {
+                throw new RuntimeException("Failed to initialize FFM parser: " + err);
+            }
+            return;
+        }
+        long created;
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment errOut = arena.allocate(ValueLayout.ADDRESS);
+            created = (long) initHandle.invokeExact(arena.allocateFrom(configJson), errOut);
+            if (created == 0) {
+                throw new RuntimeException("Failed to initialize FFM parser: "
+                        + takeString(errOut.get(ValueLayout.ADDRESS, 0)));
+            }
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+        long previous = handle;
+        handle = created;
+        if (previous != 0) {
+            closeEngine(previous);
+        }
+    }
+
+    /** Releases this backend's engine; see {@link JnaBackend#close()}. */
+    @Override
+    public synchronized void close() {
+        long h = handle;
+        if (h != 0 && h != CLOSED) {
+            handle = CLOSED;
+            closeEngine(h);
+        }
+    }
+
+    private void closeEngine(long h) {
+        try {
+            closeHandle.invokeExact(h);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public String parse(String payloadJson) {
+        long h = handle;
+        return h != 0 ? call(parseHandle, h, payloadJson) : call(parse, payloadJson);
+    }
+
+    @Override
+    public String parseBatch(String payloadsJson) {
+        long h = handle;
+        if (h != 0) {
+            return call(parseBatchHandle, h, payloadsJson);
+        }
+        if (parseBatch == null) {
+            throw new UnsupportedOperationException("native library predates ParseBatch");
+        }
+        return call(parseBatch, payloadsJson);
+    }
+
+    @Override
+    public byte[] parseBinary(String payloadJson) {
+        long h = handle;
+        if (h == 0 && parseBinary == null) {
+            throw new UnsupportedOperationException("native library predates ParseBinary");
+        }
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment arg = arena.allocateFrom(payloadJson);
+            MemorySegment res = h != 0
+                    ? (MemorySegment) parseBinaryHandle.invokeExact(h, arg)
+                    : (MemorySegment) parseBinary.invokeExact(arg);
+            if (res.equals(MemorySegment.NULL)) {
+                return null;
+            }
+            try {
+                // [uint32 little-endian length][payload]; the payload may hold NULs.
+                int len = res.reinterpret(4).get(LENGTH_PREFIX, 0);
+                return res.reinterpret(4L + len).asSlice(4, len).toArray(ValueLayout.JAVA_BYTE);
+            } finally {
+                free(res);
+            }
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public String stats() {
+        long h = handle;
+        if (h != 0 ? statsHandle == null : stats == null) {
+            throw new UnsupportedOperationException("native library predates Stats");
+        }
+        try {
+            return takeString(h != 0 ? (MemorySegment) statsHandle.invokeExact(h) : (MemorySegment) stats.invokeExact());
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public void saveWarmup(String path, int entries) {
+        long h = handle;
+        if (h != 0 ? saveWarmupHandle == null : saveWarmup == null) {
+            throw new UnsupportedOperationException("native library predates SaveWarmup");
+        }
+        String err;
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment p = arena.allocateFrom(path);
+            err = takeString(h != 0 ? (MemorySegment) saveWarmupHandle.invokeExact(h, p, entries)
+                    : (MemorySegment) saveWarmup.invokeExact(p, entries));
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+        if (err != null) {
+            throw new RuntimeException("Failed to save warm-up snapshot: " + err);
+        }
+    }
+
+    @Override
+    public long openAggregator(String dimensionsJson) {
+        if (aggregatorOpen == null) {
+            throw new UnsupportedOperationException("native library predates AggregatorOpen");
+        }
+        long h = handle;
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment dims = arena.allocateFrom(dimensionsJson);
+            MemorySegment errOut = arena.allocate(ValueLayout.ADDRESS);
+            long session = h != 0 ? (long) aggregatorOpenHandle.invokeExact(h, dims, errOut)
+                    : (long) aggregatorOpen.invokeExact(dims, errOut);
+            if (session == 0) {
+                throw new IllegalArgumentException("Failed to open aggregator: "
+                        + takeString(errOut.get(ValueLayout.ADDRESS, 0)));
+            }
+            return session;
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public void aggregate(long session, String payloadsJson) {
+        String err = call(aggregatorAdd, session, payloadsJson);
+        if (err != null) {
+            throw new RuntimeException("Failed to aggregate: " + err);
+        }
+    }
+
+    @Override
+    public String aggregatorSnapshot(long session, boolean reset) {
+        try {
+            return takeString((MemorySegment) aggregatorSnapshot.invokeExact(session, reset ? 1 : 0));
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public void closeAggregator(long session) {
+        try {
+            aggregatorClose.invokeExact(session);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public int parseBytes(ByteBuffer in, int inLen, ByteBuffer out) {
+        long h = handle;
+        if (h == 0 && parseBytes == null) {
+            throw new UnsupportedOperationException("native library predates ParseBytes");
+        }
+        BufferSegments segments = SEGMENTS.get();
+        try {
+            if (h != 0) {
+                return (int) parseBytesHandle.invokeExact(h, segments.in(in), inLen, segments.out(out), out.capacity());
+            }
+            return (int) parseBytes.invokeExact(segments.in(in), inLen, segments.out(out), out.capacity());
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    // call passes a NUL-terminated UTF-8 copy of arg and takes ownership of
+    // the returned C string (null stays null).
+    private String call(MethodHandle fn, String arg) {
+        try (Arena arena = Arena.ofConfined()) {
+            return takeString((MemorySegment) fn.invokeExact(arena.allocateFrom(arg)));
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    // Same, for the handle-based exports.
+    private String call(MethodHandle fn, long h, String arg) {
+        try (Arena arena = Arena.ofConfined()) {
+            return takeString((MemorySegment) fn.invokeExact(h, arena.allocateFrom(arg)));
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    private String takeString(MemorySegment res) throws Throwable {
+        if (res.equals(MemorySegment.NULL)) {
+            return null;
+        }
+        try {
+            return res.reinterpret(Long.MAX_VALUE).getString(0);
+        } finally {
+            free(res);
+        }
+    }
+
+    private void free(MemorySegment ptr) throws Throwable {
+        freeString.invokeExact(ptr);
+    }
+
+    private static MemorySegment required(SymbolLookup lib, String name) {
+        return lib.find(name).orElseThrow(() ->
+                new UnsatisfiedLinkError("ua-parser: symbol " + name + " not found in native library"));
+    }
+
+    private static String bundledLibrary() {
+        File lib = NativeLoader.locateLibrary();
+        if (lib == null) {
+            throw new UnsatisfiedLinkError("ua-parser: no bundled native library for this platform");
+        }
+        return lib.getAbsolutePath();
+    }
+
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException) {
+            return (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        return new RuntimeException(t);
+    }
+
+    /**
+     * Whole-buffer segments for the last direct buffers seen on this thread.
+     * The engine addresses them from offset 0 regardless of position/limit,
+     * matching what JNA passes for a direct ByteBuffer.
+     */
+    private static final class BufferSegments {
+        private ByteBuffer inBuffer;
+        private MemorySegment inSegment;
+        private ByteBuffer outBuffer;
+        private MemorySegment outSegment;
+
+        MemorySegment in(ByteBuffer buffer) {
+            if (buffer != inBuffer) {
+                inSegment = wrap(buffer);
+                inBuffer = buffer;
+            }
+            return inSegment;
+        }
+
+        MemorySegment out(ByteBuffer buffer) {
+            if (buffer != outBuffer) {
+                outSegment = wrap(buffer);
+                outBuffer = buffer;
+            }
+            return outSegment;
+        }
+
+        private static MemorySegment wrap(ByteBuffer buffer) {
+            return MemorySegment.ofBuffer(buffer.duplicate().clear());
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.github.octanium91;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Aggregation sessions: JVM fallback counting, engine-side sessions, and
+ * merging snapshots across threads and through JSON.
+ */
+public class AggregatorTest {
+
+    private static List<UaParser.Request> requests(String... uas) {
+        List<UaParser.Request> out = new ArrayList<>();
+        for (String ua : uas) {
+            out.add(new UaParser.Request(ua, null));
+        }
+        return out;
+    }
+
+    private static UaParser parser(ParserBackend backend) {
+        UaParser parser = new UaParser(backend);
+        parser.init(new UaParser.Config());
+        return parser;
+    }
+
+    @Test
+    public void fallbackCountsInTheJvm() {
+        ParseBatchTest.EchoBackend backend = new ParseBatchTest.EchoBackend();
+        try (Aggregator agg = parser(backend).aggregator("browser.name", "is_bot", "bot.vendor")) {
+            assertFalse(agg.inEngine());
+            agg.add(requests("a", "b", "a", "a"));
+            agg.add("b", null);
+
+            Aggregate s = agg.snapshot();
+            assertEquals(Arrays.asList("browser.name", "is_bot", "bot.vendor"), s.dimensions);
+            assertEquals(5, s.total);
+            assertEquals(2, s.groups.size());
+            assertEquals(Arrays.asList("a", "false", ""), s.groups.get(0).values);
+            assertEquals(3, s.count("a", "false", ""));
+            assertEquals(2, s.count("b", "false", ""));
+            assertEquals(Arrays.asList(2, 1), backend.batchSizes);
+
+            assertEquals(s.toJson(), agg.snapshotAndReset().toJson());
+            assertEquals(0, agg.snapshot().total);
+            assertTrue(agg.snapshot().groups.isEmpty());
+        }
+    }
+
+    @Test
+    public void rejectsBadDimensions() {
+        UaParser parser = parser(new ParseBatchTest.EchoBackend());
+        for (String[] dims : new String[][]{{}, {"browser.nam"}, {"ua"}, {"is_bot", "is_bot"}}) {
+            try {
+                parser.aggregator(dims);
+                fail("accepted " + Arrays.toString(dims));
+            } catch (IllegalArgumentException expected) {
+                // ok
+            }
+        }
+        for (String name : Aggregator.availableDimensions()) {
+            parser.aggregator(name).close();
+        }
+    }
+
+    @Test
+    public void threadsMergeIntoOneAggregate() throws Exception {
+        UaParser parser = parser(new ParseBatchTest.EchoBackend());
+        Aggregator whole = parser.aggregator("browser.name");
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<Aggregate>> parts = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            String ua = "ua-" + (t % 2);
+            whole.add(requests(ua, ua, "x"));
+            parts.add(pool.submit(() -> {
+                try (Aggregator agg = parser.aggregator("browser.name")) {
+                    agg.add(requests(ua, ua, "x"));
+                    return agg.snapshot();
+                }
+            }));
+        }
+        Aggregate merged = null;
+        for (Future<Aggregate> part : parts) {
+            merged = merged == null ? part.get() : merged.merge(part.get());
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(whole.snapshot().toJson(), merged.toJson());
+        assertEquals(4, merged.count("x"));
+        assertEquals(4, merged.count("ua-0"));
+
+        Aggregate back = Aggregate.fromJson(merged.toJson());
+        assertEquals(merged.toJson(), back.toJson());
+        assertEquals(24, Aggregate.fromJson("[" + merged.toJson() + "," + back.toJson() + "]").total);
+        try {
+            merged.merge(parser.aggregator("os.platform").snapshot());
+            fail("merged an aggregate over other dimensions");
+        } catch (IllegalArgumentException expected) {
+            // ok
+        }
+        try {
+            Aggregate.fromJson("{\"error\": \"Invalid or closed aggregation session\"}");
+            fail("accepted an engine error");
+        } catch (IllegalArgumentException expected) {
+            // ok
+        }
+    }
+
+    @Test
+    public void engineSessionsCountInTheEngine() {
+        SessionBackend backend = new SessionBackend();
+        UaParser parser = parser(backend);
+        Aggregator agg = parser.aggregator("browser.name");
+        assertTrue(agg.inEngine());
+        assertEquals("[\"browser.name\"]", backend.dimensions);
+
+        List<UaParser.Request> many = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            many.add(new UaParser.Request(i % 3 == 0 ? "a" : "b", null));
+        }
+        agg.add(many);
+        // Every request crosses (no dedupe), in chunks; nothing is parsed.
+        assertEquals(Arrays.asList(1024, 1024, 452), backend.addSizes);
+        assertTrue(backend.batchSizes.isEmpty());
+
+        Aggregate s = agg.snapshotAndReset();
+        assertEquals(2500, s.total);
+        assertEquals(834, s.count("a"));
+        assertEquals(1666, s.count("b"));
+        assertEquals(Collections.singletonList("b"), s.groups.get(0).values);
+        assertEquals(0, agg.snapshot().total);
+
+        agg.close();
+        agg.close();
+        assertEquals(1, backend.closed);
+        try {
+            agg.add(many);
+            fail("added to a closed aggregator");
+        } catch (IllegalStateException expected) {
+            // ok
+        }
+    }
+
+    /** Counts browser names "in the engine" and reports engine snapshots. */
+    static class SessionBackend extends ParseBatchTest.EchoBackend {
+        final List<Integer> addSizes = new ArrayList<>();
+        final Map<String, Long> counts = new TreeMap<>();
+        String dimensions;
+        int closed;
+
+        @Override
+        public long openAggregator(String dimensionsJson) {
+            dimensions = dimensionsJson;
+            return 7;
+        }
+
+        @Override
+        public void aggregate(long session, String payloadsJson) {
+            assertEquals(7, session);
+            JsonArray in = JsonParser.parseString(payloadsJson).getAsJsonArray();
+            addSizes.add(in.size());
+            for (JsonElement payload : in) {
+                counts.merge(payload.getAsJsonObject().get("ua").getAsString(), 1L, Long::sum);
+            }
+        }
+
+        @Override
+        public String aggregatorSnapshot(long session, boolean reset) {
+            // Two "instances", as a pooled backend reports them.
+            StringBuilder out = new StringBuilder("[");
+            long total = counts.values().stream().mapToLong(Long::longValue).sum();
+            out.append("{\"dimensions\":[\"browser.name\"],\"total\":").append(total).append(",\"groups\":[");
+            String sep = "";
+            for (Map.Entry<String, Long> e : counts.entrySet()) {
+                out.append(sep).append("{\"values\":[\"").append(e.getKey()).append("\"],\"count\":")
+                        .append(e.getValue()).append('}');
+                sep = ",";
+            }
+            out.append("]},{\"dimensions\":[\"browser.name\"],\"total\":0,\"groups\":null}]");
+            if (reset) {
+                counts.clear();
+            }
+            return out.toString();
+        }
+
+        @Override
+        public void closeAggregator(long session) {
+            closed++;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.github.octanium91;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * createAsync / readiness / parseAsync against an in-memory backend whose
+ * init can be held open (no engine needed).
+ */
+public class AsyncStartTest {
+
+    /** EchoBackend whose init waits until released. */
+    static class GatedBackend extends ParseBatchTest.EchoBackend {
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public void init(String configJson) {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    @Test
+    public void blockingConstructorIsReadyImmediately() {
+        UaParser parser = new UaParser(new ParseBatchTest.EchoBackend());
+        assertTrue(parser.readiness().isDone());
+        assertSame(parser, parser.readiness().join());
+    }
+
+    @Test
+    public void createAsyncReturnsBeforeInitAndParsesOnceReady() throws Exception {
+        GatedBackend backend = new GatedBackend();
+        UaParser parser = UaParser.createAsync(() -> backend, new UaParser.Config(), task -> new Thread(task).start());
+
+        CompletableFuture<UaParser.Result> single = parser.parseAsync("a", null);
+        CompletableFuture<List<UaParser.Result>> batch = parser.parseBatchAsync(
+                Arrays.asList(new UaParser.Request("b", null), new UaParser.Request("c", null)));
+        assertFalse("startup is held open", parser.readiness().isDone());
+        assertFalse(single.isDone());
+
+        backend.release.countDown();
+        assertSame(parser, parser.readiness().get(10, TimeUnit.SECONDS));
+        assertEquals("a", single.get(10, TimeUnit.SECONDS).browser.name);
+        assertEquals("c", batch.get(10, TimeUnit.SECONDS).get(1).browser.name);
+        assertEquals("GatedBackend", parser.getBackendName());
+    }
+
+    @Test
+    public void failedStartupFailsReadinessAndParses() throws Exception {
+        UaParser parser = UaParser.createAsync(() -> {
+            throw new UnsatisfiedLinkError("no engine here");
+        }, new UaParser.Config(), Runnable::run);
+
+        assertTrue(parser.readiness().isCompletedExceptionally());
+        try {
+            parser.parseAsync("a", null).get(10, TimeUnit.SECONDS);
+            fail("parseAsync must fail when startup failed");
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof UnsatisfiedLinkError);
+        }
+        try {
+            parser.parse("a", null);
+            fail("parse must fail when startup failed");
+        } catch (IllegalStateException expected) {
+            assertTrue(expected.getCause() instanceof UnsatisfiedLinkError);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.github.octanium91;
+
+import com.google.gson.Gson;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Binary result decoding against hand-built buffers (format version 1), and
+ * equivalence with the Gson path for the same result.
+ */
+public class BinaryResultDecoderTest {
+
+    /** Minimal encoder mirroring MarshalBinaryResult's table/ref scheme. */
+    private static final class Writer {
+        final List<String> table = new ArrayList<>();
+        final ByteArrayOutputStream refs = new ByteArrayOutputStream();
+
+        void str(String s) {
+            if (s.isEmpty()) {
+                varint(refs, 0);
+                return;
+            }
+            int d = Arrays.asList(BinaryResultDecoder.DICTIONARY).indexOf(s);
+            if (d >= 0) {
+                varint(refs, d + 1);
+                return;
+            }
+            int t = table.indexOf(s);
+            if (t < 0) {
+                t = table.size();
+                table.add(s);
+            }
+            varint(refs, BinaryResultDecoder.DICTIONARY.length + 1 + t);
+        }
+
+        byte[] finish(long flags) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.write('U');
+            out.write('B');
+            out.write(BinaryResultDecoder.FORMAT_VERSION);
+            varint(out, flags);
+            varint(out, table.size());
+            for (String s : table) {
+                byte[] b = s.getBytes(StandardCharsets.UTF_8);
+                varint(out, b.length);
+                out.write(b, 0, b.length);
+            }
+            byte[] r = refs.toByteArray();
+            out.write(r, 0, r.length);
+            return out.toByteArray();
+        }
+
+        static void varint(ByteArrayOutputStream out, long v) {
+            while ((v & ~0x7FL) != 0) {
+                out.write((int) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            out.write((int) v);
+        }
+    }
+
+    private static byte[] gptBotBuffer() {
+        Writer w = new Writer();
+        for (String s : new String[]{
+                "1.2", "Mozilla/5.0 (compatible; GPTBot/1.2; +https://openai.com/gptbot)",
+                "GPTBot", "1.2", "1", "bot", // browser
+                "Other", "", "other", "Other", "", // os
+                "Spider", "Spider", "bot", "", // device
+                "", "", // cpu
+                "", "", // engine
+                "bot", "", "a1b2c3d4"}) {
+            w.str(s);
+        }
+        Writer.varint(w.refs, 1); // integrity.reasons = []
+        w.str("GPTBot");
+        w.str("training");
+        w.str("OpenAI");
+        long flags = 1L /* is_bot */ | 1L << 1 /* is_ai_crawler */ | 1L << 16 /* has bot */;
+        return w.finish(flags);
+    }
+
+    @Test
+    public void decodesLikeTheJsonPath() {
+        UaParser.Result r = BinaryResultDecoder.decode(gptBotBuffer());
+
+        assertEquals("1.2", r.resultVersion);
+        assertEquals("GPTBot", r.browser.name);
+        assertEquals("OpenAI", r.bot.vendor);
+        assertEquals("training", r.bot.category);
+        assertEquals(true, r.isBot && r.isAiCrawler);
+        assertNull(r.gpu);
+        assertNull("omitempty security.category stays null", r.security.category);
+
+        String json = "{\"result_version\":\"1.2\",\"ua\":\"Mozilla/5.0 (compatible; GPTBot/1.2; +https://openai.com/gptbot)\","
+                + "\"browser\":{\"name\":\"GPTBot\",\"version\":\"1.2\",\"major\":\"1\",\"type\":\"bot\"},"
+                + "\"os\":{\"name\":\"Other\",\"version\":\"\",\"platform\":\"other\",\"version_name\":\"Other\",\"version_raw\":\"\"},"
+                + "\"device\":{\"model\":\"Spider\",\"vendor\":\"Spider\",\"type\":\"bot\",\"form_factor\":\"\"},"
+                + "\"cpu\":{\"architecture\":\"\",\"bitness\":\"\"},\"engine\":{\"name\":\"\",\"version\":\"\"},"
+                + "\"category\":\"bot\",\"is_bot\":true,\"is_ai_crawler\":true,\"is_frozen_ua\":false,"
+                + "\"is_mobile\":false,\"is_desktop\":false,\"is_touch_capable\":false,\"is_chrome_family\":false,\"is_apple_silicon\":false,"
+                + "\"automation\":{\"headless\":false,\"electron\":false,\"webdriver\":false},"
+                + "\"integrity\":{\"spoofed\":false,\"reasons\":[]},\"security\":{\"suspicious\":false},"
+                + "\"detection\":{\"client_hints_used\":false,\"high_entropy\":false,\"signals_used\":false},"
+                + "\"class_hash\":\"a1b2c3d4\",\"bot\":{\"name\":\"GPTBot\",\"category\":\"training\",\"vendor\":\"OpenAI\"}}";
+        Gson gson = new Gson();
+        assertEquals(gson.toJson(gson.fromJson(json, UaParser.Result.class)), gson.toJson(r));
+    }
+
+    @Test
+    public void dictionaryMatchesGoFormatVersion1() {
+        // Same guard as TestBinaryDictionaryStable in pkg/core/binary_test.go.
+        assertEquals(84, BinaryResultDecoder.DICTIONARY.length);
+        assertEquals("jndi", BinaryResultDecoder.DICTIONARY[83]);
+    }
+
+    @Test
+    public void rejectsTruncatedAndUnknownVersions() {
+        byte[] good = gptBotBuffer();
+        try {
+            BinaryResultDecoder.decode(Arrays.copyOf(good, good.length - 1));
+            fail("truncated buffer must not decode");
+        } catch (IllegalArgumentException expected) {
+            // ok
+        }
+        byte[] newer = good.clone();
+        newer[2] = BinaryResultDecoder.FORMAT_VERSION + 1;
+        try {
+            BinaryResultDecoder.decode(newer);
+            fail("unknown format version must be rejected");
+        } catch (UnsupportedOperationException expected) {
+            // ok: UaParser falls back to JSON
+        }
+    }
+
+    @Test
+    public void parserUsesBinaryAndFallsBackToJson() {
+        byte[] encoded = gptBotBuffer();
+        ParseBatchTest.EchoBackend binary = new ParseBatchTest.EchoBackend() {
+            @Override
+            public byte[] parseBinary(String payloadJson) {
+                return encoded;
+            }
+        };
+        UaParser.Config cfg = new UaParser.Config();
+        cfg.resultEncoding = "binary";
+
+        UaParser parser = new UaParser(binary);
+        parser.init(cfg);
+        assertEquals("GPTBot", parser.parse("ignored", null).browser.name);
+        assertEquals(0, binary.singleCalls);
+
+        ParseBatchTest.EchoBackend jsonOnly = new ParseBatchTest.EchoBackend();
+        UaParser fallback = new UaParser(jsonOnly);
+        fallback.init(cfg);
+        assertEquals("x", fallback.parse("x", null).browser.name);
+        assertEquals("y", fallback.parse("y", null).browser.name);
+        assertEquals(2, jsonOnly.singleCalls);
+    }
+}
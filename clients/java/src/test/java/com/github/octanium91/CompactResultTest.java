@@ -0,0 +1,169 @@
+package com.github.octanium91;
+
+import com.google.gson.Gson;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Compact results: dictionary codes, the flag bitset, agreement between the
+ * JSON and Result paths, and struct-of-arrays batches.
+ */
+public class CompactResultTest {
+
+    private static final String JSON = "{\"ua\":\"x\",\"os\":{\"platform\":\"android\"},"
+            + "\"browser\":{\"name\":\"Chrome \\\"Mobile\\\"\"},"
+            + "\"device\":{\"type\":\"mobile\",\"form_factor\":\"\"},\"category\":\"mobile\","
+            + "\"bot\":{\"name\":\"Googlebot\",\"category\":\"search\"},"
+            + "\"is_bot\":true,\"is_mobile\":true,\"is_chrome_family\":true,"
+            + "\"automation\":{\"webdriver\":true},\"integrity\":{\"spoofed\":false,\"reasons\":[]},"
+            + "\"detection\":{\"signals_used\":true}}";
+
+    @Test
+    public void dictionaryCodesAreStable() {
+        CompactDictionary d = new CompactDictionary();
+        assertEquals(0, d.code(null));
+        assertEquals(1, d.code("Chrome"));
+        assertEquals(2, d.code("Firefox"));
+        assertEquals(1, d.code(new String("Chrome")));
+        assertEquals(3, d.code(""));
+        assertEquals(0, d.find("Safari"));
+        assertEquals(2, d.find("Firefox"));
+        assertEquals("Firefox", d.value(2));
+        assertNull(d.value(0));
+        assertEquals(Arrays.asList("Chrome", "Firefox", ""), d.values());
+        try {
+            d.value(4);
+            fail("issued code 4");
+        } catch (IllegalArgumentException expected) {
+            // ok
+        }
+        for (int i = 0; i < 5000; i++) {
+            assertEquals(i + 4, d.code("v" + i));
+        }
+        for (int i = 0; i < 5000; i++) {
+            assertEquals(i + 4, d.find("v" + i));
+        }
+        assertEquals(5003, d.size());
+    }
+
+    @Test
+    public void concurrentInterningAgrees() throws Exception {
+        CompactDictionary d = new CompactDictionary();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<int[]>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            futures.add(pool.submit(() -> {
+                int[] codes = new int[500];
+                for (int i = 0; i < codes.length; i++) {
+                    codes[i] = d.code("value-" + i);
+                }
+                return codes;
+            }));
+        }
+        int[] first = futures.get(0).get();
+        for (Future<int[]> f : futures) {
+            assertTrue(Arrays.equals(first, f.get()));
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(500, d.size());
+        for (int i = 0; i < 500; i++) {
+            assertEquals("value-" + i, d.value(first[i]));
+        }
+    }
+
+    @Test
+    public void viewAndResultCodeAlike() {
+        CompactResult.Dictionaries dicts = new CompactResult.Dictionaries();
+        CompactResult fromView = CompactResult.of(ResultView.of(JSON), dicts);
+        CompactResult fromResult = CompactResult.of(new Gson().fromJson(JSON, UaParser.Result.class), dicts);
+
+        for (CompactResult.Column c : CompactResult.Column.values()) {
+            assertEquals(c.name(), fromResult.code(c), fromView.code(c));
+        }
+        assertEquals(fromResult.flags(), fromView.flags());
+        assertEquals("Chrome \"Mobile\"", fromView.value(CompactResult.Column.BROWSER_NAME));
+        assertEquals("", fromView.value(CompactResult.Column.DEVICE_FORM_FACTOR));
+        assertEquals("search", fromView.value(CompactResult.Column.BOT_CATEGORY));
+        assertTrue(fromView.has(CompactResult.Flag.IS_BOT));
+        assertTrue(fromView.has(CompactResult.Flag.WEBDRIVER));
+        assertTrue(fromView.has(CompactResult.Flag.SIGNALS_USED));
+        assertTrue(fromView.has(CompactResult.Flag.HAS_BOT));
+        assertFalse(fromView.has(CompactResult.Flag.HAS_GPU));
+        assertFalse(fromView.has(CompactResult.Flag.SPOOFED));
+        assertFalse(fromView.has(CompactResult.Flag.IS_DESKTOP));
+    }
+
+    @Test
+    public void batchStoresRowsAsArrays() {
+        CompactBatch batch = new CompactBatch(new CompactResult.Dictionaries(), 1);
+        CompactResult row = CompactResult.of(ResultView.of(JSON), batch.dictionaries());
+        for (int i = 0; i < 100; i++) {
+            batch.add(row);
+        }
+        assertEquals(100, batch.size());
+        assertEquals("android", batch.value(99, CompactResult.Column.OS_PLATFORM));
+        assertEquals(row.flags(), batch.flags(50));
+        assertTrue(batch.has(0, CompactResult.Flag.IS_MOBILE));
+        assertEquals(row.toString(), batch.get(7).toString());
+        assertEquals(row.code(CompactResult.Column.CATEGORY), batch.codes(CompactResult.Column.CATEGORY)[42]);
+        try {
+            batch.code(100, CompactResult.Column.CATEGORY);
+            fail("read past size");
+        } catch (IndexOutOfBoundsException expected) {
+            // ok
+        }
+        try {
+            batch.add(CompactResult.of(ResultView.of(JSON), new CompactResult.Dictionaries()));
+            fail("accepted a row from other dictionaries");
+        } catch (IllegalArgumentException expected) {
+            // ok
+        }
+        batch.clear();
+        assertEquals(0, batch.size());
+    }
+
+    @Test
+    public void parseCompactBatchDedupesAndKeepsOrder() {
+        ParseBatchTest.EchoBackend backend = new ParseBatchTest.EchoBackend();
+        UaParser parser = new UaParser(backend);
+        parser.init(new UaParser.Config());
+        List<UaParser.Request> requests = new ArrayList<>();
+        for (String ua : new String[]{"a", "b", "a", "c", "b"}) {
+            requests.add(new UaParser.Request(ua, null));
+        }
+        CompactBatch batch = new CompactBatch();
+        parser.parseCompactBatch(requests, batch);
+
+        assertEquals(Arrays.asList(3), backend.batchSizes);
+        assertEquals(5, batch.size());
+        for (int i = 0; i < requests.size(); i++) {
+            assertEquals(requests.get(i).ua, batch.value(i, CompactResult.Column.BROWSER_NAME));
+            assertNull(batch.value(i, CompactResult.Column.OS_PLATFORM));
+        }
+        assertEquals(3, batch.dictionaries().get(CompactResult.Column.BROWSER_NAME).size());
+
+        backend.batchExport = false;
+        parser.parseCompactBatch(requests.subList(0, 2), batch);
+        assertEquals(7, batch.size());
+        assertEquals(2, backend.singleCalls);
+        assertEquals("b", batch.value(6, CompactResult.Column.BROWSER_NAME));
+
+        CompactResult single = parser.parseCompact("a", null);
+        assertEquals("a", single.value(CompactResult.Column.BROWSER_NAME));
+        assertEquals(1, single.code(CompactResult.Column.BROWSER_NAME));
+    }
+}
@@ -0,0 +1,183 @@
+package com.github.octanium91;
+
+import com.google.gson.Gson;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Off-heap JVM result cache: exact round trips, CLOCK eviction over the
+ * circular log, and a long randomized run against a reference map.
+ */
+public class OffHeapResultCacheTest {
+
+    private static final Gson GSON = new Gson();
+
+    private static UaParser.Result full() {
+        UaParser.Result r = new UaParser.Result();
+        r.resultVersion = "1.2";
+        r.ua = "Mozilla/5.0 (Linux; Android 14; Pixel 8) Ünïcode ✓";
+        r.category = "mobile";
+        r.classHash = "c0ffee";
+        r.os = new UaParser.OSInfo();
+        r.os.name = "Android";
+        r.os.version = "14";
+        r.os.platform = "android";
+        r.os.versionName = "";
+        r.os.versionRaw = "14";
+        r.browser = new UaParser.BrowserInfo();
+        r.browser.name = "Chrome Mobile";
+        r.browser.version = "126.0.0.0";
+        r.browser.major = "126";
+        r.browser.type = "browser";
+        r.device = new UaParser.DeviceInfo();
+        r.device.model = "Pixel 8";
+        r.device.vendor = "Google";
+        r.device.type = "mobile";
+        r.device.formFactor = null;
+        r.engine = new UaParser.EngineInfo();
+        r.engine.name = "Blink";
+        r.engine.version = "126";
+        r.integrity = new UaParser.IntegrityInfo();
+        r.integrity.spoofed = true;
+        r.integrity.reasons = new ArrayList<>(Arrays.asList("ua-vs-ch-platform", ""));
+        r.security = new UaParser.SecurityInfo();
+        r.security.suspicious = true;
+        r.automation = new UaParser.AutomationInfo();
+        r.automation.webdriver = true;
+        r.detection = new UaParser.DetectionInfo();
+        r.detection.highEntropy = true;
+        r.gpu = new UaParser.GPUInfo();
+        r.gpu.vendor = "Qualcomm";
+        r.gpu.renderer = "Adreno (TM) 740";
+        r.isMobile = true;
+        r.isTouchCapable = true;
+        r.isChromeFamily = true;
+        return r;
+    }
+
+    private static UaParser.Result named(String name) {
+        UaParser.Result r = new UaParser.Result();
+        r.ua = name;
+        return r;
+    }
+
+    @Test
+    public void encodingRoundTripsExactly() {
+        UaParser.Result r = full();
+        UaParser.Result back = OffHeapResultCache.decode(OffHeapResultCache.encode(r));
+        assertEquals(GSON.toJson(r), GSON.toJson(back));
+        assertNull(back.device.formFactor);
+        assertNull(back.cpu);
+        assertNull(back.bot);
+        assertNull(back.security.category);
+        assertEquals("", back.os.versionName);
+
+        UaParser.Result empty = new UaParser.Result();
+        empty.integrity = new UaParser.IntegrityInfo();
+        back = OffHeapResultCache.decode(OffHeapResultCache.encode(empty));
+        assertNull(back.integrity.reasons);
+        assertNull(back.ua);
+    }
+
+    @Test
+    public void hitsSkipTheBackendAndReturnCopies() {
+        ParseBatchTest.EchoBackend backend = new ParseBatchTest.EchoBackend();
+        UaParser parser = new UaParser(backend);
+        UaParser.Config cfg = new UaParser.Config();
+        cfg.jvmCacheSize = 16;
+        cfg.jvmCacheOffHeap = true;
+        parser.init(cfg);
+
+        UaParser.Result first = parser.parse("a", null);
+        first.browser.name = "mutated";
+        UaParser.Result second = parser.parse("a", null);
+
+        assertEquals(1, backend.singleCalls);
+        assertEquals("a", second.browser.name);
+        assertNotSame(second, parser.parse("a", null));
+        UaParser.CacheStats stats = parser.getCacheStats();
+        assertEquals(2, stats.hits);
+        assertEquals(1, stats.size);
+        assertEquals(16, stats.capacity);
+        assertEquals(16L * OffHeapResultCache.DEFAULT_ENTRY_BYTES, stats.maxBytes);
+        assertTrue(stats.bytes > 0);
+    }
+
+    @Test
+    public void clockKeepsHitEntriesOverOneOffs() {
+        OffHeapResultCache cache = new OffHeapResultCache(2, 1 << 16, 1);
+        cache.put("hot", named("hot"));
+        cache.put("once", named("once"));
+        cache.get("hot");
+        cache.put("new", named("new")); // "hot" is moved to the head, "once" dropped
+
+        assertEquals(1, cache.stats().evictions);
+        assertEquals("hot", cache.get("hot").ua);
+        assertNull(cache.get("once"));
+        assertEquals("new", cache.get("new").ua);
+
+        cache.clear();
+        assertNull(cache.get("hot"));
+        assertEquals(0, cache.stats().size);
+        assertEquals(0, cache.stats().bytes);
+    }
+
+    @Test
+    public void byteBudgetBoundsTheLog() {
+        int budget = 4096;
+        OffHeapResultCache cache = new OffHeapResultCache(0, budget, 1);
+        for (int i = 0; i < 1000; i++) {
+            cache.put("key-" + i, named("value-" + i));
+            assertTrue(cache.stats().bytes <= budget);
+        }
+        UaParser.CacheStats stats = cache.stats();
+        assertTrue(stats.evictions > 0);
+        assertEquals(1000, stats.size + stats.evictions);
+        assertEquals("value-999", cache.get("key-999").ua);
+
+        StringBuilder huge = new StringBuilder();
+        for (int i = 0; i < budget; i++) {
+            huge.append('x');
+        }
+        cache.put("huge", named(huge.toString()));
+        assertNull("an entry above the stripe budget is not cached", cache.get("huge"));
+    }
+
+    @Test
+    public void randomizedAgainstReference() {
+        // Small log, variable entry sizes, a hot set that is hit often: the
+        // head wraps thousands of times and most evictions are moves.
+        OffHeapResultCache cache = new OffHeapResultCache(0, 16 << 10, 1);
+        Map<String, String> reference = new HashMap<>();
+        Random random = new Random(42);
+        for (int op = 0; op < 200_000; op++) {
+            String key = random.nextInt(4) == 0 ? "hot" + random.nextInt(8) : "k" + random.nextInt(5000);
+            UaParser.Result hit = cache.get(key);
+            if (hit != null) {
+                assertEquals(key, reference.get(key), hit.ua);
+                continue;
+            }
+            StringBuilder value = new StringBuilder(key);
+            for (int i = random.nextInt(300); i > 0; i--) {
+                value.append((char) ('a' + i % 26));
+            }
+            // Values are a function of the key, as in the real cache.
+            String v = reference.computeIfAbsent(key, k -> value.toString());
+            cache.put(key, named(v));
+        }
+        UaParser.CacheStats stats = cache.stats();
+        assertTrue(stats.size > 0);
+        assertTrue(stats.bytes <= stats.maxBytes);
+        assertTrue(stats.hits > 0 && stats.evictions > 0);
+    }
+}
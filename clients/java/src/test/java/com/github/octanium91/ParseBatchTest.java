@@ -0,0 +1,110 @@
+package com.github.octanium91;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+/**
+ * Batch dedupe and ordering against an in-memory backend (no engine needed).
+ */
+public class ParseBatchTest {
+
+    /** Echoes each payload's UA back as browser.name and counts crossings. */
+    static class EchoBackend implements ParserBackend {
+        final List<Integer> batchSizes = new ArrayList<>();
+        int singleCalls;
+        boolean batchExport = true;
+
+        @Override
+        public void init(String configJson) {
+        }
+
+        @Override
+        public String parse(String payloadJson) {
+            singleCalls++;
+            return echo(JsonParser.parseString(payloadJson).getAsJsonObject()).toString();
+        }
+
+        @Override
+        public String parseBatch(String payloadsJson) {
+            if (!batchExport) {
+                throw new UnsupportedOperationException("no batch export");
+            }
+            JsonArray in = JsonParser.parseString(payloadsJson).getAsJsonArray();
+            batchSizes.add(in.size());
+            JsonArray out = new JsonArray();
+            for (JsonElement payload : in) {
+                out.add(echo(payload.getAsJsonObject()));
+            }
+            return out.toString();
+        }
+
+        private static JsonObject echo(JsonObject payload) {
+            JsonObject browser = new JsonObject();
+            browser.addProperty("name", payload.get("ua").getAsString());
+            JsonObject res = new JsonObject();
+            res.addProperty("ua", payload.get("ua").getAsString());
+            res.add("browser", browser);
+            return res;
+        }
+    }
+
+    private static Map<String, String> headers(String... kv) {
+        Map<String, String> m = new HashMap<>();
+        for (int i = 0; i < kv.length; i += 2) {
+            m.put(kv[i], kv[i + 1]);
+        }
+        return m;
+    }
+
+    @Test
+    public void dedupesConsumedInputsAndKeepsOrder() {
+        EchoBackend backend = new EchoBackend();
+        UaParser parser = new UaParser(backend);
+
+        List<UaParser.Result> results = parser.parseBatch(Arrays.asList(
+                new UaParser.Request("a", null),
+                new UaParser.Request("b", headers("Sec-CH-UA-Mobile", "?1")),
+                new UaParser.Request("a", headers("Accept", "text/html")), // unconsumed header: same key
+                new UaParser.Request("b", headers("sec-ch-ua-mobile", "?1")), // case-insensitive
+                new UaParser.Request("b", headers("sec-ch-ua-mobile", "?0"))));
+
+        assertEquals(Collections.singletonList(3), backend.batchSizes);
+        assertEquals(5, results.size());
+        String[] expected = {"a", "b", "a", "b", "b"};
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], results.get(i).browser.name);
+        }
+        assertNotSame("duplicates must not share a Result", results.get(0), results.get(2));
+    }
+
+    @Test
+    public void fallsBackToSingleParsesWithoutBatchExport() {
+        EchoBackend backend = new EchoBackend();
+        backend.batchExport = false;
+        UaParser parser = new UaParser(backend);
+
+        List<UaParser.Result> results = parser.parseBatch(Arrays.asList(
+                new UaParser.Request("x", null),
+                new UaParser.Request("x", null),
+                new UaParser.Request("y", null)));
+
+        assertEquals(2, backend.singleCalls);
+        assertEquals("x", results.get(1).browser.name);
+        assertEquals("y", results.get(2).browser.name);
+        assertEquals(new Gson().toJson(results.get(0)), new Gson().toJson(results.get(1)));
+    }
+}
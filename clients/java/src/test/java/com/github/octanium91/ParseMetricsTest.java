@@ -0,0 +1,95 @@
+package com.github.octanium91;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Listener stage timings and engine stats decoding/merging, against an
+ * in-memory backend.
+ */
+public class ParseMetricsTest {
+
+    private static final String INSTANCE_STATS = "{\"collecting\":true,\"generation\":%d,"
+            + "\"cache\":{\"hits\":3,\"misses\":1,\"evictions\":0,\"size\":1,\"capacity\":10},"
+            + "\"parse_latency\":{\"hit\":{\"count\":3,\"sum_ns\":300,\"bounds_ns\":[512,1024],\"counts\":[3,0,0]},"
+            + "\"miss\":{\"count\":1,\"sum_ns\":2000,\"bounds_ns\":[512,1024],\"counts\":[0,0,1]}},"
+            + "\"corrections\":{\"version\":\"v1\",\"rules\":2,\"hits\":1,\"rule_hits\":{\"r1\":1}},"
+            + "\"updates\":{\"regexes\":{\"updated\":0,\"not_modified\":1,\"failed\":0},"
+            + "\"corrections\":{\"updated\":1,\"not_modified\":0,\"failed\":0,\"last_updated\":\"%s\"}}}";
+
+    /** Echo backend that also answers the stats export. */
+    static class StatsBackend extends ParseBatchTest.EchoBackend {
+        String stats;
+
+        @Override
+        public String stats() {
+            if (stats == null) {
+                throw new UnsupportedOperationException("no stats export");
+            }
+            return stats;
+        }
+    }
+
+    @Test
+    public void listenerSeesEveryStage() {
+        StatsBackend backend = new StatsBackend();
+        UaParser parser = new UaParser(backend);
+        UaParser.Config cfg = new UaParser.Config();
+        cfg.jvmCacheSize = 16;
+        parser.init(cfg);
+        ParseMetrics metrics = new ParseMetrics();
+        parser.setParseListener(metrics);
+
+        parser.parse("a", null);
+        parser.parse("a", null); // JVM cache hit
+        parser.parseBatch(Arrays.asList(new UaParser.Request("b", null), new UaParser.Request("b", null),
+                new UaParser.Request("a", null)));
+
+        ParseMetrics.Snapshot s = metrics.snapshot();
+        assertEquals(2, s.parses);
+        assertEquals(1, s.jvmCacheHits);
+        assertEquals(1, s.batches);
+        assertEquals(3, s.batchRequests);
+        assertEquals("one single parse plus one unique batch payload", 2, s.enginePayloads);
+        assertTrue(s.encodeNanos > 0 && s.backendNanos > 0 && s.decodeNanos > 0);
+
+        parser.setParseListener(null);
+        parser.parse("c", null);
+        assertEquals(2, metrics.snapshot().parses);
+    }
+
+    @Test
+    public void engineStatsDecodeAndMerge() {
+        StatsBackend backend = new StatsBackend();
+        UaParser parser = new UaParser(backend);
+        assertNull("engine without the export", parser.getEngineStats());
+
+        backend.stats = String.format(INSTANCE_STATS, 4, "2026-01-01T00:00:00Z");
+        EngineStats one = parser.getEngineStats();
+        assertEquals(0.75, one.cache.hitRate(), 1e-9);
+        assertEquals(512, one.parseLatency.hit.quantileUpperBoundNanos(0));
+        assertEquals(512, one.parseLatency.hit.quantileUpperBoundNanos(0.99));
+        assertEquals(Long.MAX_VALUE, one.parseLatency.miss.quantileUpperBoundNanos(0.5));
+        assertEquals(Long.valueOf(1), one.corrections.ruleHits.get("r1"));
+        assertEquals(1, one.updates.regexes.notModified);
+
+        backend.stats = "[" + String.format(INSTANCE_STATS, 4, "2026-01-01T00:00:00Z") + ","
+                + String.format(INSTANCE_STATS, 5, "2026-02-01T00:00:00Z") + "]";
+        EngineStats pool = parser.getEngineStats();
+        assertEquals(5, pool.generation);
+        assertEquals(6, pool.cache.hits);
+        assertEquals(20, pool.cache.capacity);
+        assertEquals(2, pool.parseLatency.miss.count);
+        assertEquals(2, pool.parseLatency.miss.counts[2]);
+        assertEquals(Long.valueOf(2), pool.corrections.ruleHits.get("r1"));
+        assertEquals("2026-02-01T00:00:00Z", pool.updates.corrections.lastUpdated);
+
+        ParseMetrics.Snapshot s = new ParseMetrics.Snapshot(0, 0, 0, 0, 0, 0, 10_000, 0);
+        assertEquals(10_000 - 4600, s.crossingNanos(pool));
+    }
+}
@@ -0,0 +1,130 @@
+package com.github.octanium91;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Field projection: payload shape, request keys and the Java-side clearing
+ * of unrequested sections, against an in-memory backend.
+ */
+public class ParseOptionsTest {
+
+    private static final UaParser.ParseOptions NARROW = UaParser.ParseOptions.fields(
+            UaParser.ParseOptions.Field.OS, UaParser.ParseOptions.Field.IS_BOT);
+
+    /** Records every payload and answers with browser, os and is_bot set. */
+    static class RecordingBackend extends ParseBatchTest.EchoBackend {
+        final List<JsonObject> payloads = new ArrayList<>();
+
+        @Override
+        public String parse(String payloadJson) {
+            singleCalls++;
+            JsonObject payload = JsonParser.parseString(payloadJson).getAsJsonObject();
+            payloads.add(payload);
+            JsonObject res = new JsonObject();
+            res.addProperty("ua", payload.get("ua").getAsString());
+            JsonObject browser = new JsonObject();
+            browser.addProperty("name", "Chrome");
+            res.add("browser", browser);
+            JsonObject os = new JsonObject();
+            os.addProperty("platform", "windows");
+            res.add("os", os);
+            res.addProperty("is_bot", true);
+            return res.toString();
+        }
+
+        @Override
+        public String parseBatch(String payloadsJson) {
+            JsonArray out = new JsonArray();
+            for (com.google.gson.JsonElement p : JsonParser.parseString(payloadsJson).getAsJsonArray()) {
+                out.add(JsonParser.parseString(parse(p.toString())));
+            }
+            return out.toString();
+        }
+    }
+
+    @Test
+    public void builderDefaultsToAll() {
+        assertSame(UaParser.ParseOptions.ALL, UaParser.ParseOptions.builder().build());
+        assertEquals(EnumSet.allOf(UaParser.ParseOptions.Field.class), UaParser.ParseOptions.ALL.fields());
+        assertEquals(Arrays.asList("os", "is_bot"), NARROW.fieldNames);
+    }
+
+    @Test
+    public void projectionReachesEngineAndClearsOtherSections() {
+        RecordingBackend backend = new RecordingBackend();
+        UaParser parser = new UaParser(backend);
+
+        UaParser.Result full = parser.parse("ua", null, null);
+        UaParser.Result narrow = parser.parse("ua", null, null, NARROW);
+
+        assertFalse(backend.payloads.get(0).has("fields"));
+        assertEquals(JsonParser.parseString("[\"os\",\"is_bot\"]"), backend.payloads.get(1).get("fields"));
+        assertEquals("Chrome", full.browser.name);
+        assertNull("unrequested section must be cleared", narrow.browser);
+        assertEquals("windows", narrow.os.platform);
+        assertEquals(true, narrow.isBot);
+        assertEquals("ua", narrow.ua);
+    }
+
+    @Test
+    public void projectionIsPartOfTheCacheKey() {
+        assertNotEquals(RequestKey.of("ua", null, null), RequestKey.of("ua", null, null, NARROW));
+        assertEquals(RequestKey.of("ua", null, null), RequestKey.of("ua", null, null, UaParser.ParseOptions.ALL));
+
+        RecordingBackend backend = new RecordingBackend();
+        UaParser.Config cfg = new UaParser.Config();
+        cfg.jvmCacheSize = 16;
+        UaParser parser = new UaParser(backend);
+        parser.init(cfg);
+
+        assertNull(parser.parse("ua", null, null, NARROW).browser);
+        assertNotNull(parser.parse("ua", null, null).browser);
+        assertNull(parser.parse("ua", null, null, NARROW).browser);
+        assertEquals(2, backend.singleCalls);
+    }
+
+    @Test
+    public void batchRequestsCarryTheirOwnProjection() {
+        RecordingBackend backend = new RecordingBackend();
+        UaParser parser = new UaParser(backend);
+
+        List<UaParser.Result> results = parser.parseBatch(Arrays.asList(
+                new UaParser.Request("ua", null, null, NARROW),
+                new UaParser.Request("ua", null),
+                new UaParser.Request("ua", null, null, NARROW)));
+
+        assertEquals("same UA, different projection: two engine payloads", 2, backend.payloads.size());
+        assertNull(results.get(0).browser);
+        assertEquals("Chrome", results.get(1).browser.name);
+        assertNull(results.get(2).browser);
+    }
+
+    @Test
+    public void scratchWritesFields() {
+        ParseScratch scratch = new ParseScratch();
+        int len = scratch.writePayload("ua", null, null, NARROW);
+        byte[] b = new byte[len];
+        ByteBuffer in = scratch.in.duplicate();
+        in.flip();
+        in.get(b);
+        JsonObject payload = JsonParser.parseString(new String(b, StandardCharsets.UTF_8)).getAsJsonObject();
+        assertEquals(JsonParser.parseString("[\"os\",\"is_bot\"]"), payload.get("fields"));
+    }
+}
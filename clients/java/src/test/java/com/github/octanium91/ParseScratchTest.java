@@ -0,0 +1,160 @@
+package com.github.octanium91;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * The hand-written payload encoder behind the ParseBytes path: byte-for-byte
+ * JSON equivalence with the Gson payload, and no steady-state allocation.
+ */
+public class ParseScratchTest {
+
+    private static String written(ParseScratch scratch, int len) {
+        byte[] b = new byte[len];
+        ByteBuffer in = scratch.in.duplicate();
+        in.flip();
+        in.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private static String gsonPayload(String ua, Map<String, String> headers, UaParser.Signals signals) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("ua", ua);
+        payload.put("headers", headers == null ? new HashMap<String, String>() : headers);
+        if (signals != null) {
+            payload.put("signals", signals);
+        }
+        return new Gson().toJson(payload);
+    }
+
+    @Test
+    public void matchesGsonPayload() {
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("Sec-CH-UA", "\"Chromium\";v=\"126\", \"Not/A)Brand\";v=\"8\"");
+        headers.put("sec-ch-ua-model", "Pixel 8 é中😀 tab\tnl\n\\");
+        UaParser.Signals signals = new UaParser.Signals();
+        signals.maxTouchPoints = 5;
+        signals.platform = "iPhone";
+        signals.webglRenderer = "Apple GPU";
+        signals.screen = new UaParser.ScreenInfo();
+        signals.screen.w = 390;
+        signals.screen.h = 844;
+        signals.screen.dpr = 2.5;
+        signals.deviceMemory = 4;
+        signals.webdriver = true;
+
+        String ua = "Mozilla/5.0 (iPhone; CPU iPhone OS 17_5 like Mac OS X) \u0001";
+        ParseScratch scratch = new ParseScratch();
+        for (UaParser.Signals s : new UaParser.Signals[]{null, signals}) {
+            int len = scratch.writePayload(ua, headers, s);
+            assertEquals(JsonParser.parseString(gsonPayload(ua, headers, s)),
+                    JsonParser.parseString(written(scratch, len)));
+        }
+        int len = scratch.writePayload(null, null, null);
+        assertEquals(JsonParser.parseString(gsonPayload(null, null, null)).getAsJsonObject().get("headers"),
+                JsonParser.parseString(written(scratch, len)).getAsJsonObject().get("headers"));
+    }
+
+    @Test
+    public void steadyStateWriteDoesNotAllocate() {
+        java.lang.management.ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        assumeTrue(mx instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) mx;
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+
+        Map<String, String> headers = new HashMap<>();
+        headers.put("sec-ch-ua-platform", "\"Windows\"");
+        headers.put("sec-ch-ua-mobile", "?0");
+        String ua = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/126.0.0.0 Safari/537.36";
+        ParseScratch scratch = new ParseScratch();
+        for (int i = 0; i < 20_000; i++) { // grow buffers and let the JIT settle
+            scratch.writePayload(ua, headers, null);
+        }
+
+        int n = 100_000;
+        long tid = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(tid);
+        for (int i = 0; i < n; i++) {
+            scratch.writePayload(ua, headers, null);
+        }
+        long perCall = (threads.getThreadAllocatedBytes(tid) - before) / n;
+        // At most the header-map iterator, which the JIT usually scalar-replaces.
+        assertTrue("allocated " + perCall + " B per payload", perCall <= 48);
+    }
+
+    @Test
+    public void parserUsesBytePathAndGrowsOutputBuffer() {
+        StringBuilder longUa = new StringBuilder();
+        for (int i = 0; i < 600; i++) {
+            longUa.append("Token/").append(i).append(' ');
+        }
+        UaParser.Result canned = new UaParser.Result();
+        canned.ua = longUa.toString(); // > the initial 2 KB output buffer
+        canned.resultVersion = "1.2";
+        byte[] encoded = encode(canned.ua);
+
+        int[] calls = {0};
+        ParseBatchTest.EchoBackend backend = new ParseBatchTest.EchoBackend() {
+            @Override
+            public int parseBytes(ByteBuffer in, int inLen, ByteBuffer out) {
+                calls[0]++;
+                if (out.capacity() < encoded.length) {
+                    return -encoded.length;
+                }
+                ByteBuffer o = out.duplicate();
+                o.clear();
+                o.put(encoded);
+                return encoded.length;
+            }
+        };
+        UaParser.Config cfg = new UaParser.Config();
+        cfg.resultEncoding = "binary";
+        UaParser parser = new UaParser(backend);
+        parser.init(cfg);
+
+        assertEquals(canned.ua, parser.parse("x", null).ua);
+        assertEquals(canned.ua, parser.parse("x", null).ua);
+        assertEquals("one retry to grow, then direct hits", 3, calls[0]);
+        assertEquals(0, backend.singleCalls);
+    }
+
+    // encode builds a format-1 buffer carrying only result_version and ua.
+    private static byte[] encode(String ua) {
+        byte[] u = ua.getBytes(StandardCharsets.UTF_8);
+        java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+        out.write('U');
+        out.write('B');
+        out.write(BinaryResultDecoder.FORMAT_VERSION);
+        out.write(0); // flags
+        out.write(1); // table: one entry
+        varint(out, u.length);
+        out.write(u, 0, u.length);
+        out.write(1); // result_version -> dictionary "1.2"
+        varint(out, BinaryResultDecoder.DICTIONARY.length + 1); // ua -> table[0]
+        for (int i = 0; i < 20; i++) {
+            out.write(0); // remaining string fields empty
+        }
+        out.write(0); // integrity.reasons = null
+        return out.toByteArray();
+    }
+
+    private static void varint(java.io.ByteArrayOutputStream out, int v) {
+        while ((v & ~0x7F) != 0) {
+            out.write((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.write(v);
+    }
+}
@@ -0,0 +1,262 @@
+package com.github.octanium91;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JVM result cache: hits bypass the backend, hand out private copies and
+ * the CLOCK hand keeps frequently hit entries over one-offs.
+ */
+public class ResultCacheTest {
+
+    private static UaParser cachedParser(ParseBatchTest.EchoBackend backend, int size) {
+        UaParser parser = new UaParser(backend);
+        UaParser.Config cfg = new UaParser.Config();
+        cfg.jvmCacheSize = size;
+        parser.init(cfg);
+        return parser;
+    }
+
+    @Test
+    public void hitsSkipTheBackendAndReturnCopies() {
+        ParseBatchTest.EchoBackend backend = new ParseBatchTest.EchoBackend();
+        UaParser parser = cachedParser(backend, 16);
+
+        UaParser.Result first = parser.parse("a", null);
+        first.browser.name = "mutated";
+        UaParser.Result second = parser.parse("a", null);
+
+        assertEquals(1, backend.singleCalls);
+        assertEquals("a", second.browser.name);
+        assertNotSame(second, parser.parse("a", null));
+
+        UaParser.CacheStats stats = parser.getCacheStats();
+        assertEquals(2, stats.hits);
+        assertEquals(1, stats.misses);
+        assertEquals(1, stats.size);
+    }
+
+    @Test
+    public void batchConsultsCacheBeforeCrossing() {
+        ParseBatchTest.EchoBackend backend = new ParseBatchTest.EchoBackend();
+        UaParser parser = cachedParser(backend, 16);
+        parser.parse("a", null);
+
+        List<UaParser.Result> results = parser.parseBatch(Arrays.asList(
+                new UaParser.Request("a", null),
+                new UaParser.Request("b", null),
+                new UaParser.Request("b", null)));
+
+        assertEquals(Arrays.asList(1), backend.batchSizes);
+        assertEquals("a", results.get(0).browser.name);
+        assertEquals("b", results.get(2).browser.name);
+
+        parser.parseBatch(Arrays.asList(new UaParser.Request("b", null)));
+        assertEquals("second batch is fully cached", 1, backend.batchSizes.size());
+    }
+
+    @Test
+    public void clockEvictsOneOffsBeforeHotEntries() {
+        ResultCache cache = new ResultCache(2, 1);
+        UaParser.Result r = new UaParser.Result();
+
+        cache.put("hot", r);
+        cache.put("once", r);
+        cache.get("hot");
+        cache.put("new", r); // hand skips "hot" (referenced), evicts "once"
+
+        assertEquals(1, cache.stats().evictions);
+        assertTrue(cache.get("hot") != null);
+        assertNull(cache.get("once"));
+
+        cache.clear();
+        assertNull(cache.get("hot"));
+        assertEquals(0, cache.stats().size);
+    }
+
+    private static UaParser.Result withReasons(int reasons) {
+        UaParser.Result r = new UaParser.Result();
+        r.ua = "ua";
+        r.integrity = new UaParser.IntegrityInfo();
+        r.integrity.reasons = new java.util.ArrayList<>();
+        for (int i = 0; i < reasons; i++) {
+            r.integrity.reasons.add("reason-" + i);
+        }
+        return r;
+    }
+
+    @Test
+    public void byteBudgetEvictsByWeight() {
+        UaParser.Result small = withReasons(0);
+        long w = ResultCache.weigh("k0", small);
+        ResultCache cache = new ResultCache(0, 4 * w + w / 2, 1); // four small entries fit, five do not
+
+        for (int i = 0; i < 4; i++) {
+            cache.put("k" + i, small);
+        }
+        UaParser.CacheStats stats = cache.stats();
+        assertEquals(4, stats.size);
+        assertEquals(4 * w, stats.bytes);
+        assertEquals(0, stats.evictions);
+
+        UaParser.Result big = withReasons(5); // between one and two small entries
+        assertTrue(ResultCache.weigh("k9", big) > w && ResultCache.weigh("k9", big) < 2 * w);
+        cache.put("k9", big);
+        stats = cache.stats();
+        assertEquals("one heavy entry displaces two light ones", 2, stats.evictions);
+        assertEquals(3, stats.size);
+        assertTrue(stats.bytes <= stats.maxBytes);
+        assertTrue(cache.get("k9") != null);
+
+        cache.put("huge", withReasons(1000));
+        assertNull("an entry above the whole budget is not cached", cache.get("huge"));
+
+        cache.clear();
+        assertEquals(0, cache.stats().bytes);
+        for (int i = 0; i < 4; i++) {
+            cache.put("again" + i, small);
+        }
+        assertEquals(4, cache.stats().size);
+    }
+
+    @Test
+    public void byteBudgetAloneEnablesTheJvmCache() {
+        ParseBatchTest.EchoBackend backend = new ParseBatchTest.EchoBackend();
+        UaParser parser = new UaParser(backend);
+        UaParser.Config cfg = new UaParser.Config();
+        cfg.jvmCacheMaxBytes = 1 << 20;
+        parser.init(cfg);
+        parser.parse("a", null);
+        parser.parse("a", null);
+
+        assertEquals(1, backend.singleCalls);
+        UaParser.CacheStats stats = parser.getCacheStats();
+        assertEquals(1 << 20, stats.maxBytes);
+        assertTrue(stats.bytes > 0);
+    }
+
+    @Test
+    public void disabledByDefault() {
+        ParseBatchTest.EchoBackend backend = new ParseBatchTest.EchoBackend();
+        UaParser parser = new UaParser(backend);
+        parser.init(new UaParser.Config());
+        parser.parse("a", null);
+        parser.parse("a", null);
+        assertEquals(2, backend.singleCalls);
+        assertNull(parser.getCacheStats());
+    }
+
+    @Test
+    public void engineErrorsAreNotCached() {
+        ParseBatchTest.EchoBackend backend = new ParseBatchTest.EchoBackend() {
+            @Override
+            public String parse(String payloadJson) {
+                return payloadJson.contains("\"err\"") ? error(payloadJson) : super.parse(payloadJson);
+            }
+
+            @Override
+            public String parseBatch(String payloadsJson) {
+                String res = super.parseBatch(payloadsJson);
+                return res.replace("{\"ua\":\"err\",\"browser\":{\"name\":\"err\"}}", "{\"error\": \"Invalid payload\"}");
+            }
+
+            private String error(String payloadJson) {
+                singleCalls++;
+                return "{\"error\": \"Invalid payload\"}";
+            }
+        };
+        UaParser parser = cachedParser(backend, 16);
+        assertNull(parser.parse("err", null).browser);
+        assertNull(parser.parse("err", null).browser);
+        assertEquals(2, backend.singleCalls);
+
+        parser.parseBatch(Arrays.asList(new UaParser.Request("err", null), new UaParser.Request("b", null)));
+        parser.parseBatch(Arrays.asList(new UaParser.Request("err", null), new UaParser.Request("b", null)));
+        assertEquals(Arrays.asList(2, 1), backend.batchSizes);
+        assertEquals(1, parser.getCacheStats().size);
+
+        assertTrue(UaParser.isErrorJson(" { \"error\": \"x\"}"));
+        assertFalse(UaParser.isErrorJson("{\"ua\":\"error\"}"));
+        assertFalse(UaParser.isErrorJson(null));
+    }
+
+    @Test
+    public void engineRuleSwapsDropTheCache() throws InterruptedException {
+        SwappingBackend backend = new SwappingBackend();
+        UaParser parser = new UaParser(backend);
+        UaParser.Config cfg = new UaParser.Config();
+        cfg.jvmCacheSize = 16;
+        cfg.jvmCacheRevalidateMillis = 1;
+        parser.init(cfg);
+
+        parser.parse("a", null);
+        Thread.sleep(5);
+        assertEquals("a", parser.parse("a", null).browser.name);
+        assertEquals("same generation: still a hit", 1, backend.singleCalls);
+
+        backend.swap("v2:");
+        Thread.sleep(5);
+        assertEquals("v2:a", parser.parse("a", null).browser.name);
+        assertEquals(2, backend.singleCalls);
+        assertEquals("v2:a", parser.parseBatch(Arrays.asList(new UaParser.Request("a", null))).get(0).browser.name);
+        assertTrue("batch hit the refreshed entry", backend.batchSizes.isEmpty());
+
+        // A swap while "b" is in the engine: its old-rules result must not
+        // outlive the next poll.
+        backend.swapDuringParse = "v3:";
+        assertEquals("v2:b", parser.parse("b", null).browser.name);
+        Thread.sleep(5);
+        assertEquals("v3:b", parser.parse("b", null).browser.name);
+        assertEquals(4, backend.singleCalls);
+    }
+
+    /** Echoes "rules + ua" as the browser name and reports a generation. */
+    static class SwappingBackend extends ParseBatchTest.EchoBackend {
+        volatile long generation;
+        volatile String rules = "";
+        volatile String swapDuringParse;
+
+        void swap(String newRules) {
+            rules = newRules;
+            generation++;
+        }
+
+        @Override
+        public String parse(String payloadJson) {
+            JsonObject res = JsonParser.parseString(super.parse(payloadJson)).getAsJsonObject();
+            res.getAsJsonObject("browser").addProperty("name", rules + res.get("ua").getAsString());
+            String next = swapDuringParse;
+            if (next != null) {
+                swapDuringParse = null;
+                swap(next);
+            }
+            return res.toString();
+        }
+
+        @Override
+        public String stats() {
+            return "{\"generation\":" + generation + "}";
+        }
+    }
+
+    @Test
+    public void closeDropsTheCache() {
+        ParseBatchTest.EchoBackend backend = new ParseBatchTest.EchoBackend();
+        UaParser parser = cachedParser(backend, 16);
+        parser.parse("a", null);
+        parser.close();
+        assertNull(parser.getCacheStats());
+        parser.parse("a", null);
+        assertEquals(2, backend.singleCalls);
+    }
+}
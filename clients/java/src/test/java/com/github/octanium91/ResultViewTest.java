@@ -0,0 +1,122 @@
+package com.github.octanium91;
+
+import com.google.gson.Gson;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Lazy result view: every getter agrees with the Gson-decoded Result, on
+ * full, sparse and escaped documents.
+ */
+public class ResultViewTest {
+
+    private static final String FULL = "{\"result_version\":\"1.2\",\"ua\":\"Mozilla/5.0 \\\"quoted\\\" \\u00fc\\\\\","
+            + "\"os\":{\"name\":\"Android\",\"version\":\"14\",\"platform\":\"android\",\"version_name\":\"\","
+            + "\"version_raw\":\"14\"},"
+            + "\"browser\":{\"name\":\"Chrome Mobile\",\"version\":\"126.0.0.0\",\"major\":\"126\",\"type\":\"browser\"},"
+            + "\"device\":{\"model\":\"Pixel 8\",\"vendor\":\"Google\",\"type\":\"mobile\",\"form_factor\":\"phone\"},"
+            + "\"cpu\":{\"architecture\":\"arm64\",\"bitness\":\"64\"},"
+            + "\"engine\":{\"name\":\"Blink\",\"version\":\"126\"},\"category\":\"mobile\","
+            + "\"bot\":{\"name\":\"Googlebot\",\"category\":\"search\",\"vendor\":\"Google\"},"
+            + "\"gpu\":{\"vendor\":\"Qualcomm\",\"renderer\":\"Adreno (TM) 740\"},"
+            + "\"is_bot\":true,\"is_ai_crawler\":false,\"is_frozen_ua\":false,\"is_mobile\":true,"
+            + "\"is_desktop\":false,\"is_touch_capable\":true,\"is_chrome_family\":true,\"is_apple_silicon\":false,"
+            + "\"automation\":{\"headless\":true,\"electron\":false,\"webdriver\":true},"
+            + "\"integrity\":{\"spoofed\":true,\"reasons\":[\"ua-vs-ch-platform\", \"a\\\"b\"]},"
+            + "\"security\":{\"suspicious\":true,\"category\":\"xss\"},"
+            + "\"detection\":{\"client_hints_used\":true,\"high_entropy\":false,\"signals_used\":true},"
+            + "\"future\":{\"name\":\"ignored\",\"nested\":[{\"x\":\"}\"}]},"
+            + "\"class_hash\":\"c0ffee\"}";
+
+    @Test
+    public void gettersMatchTheDecodedResult() {
+        ResultView v = ResultView.of(FULL);
+        UaParser.Result r = new Gson().fromJson(FULL, UaParser.Result.class);
+
+        assertEquals(r.resultVersion, v.resultVersion());
+        assertEquals(r.ua, v.ua());
+        assertEquals("Mozilla/5.0 \"quoted\" ü\\", v.ua());
+        assertEquals(r.category, v.category());
+        assertEquals(r.classHash, v.classHash());
+        assertEquals(r.isBot, v.isBot());
+        assertEquals(r.isAiCrawler, v.isAiCrawler());
+        assertEquals(r.isMobile, v.isMobile());
+        assertEquals(r.isTouchCapable, v.isTouchCapable());
+        assertEquals(r.os.name, v.osName());
+        assertEquals(r.os.platform, v.osPlatform());
+        assertEquals(r.os.versionName, v.osVersionName());
+        assertEquals(r.browser.name, v.browserName());
+        assertEquals(r.browser.major, v.browserMajor());
+        assertEquals(r.device.model, v.deviceModel());
+        assertEquals(r.device.formFactor, v.deviceFormFactor());
+        assertEquals(r.cpu.architecture, v.cpuArchitecture());
+        assertEquals(r.engine.name, v.engineName());
+        assertEquals(r.automation.headless, v.headless());
+        assertEquals(r.automation.webdriver, v.webdriver());
+        assertEquals(r.integrity.spoofed, v.spoofed());
+        assertEquals(r.integrity.reasons, v.integrityReasons());
+        assertEquals(Arrays.asList("ua-vs-ch-platform", "a\"b"), v.integrityReasons());
+        assertEquals(r.security.category, v.securityCategory());
+        assertEquals(r.detection.signalsUsed, v.signalsUsed());
+        assertTrue(v.hasBot());
+        assertEquals(r.bot.name, v.botName());
+        assertTrue(v.hasGpu());
+        assertEquals(r.gpu.renderer, v.gpuRenderer());
+        assertNull(v.error());
+        assertEquals(new Gson().toJson(r), new Gson().toJson(v.toResult()));
+    }
+
+    @Test
+    public void absentSectionsReadAsDefaults() {
+        ResultView v = ResultView.of(" { \"ua\" : \"x\", \"device\": null, \"integrity\":{\"reasons\":[]},"
+                + " \"browser\": {\"name\": null} } ");
+        assertEquals("x", v.ua());
+        assertNull(v.browserName());
+        assertNull(v.deviceModel());
+        assertNull(v.osName());
+        assertFalse(v.hasBot());
+        assertFalse(v.hasGpu());
+        assertNull(v.botName());
+        assertFalse(v.isBot());
+        assertEquals(Collections.emptyList(), v.integrityReasons());
+
+        assertEquals("boom", ResultView.of("{\"error\":\"boom\"}").error());
+    }
+
+    @Test
+    public void malformedJsonIsRejected() {
+        for (String bad : new String[]{"", "[]", "{\"ua\":\"x\"", "{\"ua\" \"x\"}", "{\"ua\":}"}) {
+            try {
+                ResultView.of(bad);
+                fail("accepted " + bad);
+            } catch (IllegalArgumentException expected) {
+                // ok
+            }
+        }
+    }
+
+    @Test
+    public void parseViewReportsToTheListener() {
+        ParseBatchTest.EchoBackend backend = new ParseBatchTest.EchoBackend();
+        UaParser parser = new UaParser(backend);
+        UaParser.Config cfg = new UaParser.Config();
+        cfg.jvmCacheSize = 16;
+        parser.init(cfg);
+        ParseMetrics metrics = new ParseMetrics();
+        parser.setParseListener(metrics);
+
+        ResultView v = parser.parseView("agent", null);
+        parser.parseView("agent", null);
+        assertEquals("agent", v.browserName());
+        assertEquals(2, backend.singleCalls); // views bypass the JVM cache
+        assertEquals(2, metrics.snapshot().parses);
+    }
+}
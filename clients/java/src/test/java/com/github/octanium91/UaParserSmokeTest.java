@@ -5,7 +5,9 @@ import org.junit.Test;
 import java.util.Collections;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assume.assumeTrue;
 
 /**
@@ -33,6 +35,124 @@ public class UaParserSmokeTest {
         assumeTrue(json.contains("\"Chrome\""));
     }
 
+    @Test
+    public void wasmPoolParsesConcurrently() throws Exception {
+        assumeTrue("ua-parser.wasm not staged; skipping", hasResource("/ua-parser.wasm"));
+
+        WasmBackend backend = new WasmBackend(2);
+        backend.init("{\"disable_auto_update\":true,\"lru_cache_size\":100}");
+        backend.ensurePoolSize(3);
+        assertEquals(3, backend.getPoolSize());
+
+        java.util.concurrent.ExecutorService pool = java.util.concurrent.Executors.newFixedThreadPool(4);
+        try {
+            java.util.List<java.util.concurrent.Future<String>> results = new java.util.ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                results.add(pool.submit(() -> backend.parse("{\"ua\":\"" + CHROME_UA + "\",\"headers\":{}}")));
+            }
+            for (java.util.concurrent.Future<String> f : results) {
+                String json = f.get();
+                assertNotNull("pooled WASM backend returned null", json);
+                assertTrue(json.contains("\"Chrome\""));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void wasmPoolReplaysAWarmupSnapshot() throws Exception {
+        assumeTrue("ua-parser.wasm not staged; skipping", hasResource("/ua-parser.wasm"));
+
+        String config = "{\"disable_auto_update\":true,\"lru_cache_size\":100}";
+        java.nio.file.Path file = java.nio.file.Files.createTempFile("ua-warmup", ".gz");
+        try {
+            WasmBackend source = new WasmBackend(2);
+            source.init(config);
+            source.parse("{\"ua\":\"" + CHROME_UA + "\",\"headers\":{}}");
+            source.parse("{\"ua\":\"curl/8.0\",\"headers\":{}}");
+            source.saveWarmup(file.toString(), 0);
+            byte[] snapshot = java.nio.file.Files.readAllBytes(file);
+
+            WasmBackend target = new WasmBackend(3);
+            target.init(config);
+            assertFalse("garbage is rejected", target.loadWarmup(new byte[]{1, 2, 3}));
+            assertTrue(target.loadWarmup(snapshot));
+            for (com.google.gson.JsonElement engine : com.google.gson.JsonParser.parseString(target.stats()).getAsJsonArray()) {
+                assertEquals("every instance replayed both keys", 2,
+                        engine.getAsJsonObject().getAsJsonObject("cache").get("size").getAsInt());
+            }
+        } finally {
+            java.nio.file.Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void nativeBackendsOwnIsolatedEngines() {
+        JnaBackend first;
+        JnaBackend second;
+        try {
+            first = new JnaBackend();
+            second = new JnaBackend();
+        } catch (LinkageError | RuntimeException noNative) {
+            assumeTrue("native library not loadable; skipping", false);
+            return;
+        }
+        String payload = "{\"ua\":\"" + CHROME_UA + "\",\"headers\":{}}";
+        first.init("{\"disable_auto_update\":true,\"lru_cache_size\":10}");
+        second.init("{\"disable_auto_update\":true,\"lru_cache_size\":0}");
+        assertTrue(first.parse(payload).contains("\"Chrome\""));
+        assertTrue(second.parse(payload).contains("\"Chrome\""));
+        assertTrue("generation read from stats (JVM cache invalidation)", first.generation() >= 0);
+
+        first.close();
+        assertTrue("closed engine answers with an error", first.parse(payload).contains("\"error\""));
+        assertTrue("the other engine is unaffected", second.parse(payload).contains("\"Chrome\""));
+        second.close();
+    }
+
+    // Runs in the release workflow's JDK 22 step against the packaged JAR:
+    // FfmBackend lives in its versions/22 layer, which a class directory does
+    // not expose, so the regular test phase skips this.
+    @Test
+    public void ffmBackendParsesFromTheJar() {
+        assumeTrue("FFM needs JDK 22+; skipping", Runtime.version().feature() >= 22);
+        ParserBackend ffm;
+        try {
+            ffm = (ParserBackend) Class.forName("com.github.octanium91.FfmBackend").getConstructor().newInstance();
+        } catch (ClassNotFoundException notMultiRelease) {
+            assumeTrue("FfmBackend loads only from the multi-release JAR; skipping", false);
+            return;
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException noNative) {
+            assumeTrue("native library not loadable; skipping", false);
+            return;
+        }
+        UaParser parser = new UaParser(ffm);
+        UaParser.Config cfg = new UaParser.Config();
+        cfg.disableAutoUpdate = true;
+        cfg.lruCacheSize = 10;
+        cfg.resultEncoding = "binary";
+        cfg.collectStats = true;
+        parser.init(cfg);
+        assertEquals("FfmBackend", parser.getBackendName());
+
+        // ParseBytesHandle, ParseBatchHandle and ParseHandle downcalls.
+        assertEquals("Chrome", parser.parse(CHROME_UA, Collections.emptyMap()).browser.name);
+        assertEquals("Chrome", parser.parseBatch(java.util.Arrays.asList(
+                new UaParser.Request(CHROME_UA, null), new UaParser.Request("curl/8.0", null))).get(0).browser.name);
+        assertTrue(ffm.parse("{\"ua\":\"" + CHROME_UA + "\",\"headers\":{}}").contains("\"Chrome\""));
+        assertNotNull(parser.getEngineStats());
+        try (Aggregator agg = parser.aggregator("browser.name")) {
+            assertTrue(agg.inEngine());
+            agg.add(CHROME_UA, null);
+            assertEquals(1, agg.snapshotAndReset().count("Chrome"));
+        }
+
+        ffm.close();
+        assertTrue("closed engine answers with an error",
+                ffm.parse("{\"ua\":\"" + CHROME_UA + "\",\"headers\":{}}").contains("\"error\""));
+    }
+
     @Test
     public void endToEndSelectsSomeBackendAndParses() {
         assumeTrue("no resources staged; skipping", hasResource("/ua-parser.wasm"));
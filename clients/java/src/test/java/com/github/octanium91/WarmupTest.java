@@ -0,0 +1,64 @@
+package com.github.octanium91;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+import java.nio.file.Paths;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Warm-up snapshot plumbing against an in-memory backend: the config reaches
+ * the engine, and saving is left to native engines on close.
+ */
+public class WarmupTest {
+
+    static class WarmupBackend extends ParseBatchTest.EchoBackend {
+        String config;
+        String savedPath;
+        int savedEntries = -1;
+
+        @Override
+        public void init(String configJson) {
+            config = configJson;
+        }
+
+        @Override
+        public void saveWarmup(String path, int entries) {
+            savedPath = path;
+            savedEntries = entries;
+        }
+    }
+
+    @Test
+    public void configReachesEngineAndSaveUsesConfiguredEntries() {
+        WarmupBackend backend = new WarmupBackend();
+        UaParser parser = new UaParser(backend);
+        UaParser.Config cfg = new UaParser.Config();
+        cfg.lruCacheSize = 100;
+        cfg.warmupFile = "/tmp/ua-warmup.gz";
+        cfg.warmupEntries = 500;
+        parser.init(cfg);
+
+        JsonObject sent = JsonParser.parseString(backend.config).getAsJsonObject();
+        assertEquals("/tmp/ua-warmup.gz", sent.get("warmup_file").getAsString());
+        assertEquals(500, sent.get("warmup_entries").getAsInt());
+
+        parser.saveWarmup(Paths.get("snapshot.gz"));
+        assertEquals("snapshot.gz", backend.savedPath);
+        assertEquals(500, backend.savedEntries);
+    }
+
+    @Test
+    public void closeLeavesNativeEnginesToSaveThemselves() {
+        WarmupBackend backend = new WarmupBackend();
+        UaParser parser = new UaParser(backend);
+        UaParser.Config cfg = new UaParser.Config();
+        cfg.warmupFile = "/tmp/ua-warmup.gz";
+        parser.init(cfg);
+        parser.close();
+        assertNull(backend.savedPath);
+    }
+}
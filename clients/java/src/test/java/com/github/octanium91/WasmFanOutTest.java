@@ -0,0 +1,67 @@
+package com.github.octanium91;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The WASM pool's fan-out: every instance is handled before failures are
+ * reported, on the executor given rather than the common pool.
+ */
+public class WasmFanOutTest {
+
+    @Test
+    public void waitsForEveryTargetBeforeReportingFailures() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        List<String> targets = Arrays.asList("a", "bad", "c", "worse");
+        AtomicInteger finished = new AtomicInteger();
+        Map<String, RuntimeException> failures = new IdentityHashMap<>();
+
+        Map<String, String> results = WasmBackend.fanOut(executor, targets, target -> {
+            assertFalse(Thread.currentThread().getName().startsWith("ForkJoinPool"));
+            if (target.equals("bad")) {
+                throw new IllegalStateException("bad init");
+            }
+            if (target.equals("worse")) {
+                throw new AssertionError("worse init");
+            }
+            sleep(50);
+            finished.incrementAndGet();
+            return target.toUpperCase();
+        }, failures);
+
+        assertEquals(2, finished.get());
+        assertEquals(2, results.size());
+        assertEquals("C", results.get("c"));
+        assertEquals(2, failures.size());
+        assertTrue(failures.get("bad") instanceof IllegalStateException);
+        assertTrue(failures.get("worse").getCause() instanceof AssertionError);
+
+        RuntimeException reported = WasmBackend.failure("init failed", failures);
+        assertSame(failures.values().iterator().next(), reported.getCause());
+        assertEquals(1, reported.getSuppressed().length);
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.github.octanium91.bulk;
+
+import com.github.octanium91.ParserBackend;
+import com.github.octanium91.UaParser;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Log splitting, UA extraction, ordering, dedupe and resume against an
+ * in-memory backend (no engine needed).
+ */
+public class BulkParserTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    /** Echoes each UA back as browser.name and counts the UAs it parsed. */
+    static class EchoBackend implements ParserBackend {
+        final AtomicInteger parsed = new AtomicInteger();
+        volatile String failOn;
+
+        @Override
+        public void init(String configJson) {
+        }
+
+        @Override
+        public String parse(String payloadJson) {
+            return echo(JsonParser.parseString(payloadJson).getAsJsonObject()).toString();
+        }
+
+        @Override
+        public String parseBatch(String payloadsJson) {
+            JsonArray out = new JsonArray();
+            for (JsonElement payload : JsonParser.parseString(payloadsJson).getAsJsonArray()) {
+                out.add(echo(payload.getAsJsonObject()));
+            }
+            return out.toString();
+        }
+
+        private JsonObject echo(JsonObject payload) {
+            String ua = payload.get("ua").getAsString();
+            if (ua.equals(failOn)) {
+                throw new IllegalStateException("engine failure on " + ua);
+            }
+            parsed.incrementAndGet();
+            JsonObject browser = new JsonObject();
+            browser.addProperty("name", ua);
+            JsonObject res = new JsonObject();
+            res.addProperty("ua", ua);
+            res.add("browser", browser);
+            return res;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static String combined(String ua) {
+        return "10.0.0.1 - - [17/Oct/2026:10:00:00 +0000] \"GET /a b HTTP/1.1\" 200 512 \"-\" \"" + ua + "\"";
+    }
+
+    private Path log(String... lines) throws IOException {
+        Path file = tmp.newFile().toPath();
+        Files.write(file, String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static String[] run(UaParser parser, BulkParser.Options opts, Path input) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new BulkParser(parser, opts).run(input, out);
+        return out.toString(StandardCharsets.UTF_8.name()).split("\n");
+    }
+
+    @Test
+    public void extractsFromCombinedAndAlbFormats() {
+        byte[] line = combined("Mozilla/5.0 (X11) \\\"quoted\\\" \\x41").getBytes(StandardCharsets.UTF_8);
+        assertEquals("Mozilla/5.0 (X11) \"quoted\" A", LogFormat.nginxCombined().extract(line, 0, line.length));
+
+        byte[] dash = combined("-").getBytes(StandardCharsets.UTF_8);
+        assertNull(LogFormat.nginxCombined().extract(dash, 0, dash.length));
+
+        byte[] alb = ("http 2026-10-17T10:00:00.000Z app/lb/1 1.2.3.4:5 10.0.0.1:80 0.001 0.002 0.000 200 200"
+                + " 34 366 \"GET http://x:80/ HTTP/1.1\" \"curl/8.0\" - -").getBytes(StandardCharsets.UTF_8);
+        assertEquals("curl/8.0", LogFormat.alb().extract(alb, 0, alb.length));
+
+        byte[] tsv = "a\tb\tMozilla/5.0 (Linux)".getBytes(StandardCharsets.UTF_8);
+        assertEquals("Mozilla/5.0 (Linux)", LogFormat.parse("tsv:2").extract(tsv, 0, tsv.length));
+        assertEquals("b", LogFormat.parse("regex:\\t(?<ua>[^\\t]+)\\t").extract(tsv, 0, tsv.length));
+    }
+
+    @Test
+    public void writesInInputOrderWithOffsetsAndDedupes() throws IOException {
+        Path input = log(combined("A"), combined("B"), "garbage", combined("A"), combined("C"), combined("B"));
+        EchoBackend backend = new EchoBackend();
+        BulkParser.Options opts = new BulkParser.Options();
+        opts.threads = 3;
+        opts.chunkLines = 2; // the dedupe window spans chunks
+
+        String[] out = run(new UaParser(backend), opts, input);
+
+        assertEquals(6, out.length);
+        List<String> uas = Arrays.asList("A", "B", null, "A", "C", "B");
+        long offset = 0;
+        for (int i = 0; i < out.length; i++) {
+            JsonObject rec = JsonParser.parseString(out[i]).getAsJsonObject();
+            assertEquals(offset, rec.get("offset").getAsLong());
+            if (uas.get(i) == null) {
+                assertTrue(rec.get("ua").isJsonNull());
+                offset += "garbage\n".length();
+            } else {
+                assertEquals(uas.get(i), rec.getAsJsonObject("browser").get("name").getAsString());
+                offset += combined(uas.get(i)).length() + 1;
+            }
+        }
+        assertEquals(3, backend.parsed.get());
+    }
+
+    @Test
+    public void csvQuotesAndResumesFromCommittedOffset() throws IOException {
+        Path input = log(combined("a,b"), combined("plain"), combined("last"));
+        BulkParser.Options opts = new BulkParser.Options();
+        opts.outputFormat = BulkParser.OutputFormat.CSV;
+        opts.chunkLines = 1;
+        UaParser parser = new UaParser(new EchoBackend());
+
+        String[] out = run(parser, opts, input);
+        assertEquals(BulkParser.CSV_HEADER, out[0]);
+        assertEquals("0,\"a,b\",\"a,b\",,,,,,,,false,false", out[1]);
+        assertEquals(4, out.length);
+
+        long second = combined("a,b").length() + 1;
+        opts.startOffset = second;
+        String[] resumed = run(parser, opts, input);
+        assertEquals(2, resumed.length); // no header when resuming
+        assertTrue(resumed[0].startsWith(second + ",plain,plain,"));
+    }
+
+    @Test
+    public void parseFailureReportsResumeOffset() throws IOException {
+        Path input = log(combined("ok"), combined("boom"), combined("never"));
+        EchoBackend backend = new EchoBackend();
+        backend.failOn = "boom";
+        BulkParser.Options opts = new BulkParser.Options();
+        opts.chunkLines = 1;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            new BulkParser(new UaParser(backend), opts).run(input, out);
+            fail("expected the engine failure to stop the run");
+        } catch (IOException e) {
+            long resume = combined("ok").length() + 1;
+            assertTrue(e.getMessage(), e.getMessage().contains("offset " + resume));
+        }
+        assertEquals(1, out.toString(StandardCharsets.UTF_8.name()).split("\n").length);
+    }
+
+    @Test
+    public void readerHandlesCrlfGrowthAndMissingTrailingNewline() throws IOException {
+        Path file = tmp.newFile().toPath();
+        StringBuilder longLine = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            longLine.append("0123456789");
+        }
+        Files.write(file, ("a\r\n" + longLine + "\nlast").getBytes(StandardCharsets.UTF_8));
+        try (LineReader r = new LineReader(file, 0, 16, 4096)) {
+            assertTrue(r.next());
+            assertEquals("a", new String(r.buffer(), r.from(), r.to() - r.from(), StandardCharsets.UTF_8));
+            assertEquals(3, r.nextOffset());
+            assertTrue(r.next());
+            assertEquals(1000, r.to() - r.from());
+            assertEquals(3, r.lineOffset());
+            assertTrue(r.next());
+            assertEquals("last", new String(r.buffer(), r.from(), r.to() - r.from(), StandardCharsets.UTF_8));
+            assertEquals(1008, r.nextOffset());
+            assertTrue(!r.next());
+        }
+    }
+}
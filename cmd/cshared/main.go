@@ -1,12 +1,15 @@
 package main
 
 /*
+#include <stdint.h>
 #include <stdlib.h>
 */
 import "C"
 import (
+	"encoding/binary"
 	"encoding/json"
 	"sync"
+	"sync/atomic"
 	"unsafe"
 
 	"github.com/Octanium91/ua-parser/pkg/core"
@@ -16,13 +19,25 @@ var (
 	parser      *core.Parser
 	initMu      sync.Mutex
 	initialized bool
+
+	// Engines created through InitHandle, keyed by handle. Handles are plain
+	// counters rather than cgo.Handle values so a stale or closed handle from
+	// the host yields an error result instead of a panic in its process.
+	handles    sync.Map // uint64 -> *core.Parser
+	nextHandle atomic.Uint64
+
+	// Aggregation sessions, keyed like handles.
+	aggregators    sync.Map // uint64 -> *core.Aggregator
+	nextAggregator atomic.Uint64
 )
 
+const errInvalidHandle = `{"error": "Invalid or closed parser handle"}`
+
 // Init initializes the process-global parser. The engine is a process
 // singleton: the FIRST call wins and later calls are no-ops that return
 // success — a second Init with a different config (e.g. corrections_url or
-// lru_cache_size) is silently ignored, not applied. Host wrappers that need
-// distinct configs must run in separate processes.
+// lru_cache_size) is silently ignored, not applied. Hosts that need distinct
+// configs in one process use InitHandle instead.
 //
 //export Init
 func Init(configJSON *C.char) *C.char {
@@ -33,32 +48,84 @@ func Init(configJSON *C.char) *C.char {
 		return nil
 	}
 
+	p, errMsg := newParser(configJSON)
+	if errMsg != nil {
+		return errMsg
+	}
+
+	parser = p
+	initialized = true
+	return nil
+}
+
+// InitHandle creates an independent engine (own config, cache and updater)
+// and returns an opaque non-zero handle for the *Handle exports below. On
+// failure it returns 0 and, when errOut is non-nil, stores an error message
+// there (free with FreeString). Release the engine with CloseHandle.
+//
+//export InitHandle
+func InitHandle(configJSON *C.char, errOut **C.char) C.uint64_t {
+	p, errMsg := newParser(configJSON)
+	if errMsg != nil {
+		if errOut != nil {
+			*errOut = errMsg
+		} else {
+			C.free(unsafe.Pointer(errMsg))
+		}
+		return 0
+	}
+	h := nextHandle.Add(1)
+	handles.Store(h, p)
+	return C.uint64_t(h)
+}
+
+// CloseHandle stops the engine's background updater and invalidates the
+// handle; later calls with it return an error result. Parses already in
+// flight on the handle complete normally. Closing twice is a no-op.
+//
+//export CloseHandle
+func CloseHandle(handle C.uint64_t) {
+	if v, ok := handles.LoadAndDelete(uint64(handle)); ok {
+		v.(*core.Parser).Close()
+	}
+}
+
+func lookup(handle C.uint64_t) *core.Parser {
+	if v, ok := handles.Load(uint64(handle)); ok {
+		return v.(*core.Parser)
+	}
+	return nil
+}
+
+// newParser builds an engine from the host config JSON; on failure it
+// returns a C error string instead.
+func newParser(configJSON *C.char) (*core.Parser, *C.char) {
 	var cfg core.Config
 	if configJSON != nil {
 		err := json.Unmarshal([]byte(C.GoString(configJSON)), &cfg)
 		if err != nil {
-			return C.CString("Failed to unmarshal config: " + err.Error())
+			return nil, C.CString("Failed to unmarshal config: " + err.Error())
 		}
 	}
 
-	if cfg.LRUCacheSize == 0 {
+	if cfg.LRUCacheSize == 0 && cfg.CacheMaxBytes == 0 {
 		cfg.LRUCacheSize = 1000
 	}
 
 	p, err := core.New(cfg)
 	if err != nil {
-		return C.CString("Failed to initialize parser: " + err.Error())
+		return nil, C.CString("Failed to initialize parser: " + err.Error())
 	}
-
-	parser = p
-	initialized = true
-	return nil
+	return p, nil
 }
 
 type ParsePayload struct {
 	UA      string            `json:"ua"`
 	Headers map[string]string `json:"headers"`
 	Signals *core.Signals     `json:"signals"`
+	// Fields optionally projects the result, e.g. ["browser","os","is_bot"]
+	// (see core.Fields); absent or empty means every section.
+	Fields core.Fields `json:"fields"`
 }
 
 //export Parse
@@ -66,15 +133,83 @@ func Parse(payloadJSON *C.char) *C.char {
 	if parser == nil {
 		return C.CString(`{"error": "Parser not initialized"}`)
 	}
+	return parseJSON(parser, payloadJSON)
+}
 
+// ParseHandle is Parse on the engine behind handle.
+//
+//export ParseHandle
+func ParseHandle(handle C.uint64_t, payloadJSON *C.char) *C.char {
+	p := lookup(handle)
+	if p == nil {
+		return C.CString(errInvalidHandle)
+	}
+	return parseJSON(p, payloadJSON)
+}
+
+func parseJSON(p *core.Parser, payloadJSON *C.char) *C.char {
 	var payload ParsePayload
 	err := json.Unmarshal([]byte(C.GoString(payloadJSON)), &payload)
 	if err != nil {
-		return C.CString(`{"error": "Invalid payload: ` + err.Error() + `"}`)
+		return C.CString(string(errorJSON("Invalid payload: " + err.Error())))
+	}
+
+	result := p.ParseFieldsShared(payload.UA, payload.Headers, payload.Signals, payload.Fields)
+	resBytes, err := core.MarshalResult(result, payload.Fields)
+	if err != nil {
+		return C.CString(`{"error": "Failed to marshal result"}`)
+	}
+
+	return C.CString(string(resBytes))
+}
+
+// errorJSON is the {"error": msg} reply, with msg JSON-escaped: decode
+// errors quote the offending value (unknown result field "browsr").
+func errorJSON(msg string) []byte {
+	out, _ := json.Marshal(map[string]string{"error": msg})
+	return out
+}
+
+// ParseBatch parses many payloads in one call, amortizing the FFI crossing
+// and string conversion over the whole batch. payloadsJSON is a JSON array
+// of parse payloads (same shape as Parse); the result is a JSON array of
+// results in input order (free with FreeString). A malformed batch returns a
+// single {"error": ...} object instead of an array.
+//
+//export ParseBatch
+func ParseBatch(payloadsJSON *C.char) *C.char {
+	if parser == nil {
+		return C.CString(`{"error": "Parser not initialized"}`)
+	}
+	return parseBatchJSON(parser, payloadsJSON)
+}
+
+// ParseBatchHandle is ParseBatch on the engine behind handle.
+//
+//export ParseBatchHandle
+func ParseBatchHandle(handle C.uint64_t, payloadsJSON *C.char) *C.char {
+	p := lookup(handle)
+	if p == nil {
+		return C.CString(errInvalidHandle)
+	}
+	return parseBatchJSON(p, payloadsJSON)
+}
+
+func parseBatchJSON(p *core.Parser, payloadsJSON *C.char) *C.char {
+	var payloads []ParsePayload
+	err := json.Unmarshal([]byte(C.GoString(payloadsJSON)), &payloads)
+	if err != nil {
+		return C.CString(string(errorJSON("Invalid batch payload: " + err.Error())))
 	}
 
-	result := parser.ParseFull(payload.UA, payload.Headers, payload.Signals)
-	resBytes, err := json.Marshal(result)
+	results := make([]json.RawMessage, len(payloads))
+	for i := range payloads {
+		res := p.ParseFieldsShared(payloads[i].UA, payloads[i].Headers, payloads[i].Signals, payloads[i].Fields)
+		if results[i], err = core.MarshalResult(res, payloads[i].Fields); err != nil {
+			return C.CString(`{"error": "Failed to marshal result"}`)
+		}
+	}
+	resBytes, err := json.Marshal(results)
 	if err != nil {
 		return C.CString(`{"error": "Failed to marshal result"}`)
 	}
@@ -82,6 +217,103 @@ func Parse(payloadJSON *C.char) *C.char {
 	return C.CString(string(resBytes))
 }
 
+// ParseBinary is Parse with the result in the compact binary format
+// (core.MarshalBinaryResult) instead of JSON. Binary data may contain NUL
+// bytes, so the returned buffer is prefixed with its payload length as a
+// little-endian uint32; free it with FreeString. On error the payload is the
+// same {"error": ...} JSON text Parse returns (hosts tell the two apart by
+// the 'U' 'B' magic).
+//
+//export ParseBinary
+func ParseBinary(payloadJSON *C.char) *C.char {
+	if parser == nil {
+		return lengthPrefixed([]byte(`{"error": "Parser not initialized"}`))
+	}
+	return parseBinary(parser, payloadJSON)
+}
+
+// ParseBinaryHandle is ParseBinary on the engine behind handle.
+//
+//export ParseBinaryHandle
+func ParseBinaryHandle(handle C.uint64_t, payloadJSON *C.char) *C.char {
+	p := lookup(handle)
+	if p == nil {
+		return lengthPrefixed([]byte(errInvalidHandle))
+	}
+	return parseBinary(p, payloadJSON)
+}
+
+func parseBinary(p *core.Parser, payloadJSON *C.char) *C.char {
+	var payload ParsePayload
+	err := json.Unmarshal([]byte(C.GoString(payloadJSON)), &payload)
+	if err != nil {
+		return lengthPrefixed(errorJSON("Invalid payload: " + err.Error()))
+	}
+
+	result := p.ParseFieldsShared(payload.UA, payload.Headers, payload.Signals, payload.Fields)
+	return lengthPrefixed(core.MarshalBinaryResult(result))
+}
+
+// lengthPrefixed copies data into a C buffer as [uint32 LE length][data].
+func lengthPrefixed(data []byte) *C.char {
+	buf := C.malloc(C.size_t(4 + len(data)))
+	out := unsafe.Slice((*byte)(buf), 4+len(data))
+	binary.LittleEndian.PutUint32(out, uint32(len(data)))
+	copy(out[4:], data)
+	return (*C.char)(buf)
+}
+
+// ParseBytes is the allocation-conscious entry point: the payload JSON is
+// read in place from (in, inLen) — no NUL terminator, no C string copy — and
+// the binary result (core.MarshalBinaryResult) is written into the caller's
+// buffer (out, outCap), which hosts reuse across calls.
+//
+// Returns the number of bytes written. When outCap is too small nothing is
+// written and the negated required size is returned; the host grows its
+// buffer and retries (a repeat parse is an engine-cache hit). On error the
+// written bytes are the {"error": ...} JSON text, as with ParseBinary.
+//
+//export ParseBytes
+func ParseBytes(in *C.char, inLen C.int, out *C.char, outCap C.int) C.int {
+	if parser == nil {
+		return writeOut([]byte(`{"error": "Parser not initialized"}`), out, outCap)
+	}
+	return parseBytes(parser, in, inLen, out, outCap)
+}
+
+// ParseBytesHandle is ParseBytes on the engine behind handle.
+//
+//export ParseBytesHandle
+func ParseBytesHandle(handle C.uint64_t, in *C.char, inLen C.int, out *C.char, outCap C.int) C.int {
+	p := lookup(handle)
+	if p == nil {
+		return writeOut([]byte(errInvalidHandle), out, outCap)
+	}
+	return parseBytes(p, in, inLen, out, outCap)
+}
+
+func parseBytes(p *core.Parser, in *C.char, inLen C.int, out *C.char, outCap C.int) C.int {
+	var input []byte
+	if in != nil && inLen > 0 {
+		input = unsafe.Slice((*byte)(unsafe.Pointer(in)), int(inLen))
+	}
+	var payload ParsePayload
+	if err := json.Unmarshal(input, &payload); err != nil {
+		return writeOut(errorJSON("Invalid payload: " + err.Error()), out, outCap)
+	}
+	return writeOut(core.MarshalBinaryResult(p.ParseFieldsShared(payload.UA, payload.Headers, payload.Signals, payload.Fields)), out, outCap)
+}
+
+// writeOut copies data into the host buffer, or returns the negated
+// required size when it does not fit.
+func writeOut(data []byte, out *C.char, outCap C.int) C.int {
+	if len(data) > int(outCap) || out == nil {
+		return -C.int(len(data))
+	}
+	copy(unsafe.Slice((*byte)(unsafe.Pointer(out)), len(data)), data)
+	return C.int(len(data))
+}
+
 // UpdateCorrections lets the host push a new corrections.yaml payload into
 // the engine (validated + self-tested; whole-file reject keeps last good).
 // Returns nil on success or an error message (free with FreeString). Useful
@@ -92,15 +324,213 @@ func UpdateCorrections(yamlPayload *C.char) *C.char {
 	if parser == nil {
 		return C.CString("Parser not initialized")
 	}
+	return updateCorrections(parser, yamlPayload)
+}
+
+// UpdateCorrectionsHandle is UpdateCorrections on the engine behind handle.
+//
+//export UpdateCorrectionsHandle
+func UpdateCorrectionsHandle(handle C.uint64_t, yamlPayload *C.char) *C.char {
+	p := lookup(handle)
+	if p == nil {
+		return C.CString("Invalid or closed parser handle")
+	}
+	return updateCorrections(p, yamlPayload)
+}
+
+func updateCorrections(p *core.Parser, yamlPayload *C.char) *C.char {
 	if yamlPayload == nil {
 		return C.CString("nil corrections payload")
 	}
-	if err := parser.ApplyCorrectionsYAML([]byte(C.GoString(yamlPayload))); err != nil {
+	if err := p.ApplyCorrectionsYAML([]byte(C.GoString(yamlPayload))); err != nil {
 		return C.CString("Failed to apply corrections: " + err.Error())
 	}
 	return nil
 }
 
+// Stats returns the engine's counters as JSON (core.Stats): cache hits and
+// evictions, hit/miss latency histograms, correction-rule hits, hot-swap
+// generation and updater results. Per-parse counters need "collect_stats"
+// in the Init config. Free with FreeString.
+//
+//export Stats
+func Stats() *C.char {
+	if parser == nil {
+		return C.CString(`{"error": "Parser not initialized"}`)
+	}
+	return statsJSON(parser)
+}
+
+// StatsHandle is Stats for the engine behind handle.
+//
+//export StatsHandle
+func StatsHandle(handle C.uint64_t) *C.char {
+	p := lookup(handle)
+	if p == nil {
+		return C.CString(errInvalidHandle)
+	}
+	return statsJSON(p)
+}
+
+func statsJSON(p *core.Parser) *C.char {
+	resBytes, err := json.Marshal(p.Stats())
+	if err != nil {
+		return C.CString(`{"error": "Failed to marshal stats"}`)
+	}
+	return C.CString(string(resBytes))
+}
+
+// SaveWarmup writes the engine's warm-up snapshot (up to entries hottest
+// cache keys; 0 = default) to path, for replay through the warmup_file
+// config key. Returns nil on success, or an error message to free with
+// FreeString.
+//
+//export SaveWarmup
+func SaveWarmup(path *C.char, entries C.int) *C.char {
+	if parser == nil {
+		return C.CString("Parser not initialized")
+	}
+	return saveWarmup(parser, path, entries)
+}
+
+// SaveWarmupHandle is SaveWarmup for the engine behind handle.
+//
+//export SaveWarmupHandle
+func SaveWarmupHandle(handle C.uint64_t, path *C.char, entries C.int) *C.char {
+	p := lookup(handle)
+	if p == nil {
+		return C.CString("Invalid or closed parser handle")
+	}
+	return saveWarmup(p, path, entries)
+}
+
+func saveWarmup(p *core.Parser, path *C.char, entries C.int) *C.char {
+	if err := p.SaveWarmup(C.GoString(path), int(entries)); err != nil {
+		return C.CString(err.Error())
+	}
+	return nil
+}
+
+// AggregatorOpen starts an aggregation session (core.Aggregator) on the
+// process-global engine. dimensionsJSON is a JSON array of Result paths to
+// group by, e.g. ["browser.name","os.platform","is_bot"]. Returns a non-zero
+// session id, or 0 with an error message in errOut (free with FreeString).
+// Release the session with AggregatorClose.
+//
+//export AggregatorOpen
+func AggregatorOpen(dimensionsJSON *C.char, errOut **C.char) C.uint64_t {
+	if parser == nil {
+		return aggregatorFailed("Parser not initialized", errOut)
+	}
+	return openAggregator(parser, dimensionsJSON, errOut)
+}
+
+// AggregatorOpenHandle is AggregatorOpen on the engine behind handle. The
+// session keeps using that engine after CloseHandle, until AggregatorClose.
+//
+//export AggregatorOpenHandle
+func AggregatorOpenHandle(handle C.uint64_t, dimensionsJSON *C.char, errOut **C.char) C.uint64_t {
+	p := lookup(handle)
+	if p == nil {
+		return aggregatorFailed("Invalid or closed parser handle", errOut)
+	}
+	return openAggregator(p, dimensionsJSON, errOut)
+}
+
+func openAggregator(p *core.Parser, dimensionsJSON *C.char, errOut **C.char) C.uint64_t {
+	var dims []string
+	if err := json.Unmarshal([]byte(C.GoString(dimensionsJSON)), &dims); err != nil {
+		return aggregatorFailed("Invalid dimensions: "+err.Error(), errOut)
+	}
+	a, err := p.NewAggregator(dims)
+	if err != nil {
+		return aggregatorFailed(err.Error(), errOut)
+	}
+	id := nextAggregator.Add(1)
+	aggregators.Store(id, a)
+	return C.uint64_t(id)
+}
+
+func aggregatorFailed(msg string, errOut **C.char) C.uint64_t {
+	if errOut != nil {
+		*errOut = C.CString(msg)
+	}
+	return 0
+}
+
+func lookupAggregator(session C.uint64_t) *core.Aggregator {
+	if v, ok := aggregators.Load(uint64(session)); ok {
+		return v.(*core.Aggregator)
+	}
+	return nil
+}
+
+// AggregatorAdd parses a JSON array of payloads (the ParseBatch shape; any
+// "fields" are ignored) into the session's counts. Nothing is returned per
+// payload: nil on success, or an error message to free with FreeString.
+// Concurrent calls on one session are safe.
+//
+//export AggregatorAdd
+func AggregatorAdd(session C.uint64_t, payloadsJSON *C.char) *C.char {
+	a := lookupAggregator(session)
+	if a == nil {
+		return C.CString("Invalid or closed aggregation session")
+	}
+	var payloads []ParsePayload
+	if err := json.Unmarshal([]byte(C.GoString(payloadsJSON)), &payloads); err != nil {
+		return C.CString("Invalid batch payload: " + err.Error())
+	}
+	for i := range payloads {
+		a.Add(payloads[i].UA, payloads[i].Headers, payloads[i].Signals)
+	}
+	return nil
+}
+
+// AggregatorSnapshot returns the session's counts as JSON
+// (core.AggregateSnapshot); a non-zero reset starts the counts over in the
+// same step. Free with FreeString.
+//
+//export AggregatorSnapshot
+func AggregatorSnapshot(session C.uint64_t, reset C.int) *C.char {
+	a := lookupAggregator(session)
+	if a == nil {
+		return C.CString(`{"error": "Invalid or closed aggregation session"}`)
+	}
+	resBytes, err := json.Marshal(a.Snapshot(reset != 0))
+	if err != nil {
+		return C.CString(`{"error": "Failed to marshal aggregate"}`)
+	}
+	return C.CString(string(resBytes))
+}
+
+// AggregatorMerge adds a snapshot JSON with the same dimensions (from
+// another session, process or host) to the session's counts. Returns nil on
+// success, or an error message to free with FreeString.
+//
+//export AggregatorMerge
+func AggregatorMerge(session C.uint64_t, snapshotJSON *C.char) *C.char {
+	a := lookupAggregator(session)
+	if a == nil {
+		return C.CString("Invalid or closed aggregation session")
+	}
+	var s core.AggregateSnapshot
+	if err := json.Unmarshal([]byte(C.GoString(snapshotJSON)), &s); err != nil {
+		return C.CString("Invalid aggregate: " + err.Error())
+	}
+	if err := a.Merge(s); err != nil {
+		return C.CString(err.Error())
+	}
+	return nil
+}
+
+// AggregatorClose releases the session; later calls with its id return an
+// error. Closing twice is a no-op.
+//
+//export AggregatorClose
+func AggregatorClose(session C.uint64_t) {
+	aggregators.Delete(uint64(session))
+}
+
 //export FreeString
 func FreeString(ptr *C.char) {
 	C.free(unsafe.Pointer(ptr))
@@ -22,6 +22,9 @@ type ParseRequest struct {
 	// (max_touch_points, webgl_renderer, ...) — see the root README's
 	// "Forwarding headers from your backend" section.
 	Signals *core.Signals `json:"signals"`
+	// Fields optionally projects the response to the named sections, e.g.
+	// ["browser","os","is_bot"]; absent or empty returns every section.
+	Fields core.Fields `json:"fields"`
 }
 
 // envOr returns the value of the environment variable key, or def if unset/empty.
@@ -84,25 +87,51 @@ func main() {
 		}
 	}
 
+	// UA_CACHE_MAX_BYTES: bound the cache by the estimated memory of its
+	// entries instead; an explicit UA_CACHE_SIZE still caps the entry count.
+	var cacheMaxBytes int64
+	if cb := os.Getenv("UA_CACHE_MAX_BYTES"); cb != "" {
+		if val, err := strconv.ParseInt(cb, 10, 64); err == nil && val > 0 {
+			cacheMaxBytes = val
+			if os.Getenv("UA_CACHE_SIZE") == "" {
+				cacheSize = 0
+			}
+		}
+	}
+
 	ctx, stop := signal.NotifyContext(context.Background(), os.Interrupt, syscall.SIGTERM)
 	defer stop()
 
 	disableCorrections, _ := strconv.ParseBool(os.Getenv("UA_DISABLE_CORRECTIONS_UPDATE"))
 
+	// UA_LAZY_REGEXES: start serving once the regex DB is indexed and compile
+	// the regexes on a background goroutine (or on first use, if sooner).
+	lazyRegexes, _ := strconv.ParseBool(os.Getenv("UA_LAZY_REGEXES"))
+
+	// UA_WARMUP_FILE: replay the previous run's hottest UAs into the cache
+	// at startup; written back when the parser is closed on shutdown.
+	warmupFile := os.Getenv("UA_WARMUP_FILE")
+
 	cfg := core.Config{
 		Ctx:                      ctx,
 		DisableAutoUpdate:        disableUpdate,
 		LRUCacheSize:             cacheSize,
+		CacheMaxBytes:            cacheMaxBytes,
 		UpdateURL:                os.Getenv("UA_UPDATE_URL"),
 		UpdateInterval:           os.Getenv("UA_UPDATE_INTERVAL"),
 		CorrectionsURL:           os.Getenv("UA_CORRECTIONS_URL"),
 		DisableCorrectionsUpdate: disableCorrections,
+		LazyRegexes:              lazyRegexes,
+		CompileInBackground:      lazyRegexes,
+		WarmupFile:               warmupFile,
 	}
 
+	started := time.Now()
 	parser, err := core.New(cfg)
 	if err != nil {
 		log.Fatalf("Failed to initialize parser: %v", err)
 	}
+	log.Printf("Parser initialized in %s (LazyRegexes: %v)", time.Since(started).Round(time.Millisecond), lazyRegexes)
 
 	healthHandler := func(w http.ResponseWriter, r *http.Request) {
 		if r.Method != http.MethodGet {
@@ -139,12 +168,16 @@ func main() {
 			return
 		}
 
-		result := parser.ParseFull(req.UA, req.Headers, req.Signals)
-
-		w.Header().Set("Content-Type", "application/json")
-		if err := json.NewEncoder(w).Encode(result); err != nil {
+		result := parser.ParseFieldsShared(req.UA, req.Headers, req.Signals, req.Fields)
+		resBytes, err := core.MarshalResult(result, req.Fields)
+		if err != nil {
 			log.Printf("Error encoding response: %v", err)
+			http.Error(w, "Failed to encode result", http.StatusInternalServerError)
+			return
 		}
+
+		w.Header().Set("Content-Type", "application/json")
+		w.Write(append(resBytes, '\n'))
 	}
 
 	mux := http.NewServeMux()
@@ -8,14 +8,17 @@
 //     buffer that is kept reachable via the registry neither gets collected
 //     nor changes address while the host holds its pointer. free removes the
 //     registry entry, allowing the GC to reclaim the buffer.
-//   - parseUA returns a packed uint64: (length << 32) | ptr. The host reads
-//     length bytes at ptr and must release the buffer with free(ptr).
+//   - parseUA, parseUABinary, parseBatch, stats, warmupSnapshot and
+//     aggregatorSnapshot return a packed uint64:
+//     (length << 32) | ptr. The host reads length bytes at ptr and must
+//     release the buffer with free(ptr).
 //   - The registry map is deliberately unsynchronized: hosts guarantee
 //     single-threaded access to the module's exports (standard for WASI
 //     preview 1 reactors).
 package main
 
 import (
+	"bytes"
 	"encoding/json"
 	"unsafe"
 
@@ -24,6 +27,14 @@ import (
 
 var parser *core.Parser
 
+// parsePayload is one parse request as sent by the host.
+type parsePayload struct {
+	UA      string            `json:"ua"`
+	Headers map[string]string `json:"headers"`
+	Signals *core.Signals     `json:"signals"`
+	Fields  core.Fields       `json:"fields"` // optional projection (core.Fields)
+}
+
 // registry keeps track of allocated buffers to prevent GC from collecting them.
 var registry = make(map[uint32][]byte)
 
@@ -56,6 +67,10 @@ func initUA(ptr uint32, length uint32) int32 {
 			// If invalid JSON, we'll just use the default config instead of failing hard
 		}
 	}
+	// No filesystem here: the host reads and writes the warm-up file and
+	// goes through loadWarmup/warmupStep/warmupSnapshot instead.
+	cfg.WarmupFile = ""
+	pendingWarmup = nil
 
 	p, err := core.New(cfg)
 	if err != nil {
@@ -91,47 +106,282 @@ func updateCorrections(ptr uint32, length uint32) int32 {
 	return 0
 }
 
+// pendingWarmup is the snapshot loadWarmup decoded and warmupStep replays.
+var pendingWarmup *core.WarmupSnapshot
+
+// loadWarmup decodes a warm-up snapshot (core.ReadWarmup) for warmupStep to
+// replay. Returns the entry count, or -1 if the snapshot is invalid. The
+// replay is split into steps so the host can keep serving parses from this
+// instance in between.
+//
+//go:wasmexport loadWarmup
+func loadWarmup(ptr uint32, length uint32) int32 {
+	if parser == nil || ptr == 0 || length == 0 {
+		return -1
+	}
+	input := (*[1 << 30]byte)(unsafe.Pointer(uintptr(ptr)))[:length:length]
+	s, err := core.ReadWarmup(bytes.NewReader(input))
+	if err != nil {
+		return -1
+	}
+	pendingWarmup = s
+	return int32(s.Len())
+}
+
+// warmupStep replays up to max entries of the loaded snapshot and returns
+// how many are left (0 once done or when nothing is loaded).
+//
+//go:wasmexport warmupStep
+func warmupStep(max uint32) int32 {
+	if parser == nil || pendingWarmup == nil {
+		return 0
+	}
+	parser.ReplayWarmup(pendingWarmup, int(max))
+	left := pendingWarmup.Len()
+	if left == 0 {
+		pendingWarmup = nil
+	}
+	return int32(left)
+}
+
+// warmupSnapshot returns a snapshot of up to max hottest cache keys
+// (core.Parser.WriteWarmup), packed like parseUA's result; 0 before initUA.
+//
+//go:wasmexport warmupSnapshot
+func warmupSnapshot(max uint32) uint64 {
+	if parser == nil {
+		return 0
+	}
+	var buf bytes.Buffer
+	if _, err := parser.WriteWarmup(&buf, int(max)); err != nil {
+		return 0
+	}
+	return hostBuffer(buf.Bytes())
+}
+
 //go:wasmexport parseUA
 func parseUA(ptr uint32, length uint32) uint64 {
+	input, ok := readInput(ptr, length)
+	if !ok {
+		return 0
+	}
+	payload, err := decodeInput(input)
+	if err != nil {
+		return hostBuffer(errorJSON("Invalid payload: " + err.Error()))
+	}
+	result := parser.ParseFieldsShared(payload.UA, payload.Headers, payload.Signals, payload.Fields)
+	resBytes, _ := core.MarshalResult(result, payload.Fields)
+
+	return hostBuffer(resBytes)
+}
+
+// parseUABinary is parseUA with the result in the compact binary format
+// (core.MarshalBinaryResult) instead of JSON; same input and buffer contract.
+// An invalid payload returns the {"error": ...} JSON text, as with parseUA.
+//
+//go:wasmexport parseUABinary
+func parseUABinary(ptr uint32, length uint32) uint64 {
+	input, ok := readInput(ptr, length)
+	if !ok {
+		return 0
+	}
+	payload, err := decodeInput(input)
+	if err != nil {
+		return hostBuffer(errorJSON("Invalid payload: " + err.Error()))
+	}
+	return hostBuffer(core.MarshalBinaryResult(parser.ParseFieldsShared(payload.UA, payload.Headers, payload.Signals, payload.Fields)))
+}
+
+// readInput returns the host's input buffer, initializing the default
+// parser on first use; false for an empty input or a failed init.
+func readInput(ptr uint32, length uint32) ([]byte, bool) {
 	// Guard against a null pointer or empty input before constructing the
 	// unsafe slice below; a zero-length slice at address 0 is undefined.
 	if ptr == 0 || length == 0 {
-		return 0
+		return nil, false
 	}
 
 	if parser == nil {
 		if initUA(0, 0) != 0 {
-			return 0
+			return nil, false
 		}
 	}
 
 	// Read input from WASM memory
 	// Safe to use 1<<30 as a max limit for the slice header, won't actually allocate that much.
+	return (*[1 << 30]byte)(unsafe.Pointer(uintptr(ptr)))[:length:length], true
+}
+
+// decodeInput reads one parse payload. Input that is not a JSON object
+// (first non-space byte other than '{') is a raw User-Agent string, parsed
+// with every field; a JSON object that does not decode is an error, as in
+// the cshared Parse export, rather than a User-Agent.
+func decodeInput(input []byte) (parsePayload, error) {
+	var payload parsePayload
+	if trimmed := bytes.TrimLeft(input, " \t\r\n"); len(trimmed) == 0 || trimmed[0] != '{' {
+		payload.UA = string(input)
+		payload.Fields = core.AllFields
+		return payload, nil
+	}
+	if err := json.Unmarshal(input, &payload); err != nil {
+		return parsePayload{}, err
+	}
+	return payload, nil
+}
+
+// errorJSON is the {"error": msg} reply, with msg JSON-escaped: decode
+// errors quote the offending value (unknown result field "browsr").
+func errorJSON(msg string) []byte {
+	out, _ := json.Marshal(map[string]string{"error": msg})
+	return out
+}
+
+// parseBatch parses a JSON array of payloads in one host call and returns a
+// JSON array of results in input order, so the per-call boundary cost
+// (malloc, copy, export dispatch) is paid once per batch. Unlike parseUA
+// there is no raw-UA fallback: malformed input returns 0.
+//
+//go:wasmexport parseBatch
+func parseBatch(ptr uint32, length uint32) uint64 {
+	if ptr == 0 || length == 0 {
+		return 0
+	}
+
+	if parser == nil {
+		if initUA(0, 0) != 0 {
+			return 0
+		}
+	}
+
 	input := (*[1 << 30]byte)(unsafe.Pointer(uintptr(ptr)))[:length:length]
 
-	var payload struct {
-		UA      string            `json:"ua"`
-		Headers map[string]string `json:"headers"`
-		Signals *core.Signals     `json:"signals"`
+	var payloads []parsePayload
+	if err := json.Unmarshal(input, &payloads); err != nil {
+		return 0
 	}
 
-	// Try to parse as JSON payload (which allows passing headers)
-	// Fallback to treating the entire input as a raw User-Agent string
-	if err := json.Unmarshal(input, &payload); err != nil || payload.UA == "" {
-		payload.UA = string(input)
-		payload.Headers = nil
-		payload.Signals = nil
+	results := make([]json.RawMessage, len(payloads))
+	for i := range payloads {
+		res := parser.ParseFieldsShared(payloads[i].UA, payloads[i].Headers, payloads[i].Signals, payloads[i].Fields)
+		results[i], _ = core.MarshalResult(res, payloads[i].Fields)
+	}
+	resBytes, _ := json.Marshal(results)
+
+	return hostBuffer(resBytes)
+}
+
+// stats returns the engine's counters (core.Stats) as JSON, packed like
+// parseUA's result; 0 before initUA.
+//
+//go:wasmexport stats
+func stats() uint64 {
+	if parser == nil {
+		return 0
+	}
+	resBytes, _ := json.Marshal(parser.Stats())
+	return hostBuffer(resBytes)
+}
+
+// aggregators holds the open aggregation sessions by id; like registry it
+// relies on single-threaded host access.
+var (
+	aggregators    = make(map[uint32]*core.Aggregator)
+	nextAggregator uint32
+)
+
+// aggregatorOpen starts an aggregation session (core.Aggregator) grouping by
+// the JSON array of dimension names at ptr. Returns the session id, or -1
+// for invalid dimensions.
+//
+//go:wasmexport aggregatorOpen
+func aggregatorOpen(ptr uint32, length uint32) int32 {
+	if ptr == 0 || length == 0 {
+		return -1
+	}
+	if parser == nil {
+		if initUA(0, 0) != 0 {
+			return -1
+		}
+	}
+	input := (*[1 << 30]byte)(unsafe.Pointer(uintptr(ptr)))[:length:length]
+	var dims []string
+	if err := json.Unmarshal(input, &dims); err != nil {
+		return -1
 	}
+	a, err := parser.NewAggregator(dims)
+	if err != nil {
+		return -1
+	}
+	nextAggregator++
+	aggregators[nextAggregator] = a
+	return int32(nextAggregator)
+}
 
-	result := parser.ParseFull(payload.UA, payload.Headers, payload.Signals)
-	resBytes, _ := json.Marshal(result)
+// aggregatorAdd parses a JSON array of payloads (the parseBatch shape) into
+// the session's counts. Returns 0, or -1 for an unknown session or
+// malformed input.
+//
+//go:wasmexport aggregatorAdd
+func aggregatorAdd(id uint32, ptr uint32, length uint32) int32 {
+	a := aggregators[id]
+	if a == nil || ptr == 0 || length == 0 {
+		return -1
+	}
+	input := (*[1 << 30]byte)(unsafe.Pointer(uintptr(ptr)))[:length:length]
+	var payloads []parsePayload
+	if err := json.Unmarshal(input, &payloads); err != nil {
+		return -1
+	}
+	for i := range payloads {
+		a.Add(payloads[i].UA, payloads[i].Headers, payloads[i].Signals)
+	}
+	return 0
+}
 
-	// Allocate buffer for the result to be read by the host
-	resPtr := malloc(uint32(len(resBytes)))
-	copy(registry[resPtr], resBytes)
+// aggregatorSnapshot returns the session's counts (core.AggregateSnapshot)
+// as JSON, packed like parseUA's result, starting them over when reset is
+// non-zero; 0 for an unknown session.
+//
+//go:wasmexport aggregatorSnapshot
+func aggregatorSnapshot(id uint32, reset uint32) uint64 {
+	a := aggregators[id]
+	if a == nil {
+		return 0
+	}
+	resBytes, _ := json.Marshal(a.Snapshot(reset != 0))
+	return hostBuffer(resBytes)
+}
+
+// aggregatorMerge adds a snapshot JSON with the same dimensions to the
+// session's counts. Returns 0, or -1 when it does not fit the session.
+//
+//go:wasmexport aggregatorMerge
+func aggregatorMerge(id uint32, ptr uint32, length uint32) int32 {
+	a := aggregators[id]
+	if a == nil || ptr == 0 || length == 0 {
+		return -1
+	}
+	input := (*[1 << 30]byte)(unsafe.Pointer(uintptr(ptr)))[:length:length]
+	var s core.AggregateSnapshot
+	if err := json.Unmarshal(input, &s); err != nil || a.Merge(s) != nil {
+		return -1
+	}
+	return 0
+}
+
+// aggregatorClose releases the session.
+//
+//go:wasmexport aggregatorClose
+func aggregatorClose(id uint32) {
+	delete(aggregators, id)
+}
 
-	// Return packed (length << 32) | ptr
-	return (uint64(len(resBytes)) << 32) | uint64(resPtr)
+// hostBuffer copies data into a registry-pinned buffer for the host and
+// returns it packed as (length << 32) | ptr.
+func hostBuffer(data []byte) uint64 {
+	resPtr := malloc(uint32(len(data)))
+	copy(registry[resPtr], data)
+	return (uint64(len(data)) << 32) | uint64(resPtr)
 }
 
 func main() {}
@@ -0,0 +1,81 @@
+//go:build wasm && wasip1
+
+// Run with a WASI runtime as the exec wrapper, e.g.
+//
+//	PATH="$(go env GOROOT)/lib/wasm:$PATH" GOWASIRUNTIME=wazero \
+//	    GOOS=wasip1 GOARCH=wasm go test ./cmd/wasm
+package main
+
+import (
+	"encoding/json"
+	"strings"
+	"testing"
+)
+
+const chromeUA = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/126.0.0.0 Safari/537.36"
+
+// call runs a parse export on input through the host buffer contract:
+// malloc, write, call, read the packed result, free.
+func call(t *testing.T, export func(uint32, uint32) uint64, input string) []byte {
+	t.Helper()
+	ptr := malloc(uint32(len(input)))
+	defer free(ptr)
+	copy(registry[ptr], input)
+
+	packed := export(ptr, uint32(len(input)))
+	if packed == 0 {
+		t.Fatalf("%q: no result", input)
+	}
+	resPtr, resLen := uint32(packed), uint32(packed>>32)
+	defer free(resPtr)
+	return append([]byte(nil), registry[resPtr][:resLen]...)
+}
+
+func decode(t *testing.T, input string, out []byte) map[string]any {
+	t.Helper()
+	var m map[string]any
+	if err := json.Unmarshal(out, &m); err != nil {
+		t.Fatalf("%q: reply is not JSON: %v\n%s", input, err, out)
+	}
+	return m
+}
+
+func TestParseUARawAndJSONInput(t *testing.T) {
+	raw := call(t, parseUA, chromeUA)
+	if name := decode(t, chromeUA, raw)["browser"].(map[string]any)["name"]; name != "Chrome" {
+		t.Fatalf("raw UA: browser %v, want Chrome\n%s", name, raw)
+	}
+
+	payload, _ := json.Marshal(map[string]string{"ua": chromeUA})
+	for _, input := range []string{string(payload), " \n\t" + string(payload)} {
+		if got := call(t, parseUA, input); string(got) != string(raw) {
+			t.Errorf("%q:\n got  %s\n want %s", input, got, raw)
+		}
+	}
+
+	// A payload without a UA is still a payload, not a raw UA.
+	input := `{"headers":{"Sec-CH-UA-Platform":"\"macOS\""}}`
+	if m := decode(t, input, call(t, parseUA, input)); m["error"] != nil || m["ua"] != "" {
+		t.Errorf("%q: parsed as %v", input, m)
+	}
+}
+
+// A JSON payload that fails to decode is an error reply, never a User-Agent.
+func TestParseUAInvalidPayload(t *testing.T) {
+	bad := []struct{ input, want string }{
+		{`{"ua":"` + chromeUA + `","fields":["browsr"]}`, `unknown result field "browsr"`},
+		{`{"ua":"` + chromeUA + `","fields":"browser"}`, "Invalid payload: "},
+		{`{"ua":"` + chromeUA + `"`, "Invalid payload: "},
+		{` {"ua": 42}`, "Invalid payload: "},
+	}
+	exports := map[string]func(uint32, uint32) uint64{"parseUA": parseUA, "parseUABinary": parseUABinary}
+	for _, tc := range bad {
+		for name, export := range exports {
+			m := decode(t, tc.input, call(t, export, tc.input))
+			msg, _ := m["error"].(string)
+			if !strings.HasPrefix(msg, "Invalid payload: ") || !strings.Contains(msg, tc.want) {
+				t.Errorf("%s(%q) = %v, want an error containing %q", name, tc.input, m, tc.want)
+			}
+		}
+	}
+}
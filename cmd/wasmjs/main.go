@@ -10,10 +10,11 @@
 //   - globalThis.parseUA(payloadJson string) -> JSON string with the parse
 //     result; failures are reported as a JSON string {"error": "..."}.
 //
-// The payload is {"ua": "...", "headers": {...}}; a plain (non-JSON) string
-// is accepted as a raw User-Agent for convenience, mirroring the wasip1
-// build. main blocks forever after registering the functions so the Go
-// runtime stays alive for subsequent calls from JS.
+// The payload is {"ua": "...", "headers": {...}}; a string that is not a JSON
+// object is accepted as a raw User-Agent for convenience, mirroring the
+// wasip1 build. A JSON object that fails to decode is an error. main blocks
+// forever after registering the functions so the Go runtime stays alive for
+// subsequent calls from JS.
 package main
 
 import (
@@ -21,6 +22,7 @@ import (
 	"io"
 	"log"
 	"net/http"
+	"strings"
 	"syscall/js"
 	"time"
 
@@ -150,22 +152,24 @@ func jsParseUA(this js.Value, args []js.Value) any {
 		UA      string            `json:"ua"`
 		Headers map[string]string `json:"headers"`
 		Signals *core.Signals     `json:"signals"`
+		Fields  core.Fields       `json:"fields"`
 	}
 
-	// Try to parse as JSON payload (which allows passing headers).
-	// Fallback to treating the entire input as a raw User-Agent string.
-	if err := json.Unmarshal([]byte(input), &payload); err != nil || payload.UA == "" {
+	// A JSON object is a payload (which allows passing headers) and must
+	// decode; anything else is the raw User-Agent string.
+	if trimmed := strings.TrimLeft(input, " \t\r\n"); trimmed == "" || trimmed[0] != '{' {
 		payload.UA = input
-		payload.Headers = nil
-		payload.Signals = nil
+		payload.Fields = core.AllFields
+	} else if err := json.Unmarshal([]byte(input), &payload); err != nil {
+		return errorJSON("Invalid payload: " + err.Error())
 	}
 
 	// Fill in what the page did not supply from the auto-collected browser
 	// evidence (userAgentData high-entropy hints + navigator signals).
 	headers, signals := mergeCollected(payload.Headers, payload.Signals)
 
-	result := parser.ParseFull(payload.UA, headers, signals)
-	resBytes, err := json.Marshal(result)
+	result := parser.ParseFieldsShared(payload.UA, headers, signals, payload.Fields)
+	resBytes, err := core.MarshalResult(result, payload.Fields)
 	if err != nil {
 		return errorJSON("Failed to marshal result: " + err.Error())
 	}
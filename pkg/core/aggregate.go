@@ -0,0 +1,287 @@
+package core
+
+import (
+	"encoding/binary"
+	"fmt"
+	"slices"
+	"sort"
+	"sync"
+)
+
+// Aggregator is an aggregation session: it parses a stream of requests and
+// keeps only counts grouped by a fixed list of dimensions (Result JSON
+// paths such as "browser.name", "os.platform" or "is_bot"), so a dashboard
+// over a log window never materializes or marshals a Result per line.
+//
+// An Aggregator is safe for concurrent use. Snapshots of aggregators with
+// the same dimensions combine by adding counts (Merge), so a window split
+// across goroutines, processes or hosts folds into one histogram.
+type Aggregator struct {
+	p      *Parser
+	dims   []string
+	values []func(*Result) string
+	fields Fields
+
+	mu     sync.Mutex
+	groups map[string]*AggregateGroup
+	total  uint64
+	key    []byte // scratch for the group key, guarded by mu
+}
+
+// AggregateGroup is one combination of dimension values (in dimension
+// order) and the number of parses that produced it. Booleans are "true" or
+// "false"; an absent value (no bot section, say) is "".
+type AggregateGroup struct {
+	Values []string `json:"values"`
+	Count  uint64   `json:"count"`
+}
+
+// AggregateSnapshot is an Aggregator's counts at one point in time, groups
+// ordered by descending count.
+type AggregateSnapshot struct {
+	Dimensions []string         `json:"dimensions"`
+	Total      uint64           `json:"total"`
+	Groups     []AggregateGroup `json:"groups"`
+}
+
+func boolValue(b bool) string {
+	if b {
+		return "true"
+	}
+	return "false"
+}
+
+// aggregateDimensions lists the groupable Result fields by JSON path, with
+// the section each one needs. The UA, os.version_raw, integrity reasons and
+// the GPU renderer are left out: they identify clients rather than sort them
+// into groups.
+var aggregateDimensions = [...]struct {
+	name  string
+	field Fields
+	value func(*Result) string
+}{
+	{"browser.name", FieldBrowser, func(r *Result) string { return r.Browser.Name }},
+	{"browser.version", FieldBrowser, func(r *Result) string { return r.Browser.Version }},
+	{"browser.major", FieldBrowser, func(r *Result) string { return r.Browser.Major }},
+	{"browser.type", FieldBrowser, func(r *Result) string { return r.Browser.Type }},
+	{"os.name", FieldOS, func(r *Result) string { return r.OS.Name }},
+	{"os.version", FieldOS, func(r *Result) string { return r.OS.Version }},
+	{"os.platform", FieldOS, func(r *Result) string { return r.OS.Platform }},
+	{"os.version_name", FieldOS, func(r *Result) string { return r.OS.VersionName }},
+	{"device.model", FieldDevice, func(r *Result) string { return r.Device.Model }},
+	{"device.vendor", FieldDevice, func(r *Result) string { return r.Device.Vendor }},
+	{"device.type", FieldDevice, func(r *Result) string { return r.Device.Type }},
+	{"device.form_factor", FieldDevice, func(r *Result) string { return r.Device.FormFactor }},
+	{"cpu.architecture", FieldCPU, func(r *Result) string { return r.CPU.Architecture }},
+	{"cpu.bitness", FieldCPU, func(r *Result) string { return r.CPU.Bitness }},
+	{"engine.name", FieldEngine, func(r *Result) string { return r.Engine.Name }},
+	{"category", FieldCategory, func(r *Result) string { return r.Category }},
+	{"is_bot", FieldIsBot, func(r *Result) string { return boolValue(r.IsBot) }},
+	{"is_ai_crawler", FieldIsAICrawler, func(r *Result) string { return boolValue(r.IsAICrawler) }},
+	{"is_frozen_ua", FieldIsFrozenUA, func(r *Result) string { return boolValue(r.IsFrozenUA) }},
+	{"is_mobile", FieldIsMobile, func(r *Result) string { return boolValue(r.IsMobile) }},
+	{"is_desktop", FieldIsDesktop, func(r *Result) string { return boolValue(r.IsDesktop) }},
+	{"is_touch_capable", FieldIsTouchCapable, func(r *Result) string { return boolValue(r.IsTouchCapable) }},
+	{"is_chrome_family", FieldIsChromeFamily, func(r *Result) string { return boolValue(r.IsChromeFamily) }},
+	{"is_apple_silicon", FieldIsAppleSilicon, func(r *Result) string { return boolValue(r.IsAppleSilicon) }},
+	{"automation.headless", FieldAutomation, func(r *Result) string { return boolValue(r.Automation.Headless) }},
+	{"automation.electron", FieldAutomation, func(r *Result) string { return boolValue(r.Automation.Electron) }},
+	{"automation.webdriver", FieldAutomation, func(r *Result) string { return boolValue(r.Automation.Webdriver) }},
+	{"integrity.spoofed", FieldIntegrity, func(r *Result) string { return boolValue(r.Integrity.Spoofed) }},
+	{"security.suspicious", FieldSecurity, func(r *Result) string { return boolValue(r.Security.Suspicious) }},
+	{"security.category", FieldSecurity, func(r *Result) string { return r.Security.Category }},
+	{"detection.client_hints_used", FieldDetection, func(r *Result) string { return boolValue(r.Detection.ClientHintsUsed) }},
+	{"detection.high_entropy", FieldDetection, func(r *Result) string { return boolValue(r.Detection.HighEntropy) }},
+	{"detection.signals_used", FieldDetection, func(r *Result) string { return boolValue(r.Detection.SignalsUsed) }},
+	{"class_hash", FieldClassHash, func(r *Result) string { return r.ClassHash }},
+	{"bot.name", FieldBot, func(r *Result) string { return botValue(r, func(b *BotInfo) string { return b.Name }) }},
+	{"bot.category", FieldBot, func(r *Result) string { return botValue(r, func(b *BotInfo) string { return b.Category }) }},
+	{"bot.vendor", FieldBot, func(r *Result) string { return botValue(r, func(b *BotInfo) string { return b.Vendor }) }},
+	{"gpu.vendor", FieldGPU, func(r *Result) string {
+		if r.GPU == nil {
+			return ""
+		}
+		return r.GPU.Vendor
+	}},
+}
+
+func botValue(r *Result, get func(*BotInfo) string) string {
+	if r.Bot == nil {
+		return ""
+	}
+	return get(r.Bot)
+}
+
+// AggregateDimensions lists the names NewAggregator accepts.
+func AggregateDimensions() []string {
+	names := make([]string, len(aggregateDimensions))
+	for i, d := range aggregateDimensions {
+		names[i] = d.name
+	}
+	return names
+}
+
+// NewAggregator starts an aggregation session on p grouping by dims, in
+// order. Parses request only the Result sections the dimensions read.
+// Unknown, repeated or no dimensions are an error.
+func (p *Parser) NewAggregator(dims []string) (*Aggregator, error) {
+	if len(dims) == 0 {
+		return nil, fmt.Errorf("aggregation needs at least one dimension")
+	}
+	a := &Aggregator{
+		p:      p,
+		dims:   slices.Clone(dims),
+		values: make([]func(*Result) string, len(dims)),
+		groups: make(map[string]*AggregateGroup),
+	}
+outer:
+	for i, name := range dims {
+		if slices.Contains(dims[:i], name) {
+			return nil, fmt.Errorf("repeated aggregation dimension %q", name)
+		}
+		for _, d := range aggregateDimensions {
+			if d.name == name {
+				a.values[i] = d.value
+				a.fields |= d.field
+				continue outer
+			}
+		}
+		return nil, fmt.Errorf("unknown aggregation dimension %q", name)
+	}
+	return a, nil
+}
+
+// Dimensions returns the session's dimensions, in grouping order.
+func (a *Aggregator) Dimensions() []string {
+	return slices.Clone(a.dims)
+}
+
+// Add parses one request and counts it in its group. The parse goes
+// through the engine cache like any other.
+func (a *Aggregator) Add(ua string, headers map[string]string, signals *Signals) {
+	r := a.p.ParseFieldsShared(ua, headers, signals, a.fields)
+
+	a.mu.Lock()
+	defer a.mu.Unlock()
+	a.key = a.key[:0]
+	for _, value := range a.values {
+		a.key = appendGroupKey(a.key, value(r))
+	}
+	a.total++
+	// The string(a.key) lookup does not allocate; only a new group does.
+	if g, ok := a.groups[string(a.key)]; ok {
+		g.Count++
+		return
+	}
+	values := make([]string, len(a.values))
+	for i, value := range a.values {
+		values[i] = value(r)
+	}
+	a.groups[string(a.key)] = &AggregateGroup{Values: values, Count: 1}
+}
+
+// Snapshot returns the counts so far. With reset the session starts over
+// atomically, so consecutive reset snapshots partition the stream (hourly
+// windows, say) without losing or double-counting a parse.
+func (a *Aggregator) Snapshot(reset bool) AggregateSnapshot {
+	a.mu.Lock()
+	groups, total := a.groups, a.total
+	if reset {
+		a.groups = make(map[string]*AggregateGroup)
+		a.total = 0
+	}
+	s := AggregateSnapshot{Dimensions: slices.Clone(a.dims), Total: total, Groups: make([]AggregateGroup, 0, len(groups))}
+	for _, g := range groups {
+		s.Groups = append(s.Groups, AggregateGroup{Values: slices.Clone(g.Values), Count: g.Count})
+	}
+	a.mu.Unlock()
+	sortGroups(s.Groups)
+	return s
+}
+
+// Merge adds the counts of s, e.g. a snapshot taken by another process
+// with the same dimensions, to the session.
+func (a *Aggregator) Merge(s AggregateSnapshot) error {
+	if !slices.Equal(s.Dimensions, a.dims) {
+		return fmt.Errorf("cannot merge aggregate over %v into one over %v", s.Dimensions, a.dims)
+	}
+	if err := s.check(); err != nil {
+		return err
+	}
+	a.mu.Lock()
+	defer a.mu.Unlock()
+	a.total += s.Total
+	for _, g := range s.Groups {
+		a.key = a.key[:0]
+		for _, v := range g.Values {
+			a.key = appendGroupKey(a.key, v)
+		}
+		if existing, ok := a.groups[string(a.key)]; ok {
+			existing.Count += g.Count
+			continue
+		}
+		a.groups[string(a.key)] = &AggregateGroup{Values: slices.Clone(g.Values), Count: g.Count}
+	}
+	return nil
+}
+
+// Merge returns the sum of s and o, which must have the same dimensions.
+func (s AggregateSnapshot) Merge(o AggregateSnapshot) (AggregateSnapshot, error) {
+	if !slices.Equal(s.Dimensions, o.Dimensions) {
+		return AggregateSnapshot{}, fmt.Errorf("cannot merge aggregate over %v with one over %v", o.Dimensions, s.Dimensions)
+	}
+	for _, snap := range []AggregateSnapshot{s, o} {
+		if err := snap.check(); err != nil {
+			return AggregateSnapshot{}, err
+		}
+	}
+	index := make(map[string]int, len(s.Groups)+len(o.Groups))
+	out := AggregateSnapshot{
+		Dimensions: slices.Clone(s.Dimensions),
+		Total:      s.Total + o.Total,
+		Groups:     make([]AggregateGroup, 0, len(s.Groups)+len(o.Groups)),
+	}
+	var key []byte
+	for _, snap := range []AggregateSnapshot{s, o} {
+		for _, g := range snap.Groups {
+			key = key[:0]
+			for _, v := range g.Values {
+				key = appendGroupKey(key, v)
+			}
+			if i, ok := index[string(key)]; ok {
+				out.Groups[i].Count += g.Count
+				continue
+			}
+			index[string(key)] = len(out.Groups)
+			out.Groups = append(out.Groups, AggregateGroup{Values: slices.Clone(g.Values), Count: g.Count})
+		}
+	}
+	sortGroups(out.Groups)
+	return out, nil
+}
+
+func (s AggregateSnapshot) check() error {
+	for _, g := range s.Groups {
+		if len(g.Values) != len(s.Dimensions) {
+			return fmt.Errorf("aggregate group has %d values for %d dimensions", len(g.Values), len(s.Dimensions))
+		}
+	}
+	return nil
+}
+
+// appendGroupKey appends v length-prefixed, so no two value lists share a key.
+func appendGroupKey(key []byte, v string) []byte {
+	key = binary.AppendUvarint(key, uint64(len(v)))
+	return append(key, v...)
+}
+
+// sortGroups orders groups by descending count, then by values, so equal
+// aggregates always serialize identically.
+func sortGroups(groups []AggregateGroup) {
+	sort.Slice(groups, func(i, j int) bool {
+		if groups[i].Count != groups[j].Count {
+			return groups[i].Count > groups[j].Count
+		}
+		return slices.Compare(groups[i].Values, groups[j].Values) < 0
+	})
+}
@@ -0,0 +1,157 @@
+package core
+
+import (
+	"reflect"
+	"sync"
+	"testing"
+)
+
+func TestAggregatorCountsMatchParses(t *testing.T) {
+	p := newTestParser(t, 100)
+	dims := []string{"browser.name", "os.platform", "is_bot", "bot.vendor"}
+	a, err := p.NewAggregator(dims)
+	if err != nil {
+		t.Fatalf("NewAggregator: %v", err)
+	}
+	want := map[string]uint64{}
+	for round := 0; round < 3; round++ {
+		for _, ua := range benchUAs {
+			a.Add(ua, nil, nil)
+			r := p.ParseFull(ua, nil, nil)
+			vendor := ""
+			if r.Bot != nil {
+				vendor = r.Bot.Vendor
+			}
+			want[string(appendGroupKey(appendGroupKey(appendGroupKey(appendGroupKey(nil,
+				r.Browser.Name), r.OS.Platform), boolValue(r.IsBot)), vendor))]++
+		}
+	}
+
+	s := a.Snapshot(false)
+	if s.Total != uint64(3*len(benchUAs)) {
+		t.Errorf("total %d, want %d", s.Total, 3*len(benchUAs))
+	}
+	if !reflect.DeepEqual(s.Dimensions, dims) {
+		t.Errorf("dimensions %v, want %v", s.Dimensions, dims)
+	}
+	got := map[string]uint64{}
+	for i, g := range s.Groups {
+		var key []byte
+		for _, v := range g.Values {
+			key = appendGroupKey(key, v)
+		}
+		got[string(key)] = g.Count
+		if i > 0 && g.Count > s.Groups[i-1].Count {
+			t.Errorf("groups not ordered by count: %v", s.Groups)
+		}
+	}
+	if !reflect.DeepEqual(got, want) {
+		t.Errorf("groups %v, want %v", got, want)
+	}
+
+	if again := a.Snapshot(true); !reflect.DeepEqual(again, s) {
+		t.Errorf("reset snapshot %v differs from %v", again, s)
+	}
+	if s := a.Snapshot(false); s.Total != 0 || len(s.Groups) != 0 {
+		t.Errorf("after reset: %+v", s)
+	}
+}
+
+func TestAggregatorRejectsBadDimensions(t *testing.T) {
+	p := newTestParser(t, 0)
+	for _, dims := range [][]string{nil, {"browser.nam"}, {"ua"}, {"is_bot", "is_bot"}} {
+		if _, err := p.NewAggregator(dims); err == nil {
+			t.Errorf("NewAggregator(%q) accepted", dims)
+		}
+	}
+	for _, name := range AggregateDimensions() {
+		if _, err := p.NewAggregator([]string{name}); err != nil {
+			t.Errorf("listed dimension %q: %v", name, err)
+		}
+	}
+}
+
+func TestAggregatorMergeAddsCounts(t *testing.T) {
+	p := newTestParser(t, 100)
+	dims := []string{"device.type", "is_mobile"}
+	whole, _ := p.NewAggregator(dims)
+	left, _ := p.NewAggregator(dims)
+	right, _ := p.NewAggregator(dims)
+
+	var wg sync.WaitGroup
+	for i, ua := range benchUAs {
+		whole.Add(ua, nil, nil)
+		half := left
+		if i%2 == 1 {
+			half = right
+		}
+		wg.Add(1)
+		go func() {
+			defer wg.Done()
+			half.Add(ua, nil, nil)
+		}()
+	}
+	wg.Wait()
+
+	merged, err := left.Snapshot(false).Merge(right.Snapshot(false))
+	if err != nil {
+		t.Fatalf("Merge: %v", err)
+	}
+	if want := whole.Snapshot(false); !reflect.DeepEqual(merged, want) {
+		t.Errorf("merged snapshot %+v, want %+v", merged, want)
+	}
+	if err := left.Merge(right.Snapshot(false)); err != nil {
+		t.Fatalf("Aggregator.Merge: %v", err)
+	}
+	if got := left.Snapshot(false); !reflect.DeepEqual(got, merged) {
+		t.Errorf("session merge %+v, want %+v", got, merged)
+	}
+
+	other, _ := p.NewAggregator([]string{"device.type"})
+	if err := left.Merge(other.Snapshot(false)); err == nil {
+		t.Error("merged an aggregate over other dimensions")
+	}
+	bad := AggregateSnapshot{Dimensions: dims, Total: 1, Groups: []AggregateGroup{{Values: []string{"x"}, Count: 1}}}
+	if err := left.Merge(bad); err == nil {
+		t.Error("merged a group with too few values")
+	}
+}
+
+func TestAggregatorAddDoesNotAllocateForKnownGroups(t *testing.T) {
+	p := newTestParser(t, 100)
+	a, _ := p.NewAggregator([]string{"browser.name", "os.platform", "device.type"})
+	ua := benchUAs[0]
+	a.Add(ua, nil, nil)
+	if n := testing.AllocsPerRun(100, func() { a.Add(ua, nil, nil) }); n != 0 {
+		t.Errorf("Add on a cached UA and known group allocates %v times", n)
+	}
+}
+
+// BenchmarkAggregate compares counting a cached stream in an Aggregator
+// with what a host does without one: parse and marshal every result.
+func BenchmarkAggregate(b *testing.B) {
+	p, err := New(Config{DisableAutoUpdate: true, LRUCacheSize: 1000})
+	if err != nil {
+		b.Fatalf("Failed to create parser: %v", err)
+	}
+	defer p.Close()
+	b.Run("aggregator", func(b *testing.B) {
+		a, err := p.NewAggregator([]string{"browser.name", "os.platform", "device.type"})
+		if err != nil {
+			b.Fatal(err)
+		}
+		b.ReportAllocs()
+		for i := 0; i < b.N; i++ {
+			a.Add(benchUAs[i%len(benchUAs)], nil, nil)
+		}
+	})
+	b.Run("marshal", func(b *testing.B) {
+		b.ReportAllocs()
+		for i := 0; i < b.N; i++ {
+			res := p.ParseFullShared(benchUAs[i%len(benchUAs)], nil, nil)
+			if _, err := MarshalResult(res, AllFields); err != nil {
+				b.Fatal(err)
+			}
+		}
+	})
+}
@@ -0,0 +1,205 @@
+package core
+
+import "encoding/binary"
+
+// Compact binary result encoding — an alternative to JSON for hosts that
+// decode results by hand (the Java client's BinaryResultDecoder). JSON
+// marshal/unmarshal dominates per-call CPU on the FFI/WASM path; this format
+// has no field names, no escaping and no number formatting.
+//
+// Layout (format version 1, all integers unsigned LEB128 varints):
+//
+//	magic   'U' 'B'
+//	version 1 byte (BinaryFormatVersion)
+//	flags   varint, one bit per binFlag* constant below
+//	table   varint count, then count × (varint len, UTF-8 bytes)
+//	refs    one varint per string field, in MarshalBinaryResult order;
+//	        integrity.reasons is (varint n+1, n refs) with 0 meaning null;
+//	        bot and gpu fields follow only when their flag is set
+//
+// A string ref is 0 for "", 1..len(binaryDictionary) for a dictionary entry
+// and len(binaryDictionary)+1+i for entry i of the per-message table, so
+// repeated values (browser/OS names, version == version_raw, ...) are stored
+// once. result_version travels as a normal string field: the format version
+// covers the byte layout, result_version the meaning of the fields.
+//
+// The dictionary and field order are part of the format: changing either
+// requires bumping BinaryFormatVersion and the Java decoder in lockstep.
+
+// BinaryFormatVersion is the layout version written after the magic bytes.
+const BinaryFormatVersion = 1
+
+// binaryDictionary holds values frequent enough across results to be
+// referenced without being stored. Append-only within a format version.
+var binaryDictionary = [...]string{
+	"1.2", "Other", // literal, not ResultSchemaVersion: a bump must not shift the dictionary
+	// browsers
+	"Chrome", "Chrome Mobile", "Chrome Mobile WebView", "Chrome Mobile iOS",
+	"Firefox", "Firefox Mobile", "Safari", "Mobile Safari", "Edge", "Edge Mobile",
+	"Opera", "Samsung Internet", "Yandex Browser", "UC Browser",
+	// operating systems
+	"Windows", "Mac OS X", "macOS", "iOS", "iPadOS", "Android", "Linux",
+	"Ubuntu", "Chrome OS", "Windows 10", "Windows 11",
+	// os.platform
+	"windows", "macos", "ios", "android", "linux", "chromeos", "tizen",
+	"playstation", "other",
+	// device/category/form factor
+	"desktop", "mobile", "tablet", "tv", "console", "wearable", "xr",
+	"automotive", "watch", "bot",
+	// browser.type
+	"browser", "email", "library",
+	// vendors/models
+	"Apple", "Samsung", "Google", "Huawei", "Xiaomi", "Generic", "Mac",
+	"iPhone", "iPad", "K", "Spider",
+	// engines / cpu
+	"Blink", "WebKit", "Gecko", "Trident", "EdgeHTML", "Presto",
+	"amd64", "arm64", "x86", "64", "32",
+	// bot categories
+	"training", "search", "user-fetch", "agent", "search-crawler", "seo",
+	"monitoring", "social-preview",
+	// security categories
+	"scanner", "sql-injection", "xss", "path-traversal", "jndi",
+}
+
+var binaryDictionaryIndex = func() map[string]uint64 {
+	m := make(map[string]uint64, len(binaryDictionary))
+	for i, s := range binaryDictionary {
+		if _, dup := m[s]; !dup {
+			m[s] = uint64(i + 1)
+		}
+	}
+	return m
+}()
+
+// Flag bit order (format version 1).
+const (
+	binFlagIsBot = iota
+	binFlagIsAICrawler
+	binFlagIsFrozenUA
+	binFlagIsMobile
+	binFlagIsDesktop
+	binFlagIsTouchCapable
+	binFlagIsChromeFamily
+	binFlagIsAppleSilicon
+	binFlagHeadless
+	binFlagElectron
+	binFlagWebdriver
+	binFlagSpoofed
+	binFlagSuspicious
+	binFlagClientHintsUsed
+	binFlagHighEntropy
+	binFlagSignalsUsed
+	binFlagHasBot
+	binFlagHasGPU
+)
+
+// binaryEncoder accumulates the per-message string table and the ref stream.
+type binaryEncoder struct {
+	table    []string
+	tableIdx map[string]uint64
+	refs     []byte
+}
+
+func (e *binaryEncoder) str(s string) {
+	var ref uint64
+	if s != "" {
+		if d, ok := binaryDictionaryIndex[s]; ok {
+			ref = d
+		} else if t, ok := e.tableIdx[s]; ok {
+			ref = t
+		} else {
+			ref = uint64(len(binaryDictionary)) + 1 + uint64(len(e.table))
+			e.tableIdx[s] = ref
+			e.table = append(e.table, s)
+		}
+	}
+	e.refs = binary.AppendUvarint(e.refs, ref)
+}
+
+// MarshalBinaryResult encodes res in the compact binary format described
+// above. It never fails; a nil result encodes as the zero Result.
+func MarshalBinaryResult(res *Result) []byte {
+	if res == nil {
+		res = &Result{}
+	}
+	e := binaryEncoder{tableIdx: make(map[string]uint64, 8), refs: make([]byte, 0, 64)}
+
+	e.str(res.ResultVersion)
+	e.str(res.UA)
+	e.str(res.Browser.Name)
+	e.str(res.Browser.Version)
+	e.str(res.Browser.Major)
+	e.str(res.Browser.Type)
+	e.str(res.OS.Name)
+	e.str(res.OS.Version)
+	e.str(res.OS.Platform)
+	e.str(res.OS.VersionName)
+	e.str(res.OS.VersionRaw)
+	e.str(res.Device.Model)
+	e.str(res.Device.Vendor)
+	e.str(res.Device.Type)
+	e.str(res.Device.FormFactor)
+	e.str(res.CPU.Architecture)
+	e.str(res.CPU.Bitness)
+	e.str(res.Engine.Name)
+	e.str(res.Engine.Version)
+	e.str(res.Category)
+	e.str(res.Security.Category)
+	e.str(res.ClassHash)
+	if res.Integrity.Reasons == nil {
+		e.refs = binary.AppendUvarint(e.refs, 0)
+	} else {
+		e.refs = binary.AppendUvarint(e.refs, uint64(len(res.Integrity.Reasons))+1)
+		for _, r := range res.Integrity.Reasons {
+			e.str(r)
+		}
+	}
+	if res.Bot != nil {
+		e.str(res.Bot.Name)
+		e.str(res.Bot.Category)
+		e.str(res.Bot.Vendor)
+	}
+	if res.GPU != nil {
+		e.str(res.GPU.Vendor)
+		e.str(res.GPU.Renderer)
+	}
+
+	var flags uint64
+	set := func(bit int, v bool) {
+		if v {
+			flags |= 1 << bit
+		}
+	}
+	set(binFlagIsBot, res.IsBot)
+	set(binFlagIsAICrawler, res.IsAICrawler)
+	set(binFlagIsFrozenUA, res.IsFrozenUA)
+	set(binFlagIsMobile, res.IsMobile)
+	set(binFlagIsDesktop, res.IsDesktop)
+	set(binFlagIsTouchCapable, res.IsTouchCapable)
+	set(binFlagIsChromeFamily, res.IsChromeFamily)
+	set(binFlagIsAppleSilicon, res.IsAppleSilicon)
+	set(binFlagHeadless, res.Automation.Headless)
+	set(binFlagElectron, res.Automation.Electron)
+	set(binFlagWebdriver, res.Automation.Webdriver)
+	set(binFlagSpoofed, res.Integrity.Spoofed)
+	set(binFlagSuspicious, res.Security.Suspicious)
+	set(binFlagClientHintsUsed, res.Detection.ClientHintsUsed)
+	set(binFlagHighEntropy, res.Detection.HighEntropy)
+	set(binFlagSignalsUsed, res.Detection.SignalsUsed)
+	set(binFlagHasBot, res.Bot != nil)
+	set(binFlagHasGPU, res.GPU != nil)
+
+	size := 3 + binary.MaxVarintLen64*2 + len(e.refs)
+	for _, s := range e.table {
+		size += binary.MaxVarintLen32 + len(s)
+	}
+	out := make([]byte, 0, size)
+	out = append(out, 'U', 'B', BinaryFormatVersion)
+	out = binary.AppendUvarint(out, flags)
+	out = binary.AppendUvarint(out, uint64(len(e.table)))
+	for _, s := range e.table {
+		out = binary.AppendUvarint(out, uint64(len(s)))
+		out = append(out, s...)
+	}
+	return append(out, e.refs...)
+}
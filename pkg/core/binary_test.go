@@ -0,0 +1,144 @@
+package core
+
+import (
+	"encoding/binary"
+	"encoding/json"
+	"reflect"
+	"testing"
+)
+
+// decodeBinaryResult is a reference decoder mirroring the Java client's
+// BinaryResultDecoder; it exists only to round-trip-test the encoder.
+func decodeBinaryResult(t *testing.T, b []byte) *Result {
+	t.Helper()
+	if len(b) < 3 || b[0] != 'U' || b[1] != 'B' || b[2] != BinaryFormatVersion {
+		t.Fatalf("bad header % x", b[:min(3, len(b))])
+	}
+	pos := 3
+	uv := func() uint64 {
+		v, n := binary.Uvarint(b[pos:])
+		if n <= 0 {
+			t.Fatalf("truncated varint at %d", pos)
+		}
+		pos += n
+		return v
+	}
+	flags := uv()
+	table := make([]string, uv())
+	for i := range table {
+		n := int(uv())
+		table[i] = string(b[pos : pos+n])
+		pos += n
+	}
+	str := func() string {
+		ref := uv()
+		switch {
+		case ref == 0:
+			return ""
+		case ref <= uint64(len(binaryDictionary)):
+			return binaryDictionary[ref-1]
+		default:
+			return table[ref-uint64(len(binaryDictionary))-1]
+		}
+	}
+	flag := func(bit int) bool { return flags&(1<<bit) != 0 }
+
+	r := &Result{}
+	r.ResultVersion = str()
+	r.UA = str()
+	r.Browser = BrowserInfo{Name: str(), Version: str(), Major: str(), Type: str()}
+	r.OS = OSInfo{Name: str(), Version: str(), Platform: str(), VersionName: str(), VersionRaw: str()}
+	r.Device = DeviceInfo{Model: str(), Vendor: str(), Type: str(), FormFactor: str()}
+	r.CPU = CPUInfo{Architecture: str(), Bitness: str()}
+	r.Engine = EngineInfo{Name: str(), Version: str()}
+	r.Category = str()
+	r.Security.Category = str()
+	r.ClassHash = str()
+	if n := uv(); n > 0 {
+		r.Integrity.Reasons = make([]string, n-1)
+		for i := range r.Integrity.Reasons {
+			r.Integrity.Reasons[i] = str()
+		}
+	}
+	if flag(binFlagHasBot) {
+		r.Bot = &BotInfo{Name: str(), Category: str(), Vendor: str()}
+	}
+	if flag(binFlagHasGPU) {
+		r.GPU = &GPUInfo{Vendor: str(), Renderer: str()}
+	}
+	r.IsBot = flag(binFlagIsBot)
+	r.IsAICrawler = flag(binFlagIsAICrawler)
+	r.IsFrozenUA = flag(binFlagIsFrozenUA)
+	r.IsMobile = flag(binFlagIsMobile)
+	r.IsDesktop = flag(binFlagIsDesktop)
+	r.IsTouchCapable = flag(binFlagIsTouchCapable)
+	r.IsChromeFamily = flag(binFlagIsChromeFamily)
+	r.IsAppleSilicon = flag(binFlagIsAppleSilicon)
+	r.Automation = AutomationInfo{Headless: flag(binFlagHeadless), Electron: flag(binFlagElectron), Webdriver: flag(binFlagWebdriver)}
+	r.Integrity.Spoofed = flag(binFlagSpoofed)
+	r.Security.Suspicious = flag(binFlagSuspicious)
+	r.Detection = DetectionInfo{ClientHintsUsed: flag(binFlagClientHintsUsed), HighEntropy: flag(binFlagHighEntropy), SignalsUsed: flag(binFlagSignalsUsed)}
+	if pos != len(b) {
+		t.Fatalf("%d trailing bytes", len(b)-pos)
+	}
+	return r
+}
+
+func TestBinaryResultRoundTrip(t *testing.T) {
+	p := newTestParser(t, 0)
+	cases := []struct {
+		ua      string
+		headers map[string]string
+		signals *Signals
+	}{
+		{"Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/126.0.0.0 Safari/537.36",
+			map[string]string{"sec-ch-ua-platform": `"Windows"`, "sec-ch-ua-platform-version": `"15.0.0"`}, nil},
+		{"Mozilla/5.0 (Macintosh; Intel Mac OS X 10_15_7) AppleWebKit/605.1.15 (KHTML, like Gecko) Version/17.5 Safari/605.1.15",
+			nil, &Signals{MaxTouchPoints: 5, WebGLRenderer: "Apple GPU"}},
+		{"Mozilla/5.0 (compatible; GPTBot/1.2; +https://openai.com/gptbot)", nil, nil},
+		{"sqlmap/1.7 ' OR 1=1 --", nil, nil},
+		{"", nil, nil},
+	}
+	for _, c := range cases {
+		want := p.ParseFull(c.ua, c.headers, c.signals)
+		enc := MarshalBinaryResult(want)
+		got := decodeBinaryResult(t, enc)
+		if !reflect.DeepEqual(want, got) {
+			wj, _ := json.Marshal(want)
+			gj, _ := json.Marshal(got)
+			t.Errorf("round trip mismatch for %q\nwant %s\ngot  %s", c.ua, wj, gj)
+		}
+		if js, _ := json.Marshal(want); len(enc) >= len(js) {
+			t.Errorf("binary (%d B) not smaller than JSON (%d B) for %q", len(enc), len(js), c.ua)
+		}
+	}
+}
+
+func TestBinaryDictionaryStable(t *testing.T) {
+	// The dictionary is part of format version 1 (mirrored by the Java
+	// decoder); appending is a format change, reordering silently corrupts.
+	if len(binaryDictionary) != 84 || binaryDictionary[0] != "1.2" || binaryDictionary[len(binaryDictionary)-1] != "jndi" {
+		t.Fatalf("binaryDictionary changed (len %d): bump BinaryFormatVersion and the Java decoder", len(binaryDictionary))
+	}
+}
+
+func BenchmarkMarshalBinaryResult(b *testing.B) {
+	p, err := New(Config{DisableAutoUpdate: true})
+	if err != nil {
+		b.Fatal(err)
+	}
+	defer p.Close()
+	res := p.Parse("Mozilla/5.0 (Linux; Android 14; SM-S918B) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/126.0.0.0 Mobile Safari/537.36", nil)
+	b.Run("binary", func(b *testing.B) {
+		b.ReportAllocs()
+		for i := 0; i < b.N; i++ {
+			_ = MarshalBinaryResult(res)
+		}
+	})
+	b.Run("json", func(b *testing.B) {
+		b.ReportAllocs()
+		for i := 0; i < b.N; i++ {
+			_, _ = json.Marshal(res)
+		}
+	})
+}
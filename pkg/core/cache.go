@@ -0,0 +1,184 @@
+package core
+
+import (
+	"fmt"
+	"sync"
+
+	lru "github.com/hashicorp/golang-lru/v2"
+	"github.com/hashicorp/golang-lru/v2/simplelru"
+)
+
+// resultCache is the parse-result cache behind ParseFull, indexed by the
+// hash of the canonical key (see cachekey.go). A hit must still be verified
+// against the entry's key. Results are shared with the cache and must be
+// copied before they reach callers that may mutate them (copyResult).
+type resultCache interface {
+	Get(h cacheKey) (*cacheEntry, bool)
+	Add(h cacheKey, e *cacheEntry) (evicted bool)
+	Purge()
+	Len() int
+	// Keys lists the cached canonical keys, least recently used first.
+	Keys() []string
+}
+
+// newResultCache builds the cache selected by cfg: nil when caching is off,
+// a byte-budgeted LRU when CacheMaxBytes > 0, one hashicorp LRU (a single
+// mutex) by default, or a sharded LRU when CacheShards > 1.
+func newResultCache(cfg Config) (resultCache, error) {
+	if cfg.CacheMaxBytes > 0 {
+		return newWeightedCache(cfg.CacheMaxBytes, cfg.LRUCacheSize, cfg.CacheShards)
+	}
+	if cfg.LRUCacheSize <= 0 {
+		return nil, nil
+	}
+	if cfg.CacheShards > 1 {
+		c, err := newShardedCache(cfg.LRUCacheSize, cfg.CacheShards)
+		if err != nil {
+			return nil, err
+		}
+		return c, nil
+	}
+	c, err := lru.New[cacheKey, *cacheEntry](cfg.LRUCacheSize)
+	if err != nil {
+		return nil, fmt.Errorf("failed to create LRU cache: %w", err)
+	}
+	return singleCache{c}, nil
+}
+
+// singleCache is the default cache: one hashicorp LRU under one mutex.
+type singleCache struct {
+	*lru.Cache[cacheKey, *cacheEntry]
+}
+
+func (c singleCache) Keys() []string {
+	return entryKeys(c.Cache.Keys(), c.Cache.Peek)
+}
+
+// entryKeys maps hash keys (least recently used first) to the canonical
+// keys of their entries, skipping any evicted in the meantime.
+func entryKeys(hashes []cacheKey, peek func(cacheKey) (*cacheEntry, bool)) []string {
+	keys := make([]string, 0, len(hashes))
+	for _, h := range hashes {
+		if e, ok := peek(h); ok {
+			keys = append(keys, e.key)
+		}
+	}
+	return keys
+}
+
+// maxCacheShards bounds the shard count; beyond this, per-shard capacity
+// shrinks faster than contention does.
+const maxCacheShards = 256
+
+// shardedCache splits the LRU into independently locked shards selected by
+// the key's hash. A cache hit still updates recency under a mutex, but
+// concurrent callers only contend when their keys land in the same shard.
+// Recency is per shard, so eviction is approximately (not exactly) LRU, and
+// total capacity is rounded up to a multiple of the shard count.
+type shardedCache struct {
+	mask   uint64
+	shards []cacheShard
+}
+
+type cacheShard struct {
+	mu  sync.Mutex
+	lru *simplelru.LRU[cacheKey, *cacheEntry]
+	// Pads the shard to 64 bytes so neighbouring shards' mutexes do not
+	// share a cache line.
+	_ [48]byte
+}
+
+func newShardedCache(size, shards int) (*shardedCache, error) {
+	n := 1
+	for n < shards && n < maxCacheShards {
+		n <<= 1
+	}
+	perShard := (size + n - 1) / n
+	c := &shardedCache{
+		mask:   uint64(n - 1),
+		shards: make([]cacheShard, n),
+	}
+	for i := range c.shards {
+		l, err := simplelru.NewLRU[cacheKey, *cacheEntry](perShard, nil)
+		if err != nil {
+			return nil, fmt.Errorf("failed to create LRU cache shard: %w", err)
+		}
+		c.shards[i].lru = l
+	}
+	return c, nil
+}
+
+// shard selects by the high hash half; the low half already picks the
+// bucket inside the shard's map.
+func (c *shardedCache) shard(h cacheKey) *cacheShard {
+	return &c.shards[h.hi&c.mask]
+}
+
+func (c *shardedCache) Get(h cacheKey) (*cacheEntry, bool) {
+	s := c.shard(h)
+	s.mu.Lock()
+	e, ok := s.lru.Get(h)
+	s.mu.Unlock()
+	return e, ok
+}
+
+func (c *shardedCache) Add(h cacheKey, e *cacheEntry) bool {
+	s := c.shard(h)
+	s.mu.Lock()
+	evicted := s.lru.Add(h, e)
+	s.mu.Unlock()
+	return evicted
+}
+
+func (c *shardedCache) Purge() {
+	for i := range c.shards {
+		s := &c.shards[i]
+		s.mu.Lock()
+		s.lru.Purge()
+		s.mu.Unlock()
+	}
+}
+
+// Len reports the number of cached entries across all shards.
+func (c *shardedCache) Len() int {
+	n := 0
+	for i := range c.shards {
+		s := &c.shards[i]
+		s.mu.Lock()
+		n += s.lru.Len()
+		s.mu.Unlock()
+	}
+	return n
+}
+
+// Keys lists the cached keys, least recently used first. Recency is only
+// known per shard, so the shards' lists are interleaved from their most
+// recent ends, which approximates global recency order.
+func (c *shardedCache) Keys() []string {
+	perShard := make([][]string, len(c.shards))
+	total := 0
+	for i := range c.shards {
+		s := &c.shards[i]
+		s.mu.Lock()
+		perShard[i] = entryKeys(s.lru.Keys(), s.lru.Peek)
+		s.mu.Unlock()
+		total += len(perShard[i])
+	}
+	return interleaveKeys(perShard, total)
+}
+
+// interleaveKeys merges per-shard key lists (each least recently used
+// first) from their most recent ends, hottest of every shard first.
+func interleaveKeys(perShard [][]string, total int) []string {
+	keys := make([]string, total)
+	n := total
+	for depth := 1; n > 0; depth++ {
+		for _, shard := range perShard {
+			if depth <= len(shard) {
+				n--
+				keys[n] = shard[len(shard)-depth]
+			}
+		}
+	}
+	return keys
+}
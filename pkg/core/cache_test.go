@@ -0,0 +1,284 @@
+package core
+
+import (
+	"fmt"
+	"reflect"
+	"strconv"
+	"strings"
+	"testing"
+)
+
+func TestShardedCacheBounds(t *testing.T) {
+	c, err := newShardedCache(100, 6) // rounds up to 8 shards of 13
+	if err != nil {
+		t.Fatalf("newShardedCache: %v", err)
+	}
+	if len(c.shards) != 8 {
+		t.Fatalf("expected 8 shards, got %d", len(c.shards))
+	}
+	for i := 0; i < 10_000; i++ {
+		addTestEntry(c, "k"+strconv.Itoa(i), &Result{UA: strconv.Itoa(i)})
+	}
+	if n := c.Len(); n > 8*13 {
+		t.Errorf("cache holds %d entries, above its %d capacity", n, 8*13)
+	}
+	if e, ok := c.Get(testKey("k9999")); !ok || e.res.UA != "9999" {
+		t.Errorf("most recent entry missing: %v %v", e, ok)
+	}
+	c.Purge()
+	if n := c.Len(); n != 0 {
+		t.Errorf("expected empty cache after Purge, got %d", n)
+	}
+}
+
+func TestShardedCacheMatchesSingleLRU(t *testing.T) {
+	single, err := New(Config{DisableAutoUpdate: true, LRUCacheSize: 100})
+	if err != nil {
+		t.Fatalf("Failed to create parser: %v", err)
+	}
+	defer single.Close()
+	sharded, err := New(Config{DisableAutoUpdate: true, LRUCacheSize: 100, CacheShards: 16})
+	if err != nil {
+		t.Fatalf("Failed to create parser: %v", err)
+	}
+	defer sharded.Close()
+	if _, ok := sharded.cache.(*shardedCache); !ok {
+		t.Fatalf("CacheShards=16 built %T, want *shardedCache", sharded.cache)
+	}
+
+	headers := map[string]string{"Sec-CH-UA-Platform": `"Windows"`, "Sec-CH-UA-Platform-Version": `"15.0.0"`}
+	for _, ua := range benchUAs {
+		for pass := 0; pass < 2; pass++ { // miss, then hit
+			want := single.ParseFull(ua, headers, nil)
+			got := sharded.ParseFull(ua, headers, nil)
+			if !reflect.DeepEqual(want, got) {
+				t.Errorf("pass %d, UA=%q: sharded %+v != single %+v", pass, ua, got, want)
+			}
+		}
+	}
+}
+
+// testSeeds hash the plain string keys the cache-level tests use.
+var testSeeds = newKeySeeds()
+
+func testKey(key string) cacheKey {
+	return testSeeds.hash(key, &keyHeaders{}, nil, AllFields)
+}
+
+func addTestEntry(c resultCache, key string, r *Result) bool {
+	return c.Add(testKey(key), &cacheEntry{key: key, res: r})
+}
+
+// cachedResult looks up what the parser has cached for the given inputs.
+func (p *Parser) cachedResult(ua string, headers map[string]string, signals *Signals, fields Fields) (*Result, bool) {
+	var hv keyHeaders
+	hv.collect(headers)
+	e, ok := p.cache.Get(p.keySeeds.hash(ua, &hv, signals, fields))
+	if !ok || !keyMatches(e.key, ua, &hv, signals, fields) {
+		return nil, false
+	}
+	return e.res, true
+}
+
+var benchUAs = []string{
+	"Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/126.0.0.0 Safari/537.36",
+	"Mozilla/5.0 (Macintosh; Intel Mac OS X 10_15_7) AppleWebKit/605.1.15 (KHTML, like Gecko) Version/17.5 Safari/605.1.15",
+	"Mozilla/5.0 (iPhone; CPU iPhone OS 17_5 like Mac OS X) AppleWebKit/605.1.15 (KHTML, like Gecko) Version/17.5 Mobile/15E148 Safari/604.1",
+	"Mozilla/5.0 (Linux; Android 14; Pixel 8) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/126.0.0.0 Mobile Safari/537.36",
+	"Mozilla/5.0 (Windows NT 10.0; Win64; x64; rv:127.0) Gecko/20100101 Firefox/127.0",
+	"Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/125.0.0.0 Safari/537.36",
+	"Mozilla/5.0 (Linux; Android 13; SM-S918B) AppleWebKit/537.36 (KHTML, like Gecko) SamsungBrowser/25.0 Chrome/121.0.0.0 Mobile Safari/537.36",
+	"Mozilla/5.0 (compatible; GPTBot/1.2; +https://openai.com/gptbot)",
+	"Mozilla/5.0 (compatible; Googlebot/2.1; +http://www.google.com/bot.html)",
+	"Mozilla/5.0 (iPad; CPU OS 17_5 like Mac OS X) AppleWebKit/605.1.15 (KHTML, like Gecko) Version/17.5 Mobile/15E148 Safari/604.1",
+	"Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/126.0.0.0 Safari/537.36 Edg/126.0.0.0",
+	"curl/8.5.0",
+}
+
+// BenchmarkCacheHitParallel measures cache hits from many goroutines, the
+// shape of a JVM calling in from a thread pool. Compare the variants under
+// contention with: go test -run=^$ -bench=CacheHitParallel -cpu 1,4,16 ./pkg/core/
+func BenchmarkCacheHitParallel(b *testing.B) {
+	for _, shards := range []int{0, 16} {
+		name := "single"
+		if shards > 1 {
+			name = "shards" + strconv.Itoa(shards)
+		}
+		b.Run(name, func(b *testing.B) {
+			p, _ := New(Config{DisableAutoUpdate: true, LRUCacheSize: 1000, CacheShards: shards})
+			defer p.Close()
+			for _, ua := range benchUAs {
+				p.Parse(ua, nil) // warm: every iteration below is a hit
+			}
+			b.ResetTimer()
+			b.RunParallel(func(pb *testing.PB) {
+				i := 0
+				for pb.Next() {
+					p.Parse(benchUAs[i%len(benchUAs)], nil)
+					i++
+				}
+			})
+		})
+	}
+}
+
+func TestWeightedCacheEvictsByBytes(t *testing.T) {
+	small := &Result{UA: "s"}
+	big := &Result{UA: "b", Integrity: IntegrityInfo{Reasons: []string{strings.Repeat("r", 4000)}}}
+	w := entryWeight(&cacheEntry{key: "k00", res: small})
+	budget := 4*w + w/2 // four small entries, not five
+	c, err := newWeightedCache(budget, 0, 1)
+	if err != nil {
+		t.Fatalf("newWeightedCache: %v", err)
+	}
+	if addTestEntry(c, "huge", big); c.Len() != 0 {
+		t.Fatal("entry heavier than the whole budget was cached")
+	}
+	for i := 0; i < 4; i++ {
+		addTestEntry(c, fmt.Sprintf("k%02d", i), small)
+	}
+	if c.full() {
+		t.Fatal("cache reports full before it evicted anything")
+	}
+	if n, b := c.Len(), c.Bytes(); n != 4 || b != 4*w {
+		t.Fatalf("Len=%d Bytes=%d after four small entries", n, b)
+	}
+
+	addTestEntry(c, "k00", small) // refresh recency: k01 is now the oldest
+	bigger := &Result{UA: "m", Integrity: IntegrityInfo{Reasons: []string{strings.Repeat("r", 100)}}}
+	if !addTestEntry(c, "mid", bigger) {
+		t.Fatal("adding past the budget reported no eviction")
+	}
+	if _, ok := c.Get(testKey("k01")); ok {
+		t.Error("least recently used entry survived the eviction")
+	}
+	if _, ok := c.Get(testKey("k00")); !ok {
+		t.Error("recently used entry was evicted")
+	}
+	if b := c.Bytes(); b > budget {
+		t.Errorf("cache holds %d bytes, above its %d budget", b, budget)
+	}
+	if !c.full() {
+		t.Error("cache does not report full after evicting")
+	}
+	c.Purge()
+	if c.Len() != 0 || c.Bytes() != 0 || c.full() {
+		t.Errorf("Purge left Len=%d Bytes=%d full=%v", c.Len(), c.Bytes(), c.full())
+	}
+}
+
+func TestWeightedCacheEntryCapAndStats(t *testing.T) {
+	p, err := New(Config{DisableAutoUpdate: true, LRUCacheSize: 2, CacheMaxBytes: 1 << 20})
+	if err != nil {
+		t.Fatalf("Failed to create parser: %v", err)
+	}
+	defer p.Close()
+	if _, ok := p.cache.(*weightedCache); !ok {
+		t.Fatalf("CacheMaxBytes built %T, want *weightedCache", p.cache)
+	}
+	for _, ua := range benchUAs[:3] {
+		p.Parse(ua, nil)
+	}
+	s := p.Stats()
+	if s.Cache.Size != 2 || s.Cache.Capacity != 2 || s.Cache.MaxBytes != 1<<20 {
+		t.Errorf("cache stats = %+v", s.Cache)
+	}
+	if s.Cache.Bytes <= 0 || s.Cache.Bytes > s.Cache.MaxBytes {
+		t.Errorf("cache bytes %d outside (0, %d]", s.Cache.Bytes, s.Cache.MaxBytes)
+	}
+}
+
+func TestCacheKeyHashMatchAndBuildAgree(t *testing.T) {
+	signals := &Signals{MaxTouchPoints: -3, Platform: "MacIntel", Webdriver: true, Screen: &ScreenInfo{W: 1024, H: 1366}}
+	headers := map[string]string{"SEC-CH-UA-Platform": `"macOS"`, "sec-ch-ua-mobile": "?0", "X-Unrelated": "1"}
+	seeds := newKeySeeds()
+	for _, fields := range []Fields{AllFields, FieldBrowser | FieldOS} {
+		for _, sig := range []*Signals{nil, signals} {
+			key := buildCacheKey(benchUAs[1], headers, sig, fields)
+			ua, h, s, f, ok := parseCacheKey(key)
+			if !ok {
+				t.Fatalf("parseCacheKey(%q) failed", key)
+			}
+			// The stored key decodes to lowercased headers; both must hash
+			// (and verify) exactly like the caller's mixed-case map.
+			var hv keyHeaders
+			hv.collect(headers)
+			if seeds.hashMap(ua, h, s, f) != seeds.hash(benchUAs[1], &hv, sig, fields) {
+				t.Errorf("hash of decoded key %q differs from the request's", key)
+			}
+			if !keyMatches(key, benchUAs[1], &hv, sig, fields) {
+				t.Errorf("key %q does not verify against its own inputs", key)
+			}
+			if keyMatches(key, benchUAs[0], &hv, sig, fields) || keyMatches(key[:len(key)-1], benchUAs[1], &hv, sig, fields) {
+				t.Errorf("key %q verifies against other inputs", key)
+			}
+		}
+	}
+}
+
+func TestCacheHashCollisionIsAMiss(t *testing.T) {
+	p := newTestParser(t, 100)
+	a, b := benchUAs[0], benchUAs[7]
+	want := p.Parse(b, nil)
+	// Plant b's entry under a's hash, as a 128-bit collision would.
+	p.cache.Purge()
+	p.cache.Add(p.keySeeds.hashMap(a, nil, nil, AllFields), &cacheEntry{key: buildCacheKey(b, nil, nil, AllFields), res: want})
+	if got := p.Parse(a, nil); got.UA != a {
+		t.Fatalf("colliding entry for %q was served for %q: %+v", b, a, got)
+	}
+}
+
+func TestParseFullSharedHitDoesNotAllocate(t *testing.T) {
+	for _, shards := range []int{0, 16} {
+		p, err := New(Config{DisableAutoUpdate: true, LRUCacheSize: 100, CacheShards: shards, CollectStats: true})
+		if err != nil {
+			t.Fatalf("Failed to create parser: %v", err)
+		}
+		headers := map[string]string{"Sec-CH-UA-Platform": `"Windows"`, "sec-ch-ua-platform-version": `"15.0.0"`}
+		signals := &Signals{MaxTouchPoints: 0, Screen: &ScreenInfo{W: 1920, H: 1080}}
+		first := p.ParseFullShared(benchUAs[0], headers, signals)
+		var got *Result
+		allocs := testing.AllocsPerRun(1000, func() {
+			got = p.ParseFullShared(benchUAs[0], headers, signals)
+		})
+		if allocs != 0 {
+			t.Errorf("shards=%d: cache hit allocated %.1f times per parse", shards, allocs)
+		}
+		if got != first {
+			t.Errorf("shards=%d: hit did not return the shared cached result", shards)
+		}
+		if !reflect.DeepEqual(p.ParseFull(benchUAs[0], headers, signals), first) {
+			t.Errorf("shards=%d: ParseFull and ParseFullShared disagree", shards)
+		}
+		p.Close()
+	}
+}
+
+// BenchmarkParseCacheHit compares the copying and shared hit paths with
+// their allocations: go test -run=^$ -bench=ParseCacheHit -benchmem ./pkg/core/
+func BenchmarkParseCacheHit(b *testing.B) {
+	headers := map[string]string{"Sec-CH-UA-Platform": `"Windows"`, "Sec-CH-UA-Platform-Version": `"15.0.0"`}
+	for _, shared := range []bool{false, true} {
+		name := "copy"
+		if shared {
+			name = "shared"
+		}
+		b.Run(name, func(b *testing.B) {
+			p, _ := New(Config{DisableAutoUpdate: true, LRUCacheSize: 1000})
+			defer p.Close()
+			for _, ua := range benchUAs {
+				p.ParseFull(ua, headers, nil)
+			}
+			b.ReportAllocs()
+			b.ResetTimer()
+			for i := 0; i < b.N; i++ {
+				ua := benchUAs[i%len(benchUAs)]
+				if shared {
+					p.ParseFullShared(ua, headers, nil)
+				} else {
+					p.ParseFull(ua, headers, nil)
+				}
+			}
+		})
+	}
+}
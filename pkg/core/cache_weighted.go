@@ -0,0 +1,213 @@
+package core
+
+import (
+	"fmt"
+	"math"
+	"sync"
+	"unsafe"
+
+	"github.com/hashicorp/golang-lru/v2/simplelru"
+)
+
+// weightedCache is the byte-budgeted cache behind Config.CacheMaxBytes.
+// Entries are weighed by entryWeight (key plus result, estimated) and the
+// least recently used ones are evicted until the shard is back within its
+// share of the budget, so a few huge entries displace many small ones and
+// the total stays predictable against a container memory limit. With
+// LRUCacheSize also set, the entry count is capped too. Sharding works as
+// in shardedCache; with a single shard recency is exact.
+type weightedCache struct {
+	mask     uint64
+	maxBytes int64
+	shards   []weightedShard
+}
+
+type weightedShard struct {
+	mu         sync.Mutex
+	lru        *simplelru.LRU[cacheKey, *cacheEntry]
+	bytes      int64
+	budget     int64
+	maxEntries int // 0: bounded by bytes only
+	// evicting is set once the shard had to evict since the last Purge.
+	evicting bool
+	// Pads the shard to 64 bytes, as in cacheShard.
+	_ [16]byte
+}
+
+func newWeightedCache(maxBytes int64, maxEntries, shards int) (*weightedCache, error) {
+	n := 1
+	for n < shards && n < maxCacheShards {
+		n <<= 1
+	}
+	c := &weightedCache{
+		mask:     uint64(n - 1),
+		maxBytes: maxBytes,
+		shards:   make([]weightedShard, n),
+	}
+	for i := range c.shards {
+		// The LRU itself never evicts: every removal goes through Add so
+		// the byte count stays exact.
+		l, err := simplelru.NewLRU[cacheKey, *cacheEntry](math.MaxInt, nil)
+		if err != nil {
+			return nil, fmt.Errorf("failed to create LRU cache shard: %w", err)
+		}
+		s := &c.shards[i]
+		s.lru = l
+		s.budget = maxBytes / int64(n)
+		if maxEntries > 0 {
+			s.maxEntries = (maxEntries + n - 1) / n
+		}
+	}
+	return c, nil
+}
+
+func (c *weightedCache) shard(h cacheKey) *weightedShard {
+	return &c.shards[h.hi&c.mask]
+}
+
+func (c *weightedCache) Get(h cacheKey) (*cacheEntry, bool) {
+	s := c.shard(h)
+	s.mu.Lock()
+	e, ok := s.lru.Get(h)
+	s.mu.Unlock()
+	return e, ok
+}
+
+// Add caches e and evicts least recently used entries until the shard
+// is within its budget again. An entry heavier than a whole shard's budget
+// is not cached.
+func (c *weightedCache) Add(h cacheKey, e *cacheEntry) bool {
+	w := entryWeight(e)
+	s := c.shard(h)
+	s.mu.Lock()
+	defer s.mu.Unlock()
+	if w > s.budget {
+		return false
+	}
+	if old, ok := s.lru.Peek(h); ok {
+		s.bytes -= entryWeight(old)
+	}
+	s.lru.Add(h, e)
+	s.bytes += w
+	evicted := false
+	for s.bytes > s.budget || (s.maxEntries > 0 && s.lru.Len() > s.maxEntries) {
+		_, old, ok := s.lru.RemoveOldest()
+		if !ok {
+			break
+		}
+		s.bytes -= entryWeight(old)
+		evicted = true
+	}
+	if evicted {
+		s.evicting = true
+	}
+	return evicted
+}
+
+func (c *weightedCache) Purge() {
+	for i := range c.shards {
+		s := &c.shards[i]
+		s.mu.Lock()
+		s.lru.Purge()
+		s.bytes = 0
+		s.evicting = false
+		s.mu.Unlock()
+	}
+}
+
+func (c *weightedCache) Len() int {
+	n := 0
+	for i := range c.shards {
+		s := &c.shards[i]
+		s.mu.Lock()
+		n += s.lru.Len()
+		s.mu.Unlock()
+	}
+	return n
+}
+
+// Keys lists the cached keys, least recently used first (interleaved across
+// shards, see shardedCache.Keys).
+func (c *weightedCache) Keys() []string {
+	perShard := make([][]string, len(c.shards))
+	total := 0
+	for i := range c.shards {
+		s := &c.shards[i]
+		s.mu.Lock()
+		perShard[i] = entryKeys(s.lru.Keys(), s.lru.Peek)
+		s.mu.Unlock()
+		total += len(perShard[i])
+	}
+	return interleaveKeys(perShard, total)
+}
+
+// Bytes reports the estimated memory held by the cached entries.
+func (c *weightedCache) Bytes() int64 {
+	var n int64
+	for i := range c.shards {
+		s := &c.shards[i]
+		s.mu.Lock()
+		n += s.bytes
+		s.mu.Unlock()
+	}
+	return n
+}
+
+// full reports whether any shard has started evicting, i.e. whether adding
+// colder entries (warm-up replay) would now push out hotter ones.
+func (c *weightedCache) full() bool {
+	for i := range c.shards {
+		s := &c.shards[i]
+		s.mu.Lock()
+		evicting := s.evicting
+		s.mu.Unlock()
+		if evicting {
+			return true
+		}
+	}
+	return false
+}
+
+// cacheEntryOverhead approximates what one entry costs beyond its key and
+// Result: the LRU's map slot and list element (hash key included) and the
+// cacheEntry itself.
+const cacheEntryOverhead = 160
+
+var (
+	resultStructSize = int64(unsafe.Sizeof(Result{}))
+	botStructSize    = int64(unsafe.Sizeof(BotInfo{}))
+	gpuStructSize    = int64(unsafe.Sizeof(GPUInfo{}))
+	stringHeaderSize = int64(unsafe.Sizeof(""))
+)
+
+// entryWeight estimates the bytes a cache entry keeps alive. String data is
+// counted in full even where it is shared (rule-derived names, interned
+// values), so the estimate errs on the high side of the real footprint.
+func entryWeight(e *cacheEntry) int64 {
+	r := e.res
+	n := cacheEntryOverhead + int64(len(e.key)) + resultStructSize
+	n += stringBytes(r.UA,
+		r.Browser.Name, r.Browser.Version, r.Browser.Major, r.Browser.Type,
+		r.OS.Name, r.OS.Version, r.OS.Platform, r.OS.VersionName, r.OS.VersionRaw,
+		r.Device.Model, r.Device.Vendor, r.Device.Type, r.Device.FormFactor,
+		r.CPU.Architecture, r.CPU.Bitness, r.Engine.Name, r.Engine.Version,
+		r.Category, r.Security.Category, r.ClassHash)
+	if r.Integrity.Reasons != nil {
+		n += int64(cap(r.Integrity.Reasons))*stringHeaderSize + stringBytes(r.Integrity.Reasons...)
+	}
+	if r.Bot != nil {
+		n += botStructSize + stringBytes(r.Bot.Name, r.Bot.Category, r.Bot.Vendor)
+	}
+	if r.GPU != nil {
+		n += gpuStructSize + stringBytes(r.GPU.Vendor, r.GPU.Renderer)
+	}
+	return n
+}
+
+func stringBytes(ss ...string) int64 {
+	var n int64
+	for _, s := range ss {
+		n += int64(len(s))
+	}
+	return n
+}
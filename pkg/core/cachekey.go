@@ -0,0 +1,242 @@
+package core
+
+import (
+	"hash/maphash"
+	"strings"
+)
+
+// Cache keys. The canonical key of a parse (buildCacheKey) is a
+// length-prefixed string of every consumed input. Building it per call costs
+// a string plus a lowercased header map before the cache is even consulted,
+// so the hit path never builds it: keyWriter streams the same encoding
+// through two seeded maphash states into a 128-bit cacheKey, and a hit is
+// verified by streaming the encoding against the entry's stored canonical
+// key. Neither step allocates. The string is built only on a miss, for the
+// new entry (warm-up snapshots and re-warming read it back).
+
+// cacheKey is the 128-bit hash of a canonical key; the cache is indexed by
+// it, never by the string.
+type cacheKey struct {
+	hi, lo uint64
+}
+
+// cacheEntry is one cached result together with the canonical key it was
+// computed for. Results are immutable once cached.
+type cacheEntry struct {
+	key string
+	res *Result
+}
+
+// keyHeaders holds a request's cacheKeyHeaders values, in that order.
+type keyHeaders [len(cacheKeyHeaders)]string
+
+// collect picks the consumed headers out of a caller's map, matching names
+// case-insensitively, without building a normalized copy of it. When a map
+// spells one header several ways (Sec-CH-UA and sec-ch-ua), the bytewise
+// smallest name wins, so the choice never depends on map iteration order.
+func (hv *keyHeaders) collect(headers map[string]string) {
+	var names [len(cacheKeyHeaders)]string
+	for k, v := range headers {
+		for i := range cacheKeyHeaders {
+			if len(k) == len(cacheKeyHeaders[i]) && strings.EqualFold(k, cacheKeyHeaders[i]) {
+				if names[i] == "" || k < names[i] {
+					names[i], hv[i] = k, v
+				}
+				break
+			}
+		}
+	}
+}
+
+// headerMap returns the collected values under their lowercase names, the
+// form the pipeline reads. Empty values are left out, which parses the same.
+func (hv *keyHeaders) headerMap() map[string]string {
+	headers := make(map[string]string, len(hv))
+	for i, v := range hv {
+		if v != "" {
+			headers[cacheKeyHeaders[i]] = v
+		}
+	}
+	return headers
+}
+
+// keySeeds are the per-parser hash seeds of both cacheKey halves.
+type keySeeds struct {
+	hi, lo maphash.Seed
+}
+
+func newKeySeeds() keySeeds {
+	return keySeeds{hi: maphash.MakeSeed(), lo: maphash.MakeSeed()}
+}
+
+// hash returns the cacheKey of the given inputs.
+func (s keySeeds) hash(ua string, hv *keyHeaders, signals *Signals, fields Fields) cacheKey {
+	w := keyWriter{mode: keyHash}
+	w.hi.SetSeed(s.hi)
+	w.lo.SetSeed(s.lo)
+	w.writeKey(ua, hv, signals, fields)
+	return cacheKey{hi: w.hi.Sum64(), lo: w.lo.Sum64()}
+}
+
+// hashMap is hash for a header map (any name case).
+func (s keySeeds) hashMap(ua string, headers map[string]string, signals *Signals, fields Fields) cacheKey {
+	var hv keyHeaders
+	hv.collect(headers)
+	return s.hash(ua, &hv, signals, fields)
+}
+
+// keyMatches reports whether key is the canonical key of the given inputs,
+// i.e. whether a hash hit is genuine.
+func keyMatches(key string, ua string, hv *keyHeaders, signals *Signals, fields Fields) bool {
+	w := keyWriter{mode: keyMatch, want: key, match: true}
+	w.writeKey(ua, hv, signals, fields)
+	return w.match && w.pos == len(key)
+}
+
+// buildCacheKey joins the UA with every consumed CH header and every consumed
+// signal field. Each field is length-prefixed ("<len>:<value>") so the
+// encoding is injective regardless of field contents — values arrive from
+// JSON/FFI and may contain any byte (including NUL), so a plain separator
+// could otherwise let one field's bytes masquerade as another's boundary.
+// deviceMemory/hardwareConcurrency are NOT consumed by the pipeline and are
+// deliberately excluded. A projection mask other than AllFields is appended
+// last, so full results keep their historical key.
+func buildCacheKey(ua string, headers map[string]string, signals *Signals, fields Fields) string {
+	var hv keyHeaders
+	hv.collect(headers)
+	return buildKey(ua, &hv, signals, fields)
+}
+
+func buildKey(ua string, hv *keyHeaders, signals *Signals, fields Fields) string {
+	w := keyWriter{mode: keyBuild, buf: make([]byte, 0, len(ua)+220)}
+	w.writeKey(ua, hv, signals, fields)
+	return string(w.buf)
+}
+
+type keyMode uint8
+
+const (
+	keyHash keyMode = iota
+	keyBuild
+	keyMatch
+)
+
+// keyWriter emits the canonical key encoding one piece at a time into a
+// hash, a buffer or a comparison against a stored key. Numbers are written
+// digit by digit so nothing but the writer itself (on the stack) is needed.
+type keyWriter struct {
+	mode   keyMode
+	hi, lo maphash.Hash // keyHash
+	buf    []byte       // keyBuild
+	want   string       // keyMatch
+	pos    int
+	match  bool
+}
+
+func (w *keyWriter) writeKey(ua string, hv *keyHeaders, signals *Signals, fields Fields) {
+	w.field(ua)
+	for i := range hv {
+		w.field(hv[i])
+	}
+	if signals != nil {
+		w.char('S') // distinguishes "no signals" from all-zero signals
+		w.intField(signals.MaxTouchPoints)
+		w.field(signals.Platform)
+		w.field(signals.WebGLVendor)
+		w.field(signals.WebGLRenderer)
+		if signals.Webdriver {
+			w.char('W') // navigator.webdriver feeds automation.webdriver
+		}
+		if signals.Screen != nil {
+			w.intField(signals.Screen.W)
+			w.intField(signals.Screen.H)
+		}
+	}
+	if fields != AllFields {
+		w.char('F')
+		w.decimal(uint64(decimalLen(uint64(fields))))
+		w.char(':')
+		w.decimal(uint64(fields))
+	}
+}
+
+// field writes "<len>:<s>".
+func (w *keyWriter) field(s string) {
+	w.decimal(uint64(len(s)))
+	w.char(':')
+	w.str(s)
+}
+
+// intField writes n as a field holding its decimal text (strconv.Itoa).
+func (w *keyWriter) intField(n int) {
+	u := uint64(n)
+	digits := 0
+	if n < 0 {
+		u = -u
+		digits = 1
+	}
+	digits += decimalLen(u)
+	w.decimal(uint64(digits))
+	w.char(':')
+	if n < 0 {
+		w.char('-')
+	}
+	w.decimal(u)
+}
+
+func (w *keyWriter) decimal(u uint64) {
+	var d [20]byte
+	i := len(d)
+	for {
+		i--
+		d[i] = byte('0' + u%10)
+		u /= 10
+		if u == 0 {
+			break
+		}
+	}
+	for ; i < len(d); i++ {
+		w.char(d[i])
+	}
+}
+
+func decimalLen(u uint64) int {
+	n := 1
+	for u >= 10 {
+		u /= 10
+		n++
+	}
+	return n
+}
+
+func (w *keyWriter) char(c byte) {
+	switch w.mode {
+	case keyHash:
+		w.hi.WriteByte(c)
+		w.lo.WriteByte(c)
+	case keyBuild:
+		w.buf = append(w.buf, c)
+	case keyMatch:
+		if w.match && w.pos < len(w.want) && w.want[w.pos] == c {
+			w.pos++
+		} else {
+			w.match = false
+		}
+	}
+}
+
+func (w *keyWriter) str(s string) {
+	switch w.mode {
+	case keyHash:
+		w.hi.WriteString(s)
+		w.lo.WriteString(s)
+	case keyBuild:
+		w.buf = append(w.buf, s...)
+	case keyMatch:
+		if w.match && len(w.want)-w.pos >= len(s) && w.want[w.pos:w.pos+len(s)] == s {
+			w.pos += len(s)
+		} else {
+			w.match = false
+		}
+	}
+}
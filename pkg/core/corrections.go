@@ -15,9 +15,11 @@ import (
 	_ "embed"
 	"fmt"
 	"log"
+	"math/bits"
 	"regexp"
 	"strconv"
 	"strings"
+	"sync/atomic"
 
 	"gopkg.in/yaml.v3"
 )
@@ -176,6 +178,75 @@ type compiledCorrections struct {
 	rules          []compiledRule
 	vendorPrefixes []compiledVendorPrefix
 	skippedRules   int
+	// index selects the rules whose UA anchors can be present; nil walks
+	// every rule.
+	index *correctionIndex
+	// hits counts applications per rule (aligned with rules) when countHits
+	// is set, i.e. for the active set under Config.CollectStats. Candidate
+	// sets running their self-tests leave it false.
+	hits      []atomic.Uint64
+	countHits bool
+}
+
+// correctionIndex dispatches a parse to the rules that can match it. Every
+// rule must carry UA anchors, so one Aho-Corasick pass over the lowercased UA
+// finds them all: a ua_contains rule is keyed by its longest anchor (all are
+// required), a ua_contains_any rule by each of its anchors. Conditions on
+// the parsed result (browser, OS, vendor...) are not indexed: an earlier
+// rule may rewrite those fields during the same pass, so they are checked
+// per candidate, in rule order, exactly as before.
+type correctionIndex struct {
+	tokens     *tokenMatcher
+	tokenRules [][]int32 // token id → rule indices
+	nrules     int
+}
+
+func newCorrectionIndex(rules []compiledRule) *correctionIndex {
+	ids := map[string]int32{}
+	var tokens []string
+	idx := &correctionIndex{nrules: len(rules)}
+	key := func(anchor string, rule int) {
+		tok := foldString(anchor)
+		id, ok := ids[tok]
+		if !ok {
+			id = int32(len(tokens))
+			ids[tok] = id
+			tokens = append(tokens, tok)
+			idx.tokenRules = append(idx.tokenRules, nil)
+		}
+		idx.tokenRules[id] = append(idx.tokenRules[id], int32(rule))
+	}
+	for i := range rules {
+		r := &rules[i]
+		if len(r.anchorsAll) > 0 {
+			longest := r.anchorsAll[0]
+			for _, a := range r.anchorsAll[1:] {
+				if len(a) > len(longest) {
+					longest = a
+				}
+			}
+			key(longest, i)
+			continue
+		}
+		for _, a := range r.anchorsAny {
+			key(a, i)
+		}
+	}
+	idx.tokens = newTokenMatcher(tokens)
+	return idx
+}
+
+// candidates returns the bitset of rules whose index key occurs in uaLower.
+func (idx *correctionIndex) candidates(uaLower string) []uint64 {
+	out := make([]uint64, (idx.nrules+63)/64)
+	for w, set := range idx.tokens.scan(uaLower) {
+		for ; set != 0; set &= set - 1 {
+			for _, r := range idx.tokenRules[w*64+bits.TrailingZeros64(set)] {
+				out[r>>6] |= 1 << (uint(r) & 63)
+			}
+		}
+	}
+	return out
 }
 
 // compileCorrections parses, validates, and compiles a corrections.yaml
@@ -252,6 +323,8 @@ func compileCorrections(data []byte) (*compiledCorrections, error) {
 		cc.vendorPrefixes = append(cc.vendorPrefixes, compiledVendorPrefix{re: re, vendor: vp.Vendor})
 	}
 
+	cc.index = newCorrectionIndex(cc.rules)
+	cc.hits = make([]atomic.Uint64, len(cc.rules))
 	return cc, nil
 }
 
@@ -467,8 +540,16 @@ func applyCorrections(res *Result, ua, uaLower string, headers map[string]string
 		return ""
 	}
 
+	var candidates []uint64
+	if cc.index != nil {
+		candidates = cc.index.candidates(uaLower)
+	}
+
 rules:
 	for i := range cc.rules {
+		if candidates != nil && candidates[i>>6]&(1<<(uint(i)&63)) == 0 {
+			continue
+		}
 		rule := &cc.rules[i]
 
 		// Substring prefilter — the only work done for non-matching traffic.
@@ -516,6 +597,9 @@ rules:
 				continue
 			}
 		}
+		if cc.countHits {
+			cc.hits[i].Add(1)
+		}
 
 		expand := func(v string) string {
 			if !strings.Contains(v, "$") || rule.re == nil {
@@ -615,21 +699,23 @@ func resolveDeviceVendor(res *Result, ua, uaLower string, cc *compiledCorrection
 // any goroutine and from host FFI/WASM exports.
 func (p *Parser) ApplyCorrectionsYAML(data []byte) error {
 	cc, err := compileCorrections(data)
+	if err == nil {
+		if err = p.runCorrectionTests(cc); err != nil {
+			err = fmt.Errorf("corrections self-test: %w", err)
+		}
+	}
 	if err != nil {
+		p.stats.recordUpdate(&p.stats.corrections, updateFailed, err)
 		return err
 	}
-	if err := p.runCorrectionTests(cc); err != nil {
-		return fmt.Errorf("corrections self-test: %w", err)
-	}
-
-	p.corrections.Store(cc)
 
-	// Bump the generation BEFORE purging (same ordering as updateRegexes):
-	// any Parse that started against the old rules skips caching its result.
-	p.gen.Add(1)
-	if p.cache != nil {
-		p.cache.Purge()
-	}
+	cc.countHits = p.config.CollectStats
+	uap, prefilter := p.regexStage()
+	warm, gen := p.prepareRewarm(uap, prefilter, cc)
+	// The generation is bumped BEFORE purging (see installGeneration): any
+	// Parse that started against the old rules skips caching its result.
+	p.installGeneration(func() { p.corrections.Store(cc) }, warm, gen)
+	p.stats.recordUpdate(&p.stats.corrections, updateApplied, nil)
 
 	if cc.skippedRules > 0 {
 		log.Printf("Corrections applied: version=%q rules=%d skipped=%d (rules for a newer engine)",
@@ -2,6 +2,7 @@ package core
 
 import (
 	"reflect"
+	"strconv"
 	"strings"
 	"sync"
 	"testing"
@@ -429,7 +430,7 @@ rules:
 // buildCacheKey must be injective: no two distinct (ua, headers, signals)
 // tuples may collide, even with NUL or ':' bytes crafted into values.
 func TestCacheKeyInjective(t *testing.T) {
-	k := func(ua string, h map[string]string, s *Signals) string { return buildCacheKey(ua, h, s) }
+	k := func(ua string, h map[string]string, s *Signals) string { return buildCacheKey(ua, h, s, AllFields) }
 	pairs := [][2]string{
 		{k("a", map[string]string{"sec-ch-ua": "X\x00Y"}, nil), k("a\x00X", map[string]string{"sec-ch-ua": "Y"}, nil)},
 		{k("1:a", nil, nil), k("", map[string]string{"sec-ch-ua": "a"}, nil)},
@@ -460,3 +461,86 @@ rules:
 		t.Errorf("anchor = %q", cc.rules[0].anchorsAll[0])
 	}
 }
+
+// The dispatch index must only skip rules that cannot match: every result is
+// the same as a full walk of the rule list.
+func TestCorrectionIndexMatchesFullWalk(t *testing.T) {
+	p := newTestParser(t, 0)
+	indexed := p.corrections.Load()
+	if indexed.index == nil {
+		t.Fatal("compileCorrections built no dispatch index")
+	}
+	walk := *indexed
+	walk.index = nil
+
+	uas := prefilterUAs(t)
+	headers := []map[string]string{nil}
+	for _, rule := range indexed.rules {
+		for _, tc := range rule.tests {
+			uas = append(uas, tc.UA)
+			headers = append(headers, normalizeHeaders(tc.Headers))
+		}
+	}
+	for _, ua := range uas {
+		for _, h := range headers {
+			want := p.computeResult(ua, h, &walk)
+			got := p.computeResult(ua, h, indexed)
+			if !reflect.DeepEqual(want, got) {
+				t.Errorf("UA=%q headers=%v: indexed %+v != full walk %+v", ua, h, got, want)
+			}
+		}
+	}
+}
+
+// syntheticCorrections compiles n app-token rules (the shape most real
+// corrections take) past the file cap, which only bounds downloads.
+func syntheticCorrections(tb testing.TB, n int) *compiledCorrections {
+	cc := &compiledCorrections{}
+	for i := 0; i < n; i++ {
+		name := "SynthApp" + strconv.Itoa(i)
+		ua := "Mozilla/5.0 (Linux; Android 14) " + name + "/1.0"
+		rule, err := compileRule(correctionRule{
+			ID:    name,
+			Match: correctionMatch{UAContains: stringList{strings.ToLower(name) + "/"}},
+			Set:   correctionSet{BrowserName: &name},
+			Tests: []correctionTest{{UA: ua, Expect: map[string]string{"browser.name": name}}},
+		})
+		if err != nil {
+			tb.Fatalf("compileRule: %v", err)
+		}
+		cc.rules = append(cc.rules, *rule)
+	}
+	cc.index = newCorrectionIndex(cc.rules)
+	return cc
+}
+
+// BenchmarkApplyCorrections scales the rule set for mainstream traffic that
+// no rule matches, comparing the full walk with indexed dispatch.
+func BenchmarkApplyCorrections(b *testing.B) {
+	p, _ := New(Config{DisableAutoUpdate: true})
+	defer p.Close()
+	bases := make([]*Result, len(benchUAs))
+	lowers := make([]string, len(benchUAs))
+	for i, ua := range benchUAs {
+		bases[i] = p.computeResult(ua, nil, &compiledCorrections{})
+		lowers[i] = strings.ToLower(ua)
+	}
+	for _, n := range []int{64, 1024, 4096} {
+		indexed := syntheticCorrections(b, n)
+		walk := *indexed
+		walk.index = nil
+		for _, v := range []struct {
+			name string
+			cc   *compiledCorrections
+		}{{"walk", &walk}, {"indexed", indexed}} {
+			b.Run(v.name+"/rules="+strconv.Itoa(n), func(b *testing.B) {
+				b.ReportAllocs()
+				for i := 0; i < b.N; i++ {
+					k := i % len(benchUAs)
+					res := *bases[k]
+					applyCorrections(&res, benchUAs[k], lowers[k], nil, v.cc)
+				}
+			})
+		}
+	}
+}
@@ -0,0 +1,236 @@
+package core
+
+import (
+	"bytes"
+	"encoding/json"
+	"fmt"
+)
+
+// Fields is a projection mask over the top-level Result sections: a caller
+// that only needs, say, browser and is_bot asks for those and the parse skips
+// the enrichment stages that feed nothing else (automation, integrity,
+// security, detection, OS labels, class_hash). Unrequested sections are left
+// at their zero value and omitted by MarshalResult.
+//
+// The zero value (AllFields) requests everything. result_version and ua are
+// always present. The detection pipeline itself (regexes, inference, Client
+// Hints, signals, corrections, category) always runs in full: correction rules
+// match on the complete parsed state, so no requested field is computed from
+// a reduced one.
+type Fields uint32
+
+// AllFields requests every Result section.
+const AllFields Fields = 0
+
+// One bit per top-level Result JSON key, in Result field order.
+const (
+	FieldBrowser Fields = 1 << iota
+	FieldOS
+	FieldDevice
+	FieldCPU
+	FieldEngine
+	FieldCategory
+	FieldIsBot
+	FieldIsAICrawler
+	FieldIsFrozenUA
+	FieldIsMobile
+	FieldIsDesktop
+	FieldIsTouchCapable
+	FieldIsChromeFamily
+	FieldIsAppleSilicon
+	FieldAutomation
+	FieldIntegrity
+	FieldSecurity
+	FieldDetection
+	FieldClassHash
+	FieldBot
+	FieldGPU
+)
+
+// fieldTable maps each bit to its JSON key and value, in Result field order
+// so projected JSON keeps the key order of a full result.
+var fieldTable = [...]struct {
+	name  string
+	bit   Fields
+	value func(*Result) any
+}{
+	{"browser", FieldBrowser, func(r *Result) any { return r.Browser }},
+	{"os", FieldOS, func(r *Result) any { return r.OS }},
+	{"device", FieldDevice, func(r *Result) any { return r.Device }},
+	{"cpu", FieldCPU, func(r *Result) any { return r.CPU }},
+	{"engine", FieldEngine, func(r *Result) any { return r.Engine }},
+	{"category", FieldCategory, func(r *Result) any { return r.Category }},
+	{"is_bot", FieldIsBot, func(r *Result) any { return r.IsBot }},
+	{"is_ai_crawler", FieldIsAICrawler, func(r *Result) any { return r.IsAICrawler }},
+	{"is_frozen_ua", FieldIsFrozenUA, func(r *Result) any { return r.IsFrozenUA }},
+	{"is_mobile", FieldIsMobile, func(r *Result) any { return r.IsMobile }},
+	{"is_desktop", FieldIsDesktop, func(r *Result) any { return r.IsDesktop }},
+	{"is_touch_capable", FieldIsTouchCapable, func(r *Result) any { return r.IsTouchCapable }},
+	{"is_chrome_family", FieldIsChromeFamily, func(r *Result) any { return r.IsChromeFamily }},
+	{"is_apple_silicon", FieldIsAppleSilicon, func(r *Result) any { return r.IsAppleSilicon }},
+	{"automation", FieldAutomation, func(r *Result) any { return r.Automation }},
+	{"integrity", FieldIntegrity, func(r *Result) any { return r.Integrity }},
+	{"security", FieldSecurity, func(r *Result) any { return r.Security }},
+	{"detection", FieldDetection, func(r *Result) any { return r.Detection }},
+	{"class_hash", FieldClassHash, func(r *Result) any { return r.ClassHash }},
+	{"bot", FieldBot, func(r *Result) any { return r.Bot }},
+	{"gpu", FieldGPU, func(r *Result) any { return r.GPU }},
+}
+
+// ParseFieldNames builds a mask from Result JSON keys ("browser", "os",
+// "is_bot", ...). "ua" and "result_version" are accepted and ignored (they
+// are always present); an empty list means AllFields. Unknown names are an
+// error, so a typo never silently drops a section.
+func ParseFieldNames(names []string) (Fields, error) {
+	var f Fields
+outer:
+	for _, name := range names {
+		switch name {
+		case "ua", "result_version":
+			continue
+		}
+		for _, e := range fieldTable {
+			if e.name == name {
+				f |= e.bit
+				continue outer
+			}
+		}
+		return 0, fmt.Errorf("unknown result field %q", name)
+	}
+	return f, nil
+}
+
+// UnmarshalJSON accepts the payload form: a JSON array of field names.
+func (f *Fields) UnmarshalJSON(data []byte) error {
+	var names []string
+	if err := json.Unmarshal(data, &names); err != nil {
+		return err
+	}
+	mask, err := ParseFieldNames(names)
+	if err != nil {
+		return err
+	}
+	*f = mask
+	return nil
+}
+
+// Has reports whether every section in want is requested.
+func (f Fields) Has(want Fields) bool {
+	return f == AllFields || f&want == want
+}
+
+// project zeroes every section f does not request.
+func (f Fields) project(res *Result) {
+	if f == AllFields {
+		return
+	}
+	keep := *res
+	*res = Result{ResultVersion: keep.ResultVersion, UA: keep.UA}
+	if f&FieldBrowser != 0 {
+		res.Browser = keep.Browser
+	}
+	if f&FieldOS != 0 {
+		res.OS = keep.OS
+	}
+	if f&FieldDevice != 0 {
+		res.Device = keep.Device
+	}
+	if f&FieldCPU != 0 {
+		res.CPU = keep.CPU
+	}
+	if f&FieldEngine != 0 {
+		res.Engine = keep.Engine
+	}
+	if f&FieldCategory != 0 {
+		res.Category = keep.Category
+	}
+	if f&FieldIsBot != 0 {
+		res.IsBot = keep.IsBot
+	}
+	if f&FieldIsAICrawler != 0 {
+		res.IsAICrawler = keep.IsAICrawler
+	}
+	if f&FieldIsFrozenUA != 0 {
+		res.IsFrozenUA = keep.IsFrozenUA
+	}
+	if f&FieldIsMobile != 0 {
+		res.IsMobile = keep.IsMobile
+	}
+	if f&FieldIsDesktop != 0 {
+		res.IsDesktop = keep.IsDesktop
+	}
+	if f&FieldIsTouchCapable != 0 {
+		res.IsTouchCapable = keep.IsTouchCapable
+	}
+	if f&FieldIsChromeFamily != 0 {
+		res.IsChromeFamily = keep.IsChromeFamily
+	}
+	if f&FieldIsAppleSilicon != 0 {
+		res.IsAppleSilicon = keep.IsAppleSilicon
+	}
+	if f&FieldAutomation != 0 {
+		res.Automation = keep.Automation
+	}
+	if f&FieldIntegrity != 0 {
+		res.Integrity = keep.Integrity
+	}
+	if f&FieldSecurity != 0 {
+		res.Security = keep.Security
+	}
+	if f&FieldDetection != 0 {
+		res.Detection = keep.Detection
+	}
+	if f&FieldClassHash != 0 {
+		res.ClassHash = keep.ClassHash
+	}
+	if f&FieldBot != 0 {
+		res.Bot = keep.Bot
+	}
+	if f&FieldGPU != 0 {
+		res.GPU = keep.GPU
+	}
+}
+
+// MarshalResult is json.Marshal(res) restricted to the sections in f:
+// unrequested keys are left out rather than sent as zero values, so hosts
+// decode only what they asked for. With AllFields it is exactly
+// json.Marshal(res).
+func MarshalResult(res *Result, f Fields) ([]byte, error) {
+	if f == AllFields || res == nil {
+		return json.Marshal(res)
+	}
+	var b bytes.Buffer
+	b.WriteString(`{"result_version":`)
+	if err := writeJSON(&b, res.ResultVersion); err != nil {
+		return nil, err
+	}
+	b.WriteString(`,"ua":`)
+	if err := writeJSON(&b, res.UA); err != nil {
+		return nil, err
+	}
+	for _, e := range fieldTable {
+		if f&e.bit == 0 {
+			continue
+		}
+		if (e.bit == FieldBot && res.Bot == nil) || (e.bit == FieldGPU && res.GPU == nil) {
+			continue // omitempty, as on the full result
+		}
+		b.WriteString(`,"`)
+		b.WriteString(e.name)
+		b.WriteString(`":`)
+		if err := writeJSON(&b, e.value(res)); err != nil {
+			return nil, err
+		}
+	}
+	b.WriteByte('}')
+	return b.Bytes(), nil
+}
+
+func writeJSON(b *bytes.Buffer, v any) error {
+	data, err := json.Marshal(v)
+	if err != nil {
+		return err
+	}
+	b.Write(data)
+	return nil
+}
@@ -0,0 +1,145 @@
+package core
+
+import (
+	"encoding/json"
+	"reflect"
+	"sort"
+	"testing"
+)
+
+var projectionMasks = []Fields{
+	FieldBrowser | FieldOS | FieldDevice | FieldIsBot,
+	FieldIsBot,
+	FieldClassHash,
+	FieldIntegrity | FieldSecurity | FieldAutomation | FieldDetection,
+	FieldBot | FieldGPU | FieldIsTouchCapable,
+}
+
+// A projected parse must equal the full parse with the other sections
+// zeroed: skipping enrichment may never change a requested field.
+func TestParseFieldsMatchesProjectedFullParse(t *testing.T) {
+	p := newTestParser(t, 0)
+	headers := map[string]string{
+		"Sec-CH-UA":                  `"Chromium";v="126", "Google Chrome";v="126"`,
+		"Sec-CH-UA-Platform":         `"macOS"`,
+		"Sec-CH-UA-Platform-Version": `"14.5.0"`,
+	}
+	signals := &Signals{MaxTouchPoints: 0, WebGLRenderer: "Apple M2"}
+	for _, ua := range prefilterUAs(t) {
+		for _, in := range []struct {
+			h map[string]string
+			s *Signals
+		}{{nil, nil}, {headers, signals}} {
+			full := p.ParseFull(ua, in.h, in.s)
+			for _, mask := range projectionMasks {
+				want := copyResult(full)
+				mask.project(want)
+				if got := p.ParseFields(ua, in.h, in.s, mask); !reflect.DeepEqual(got, want) {
+					t.Errorf("UA=%q mask=%b:\n got  %+v\n want %+v", ua, mask, got, want)
+				}
+			}
+		}
+	}
+}
+
+func TestMarshalResultKeys(t *testing.T) {
+	p := newTestParser(t, 0)
+	ua := "Mozilla/5.0 (compatible; GPTBot/1.2; +https://openai.com/gptbot)"
+	for _, tt := range []struct {
+		fields Fields
+		want   []string
+	}{
+		{FieldBrowser | FieldIsBot, []string{"browser", "is_bot", "result_version", "ua"}},
+		{FieldBot | FieldGPU, []string{"bot", "result_version", "ua"}}, // gpu stays omitempty
+	} {
+		data, err := MarshalResult(p.ParseFields(ua, nil, nil, tt.fields), tt.fields)
+		if err != nil {
+			t.Fatalf("MarshalResult: %v", err)
+		}
+		var m map[string]json.RawMessage
+		if err := json.Unmarshal(data, &m); err != nil {
+			t.Fatalf("invalid JSON %s: %v", data, err)
+		}
+		var keys []string
+		for k := range m {
+			keys = append(keys, k)
+		}
+		sort.Strings(keys)
+		if !reflect.DeepEqual(keys, tt.want) {
+			t.Errorf("fields=%b: keys %v, want %v", tt.fields, keys, tt.want)
+		}
+	}
+
+	res := p.Parse(ua, nil)
+	full, _ := json.Marshal(res)
+	if got, _ := MarshalResult(res, AllFields); string(got) != string(full) {
+		t.Errorf("MarshalResult(AllFields) = %s, want %s", got, full)
+	}
+}
+
+func TestParseFieldNames(t *testing.T) {
+	f, err := ParseFieldNames([]string{"browser", "os", "is_bot", "ua"})
+	if err != nil || f != FieldBrowser|FieldOS|FieldIsBot {
+		t.Errorf("ParseFieldNames = %b, %v", f, err)
+	}
+	if f, err := ParseFieldNames(nil); err != nil || f != AllFields {
+		t.Errorf("empty list = %b, %v, want AllFields", f, err)
+	}
+	if _, err := ParseFieldNames([]string{"browsr"}); err == nil {
+		t.Error("unknown field name was accepted")
+	}
+
+	var payload struct {
+		Fields Fields `json:"fields"`
+	}
+	if err := json.Unmarshal([]byte(`{"fields":["device","class_hash"]}`), &payload); err != nil ||
+		payload.Fields != FieldDevice|FieldClassHash {
+		t.Errorf("payload fields = %b, %v", payload.Fields, err)
+	}
+}
+
+// The mask is part of the cache key: a narrow result must never be served
+// to a full request (or the reverse).
+func TestProjectionCacheKey(t *testing.T) {
+	p := newTestParser(t, 100)
+	ua := benchUAs[0]
+	narrow := p.ParseFields(ua, nil, nil, FieldIsBot)
+	full := p.Parse(ua, nil)
+	if full.Browser.Name == "" || full.ClassHash == "" {
+		t.Errorf("full parse after a projected one came back projected: %+v", full)
+	}
+	if again := p.ParseFields(ua, nil, nil, FieldIsBot); !reflect.DeepEqual(again, narrow) || again.Browser.Name != "" {
+		t.Errorf("projected parse after a full one = %+v, want %+v", again, narrow)
+	}
+	if buildCacheKey(ua, nil, nil, AllFields) == buildCacheKey(ua, nil, nil, FieldIsBot) {
+		t.Error("cache key ignores the projection mask")
+	}
+}
+
+// BenchmarkParseFields compares an uncached full parse with the common
+// narrow projection (browser, os, device, is_bot), marshal included.
+func BenchmarkParseFields(b *testing.B) {
+	p, err := New(Config{DisableAutoUpdate: true})
+	if err != nil {
+		b.Fatalf("Failed to create parser: %v", err)
+	}
+	defer p.Close()
+	headers := map[string]string{"Sec-CH-UA-Platform": `"Windows"`}
+	for _, v := range []struct {
+		name   string
+		fields Fields
+	}{
+		{"all", AllFields},
+		{"narrow", FieldBrowser | FieldOS | FieldDevice | FieldIsBot},
+	} {
+		b.Run(v.name, func(b *testing.B) {
+			b.ReportAllocs()
+			for i := 0; i < b.N; i++ {
+				res := p.ParseFields(benchUAs[i%len(benchUAs)], headers, nil, v.fields)
+				if _, err := MarshalResult(res, v.fields); err != nil {
+					b.Fatal(err)
+				}
+			}
+		})
+	}
+}
@@ -6,12 +6,13 @@ import (
 	"fmt"
 	"hash/fnv"
 	"io"
+	"log"
 	"strconv"
 	"strings"
 	"sync"
 	"sync/atomic"
+	"time"
 
-	lru "github.com/hashicorp/golang-lru/v2"
 	"github.com/ua-parser/uap-go/uaparser"
 	"gopkg.in/yaml.v3"
 )
@@ -164,7 +165,7 @@ var botFalsePositiveTokens = []string{"cubot"}
 // (applyClientHints + the correction layer's x_requested_with match). Every
 // consumed header MUST be part of the cache key, otherwise requests differing
 // only in that header would collide in the cache.
-var cacheKeyHeaders = []string{
+var cacheKeyHeaders = [...]string{
 	"sec-ch-ua",
 	"sec-ch-ua-mobile",
 	"sec-ch-ua-platform",
@@ -178,12 +179,18 @@ var cacheKeyHeaders = []string{
 }
 
 type Parser struct {
-	mu     sync.RWMutex
-	uap    *uaparser.Parser
-	cache  *lru.Cache[string, *Result]
-	config Config
-	ctx    context.Context
-	cancel context.CancelFunc
+	mu  sync.RWMutex
+	uap *uaparser.Parser
+	// prefilter is non-nil when Config.RegexPrefilter or LazyRegexes is set;
+	// it answers in place of uap (nil in lazy mode) and is swapped together
+	// with it.
+	prefilter *regexPrefilter
+	cache     resultCache
+	// keySeeds seed the cache's 128-bit key hash (see cachekey.go).
+	keySeeds keySeeds
+	config   Config
+	ctx      context.Context
+	cancel   context.CancelFunc
 	// gen increments on every resource hot-swap (regexes or corrections);
 	// Parse skips caching results that were computed against a superseded
 	// database (see updateRegexes / ApplyCorrectionsYAML).
@@ -196,15 +203,17 @@ type Parser struct {
 	// goroutine.
 	lastETag            string
 	lastCorrectionsETag string
+	// stopCompile cancels the background compile of the current lazy
+	// prefilter; same single-goroutine discipline as the ETags.
+	stopCompile context.CancelFunc
+	// stats backs Stats(); see Config.CollectStats.
+	stats parserStats
+	// closed makes Close's warm-up save run once.
+	closed atomic.Bool
 }
 
 func New(cfg Config) (*Parser, error) {
-	def := uaparser.RegexDefinitions{}
-	if err := yaml.Unmarshal(defaultRegexes, &def); err != nil {
-		return nil, err
-	}
-
-	uap, err := uaparser.New(uaparser.WithRegexDefinitions(def))
+	uap, prefilter, err := loadRegexes(defaultRegexes, cfg)
 	if err != nil {
 		return nil, err
 	}
@@ -216,12 +225,9 @@ func New(cfg Config) (*Parser, error) {
 		return nil, fmt.Errorf("embedded corrections: %w", err)
 	}
 
-	var cache *lru.Cache[string, *Result]
-	if cfg.LRUCacheSize > 0 {
-		cache, err = lru.New[string, *Result](cfg.LRUCacheSize)
-		if err != nil {
-			return nil, fmt.Errorf("failed to create LRU cache: %w", err)
-		}
+	cache, err := newResultCache(cfg)
+	if err != nil {
+		return nil, err
 	}
 
 	parentCtx := cfg.Ctx
@@ -231,13 +237,17 @@ func New(cfg Config) (*Parser, error) {
 	ctx, cancel := context.WithCancel(parentCtx)
 
 	p := &Parser{
-		uap:    uap,
-		cache:  cache,
-		config: cfg,
-		ctx:    ctx,
-		cancel: cancel,
-	}
+		uap:       uap,
+		prefilter: prefilter,
+		cache:     cache,
+		keySeeds:  newKeySeeds(),
+		config:    cfg,
+		ctx:       ctx,
+		cancel:    cancel,
+	}
+	corrections.countHits = cfg.CollectStats
 	p.corrections.Store(corrections)
+	p.compileInBackground(prefilter)
 
 	// DisableAutoUpdate is the master network switch: when set, no background
 	// fetching happens at all. DisableCorrectionsUpdate is a sub-switch that
@@ -245,12 +255,66 @@ func New(cfg Config) (*Parser, error) {
 	if !cfg.DisableAutoUpdate {
 		go p.startUpdater()
 	}
+	if cfg.WarmupFile != "" && cache != nil {
+		go p.warmupFromFile()
+	}
 
 	return p, nil
 }
 
+// loadRegexes builds the regex stage for cfg from a regexes.yaml document:
+// the full uaparser.Parser, optionally fronted by the prefilter, or with
+// LazyRegexes only a lazily compiled prefilter (uap stays nil).
+func loadRegexes(data []byte, cfg Config) (*uaparser.Parser, *regexPrefilter, error) {
+	if cfg.LazyRegexes {
+		prefilter, err := newRegexPrefilter(data, true)
+		return nil, prefilter, err
+	}
+
+	def := uaparser.RegexDefinitions{}
+	if err := yaml.Unmarshal(data, &def); err != nil {
+		return nil, nil, err
+	}
+	uap, err := uaparser.New(uaparser.WithRegexDefinitions(def))
+	if err != nil {
+		return nil, nil, err
+	}
+	if !cfg.RegexPrefilter {
+		return uap, nil, nil
+	}
+	prefilter, err := newRegexPrefilter(data, false)
+	if err != nil {
+		return nil, nil, err
+	}
+	return uap, prefilter, nil
+}
+
+// compileInBackground starts the background compile of a lazy prefilter
+// (Config.CompileInBackground), cancelling the pass over the one it
+// replaces. Called from New and then only from the updater goroutine.
+func (p *Parser) compileInBackground(prefilter *regexPrefilter) {
+	if p.stopCompile != nil {
+		p.stopCompile()
+		p.stopCompile = nil
+	}
+	if prefilter == nil || !p.config.LazyRegexes || !p.config.CompileInBackground {
+		return
+	}
+	ctx, stop := context.WithCancel(p.ctx)
+	p.stopCompile = stop
+	go prefilter.compileAll(ctx)
+}
+
+// Close stops the background goroutines and, with Config.WarmupFile set,
+// saves the warm-up snapshot for the next start.
 func (p *Parser) Close() {
 	p.cancel()
+	if p.config.WarmupFile == "" || p.cache == nil || !p.closed.CompareAndSwap(false, true) {
+		return
+	}
+	if err := p.SaveWarmup(p.config.WarmupFile, p.config.WarmupEntries); err != nil {
+		log.Printf("Warm-up snapshot not saved: %v", err)
+	}
 }
 
 func (p *Parser) Parse(ua string, headers map[string]string) *Result {
@@ -259,38 +323,87 @@ func (p *Parser) Parse(ua string, headers map[string]string) *Result {
 
 // ParseFull is Parse plus an optional browser-signals block (see Signals).
 func (p *Parser) ParseFull(ua string, headers map[string]string, signals *Signals) *Result {
-	normalizedHeaders := normalizeHeaders(headers)
+	return p.ParseFields(ua, headers, signals, AllFields)
+}
+
+// ParseFields is ParseFull restricted to the sections in fields (see Fields):
+// enrichment stages nobody asked for are skipped and unrequested sections
+// come back zeroed. Projected results are cached under their own key.
+func (p *Parser) ParseFields(ua string, headers map[string]string, signals *Signals, fields Fields) *Result {
+	// copy-on-return: callers must never share the cached struct
+	return copyResult(p.parseShared(ua, headers, signals, fields))
+}
 
-	cacheKey := ""
+// ParseFullShared is ParseFull without the defensive copy: on a cache hit it
+// returns the cached Result itself, so a hit allocates nothing. The result
+// is shared with the cache and other callers and MUST NOT be modified; use
+// it for read-only consumers such as serializing a response.
+func (p *Parser) ParseFullShared(ua string, headers map[string]string, signals *Signals) *Result {
+	return p.parseShared(ua, headers, signals, AllFields)
+}
+
+// ParseFieldsShared is ParseFields without the defensive copy, with the same
+// read-only contract as ParseFullShared.
+func (p *Parser) ParseFieldsShared(ua string, headers map[string]string, signals *Signals, fields Fields) *Result {
+	return p.parseShared(ua, headers, signals, fields)
+}
+
+// parseShared returns a result that may be shared with the cache. The hit
+// path hashes the inputs in place (no lowercased header map, no key string)
+// and verifies the entry's canonical key, so a 128-bit hash collision can
+// only cost a miss, never a wrong result.
+func (p *Parser) parseShared(ua string, headers map[string]string, signals *Signals, fields Fields) *Result {
+	var start time.Time
+	if p.config.CollectStats {
+		start = time.Now()
+	}
+
+	// The key and the pipeline both read the headers from hv, so a result is
+	// always computed from exactly the values its cache key holds.
+	var hv keyHeaders
+	hv.collect(headers)
+	var h cacheKey
 	if p.cache != nil {
-		cacheKey = buildCacheKey(ua, normalizedHeaders, signals)
-		if res, ok := p.cache.Get(cacheKey); ok {
-			// copy-on-return: callers must never share the cached struct
-			return copyResult(res)
+		h = p.keySeeds.hash(ua, &hv, signals, fields)
+		if e, ok := p.cache.Get(h); ok && keyMatches(e.key, ua, &hv, signals, fields) {
+			if p.config.CollectStats {
+				p.stats.cacheHits.Add(1)
+				p.stats.hitLatency.observe(time.Since(start))
+			}
+			return e.res
 		}
 	}
 
 	gen := p.gen.Load()
 
-	res := p.computeResultFull(ua, normalizedHeaders, signals, p.corrections.Load())
+	res := p.computeResultFull(ua, hv.headerMap(), signals, p.corrections.Load(), fields)
 
 	// Skip caching when the regex DB or the correction set was hot-swapped
 	// mid-parse: the result was computed against the old resources and must
 	// not outlive the purge.
+	evicted := false
 	if p.cache != nil && p.gen.Load() == gen {
-		p.cache.Add(cacheKey, res)
+		evicted = p.cache.Add(h, &cacheEntry{key: buildKey(ua, &hv, signals, fields), res: res})
 	}
 
-	return copyResult(res)
+	if p.config.CollectStats {
+		if p.cache != nil {
+			p.stats.cacheMisses.Add(1)
+			if evicted {
+				p.stats.cacheEvictions.Add(1)
+			}
+		}
+		p.stats.missLatency.observe(time.Since(start))
+	}
+	return res
 }
 
-// normalizeHeaders lowercases header names once per parse.
+// normalizeHeaders returns the consumed headers under lowercase names,
+// resolving duplicate spellings the way the cache key does.
 func normalizeHeaders(headers map[string]string) map[string]string {
-	normalized := make(map[string]string, len(headers))
-	for k, v := range headers {
-		normalized[strings.ToLower(k)] = v
-	}
-	return normalized
+	var hv keyHeaders
+	hv.collect(headers)
+	return hv.headerMap()
 }
 
 // computeResult runs the full detection pipeline against an explicit
@@ -298,13 +411,32 @@ func normalizeHeaders(headers map[string]string) map[string]string {
 // corrections (terminal) → category. Cache-free, so the corrections
 // self-test can run candidate rule sets through it without polluting state.
 func (p *Parser) computeResult(ua string, normalizedHeaders map[string]string, cc *compiledCorrections) *Result {
-	return p.computeResultFull(ua, normalizedHeaders, nil, cc)
+	return p.computeResultFull(ua, normalizedHeaders, nil, cc, AllFields)
 }
 
-func (p *Parser) computeResultFull(ua string, normalizedHeaders map[string]string, signals *Signals, cc *compiledCorrections) *Result {
+func (p *Parser) computeResultFull(ua string, normalizedHeaders map[string]string, signals *Signals, cc *compiledCorrections, fields Fields) *Result {
+	uap, prefilter := p.regexStage()
+	return p.computeResultWith(uap, prefilter, ua, normalizedHeaders, signals, cc, fields)
+}
+
+// regexStage returns the live regex resources; both stay usable after a
+// hot-swap replaces them, so callers need not hold the lock while parsing.
+func (p *Parser) regexStage() (*uaparser.Parser, *regexPrefilter) {
 	p.mu.RLock()
-	client := p.uap.Parse(ua)
+	uap, prefilter := p.uap, p.prefilter
 	p.mu.RUnlock()
+	return uap, prefilter
+}
+
+// computeResultWith is computeResultFull against explicit regex resources,
+// which lets a hot-swap precompute results before the new ones go live.
+func (p *Parser) computeResultWith(uap *uaparser.Parser, prefilter *regexPrefilter, ua string, normalizedHeaders map[string]string, signals *Signals, cc *compiledCorrections, fields Fields) *Result {
+	var client *uaparser.Client
+	if prefilter != nil {
+		client = prefilter.Parse(ua)
+	} else {
+		client = uap.Parse(ua)
+	}
 
 	res := &Result{
 		UA: ua,
@@ -369,7 +501,9 @@ func (p *Parser) computeResultFull(ua string, normalizedHeaders map[string]strin
 	if res.Device.FormFactor == "" && !res.IsBot {
 		res.Device.FormFactor = formFactorFromType(res.Device.Type)
 	}
-	res.IsFrozenUA = detectFrozenUA(uaLower)
+	if fields.Has(FieldIsFrozenUA) {
+		res.IsFrozenUA = detectFrozenUA(uaLower)
+	}
 	if res.Bot != nil {
 		// Keep the bot object in sync when a correction renamed the browser.
 		res.Bot.Name = res.Browser.Name
@@ -377,7 +511,8 @@ func (p *Parser) computeResultFull(ua string, normalizedHeaders map[string]strin
 
 	// Result v1.2 enrichment (convenience flags, automation, integrity,
 	// security, detection provenance, OS labels, class_hash).
-	enrichResult(res, uaLower, normalizedHeaders, signals, uaOSPlatform)
+	enrichResult(res, uaLower, normalizedHeaders, signals, uaOSPlatform, fields)
+	fields.project(res)
 
 	return res
 }
@@ -405,42 +540,6 @@ func copyResult(res *Result) *Result {
 	return &cp
 }
 
-// buildCacheKey joins the UA with every consumed CH header and every consumed
-// signal field. Each field is length-prefixed ("<len>:<value>") so the
-// encoding is injective regardless of field contents — values arrive from
-// JSON/FFI and may contain any byte (including NUL), so a plain separator
-// could otherwise let one field's bytes masquerade as another's boundary.
-// deviceMemory/hardwareConcurrency are NOT consumed by the pipeline and are
-// deliberately excluded.
-func buildCacheKey(ua string, headers map[string]string, signals *Signals) string {
-	var b strings.Builder
-	b.Grow(len(ua) + 220)
-	writeField := func(s string) {
-		b.WriteString(strconv.Itoa(len(s)))
-		b.WriteByte(':')
-		b.WriteString(s)
-	}
-	writeField(ua)
-	for _, k := range cacheKeyHeaders {
-		writeField(headers[k])
-	}
-	if signals != nil {
-		b.WriteByte('S') // distinguishes "no signals" from all-zero signals
-		writeField(strconv.Itoa(signals.MaxTouchPoints))
-		writeField(signals.Platform)
-		writeField(signals.WebGLVendor)
-		writeField(signals.WebGLRenderer)
-		if signals.Webdriver {
-			b.WriteByte('W') // navigator.webdriver feeds automation.webdriver
-		}
-		if signals.Screen != nil {
-			writeField(strconv.Itoa(signals.Screen.W))
-			writeField(strconv.Itoa(signals.Screen.H))
-		}
-	}
-	return b.String()
-}
-
 // applySignals folds browser-side evidence into the result. Every rule here
 // is a verified, single-purpose inference — no scoring, no guessing:
 //
@@ -737,8 +836,9 @@ var securityPayloads = []struct{ token, category string }{
 }
 
 // enrichResult computes the Result v1.2 fields from the FINAL parsed state plus
-// the raw inputs. All derivations are local (no external database).
-func enrichResult(res *Result, uaLower string, headers map[string]string, signals *Signals, uaOSPlatform string) {
+// the raw inputs. All derivations are local (no external database). Blocks
+// whose output fields does not request are skipped.
+func enrichResult(res *Result, uaLower string, headers map[string]string, signals *Signals, uaOSPlatform string, fields Fields) {
 	res.ResultVersion = ResultSchemaVersion
 
 	// --- Convenience classifications ---
@@ -749,33 +849,66 @@ func enrichResult(res *Result, uaLower string, headers map[string]string, signal
 	res.IsAppleSilicon = res.OS.Platform == "macos" && res.CPU.Architecture == "arm64"
 
 	// --- Automation (undeclared, unlike is_bot) ---
-	res.Automation.Headless = strings.Contains(uaLower, "headless") ||
-		strings.Contains(uaLower, "phantomjs") || strings.Contains(uaLower, "slimerjs")
-	res.Automation.Electron = strings.Contains(uaLower, "electron/")
-	res.Automation.Webdriver = signals != nil && signals.Webdriver
+	if fields.Has(FieldAutomation) {
+		res.Automation.Headless = strings.Contains(uaLower, "headless") ||
+			strings.Contains(uaLower, "phantomjs") || strings.Contains(uaLower, "slimerjs")
+		res.Automation.Electron = strings.Contains(uaLower, "electron/")
+		res.Automation.Webdriver = signals != nil && signals.Webdriver
+	}
 
 	// --- Detection provenance ---
-	for _, k := range cacheKeyHeaders {
-		if k == "x-requested-with" {
-			continue
+	if fields.Has(FieldDetection) {
+		for _, k := range cacheKeyHeaders {
+			if k == "x-requested-with" {
+				continue
+			}
+			if headers[k] != "" {
+				res.Detection.ClientHintsUsed = true
+				break
+			}
 		}
-		if headers[k] != "" {
-			res.Detection.ClientHintsUsed = true
-			break
+		for _, k := range []string{
+			"sec-ch-ua-platform-version", "sec-ch-ua-model", "sec-ch-ua-arch",
+			"sec-ch-ua-bitness", "sec-ch-ua-full-version-list", "sec-ch-ua-form-factors",
+		} {
+			if headers[k] != "" {
+				res.Detection.HighEntropy = true
+				break
+			}
+		}
+		res.Detection.SignalsUsed = signalsProvided(signals)
+	}
+
+	if fields.Has(FieldIntegrity) {
+		res.Integrity = integrityOf(res, headers, signals, uaOSPlatform)
+	}
+
+	// --- Security (attack payload in the UA string) ---
+	if fields.Has(FieldSecurity) {
+		for _, p := range securityPayloads {
+			if strings.Contains(uaLower, p.token) {
+				res.Security = SecurityInfo{Suspicious: true, Category: p.category}
+				break
+			}
 		}
 	}
-	for _, k := range []string{
-		"sec-ch-ua-platform-version", "sec-ch-ua-model", "sec-ch-ua-arch",
-		"sec-ch-ua-bitness", "sec-ch-ua-full-version-list", "sec-ch-ua-form-factors",
-	} {
-		if headers[k] != "" {
-			res.Detection.HighEntropy = true
-			break
+
+	// --- OS labels ---
+	if fields.Has(FieldOS) {
+		if res.OS.VersionRaw == "" {
+			res.OS.VersionRaw = res.OS.Version
 		}
+		res.OS.VersionName = osVersionLabel(res.OS.Platform, res.OS.Name, res.OS.Version)
 	}
-	res.Detection.SignalsUsed = signalsProvided(signals)
 
-	// --- Integrity (UA vs Client Hints vs signals consistency) ---
+	// --- Class hash (stable bucket key for the client class, not a device id) ---
+	if fields.Has(FieldClassHash) {
+		res.ClassHash = classHash(res)
+	}
+}
+
+// integrityOf cross-checks UA vs Client Hints vs signals consistency.
+func integrityOf(res *Result, headers map[string]string, signals *Signals, uaOSPlatform string) IntegrityInfo {
 	reasons := []string{}
 	if rawPlat := cleanHeader(headers["sec-ch-ua-platform"]); rawPlat != "" && rawPlat != "Unknown" {
 		if chPlat := platformOf(rawPlat); chPlat != "other" &&
@@ -794,24 +927,7 @@ func enrichResult(res *Result, uaLower string, headers map[string]string, signal
 		(res.OS.Platform == "ios" || res.OS.Platform == "android") {
 		reasons = append(reasons, "touchless-mobile")
 	}
-	res.Integrity = IntegrityInfo{Spoofed: len(reasons) > 0, Reasons: reasons}
-
-	// --- Security (attack payload in the UA string) ---
-	for _, p := range securityPayloads {
-		if strings.Contains(uaLower, p.token) {
-			res.Security = SecurityInfo{Suspicious: true, Category: p.category}
-			break
-		}
-	}
-
-	// --- OS labels ---
-	if res.OS.VersionRaw == "" {
-		res.OS.VersionRaw = res.OS.Version
-	}
-	res.OS.VersionName = osVersionLabel(res.OS.Platform, res.OS.Name, res.OS.Version)
-
-	// --- Class hash (stable bucket key for the client class, not a device id) ---
-	res.ClassHash = classHash(res)
+	return IntegrityInfo{Spoofed: len(reasons) > 0, Reasons: reasons}
 }
 
 // signalsProvided reports whether a non-empty browser-signals block was
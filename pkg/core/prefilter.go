@@ -0,0 +1,534 @@
+package core
+
+import (
+	"context"
+	"fmt"
+	"log"
+	"regexp"
+	"regexp/syntax"
+	"sort"
+	"sync"
+	"unicode"
+	"unicode/utf8"
+
+	"github.com/ua-parser/uap-go/uaparser"
+	"gopkg.in/yaml.v3"
+)
+
+// The regex prefilter (Config.RegexPrefilter): uap-go tries every rule of a
+// section in order until one matches, so a typical UA runs several hundred
+// regexes per section. Most rules require a literal token ("Firefox",
+// "SamsungBrowser", "CrOS"...) that the UA must contain for the rule to
+// match at all. The prefilter extracts those tokens once per regex DB, finds
+// every token present in a UA with a single Aho-Corasick pass over the
+// case-folded string, and evaluates only the rules whose tokens were seen (or
+// that have none), still in file order. The candidate set is a superset of
+// the matching rules by construction, so the first match — and therefore the
+// result — is the one uap-go itself returns.
+//
+// uap-go keeps its per-rule parsers unexported, so each rule is loaded into a
+// one-rule uaparser.Parser that produces the result once the rule's regex has
+// matched. That costs memory (every regex is compiled three times: the full
+// parser, the filter's matcher and the one-rule parser), which is why the
+// prefilter is opt-in.
+//
+// Config.LazyRegexes reuses the same structure without the full parser:
+// building the index only parses each regex (for validation and tokens),
+// and a rule compiles the first time a parse reaches it, or earlier from a
+// background pass (Config.CompileInBackground).
+
+// prefilterSections are the regexes.yaml sections in the order uap-go
+// evaluates them.
+var prefilterSections = [...]string{"user_agent_parsers", "os_parsers", "device_parsers"}
+
+// prefilterMinLiteral is the shortest token worth indexing: shorter ones
+// ("OS", "X1") appear in almost every UA and only cost scan time.
+const prefilterMinLiteral = 3
+
+// prefilterMaxAlternatives bounds the any-of token set of one rule; larger
+// alternations are left unfiltered.
+const prefilterMaxAlternatives = 16
+
+// prefilterMiss is the replacement emitted by the sentinel rule appended to
+// each one-rule parser. uap-go skips a rule whose regex matched but produced
+// an empty family, so seeing the sentinel means "fall through to the next
+// candidate", the same as the full parser would.
+const prefilterMiss = "\x00prefilter-miss"
+
+var prefilterSentinel = map[string]string{
+	"user_agent_parsers": "family_replacement",
+	"os_parsers":         "os_replacement",
+	"device_parsers":     "device_replacement",
+}
+
+type regexPrefilter struct {
+	tokens   *tokenMatcher
+	sections [len(prefilterSections)][]*prefilterRule
+	defaults *uaparser.Client
+}
+
+type prefilterRule struct {
+	// tokens are the rule's any-of token ids; nil means always a candidate.
+	tokens []int32
+
+	section  string
+	expr     string // with the regex_flag applied
+	node     *yaml.Node
+	sentinel *yaml.Node
+
+	once sync.Once
+	re   *regexp.Regexp
+	one  *uaparser.Parser
+	err  error
+}
+
+// newRegexPrefilter indexes a regexes.yaml document (the same bytes given to
+// uaparser). JSON input parses as YAML too. With lazy set no regex is
+// compiled yet; otherwise every rule is compiled before it returns.
+func newRegexPrefilter(data []byte, lazy bool) (*regexPrefilter, error) {
+	var doc yaml.Node
+	if err := yaml.Unmarshal(data, &doc); err != nil {
+		return nil, err
+	}
+	if len(doc.Content) == 0 || doc.Content[0].Kind != yaml.MappingNode {
+		return nil, fmt.Errorf("regex prefilter: expected a mapping at the document root")
+	}
+	root := doc.Content[0]
+
+	f := &regexPrefilter{}
+	tokenIDs := map[string]int32{}
+	var tokens []string
+	for s, name := range prefilterSections {
+		var rules []*yaml.Node
+		for i := 0; i+1 < len(root.Content); i += 2 {
+			if root.Content[i].Value == name && root.Content[i+1].Kind == yaml.SequenceNode {
+				rules = root.Content[i+1].Content
+			}
+		}
+		sentinel := sentinelRule(prefilterSentinel[name])
+		for i, node := range rules {
+			expr, flags := ruleExpr(node)
+			if flags != "" {
+				expr = "(?" + flags + ")" + expr
+			}
+			parsed, err := syntax.Parse(expr, syntax.Perl)
+			if err != nil {
+				return nil, fmt.Errorf("regex prefilter: %s[%d]: %w", name, i, err)
+			}
+			rule := &prefilterRule{section: name, expr: expr, node: node, sentinel: sentinel}
+			if !lazy {
+				rule.once.Do(func() { rule.err = rule.build() })
+				if rule.err != nil {
+					return nil, fmt.Errorf("regex prefilter: %s[%d]: %w", name, i, rule.err)
+				}
+			}
+			for _, lit := range ruleTokens(parsed) {
+				id, ok := tokenIDs[lit]
+				if !ok {
+					id = int32(len(tokens))
+					tokenIDs[lit] = id
+					tokens = append(tokens, lit)
+				}
+				rule.tokens = append(rule.tokens, id)
+			}
+			f.sections[s] = append(f.sections[s], rule)
+		}
+	}
+	f.tokens = newTokenMatcher(tokens)
+
+	// Results for a UA no rule matches, as the full parser reports them.
+	empty, err := uaparser.New(uaparser.WithRegexDefinitions(uaparser.RegexDefinitions{}))
+	if err != nil {
+		return nil, err
+	}
+	f.defaults = &uaparser.Client{
+		UserAgent: empty.ParseUserAgent(""),
+		Os:        empty.ParseOs(""),
+		Device:    empty.ParseDevice(""),
+	}
+	return f, nil
+}
+
+// Parse is uaparser.Parser.Parse restricted to the candidate rules.
+func (f *regexPrefilter) Parse(ua string) *uaparser.Client {
+	seen := f.tokens.scan(ua)
+	client := &uaparser.Client{
+		UserAgent: f.defaults.UserAgent,
+		Os:        f.defaults.Os,
+		Device:    f.defaults.Device,
+	}
+	for _, r := range f.sections[0] {
+		if r.matches(seen, ua) {
+			if v := r.one.ParseUserAgent(ua); v.Family != prefilterMiss {
+				client.UserAgent = v
+				break
+			}
+		}
+	}
+	for _, r := range f.sections[1] {
+		if r.matches(seen, ua) {
+			if v := r.one.ParseOs(ua); v.Family != prefilterMiss {
+				client.Os = v
+				break
+			}
+		}
+	}
+	for _, r := range f.sections[2] {
+		if r.matches(seen, ua) {
+			if v := r.one.ParseDevice(ua); v.Family != prefilterMiss {
+				client.Device = v
+				break
+			}
+		}
+	}
+	return client
+}
+
+// matches reports that the rule passes the token filter and its regex
+// matches ua. Only then is the one-rule parser asked for a result, so its
+// internal cache holds just the UAs the rule actually matched.
+func (r *prefilterRule) matches(seen []uint64, ua string) bool {
+	if r.tokens != nil && !anySeen(seen, r.tokens) {
+		return false
+	}
+	if r.compile() != nil {
+		return false
+	}
+	return r.re.MatchString(ua)
+}
+
+// compile builds a lazily indexed rule on first use. The index already
+// parsed the expression, so only RE2 program limits can fail here; such a
+// rule is logged once and never matches.
+func (r *prefilterRule) compile() error {
+	r.once.Do(func() {
+		if r.err = r.build(); r.err != nil {
+			log.Printf("regex prefilter: %s rule %q disabled: %v", r.section, r.expr, r.err)
+		}
+	})
+	return r.err
+}
+
+func (r *prefilterRule) build() error {
+	re, err := regexp.Compile(r.expr)
+	if err != nil {
+		return err
+	}
+	one, err := oneRuleParser(r.section, r.node, r.sentinel)
+	if err != nil {
+		return err
+	}
+	r.re, r.one = re, one
+	// The YAML tree is only needed to build the one-rule parser.
+	r.node, r.sentinel = nil, nil
+	return nil
+}
+
+// compileAll compiles every rule not yet compiled, in priority order: the
+// i-th rule of each section before the (i+1)-th of any, since earlier rules
+// are the ones parses reach first. It stops early when ctx is done.
+func (f *regexPrefilter) compileAll(ctx context.Context) {
+	for i := 0; ; i++ {
+		more := false
+		for _, rules := range f.sections {
+			if i < len(rules) {
+				more = true
+				rules[i].compile()
+			}
+		}
+		if !more || ctx.Err() != nil {
+			return
+		}
+	}
+}
+
+func anySeen(seen []uint64, ids []int32) bool {
+	for _, id := range ids {
+		if seen[id>>6]&(1<<(uint(id)&63)) != 0 {
+			return true
+		}
+	}
+	return false
+}
+
+// ruleExpr reads the regex and regex_flag keys of one rule node.
+func ruleExpr(rule *yaml.Node) (expr, flags string) {
+	for i := 0; i+1 < len(rule.Content); i += 2 {
+		switch rule.Content[i].Value {
+		case "regex":
+			expr = rule.Content[i+1].Value
+		case "regex_flag":
+			flags = rule.Content[i+1].Value
+		}
+	}
+	return expr, flags
+}
+
+func sentinelRule(replacementKey string) *yaml.Node {
+	return &yaml.Node{Kind: yaml.MappingNode, Tag: "!!map", Content: []*yaml.Node{
+		{Kind: yaml.ScalarNode, Tag: "!!str", Value: "regex"},
+		{Kind: yaml.ScalarNode, Tag: "!!str", Value: "^"},
+		{Kind: yaml.ScalarNode, Tag: "!!str", Value: replacementKey},
+		{Kind: yaml.ScalarNode, Tag: "!!str", Value: prefilterMiss},
+	}}
+}
+
+// oneRuleParser builds a uaparser.Parser holding only rule (then the
+// sentinel) in the given section.
+func oneRuleParser(section string, rule, sentinel *yaml.Node) (*uaparser.Parser, error) {
+	doc := &yaml.Node{Kind: yaml.MappingNode, Tag: "!!map", Content: []*yaml.Node{
+		{Kind: yaml.ScalarNode, Tag: "!!str", Value: section},
+		{Kind: yaml.SequenceNode, Tag: "!!seq", Content: []*yaml.Node{rule, sentinel}},
+	}}
+	def := uaparser.RegexDefinitions{}
+	if err := doc.Decode(&def); err != nil {
+		return nil, err
+	}
+	return uaparser.New(uaparser.WithRegexDefinitions(def))
+}
+
+// ruleTokens returns the case-folded tokens of which a match of re must
+// contain at least one, or nil when no such set is worth indexing.
+func ruleTokens(re *syntax.Regexp) []string {
+	lits := requiredLiterals(re.Simplify())
+	if lits == nil {
+		return nil
+	}
+	out := make([]string, 0, len(lits))
+	for _, lit := range lits {
+		// RuneError also matches invalid UTF-8 bytes, which the scan keeps
+		// as-is: such a token cannot be looked up.
+		if len(lit) < prefilterMinLiteral || containsRune(lit, utf8.RuneError) {
+			return nil
+		}
+		out = append(out, foldString(string(lit)))
+	}
+	return out
+}
+
+// requiredLiterals returns a set of literals such that every match of re
+// contains at least one of them, or nil if none is known.
+func requiredLiterals(re *syntax.Regexp) [][]rune {
+	switch re.Op {
+	case syntax.OpLiteral:
+		return [][]rune{re.Rune}
+	case syntax.OpCapture:
+		return requiredLiterals(re.Sub[0])
+	case syntax.OpPlus:
+		return requiredLiterals(re.Sub[0])
+	case syntax.OpRepeat:
+		if re.Min >= 1 {
+			return requiredLiterals(re.Sub[0])
+		}
+	case syntax.OpConcat:
+		// Every element must match, so any element's set will do: keep the
+		// one whose shortest literal is longest. Adjacent literals are joined
+		// first, since they must appear together.
+		var best [][]rune
+		var run []rune
+		consider := func(set [][]rune) {
+			if set != nil && (best == nil || betterLiterals(set, best)) {
+				best = set
+			}
+		}
+		for _, sub := range re.Sub {
+			if sub.Op == syntax.OpLiteral {
+				run = append(run, sub.Rune...)
+				continue
+			}
+			if run != nil {
+				consider([][]rune{run})
+				run = nil
+			}
+			consider(requiredLiterals(sub))
+		}
+		if run != nil {
+			consider([][]rune{run})
+		}
+		return best
+	case syntax.OpAlternate:
+		var out [][]rune
+		for _, sub := range re.Sub {
+			set := requiredLiterals(sub)
+			if set == nil {
+				return nil
+			}
+			out = append(out, set...)
+		}
+		if len(out) > prefilterMaxAlternatives {
+			return nil
+		}
+		return out
+	}
+	return nil
+}
+
+func betterLiterals(a, b [][]rune) bool {
+	ma, mb := shortestLiteral(a), shortestLiteral(b)
+	if ma != mb {
+		return ma > mb
+	}
+	return len(a) < len(b)
+}
+
+func shortestLiteral(set [][]rune) int {
+	n := -1
+	for _, lit := range set {
+		if n < 0 || len(lit) < n {
+			n = len(lit)
+		}
+	}
+	return n
+}
+
+func containsRune(rs []rune, r rune) bool {
+	for _, x := range rs {
+		if x == r {
+			return true
+		}
+	}
+	return false
+}
+
+// foldRune maps r to the smallest rune of its simple case-folding orbit, the
+// equivalence (?i) matches under: 'k', 'K' and U+212A all fold to 'K'.
+func foldRune(r rune) rune {
+	if r < utf8.RuneSelf {
+		if 'a' <= r && r <= 'z' {
+			r -= 'a' - 'A'
+		}
+		return r
+	}
+	m := r
+	for f := unicode.SimpleFold(r); f != r; f = unicode.SimpleFold(f) {
+		if f < m {
+			m = f
+		}
+	}
+	return m
+}
+
+func foldString(s string) string {
+	b := make([]byte, 0, len(s))
+	for _, r := range s {
+		b = utf8.AppendRune(b, foldRune(r))
+	}
+	return string(b)
+}
+
+// tokenMatcher is an Aho-Corasick automaton over case-folded token bytes.
+type tokenMatcher struct {
+	nodes  []acNode
+	ntoken int
+}
+
+type acNode struct {
+	labels []byte // sorted
+	next   []int32
+	fail   int32
+	out    []int32 // tokens ending here, including via fail links
+}
+
+func newTokenMatcher(tokens []string) *tokenMatcher {
+	m := &tokenMatcher{nodes: []acNode{{}}, ntoken: len(tokens)}
+	for id, tok := range tokens {
+		n := int32(0)
+		for i := 0; i < len(tok); i++ {
+			c, ok := m.child(n, tok[i])
+			if !ok {
+				c = int32(len(m.nodes))
+				m.nodes = append(m.nodes, acNode{})
+				m.addChild(n, tok[i], c)
+			}
+			n = c
+		}
+		m.nodes[n].out = append(m.nodes[n].out, int32(id))
+	}
+	// Breadth-first fail links; a node's outputs absorb its fail target's.
+	queue := append([]int32(nil), m.nodes[0].next...)
+	for len(queue) > 0 {
+		n := queue[0]
+		queue = queue[1:]
+		for i, b := range m.nodes[n].labels {
+			c := m.nodes[n].next[i]
+			f := m.nodes[n].fail
+			for {
+				if t, ok := m.child(f, b); ok && t != c {
+					m.nodes[c].fail = t
+					break
+				}
+				if f == 0 {
+					break
+				}
+				f = m.nodes[f].fail
+			}
+			m.nodes[c].out = append(m.nodes[c].out, m.nodes[m.nodes[c].fail].out...)
+			queue = append(queue, c)
+		}
+	}
+	return m
+}
+
+func (m *tokenMatcher) child(n int32, b byte) (int32, bool) {
+	labels := m.nodes[n].labels
+	i := sort.Search(len(labels), func(i int) bool { return labels[i] >= b })
+	if i < len(labels) && labels[i] == b {
+		return m.nodes[n].next[i], true
+	}
+	return 0, false
+}
+
+func (m *tokenMatcher) addChild(n int32, b byte, c int32) {
+	node := &m.nodes[n]
+	i := sort.Search(len(node.labels), func(i int) bool { return node.labels[i] >= b })
+	node.labels = append(node.labels, 0)
+	copy(node.labels[i+1:], node.labels[i:])
+	node.labels[i] = b
+	node.next = append(node.next, 0)
+	copy(node.next[i+1:], node.next[i:])
+	node.next[i] = c
+}
+
+// scan folds s rune by rune (invalid bytes pass through unchanged) and
+// returns the bitset of tokens it contains.
+func (m *tokenMatcher) scan(s string) []uint64 {
+	seen := make([]uint64, (m.ntoken+63)/64)
+	n := int32(0)
+	step := func(b byte) {
+		for {
+			if c, ok := m.child(n, b); ok {
+				n = c
+				break
+			}
+			if n == 0 {
+				break
+			}
+			n = m.nodes[n].fail
+		}
+		for _, id := range m.nodes[n].out {
+			seen[id>>6] |= 1 << (uint(id) & 63)
+		}
+	}
+	var buf [utf8.UTFMax]byte
+	for i := 0; i < len(s); {
+		if c := s[i]; c < utf8.RuneSelf {
+			if 'a' <= c && c <= 'z' {
+				c -= 'a' - 'A'
+			}
+			step(c)
+			i++
+			continue
+		}
+		r, size := utf8.DecodeRuneInString(s[i:])
+		if r == utf8.RuneError && size == 1 {
+			step(s[i])
+			i++
+			continue
+		}
+		for _, b := range buf[:utf8.EncodeRune(buf[:], foldRune(r))] {
+			step(b)
+		}
+		i += size
+	}
+	return seen
+}
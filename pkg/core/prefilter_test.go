@@ -0,0 +1,329 @@
+package core
+
+import (
+	"context"
+	"encoding/json"
+	"fmt"
+	"os"
+	"path/filepath"
+	"reflect"
+	"regexp/syntax"
+	"testing"
+
+	"github.com/ua-parser/uap-go/uaparser"
+	"gopkg.in/yaml.v3"
+)
+
+func TestRuleTokens(t *testing.T) {
+	tests := []struct {
+		expr string
+		want []string
+	}{
+		{`(Firefox)/(\d+)\.(\d+)`, []string{"FIREFOX"}},
+		{`Chrome/(\d+)\.(\d+)`, []string{"CHROME/"}},
+		{`(?i)crawler`, []string{"CRAWLER"}},
+		{`(Fennec|Firefox)/(\d+)`, []string{"ENNEC", "IREFOX"}},
+		{`(?:Kindle|Silk)(?:/(\d+))?`, []string{"KINDLE", "SILK"}},
+		{`(a|bcd)efg`, []string{"EFG"}},
+		{`straße`, []string{foldString("straße")}},
+		{`(?:SM-)?(G9\d{2})x*`, nil}, // "G9" is too short to index
+		{`(a|bcd)`, nil},
+		{`.*`, nil},
+		{`x?yz`, nil},
+	}
+	for _, tt := range tests {
+		re, err := syntax.Parse(tt.expr, syntax.Perl)
+		if err != nil {
+			t.Fatalf("parse %q: %v", tt.expr, err)
+		}
+		if got := ruleTokens(re); !reflect.DeepEqual(got, tt.want) {
+			t.Errorf("ruleTokens(%q) = %q, want %q", tt.expr, got, tt.want)
+		}
+	}
+}
+
+func TestFoldMatchesRegexpCaseFolding(t *testing.T) {
+	// (?i) treats these as equal; the scan must too.
+	pairs := [][2]string{{"k", "\u212a"}, {"s", "\u017f"}, {"Σ", "ς"}, {"ÉCLAIR", "éclair"}}
+	for _, p := range pairs {
+		if foldString(p[0]) != foldString(p[1]) {
+			t.Errorf("foldString(%q)=%q != foldString(%q)=%q", p[0], foldString(p[0]), p[1], foldString(p[1]))
+		}
+	}
+}
+
+func TestTokenMatcherScan(t *testing.T) {
+	tokens := []string{"HE", "SHE", "HIS", "HERS", "CHROME/"}
+	m := newTokenMatcher(tokens)
+	seen := m.scan("ushers in Chrome/126 \xff")
+	for id, want := range []bool{true, true, false, true, true} {
+		if got := seen[0]&(1<<uint(id)) != 0; got != want {
+			t.Errorf("token %q: seen=%v, want %v", tokens[id], got, want)
+		}
+	}
+}
+
+// corpusEntry is one tools/compare/corpus.json case.
+type corpusEntry struct {
+	UA      string            `json:"ua"`
+	Headers map[string]string `json:"headers"`
+}
+
+func readCorpus(t testing.TB) []corpusEntry {
+	var corpus []corpusEntry
+	data, err := os.ReadFile("../../tools/compare/corpus.json")
+	if err != nil {
+		t.Fatalf("read corpus: %v", err)
+	}
+	if err := json.Unmarshal(data, &corpus); err != nil {
+		t.Fatalf("parse corpus: %v", err)
+	}
+	return corpus
+}
+
+// prefilterUAs is the parity set: the comparison corpus, the benchmark UAs
+// and edge cases the token scan must not miss.
+func prefilterUAs(t testing.TB) []string {
+	uas := append([]string(nil), benchUAs...)
+	for _, c := range readCorpus(t) {
+		uas = append(uas, c.UA)
+	}
+	return append(uas,
+		"",
+		"Mozilla/5.0 (Linux; Android 10; K) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/138.0.0.0 Mobile Safari/537.36",
+		"Mozilla/5.0 (Linux; Android 12; CUBOT KINGKONG 7) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Mobile Safari/537.36",
+		"MOZILLA/5.0 (WINDOWS NT 10.0) FIREFOX/115.0",
+		"Mozilla/5.0 (compatible; \xffbingbot/2.0; +http://www.bing.com/bingbot.htm)",
+		"Opera/9.80 (J2ME/MIDP; Opera Mini/9.80 (S60; SymbOS; Opera Mobi/23.348; U; en) Presto/2.5.25 Version/10.54",
+	)
+}
+
+// uapCoreUAs returns every User-Agent of uap-core's own test suite (the
+// tests/test_*.yaml and test_resources/*.yaml cases) from the checkout at
+// UAP_CORE_DIR, deduplicated; without it the test is skipped. CI checks out
+// the revision in resources/UAP_CORE_SHA.
+func uapCoreUAs(t *testing.T) []string {
+	dir := os.Getenv("UAP_CORE_DIR")
+	if dir == "" {
+		t.Skip("UAP_CORE_DIR not set (path to a uap-core checkout)")
+	}
+	var files []string
+	for _, pattern := range []string{"tests/test_*.yaml", "test_resources/*.yaml"} {
+		matches, err := filepath.Glob(filepath.Join(dir, pattern))
+		if err != nil {
+			t.Fatal(err)
+		}
+		files = append(files, matches...)
+	}
+	if len(files) == 0 {
+		t.Fatalf("no uap-core test files under %s", dir)
+	}
+	seen := map[string]bool{}
+	var uas []string
+	for _, file := range files {
+		data, err := os.ReadFile(file)
+		if err != nil {
+			t.Fatalf("read %s: %v", file, err)
+		}
+		var suite struct {
+			TestCases []struct {
+				UA string `yaml:"user_agent_string"`
+			} `yaml:"test_cases"`
+		}
+		if err := yaml.Unmarshal(data, &suite); err != nil {
+			t.Fatalf("parse %s: %v", file, err)
+		}
+		for _, c := range suite.TestCases {
+			if !seen[c.UA] {
+				seen[c.UA] = true
+				uas = append(uas, c.UA)
+			}
+		}
+	}
+	t.Logf("%d distinct User-Agents from %d uap-core test files", len(uas), len(files))
+	return uas
+}
+
+// sameRegexStage reports whether two uap-go results are equal, with a
+// description of the difference when they are not.
+func sameRegexStage(got, want *uaparser.Client) (bool, string) {
+	if reflect.DeepEqual(want.UserAgent, got.UserAgent) &&
+		reflect.DeepEqual(want.Os, got.Os) &&
+		reflect.DeepEqual(want.Device, got.Device) {
+		return true, ""
+	}
+	return false, fmt.Sprintf("\n got  %+v %+v %+v\n want %+v %+v %+v",
+		got.UserAgent, got.Os, got.Device, want.UserAgent, want.Os, want.Device)
+}
+
+// checkCorpusParity compares every comparison-corpus case, with its Client
+// Hints headers, through the whole pipeline.
+func checkCorpusParity(t *testing.T, name string, full, p *Parser) {
+	t.Helper()
+	for _, c := range readCorpus(t) {
+		if w, g := full.ParseFull(c.UA, c.Headers, nil), p.ParseFull(c.UA, c.Headers, nil); !reflect.DeepEqual(w, g) {
+			t.Errorf("%s, UA=%q headers=%v:\n got  %+v\n want %+v", name, c.UA, c.Headers, g, w)
+		}
+	}
+}
+
+func TestRegexPrefilterMatchesFullParser(t *testing.T) {
+	full := newTestParser(t, 0)
+	filtered, err := New(Config{DisableAutoUpdate: true, RegexPrefilter: true})
+	if err != nil {
+		t.Fatalf("Failed to create parser: %v", err)
+	}
+	defer filtered.Close()
+	if filtered.prefilter == nil {
+		t.Fatal("RegexPrefilter=true built no prefilter")
+	}
+
+	for _, ua := range prefilterUAs(t) {
+		if ok, diff := sameRegexStage(filtered.prefilter.Parse(ua), full.uap.Parse(ua)); !ok {
+			t.Errorf("UA=%q:%s", ua, diff)
+		}
+		if w, g := full.Parse(ua, nil), filtered.Parse(ua, nil); !reflect.DeepEqual(w, g) {
+			t.Errorf("UA=%q: filtered result %+v != full %+v", ua, g, w)
+		}
+	}
+	checkCorpusParity(t, "prefilter", full, filtered)
+}
+
+// BenchmarkParseUncached measures the regex stage on the comparison corpus
+// with the cache off, with and without the prefilter.
+func BenchmarkParseUncached(b *testing.B) {
+	uas := prefilterUAs(b)
+	for _, on := range []bool{false, true} {
+		name := "full"
+		if on {
+			name = "prefilter"
+		}
+		b.Run(name, func(b *testing.B) {
+			p, err := New(Config{DisableAutoUpdate: true, RegexPrefilter: on})
+			if err != nil {
+				b.Fatalf("Failed to create parser: %v", err)
+			}
+			defer p.Close()
+			b.ReportAllocs()
+			b.ResetTimer()
+			for i := 0; i < b.N; i++ {
+				p.Parse(uas[i%len(uas)], nil)
+			}
+		})
+	}
+}
+
+func TestLazyRegexesMatchFullParser(t *testing.T) {
+	full := newTestParser(t, 0)
+	for _, background := range []bool{false, true} {
+		lazy, err := New(Config{DisableAutoUpdate: true, LazyRegexes: true, CompileInBackground: background})
+		if err != nil {
+			t.Fatalf("Failed to create parser: %v", err)
+		}
+		if lazy.uap != nil || lazy.prefilter == nil {
+			t.Fatalf("LazyRegexes built uap=%v prefilter=%v, want only a prefilter", lazy.uap, lazy.prefilter)
+		}
+		for _, ua := range prefilterUAs(t) {
+			if w, g := full.Parse(ua, nil), lazy.Parse(ua, nil); !reflect.DeepEqual(w, g) {
+				t.Errorf("background=%v, UA=%q: lazy result %+v != full %+v", background, ua, g, w)
+			}
+		}
+		checkCorpusParity(t, fmt.Sprintf("lazy background=%v", background), full, lazy)
+		if !background {
+			compiled := 0
+			for _, rules := range lazy.prefilter.sections {
+				for _, r := range rules {
+					if r.re != nil {
+						compiled++
+					}
+				}
+			}
+			if total := len(lazy.prefilter.sections[0]) + len(lazy.prefilter.sections[1]) + len(lazy.prefilter.sections[2]); compiled >= total {
+				t.Errorf("on-demand mode compiled all %d rules for %d UAs", total, len(prefilterUAs(t)))
+			}
+		}
+		lazy.Close()
+	}
+}
+
+// A lazily indexed rule that fails to compile is logged and never matches,
+// where the eager parser would have refused the DB: every embedded rule must
+// compile.
+func TestLazyRegexesCompileEveryRule(t *testing.T) {
+	lazy, err := New(Config{DisableAutoUpdate: true, LazyRegexes: true})
+	if err != nil {
+		t.Fatalf("Failed to create parser: %v", err)
+	}
+	defer lazy.Close()
+	lazy.prefilter.compileAll(context.Background())
+	for s, rules := range lazy.prefilter.sections {
+		for i, r := range rules {
+			if r.err != nil || r.re == nil || r.one == nil {
+				t.Errorf("%s[%d] %q: not compiled: %v", prefilterSections[s], i, r.expr, r.err)
+			}
+		}
+	}
+}
+
+// TestRegexStagesMatchOnUAPCoreSuite runs uap-core's whole test corpus
+// through the prefilter and both lazy modes and requires uap-go's own
+// result for every UA. The background pass compiles while the parses run.
+func TestRegexStagesMatchOnUAPCoreSuite(t *testing.T) {
+	uas := uapCoreUAs(t)
+	full := newTestParser(t, 0).uap
+	want := make([]*uaparser.Client, len(uas))
+	for i, ua := range uas {
+		want[i] = full.Parse(ua)
+	}
+	for _, v := range []struct {
+		name string
+		cfg  Config
+	}{
+		{"prefilter", Config{DisableAutoUpdate: true, RegexPrefilter: true}},
+		{"lazy", Config{DisableAutoUpdate: true, LazyRegexes: true}},
+		{"lazy-background", Config{DisableAutoUpdate: true, LazyRegexes: true, CompileInBackground: true}},
+	} {
+		t.Run(v.name, func(t *testing.T) {
+			p, err := New(v.cfg)
+			if err != nil {
+				t.Fatalf("Failed to create parser: %v", err)
+			}
+			defer p.Close()
+			mismatches := 0
+			for i, ua := range uas {
+				if ok, diff := sameRegexStage(p.prefilter.Parse(ua), want[i]); !ok {
+					if mismatches++; mismatches <= 20 {
+						t.Errorf("UA=%q:%s", ua, diff)
+					}
+				}
+			}
+			if mismatches > 0 {
+				t.Errorf("%d of %d UAs differ from uap-go", mismatches, len(uas))
+			}
+		})
+	}
+}
+
+// BenchmarkNew measures parser construction: every regex compiled up front,
+// up front plus the prefilter index, or indexed only (LazyRegexes).
+func BenchmarkNew(b *testing.B) {
+	for _, v := range []struct {
+		name string
+		cfg  Config
+	}{
+		{"eager", Config{DisableAutoUpdate: true}},
+		{"prefilter", Config{DisableAutoUpdate: true, RegexPrefilter: true}},
+		{"lazy", Config{DisableAutoUpdate: true, LazyRegexes: true}},
+	} {
+		b.Run(v.name, func(b *testing.B) {
+			b.ReportAllocs()
+			for i := 0; i < b.N; i++ {
+				p, err := New(v.cfg)
+				if err != nil {
+					b.Fatalf("Failed to create parser: %v", err)
+				}
+				p.Close()
+			}
+		})
+	}
+}
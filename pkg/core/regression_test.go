@@ -34,6 +34,26 @@ func TestCacheKeyIncludesMobileHint(t *testing.T) {
 	}
 }
 
+// A header sent under two spellings must resolve the same way for the cache
+// key and the pipeline; previously each picked one in map iteration order,
+// so a result computed from ?0 could be cached under the key of ?1.
+func TestCacheKeyAndPipelineAgreeOnDuplicateHeaders(t *testing.T) {
+	p := newTestParser(t, 100)
+
+	ua := "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/138.0.0.0 Safari/537.36"
+	both := map[string]string{"Sec-CH-UA-Mobile": "?0", "sec-ch-ua-mobile": "?1"}
+
+	for i := 0; i < 50; i++ {
+		p.cache.Purge()
+		if res := p.Parse(ua, both); res.Device.Type != "desktop" {
+			t.Fatalf("run %d: both spellings: expected the bytewise smallest name (?0, desktop), got %s", i, res.Device.Type)
+		}
+		if res := p.Parse(ua, map[string]string{"sec-ch-ua-mobile": "?1"}); res.Device.Type != "mobile" {
+			t.Fatalf("run %d: ?1 alone after both spellings: expected mobile, got %s", i, res.Device.Type)
+		}
+	}
+}
+
 // Android Chromium families ("Chrome Mobile", "Edge Mobile"...) must match the
 // CH brands; previously the full-version-list was dead code for all mobile
 // Chromium traffic — exactly where the UA version is frozen.
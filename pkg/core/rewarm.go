@@ -0,0 +1,75 @@
+package core
+
+import (
+	"log"
+
+	"github.com/ua-parser/uap-go/uaparser"
+)
+
+// Hot-swap re-warming (Config.RewarmEntries). Without it a swap purges the
+// cache and every hot UA misses at the same moment. With it, the swap first
+// re-parses the hottest keys against the incoming resources while the old
+// generation keeps serving, then installs resources, generation bump, purge
+// and precomputed entries in one critical section.
+
+// rewarmEntry is one precomputed result for the incoming generation.
+type rewarmEntry struct {
+	hash cacheKey
+	cacheEntry
+}
+
+// prepareRewarm re-parses up to Config.RewarmEntries of the most recently
+// used cache keys against the given resources, without touching the cache.
+// gen is the generation the keys were taken from; installGeneration drops
+// the entries if another swap landed in the meantime.
+func (p *Parser) prepareRewarm(uap *uaparser.Parser, prefilter *regexPrefilter, cc *compiledCorrections) (warm []rewarmEntry, gen uint64) {
+	gen = p.gen.Load()
+	n := p.config.RewarmEntries
+	if n <= 0 || p.cache == nil {
+		return nil, gen
+	}
+	keys := p.cache.Keys()
+	warm = make([]rewarmEntry, 0, min(n, len(keys)))
+	for i := len(keys) - 1; i >= 0 && len(warm) < n; i-- {
+		if p.ctx.Err() != nil {
+			return nil, gen
+		}
+		ua, headers, signals, fields, ok := parseCacheKey(keys[i])
+		if !ok {
+			continue
+		}
+		res := p.computeResultWith(uap, prefilter, ua, headers, signals, cc, fields)
+		warm = append(warm, rewarmEntry{
+			hash:       p.keySeeds.hashMap(ua, headers, signals, fields),
+			cacheEntry: cacheEntry{key: keys[i], res: res},
+		})
+	}
+	return warm, gen
+}
+
+// installGeneration makes new resources live: swap stores them, then the
+// generation is bumped and the cache purged and refilled with warm, all
+// under the write lock. Uncached parses arriving meanwhile wait in
+// regexStage and then run against the new resources; a parse that started
+// earlier sees the bumped generation and does not cache its result. warm is
+// added hottest-last so the LRU keeps the same recency order.
+func (p *Parser) installGeneration(swap func(), warm []rewarmEntry, gen uint64) {
+	p.mu.Lock()
+	defer p.mu.Unlock()
+	swap()
+	if p.gen.Load() != gen {
+		warm = nil // computed alongside resources another swap replaced
+	}
+	p.gen.Add(1)
+	if p.cache == nil {
+		return
+	}
+	p.cache.Purge()
+	for i := len(warm) - 1; i >= 0; i-- {
+		e := warm[i].cacheEntry
+		p.cache.Add(warm[i].hash, &e)
+	}
+	if len(warm) > 0 {
+		log.Printf("Re-warmed %d cache entries for the new generation", len(warm))
+	}
+}
@@ -0,0 +1,78 @@
+package core
+
+import "testing"
+
+const rewarmRules = `
+schema_version: 1
+version: "rewarm-test"
+rules:
+  - id: rewarm-rule
+    match: {ua_contains: "rewarmprobe/"}
+    set: {browser_name: "RewarmProbe"}
+    tests: [{ua: "x rewarmprobe/1", expect: {browser.name: "RewarmProbe"}}]
+`
+
+func TestRewarmAfterCorrectionsSwap(t *testing.T) {
+	p, err := New(Config{DisableAutoUpdate: true, LRUCacheSize: 100, RewarmEntries: 2})
+	if err != nil {
+		t.Fatalf("Failed to create parser: %v", err)
+	}
+	defer p.Close()
+
+	probe := "Mozilla/5.0 rewarmprobe/2"
+	p.Parse(benchUAs[0], nil) // coldest: falls outside RewarmEntries
+	p.Parse(benchUAs[1], nil)
+	p.Parse(probe, nil)
+	if res := p.Parse(probe, nil); res.Browser.Name == "RewarmProbe" {
+		t.Fatal("probe matched before the rule was applied")
+	}
+
+	if err := p.ApplyCorrectionsYAML([]byte(rewarmRules)); err != nil {
+		t.Fatalf("ApplyCorrectionsYAML: %v", err)
+	}
+
+	if n := p.cache.Len(); n != 2 {
+		t.Errorf("cache holds %d entries after the swap, want the 2 re-warmed ones", n)
+	}
+	cached, ok := p.cachedResult(probe, nil, nil, AllFields)
+	if !ok {
+		t.Fatal("hottest key was not re-warmed")
+	}
+	if cached.Browser.Name != "RewarmProbe" {
+		t.Errorf("re-warmed entry computed against the old rules: browser %q", cached.Browser.Name)
+	}
+	if _, ok := p.cachedResult(benchUAs[0], nil, nil, AllFields); ok {
+		t.Error("coldest key was re-warmed beyond RewarmEntries")
+	}
+}
+
+func TestRewarmDroppedWhenAnotherSwapLanded(t *testing.T) {
+	p, err := New(Config{DisableAutoUpdate: true, LRUCacheSize: 100, RewarmEntries: 10})
+	if err != nil {
+		t.Fatalf("Failed to create parser: %v", err)
+	}
+	defer p.Close()
+	p.Parse(benchUAs[0], nil)
+
+	uap, prefilter := p.regexStage()
+	warm, gen := p.prepareRewarm(uap, prefilter, p.corrections.Load())
+	if len(warm) != 1 {
+		t.Fatalf("prepared %d entries, want 1", len(warm))
+	}
+	p.gen.Add(1) // a concurrent swap
+	p.installGeneration(func() {}, warm, gen)
+	if n := p.cache.Len(); n != 0 {
+		t.Errorf("stale precomputed entries installed: cache holds %d", n)
+	}
+}
+
+func TestRewarmOffPurgesAsBefore(t *testing.T) {
+	p := newTestParser(t, 100)
+	p.Parse(benchUAs[0], nil)
+	if err := p.ApplyCorrectionsYAML([]byte(rewarmRules)); err != nil {
+		t.Fatalf("ApplyCorrectionsYAML: %v", err)
+	}
+	if n := p.cache.Len(); n != 0 {
+		t.Errorf("cache holds %d entries after a swap without RewarmEntries", n)
+	}
+}
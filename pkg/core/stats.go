@@ -0,0 +1,217 @@
+package core
+
+import (
+	"math/bits"
+	"sync"
+	"sync/atomic"
+	"time"
+)
+
+// Stats is a point-in-time snapshot of a Parser's counters (see
+// Parser.Stats). Counters are cumulative since New; hot-swaps do not reset
+// them. Cache, latency and correction-hit counters are collected only with
+// Config.CollectStats; the rest is always maintained.
+type Stats struct {
+	// Collecting reports whether Config.CollectStats is on; when false the
+	// per-parse sections below stay zero.
+	Collecting bool `json:"collecting"`
+	// Generation is the hot-swap generation: it increments on every regex
+	// or correction swap, each of which purges the cache.
+	Generation uint64 `json:"generation"`
+
+	Cache        CacheStats        `json:"cache"`
+	ParseLatency ParseLatencyStats `json:"parse_latency"`
+	Corrections  CorrectionStats   `json:"corrections"`
+	Updates      UpdateStats       `json:"updates"`
+}
+
+// CacheStats counts lookups in the engine's result cache. Size and Capacity
+// are always reported; Capacity is 0 when the cache is off or bounded by
+// bytes alone. Bytes and MaxBytes are the estimated memory held and the
+// budget of a byte-budgeted cache (Config.CacheMaxBytes), 0 otherwise.
+type CacheStats struct {
+	Hits      uint64 `json:"hits"`
+	Misses    uint64 `json:"misses"`
+	Evictions uint64 `json:"evictions"`
+	Size      int    `json:"size"`
+	Capacity  int    `json:"capacity"`
+	Bytes     int64  `json:"bytes"`
+	MaxBytes  int64  `json:"max_bytes"`
+}
+
+// ParseLatencyStats splits Parse latency by cache outcome. With the cache
+// off every parse is a miss.
+type ParseLatencyStats struct {
+	Hit  LatencyHistogram `json:"hit"`
+	Miss LatencyHistogram `json:"miss"`
+}
+
+// LatencyHistogram is a cumulative latency distribution. Counts[i] is the
+// number of samples below BoundsNanos[i] (and at or above BoundsNanos[i-1]);
+// the last count, one past the bounds, holds everything slower.
+type LatencyHistogram struct {
+	Count       uint64   `json:"count"`
+	SumNanos    uint64   `json:"sum_ns"`
+	BoundsNanos []uint64 `json:"bounds_ns"`
+	Counts      []uint64 `json:"counts"`
+}
+
+// CorrectionStats describes the active correction set. Hits counts rule
+// applications (one parse can fire several rules); RuleHits breaks them down
+// by rule id, listing only rules that fired. Both restart when a new rule set
+// is swapped in.
+type CorrectionStats struct {
+	Version  string            `json:"version"`
+	Rules    int               `json:"rules"`
+	Hits     uint64            `json:"hits"`
+	RuleHits map[string]uint64 `json:"rule_hits,omitempty"`
+}
+
+// UpdateStats reports the results of the background updater and of host
+// corrections pushes (ApplyCorrectionsYAML).
+type UpdateStats struct {
+	Regexes     UpdateCounters `json:"regexes"`
+	Corrections UpdateCounters `json:"corrections"`
+}
+
+// UpdateCounters counts one resource's update attempts by outcome. LastError
+// is the most recent failure, kept after later successes; LastUpdated is the
+// RFC 3339 time of the last applied update, empty before the first.
+type UpdateCounters struct {
+	Updated     uint64 `json:"updated"`
+	NotModified uint64 `json:"not_modified"`
+	Failed      uint64 `json:"failed"`
+	LastError   string `json:"last_error,omitempty"`
+	LastUpdated string `json:"last_updated,omitempty"`
+}
+
+// latencyBuckets bucket i holds samples below 512ns << i: from 0.5µs up to
+// ~8.4ms in powers of two, plus one overflow bucket.
+const latencyBuckets = 15
+
+var latencyBounds = func() []uint64 {
+	b := make([]uint64, latencyBuckets)
+	for i := range b {
+		b[i] = 512 << uint(i)
+	}
+	return b
+}()
+
+// latencyHistogram is the lock-free accumulator behind LatencyHistogram.
+type latencyHistogram struct {
+	count  atomic.Uint64
+	sum    atomic.Uint64
+	counts [latencyBuckets + 1]atomic.Uint64
+}
+
+func (h *latencyHistogram) observe(d time.Duration) {
+	ns := uint64(d)
+	if d < 0 {
+		ns = 0
+	}
+	i := bits.Len64(ns >> 9)
+	if i > latencyBuckets {
+		i = latencyBuckets
+	}
+	h.counts[i].Add(1)
+	h.sum.Add(ns)
+	h.count.Add(1)
+}
+
+func (h *latencyHistogram) snapshot() LatencyHistogram {
+	s := LatencyHistogram{
+		Count:       h.count.Load(),
+		SumNanos:    h.sum.Load(),
+		BoundsNanos: latencyBounds,
+		Counts:      make([]uint64, len(h.counts)),
+	}
+	for i := range h.counts {
+		s.Counts[i] = h.counts[i].Load()
+	}
+	return s
+}
+
+// parserStats holds a Parser's counters. The per-parse fields are touched
+// only when Config.CollectStats is set.
+type parserStats struct {
+	cacheHits      atomic.Uint64
+	cacheMisses    atomic.Uint64
+	cacheEvictions atomic.Uint64
+	hitLatency     latencyHistogram
+	missLatency    latencyHistogram
+
+	mu          sync.Mutex
+	regexes     UpdateCounters
+	corrections UpdateCounters
+}
+
+// updateOutcome is one update attempt's result for recordUpdate.
+type updateOutcome int
+
+const (
+	updateApplied updateOutcome = iota
+	updateNotModified
+	updateFailed
+)
+
+func (s *parserStats) recordUpdate(c *UpdateCounters, outcome updateOutcome, err error) {
+	s.mu.Lock()
+	defer s.mu.Unlock()
+	switch outcome {
+	case updateApplied:
+		c.Updated++
+		c.LastUpdated = time.Now().UTC().Format(time.RFC3339)
+	case updateNotModified:
+		c.NotModified++
+	case updateFailed:
+		c.Failed++
+		if err != nil {
+			c.LastError = err.Error()
+		}
+	}
+}
+
+// Stats returns a snapshot of the parser's counters. Safe to call from any
+// goroutine; each counter is read atomically, the snapshot as a whole is
+// not (parses running meanwhile may be partly counted).
+func (p *Parser) Stats() Stats {
+	s := Stats{
+		Collecting: p.config.CollectStats,
+		Generation: p.gen.Load(),
+		Cache: CacheStats{
+			Hits:      p.stats.cacheHits.Load(),
+			Misses:    p.stats.cacheMisses.Load(),
+			Evictions: p.stats.cacheEvictions.Load(),
+		},
+		ParseLatency: ParseLatencyStats{
+			Hit:  p.stats.hitLatency.snapshot(),
+			Miss: p.stats.missLatency.snapshot(),
+		},
+	}
+	if p.cache != nil {
+		s.Cache.Size = p.cache.Len()
+		s.Cache.Capacity = p.config.LRUCacheSize
+		if w, ok := p.cache.(*weightedCache); ok {
+			s.Cache.Bytes = w.Bytes()
+			s.Cache.MaxBytes = w.maxBytes
+		}
+	}
+	if cc := p.corrections.Load(); cc != nil {
+		s.Corrections.Version = cc.version
+		s.Corrections.Rules = len(cc.rules)
+		for i := range cc.hits {
+			if n := cc.hits[i].Load(); n > 0 {
+				if s.Corrections.RuleHits == nil {
+					s.Corrections.RuleHits = make(map[string]uint64)
+				}
+				s.Corrections.RuleHits[cc.rules[i].id] += n
+				s.Corrections.Hits += n
+			}
+		}
+	}
+	p.stats.mu.Lock()
+	s.Updates.Regexes = p.stats.regexes
+	s.Updates.Corrections = p.stats.corrections
+	p.stats.mu.Unlock()
+	return s
+}
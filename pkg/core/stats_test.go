@@ -0,0 +1,134 @@
+package core
+
+import (
+	"testing"
+	"time"
+)
+
+func TestStatsCountsCacheAndLatency(t *testing.T) {
+	p, err := New(Config{DisableAutoUpdate: true, LRUCacheSize: 1, CollectStats: true})
+	if err != nil {
+		t.Fatalf("Failed to create parser: %v", err)
+	}
+	defer p.Close()
+
+	p.Parse(benchUAs[0], nil) // miss
+	p.Parse(benchUAs[0], nil) // hit
+	p.Parse(benchUAs[1], nil) // miss, evicts benchUAs[0]
+
+	s := p.Stats()
+	if !s.Collecting || s.Cache.Hits != 1 || s.Cache.Misses != 2 || s.Cache.Evictions != 1 ||
+		s.Cache.Size != 1 || s.Cache.Capacity != 1 {
+		t.Errorf("cache stats = %+v (collecting=%v)", s.Cache, s.Collecting)
+	}
+	if s.ParseLatency.Hit.Count != 1 || s.ParseLatency.Miss.Count != 2 {
+		t.Errorf("latency counts hit=%d miss=%d, want 1 and 2", s.ParseLatency.Hit.Count, s.ParseLatency.Miss.Count)
+	}
+	var total uint64
+	for _, n := range s.ParseLatency.Miss.Counts {
+		total += n
+	}
+	if total != 2 || len(s.ParseLatency.Miss.Counts) != len(s.ParseLatency.Miss.BoundsNanos)+1 {
+		t.Errorf("miss histogram %+v does not add up", s.ParseLatency.Miss)
+	}
+}
+
+func TestStatsOffLeavesParseCountersZero(t *testing.T) {
+	p := newTestParser(t, 10)
+	p.Parse(benchUAs[0], nil)
+	p.Parse(benchUAs[0], nil)
+	s := p.Stats()
+	if s.Collecting || s.Cache.Hits != 0 || s.ParseLatency.Miss.Count != 0 {
+		t.Errorf("stats collected without CollectStats: %+v", s)
+	}
+	if s.Cache.Size != 1 || s.Corrections.Rules == 0 {
+		t.Errorf("always-on fields missing: %+v", s)
+	}
+}
+
+func TestStatsCorrectionHitsAndUpdates(t *testing.T) {
+	p, err := New(Config{DisableAutoUpdate: true, CollectStats: true})
+	if err != nil {
+		t.Fatalf("Failed to create parser: %v", err)
+	}
+	defer p.Close()
+
+	payload := `
+schema_version: 1
+version: "stats-test"
+rules:
+  - id: stats-rule
+    match: {ua_contains: "statsprobe/"}
+    set: {browser_name: "StatsProbe"}
+    tests: [{ua: "x statsprobe/1", expect: {browser.name: "StatsProbe"}}]
+`
+	gen := p.Stats().Generation
+	if err := p.ApplyCorrectionsYAML([]byte(payload)); err != nil {
+		t.Fatalf("ApplyCorrectionsYAML: %v", err)
+	}
+	if err := p.ApplyCorrectionsYAML([]byte("rules: [")); err == nil {
+		t.Fatal("malformed corrections were accepted")
+	}
+	if s := p.Stats(); s.Corrections.Hits != 0 {
+		t.Errorf("self-tests were counted as hits: %+v", s.Corrections)
+	}
+
+	p.Parse("Mozilla/5.0 statsprobe/2", nil)
+	p.Parse("Mozilla/5.0 statsprobe/3", nil)
+	p.Parse(benchUAs[0], nil)
+
+	s := p.Stats()
+	if s.Generation != gen+1 {
+		t.Errorf("generation = %d, want %d", s.Generation, gen+1)
+	}
+	if s.Corrections.Version != "stats-test" || s.Corrections.Hits != 2 || s.Corrections.RuleHits["stats-rule"] != 2 {
+		t.Errorf("correction stats = %+v", s.Corrections)
+	}
+	c := s.Updates.Corrections
+	if c.Updated != 1 || c.Failed != 1 || c.LastError == "" || c.LastUpdated == "" {
+		t.Errorf("correction update counters = %+v", c)
+	}
+	if _, err := time.Parse(time.RFC3339, c.LastUpdated); err != nil {
+		t.Errorf("last_updated %q: %v", c.LastUpdated, err)
+	}
+}
+
+func TestLatencyHistogramBuckets(t *testing.T) {
+	var h latencyHistogram
+	for _, d := range []time.Duration{0, 511, 512, 1023, 1024, time.Hour} {
+		h.observe(d)
+	}
+	s := h.snapshot()
+	want := map[int]uint64{0: 2, 1: 2, 2: 1, latencyBuckets: 1}
+	for i, n := range s.Counts {
+		if n != want[i] {
+			t.Errorf("bucket %d (< %v) = %d, want %d", i, s.BoundsNanos[min(i, len(s.BoundsNanos)-1)], n, want[i])
+		}
+	}
+}
+
+// BenchmarkParseStats measures the CollectStats overhead on cache hits, the
+// path where it is proportionally largest.
+func BenchmarkParseStats(b *testing.B) {
+	for _, on := range []bool{false, true} {
+		name := "off"
+		if on {
+			name = "on"
+		}
+		b.Run(name, func(b *testing.B) {
+			p, err := New(Config{DisableAutoUpdate: true, LRUCacheSize: 1000, CollectStats: on})
+			if err != nil {
+				b.Fatalf("Failed to create parser: %v", err)
+			}
+			defer p.Close()
+			b.ReportAllocs()
+			b.RunParallel(func(pb *testing.PB) {
+				i := 0
+				for pb.Next() {
+					p.Parse(benchUAs[i%len(benchUAs)], nil)
+					i++
+				}
+			})
+		})
+	}
+}
@@ -9,6 +9,59 @@ type Config struct {
 	UpdateInterval    string          `json:"update_interval"` // e.g., "24h"
 	LRUCacheSize      int             `json:"lru_cache_size"`
 
+	// CacheShards splits the LRU into this many independently locked shards
+	// (rounded up to a power of two, at most 256) so concurrent callers stop
+	// serializing on one cache mutex. 0 or 1 keeps a single LRU with exact
+	// recency; sharded eviction is LRU per shard.
+	CacheShards int `json:"cache_shards"`
+
+	// CacheMaxBytes bounds the cache by the estimated memory of its entries
+	// (cache key plus result) instead of their number, evicting least
+	// recently used entries by weight, so the cache can be sized against a
+	// memory limit whatever mix of small and large results it holds. With
+	// LRUCacheSize also set, the entry count is capped as well; alone it
+	// enables the cache. Split evenly across CacheShards. 0 keeps the
+	// entry-count LRU.
+	CacheMaxBytes int64 `json:"cache_max_bytes"`
+
+	// CollectStats turns on the per-parse counters behind Parser.Stats:
+	// cache hits/misses/evictions, hit/miss latency histograms and
+	// correction-rule hits. Costs a clock read and a few atomic adds per
+	// parse. Generation and updater results are reported either way.
+	CollectStats bool `json:"collect_stats"`
+
+	// WarmupFile names a warm-up snapshot (see Parser.SaveWarmup). New
+	// replays it into the cache on a background goroutine, so the hottest
+	// UAs are cached before traffic reaches them, and Close writes the
+	// current hottest keys back. WarmupEntries bounds that snapshot (0 means
+	// DefaultWarmupEntries). Ignored with the cache off. A missing file is a
+	// normal first start.
+	WarmupFile    string `json:"warmup_file"`
+	WarmupEntries int    `json:"warmup_entries"`
+
+	// RewarmEntries makes every regex or corrections hot-swap re-parse this
+	// many of the most recently used cache keys against the incoming
+	// resources before they go live, and install the results together with
+	// them. The cache is then already warm when the new generation starts
+	// serving, instead of every hot UA missing at once. 0 disables it; the
+	// swap takes longer by that many uncached parses.
+	RewarmEntries int `json:"rewarm_entries"`
+
+	// RegexPrefilter indexes the literal tokens each uap-core regex requires
+	// and, per parse, evaluates only the rules whose tokens occur in the UA
+	// (in original order, so results are identical). Speeds up uncached
+	// parses at the cost of a larger regex DB footprint in memory.
+	RegexPrefilter bool `json:"regex_prefilter"`
+
+	// LazyRegexes makes New (and each regex hot-swap) only parse and index
+	// the regex DB: a uap-core regex compiles the first time a parse reaches
+	// it, through the RegexPrefilter machinery, so results are unchanged.
+	// Startup drops to the indexing cost; early uncached parses pay for the
+	// regexes they need. CompileInBackground additionally compiles all
+	// remaining regexes on a goroutine, most-likely-first.
+	LazyRegexes         bool `json:"lazy_regexes"`
+	CompileInBackground bool `json:"compile_in_background"`
+
 	// Correction layer (docs/correction-layer.md). CorrectionsURL overrides
 	// the default hot-update source for corrections.yaml.
 	//
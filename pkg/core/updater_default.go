@@ -167,45 +167,67 @@ func (p *Parser) updateRegexes() {
 	data, etag, notModified, err := p.fetchResource(url, p.lastETag, maxRegexesSize)
 	if err != nil {
 		log.Printf("Failed to download regexes: %v", err)
+		p.stats.recordUpdate(&p.stats.regexes, updateFailed, err)
 		return
 	}
 	if notModified {
 		log.Println("Regexes unchanged (304)")
+		p.stats.recordUpdate(&p.stats.regexes, updateNotModified, nil)
 		return
 	}
 
-	// Validate the new regexes
-	def := uaparser.RegexDefinitions{}
-	if err := yaml.Unmarshal(data, &def); err != nil {
-		log.Printf("Failed to parse new regexes (YAML): %v", err)
-		// Try JSON as fallback
-		if errJSON := json.Unmarshal(data, &def); errJSON != nil {
-			log.Printf("Failed to parse new regexes (JSON): %v", errJSON)
+	var newUap *uaparser.Parser
+	var newPrefilter *regexPrefilter
+	if p.config.LazyRegexes {
+		// Indexing parses (and so validates) every expression; nothing is
+		// compiled until parses or the background pass reach it.
+		if newPrefilter, err = newRegexPrefilter(data, true); err != nil {
+			log.Printf("Failed to index new regexes: %v", err)
+			p.stats.recordUpdate(&p.stats.regexes, updateFailed, err)
 			return
 		}
-	}
-
-	newUap, err := uaparser.New(uaparser.WithRegexDefinitions(def))
-	if err != nil {
-		log.Printf("Failed to create new parser: %v", err)
-		return
-	}
-
-	p.mu.Lock()
-	p.uap = newUap
-	p.mu.Unlock()
+	} else {
+		// Validate the new regexes
+		def := uaparser.RegexDefinitions{}
+		if err := yaml.Unmarshal(data, &def); err != nil {
+			log.Printf("Failed to parse new regexes (YAML): %v", err)
+			// Try JSON as fallback
+			if errJSON := json.Unmarshal(data, &def); errJSON != nil {
+				log.Printf("Failed to parse new regexes (JSON): %v", errJSON)
+				p.stats.recordUpdate(&p.stats.regexes, updateFailed, err)
+				return
+			}
+		}
 
-	// Bump the generation BEFORE purging: any Parse that started against the
-	// old database will see a changed generation and skip caching its result,
-	// so a stale entry cannot be re-added after the purge.
-	p.gen.Add(1)
+		if newUap, err = uaparser.New(uaparser.WithRegexDefinitions(def)); err != nil {
+			log.Printf("Failed to create new parser: %v", err)
+			p.stats.recordUpdate(&p.stats.regexes, updateFailed, err)
+			return
+		}
 
-	// Clear cache when regexes change
-	if p.cache != nil {
-		p.cache.Purge()
+		// A prefilter that fails to build only costs speed: parse with the
+		// full regex DB rather than reject an update uaparser accepted.
+		if p.config.RegexPrefilter {
+			if newPrefilter, err = newRegexPrefilter(data, false); err != nil {
+				log.Printf("Failed to build regex prefilter, parsing without it: %v", err)
+			}
+		}
 	}
 
+	// Re-parse the hottest keys against the new database while the old one
+	// keeps serving, then swap, bump the generation and purge the cache in
+	// one step: any Parse that started against the old database sees a
+	// changed generation and skips caching its result, so a stale entry
+	// cannot be re-added after the purge.
+	warm, gen := p.prepareRewarm(newUap, newPrefilter, p.corrections.Load())
+	p.installGeneration(func() {
+		p.uap = newUap
+		p.prefilter = newPrefilter
+	}, warm, gen)
+	p.compileInBackground(newPrefilter)
+
 	p.lastETag = etag
+	p.stats.recordUpdate(&p.stats.regexes, updateApplied, nil)
 
 	log.Println("Regexes updated successfully")
 }
@@ -225,13 +247,16 @@ func (p *Parser) updateCorrections() {
 	data, etag, notModified, err := p.fetchResource(url, p.lastCorrectionsETag, maxCorrectionsBytes)
 	if err != nil {
 		log.Printf("Failed to download corrections: %v", err)
+		p.stats.recordUpdate(&p.stats.corrections, updateFailed, err)
 		return
 	}
 	if notModified {
 		log.Println("Corrections unchanged (304)")
+		p.stats.recordUpdate(&p.stats.corrections, updateNotModified, nil)
 		return
 	}
 
+	// ApplyCorrectionsYAML records the applied/rejected outcome itself.
 	if err := p.ApplyCorrectionsYAML(data); err != nil {
 		log.Printf("Rejected downloaded corrections (keeping last good): %v", err)
 		return
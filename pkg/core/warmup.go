@@ -0,0 +1,261 @@
+package core
+
+import (
+	"bufio"
+	"compress/gzip"
+	"errors"
+	"fmt"
+	"io"
+	"log"
+	"os"
+	"path/filepath"
+	"strconv"
+)
+
+// A warm-up snapshot lists the hottest result-cache keys so a restarted
+// engine can parse them before traffic does. A key (buildCacheKey) already
+// holds every input the pipeline consumes, so replaying it reproduces the
+// cached result exactly and the snapshot never stores results themselves:
+// they are recomputed against whatever regexes and corrections are live.
+//
+// Format: a gzip stream named warmupFormat whose content is the keys,
+// hottest first, each framed like a key field ("<len>:<key>"). Concatenated
+// snapshots are a valid snapshot (gzip is multi-member), which is how WASM
+// hosts merge the snapshots of pooled instances.
+const warmupFormat = "ua-parser-warmup/1"
+
+// DefaultWarmupEntries bounds a snapshot when Config.WarmupEntries is 0.
+const DefaultWarmupEntries = 10000
+
+// maxWarmupKey rejects corrupt length prefixes before allocating for them.
+const maxWarmupKey = 64 << 10
+
+// WarmupSnapshot is a decoded snapshot (see ReadWarmup), replayed in order
+// by Parser.ReplayWarmup. Not safe for concurrent use.
+type WarmupSnapshot struct {
+	keys []string
+}
+
+// Len reports the entries not replayed yet.
+func (s *WarmupSnapshot) Len() int {
+	return len(s.keys)
+}
+
+// ReadWarmup decodes a snapshot written by WriteWarmup. Entries whose key
+// does not decode (e.g. written by a newer engine) are dropped.
+func ReadWarmup(r io.Reader) (*WarmupSnapshot, error) {
+	gz, err := gzip.NewReader(r)
+	if err != nil {
+		return nil, fmt.Errorf("warm-up snapshot: %w", err)
+	}
+	defer gz.Close()
+	if gz.Name != warmupFormat {
+		return nil, fmt.Errorf("warm-up snapshot: unknown format %q", gz.Name)
+	}
+	br := bufio.NewReader(gz)
+	s := &WarmupSnapshot{}
+	for {
+		prefix, err := br.ReadString(':')
+		if err == io.EOF && prefix == "" {
+			return s, nil
+		}
+		if err != nil {
+			return nil, fmt.Errorf("warm-up snapshot: truncated entry: %w", err)
+		}
+		n, err := strconv.Atoi(prefix[:len(prefix)-1])
+		if err != nil || n < 0 || n > maxWarmupKey {
+			return nil, fmt.Errorf("warm-up snapshot: bad entry length %q", prefix)
+		}
+		key := make([]byte, n)
+		if _, err := io.ReadFull(br, key); err != nil {
+			return nil, fmt.Errorf("warm-up snapshot: truncated entry: %w", err)
+		}
+		if _, _, _, _, ok := parseCacheKey(string(key)); ok {
+			s.keys = append(s.keys, string(key))
+		}
+	}
+}
+
+// WriteWarmup writes a snapshot of up to n of the most recently used cache
+// keys (n <= 0 means DefaultWarmupEntries) and returns how many it wrote.
+// With the cache off the snapshot is empty.
+func (p *Parser) WriteWarmup(w io.Writer, n int) (int, error) {
+	if n <= 0 {
+		n = DefaultWarmupEntries
+	}
+	var keys []string
+	if p.cache != nil {
+		keys = p.cache.Keys()
+	}
+	gz := gzip.NewWriter(w)
+	gz.Name = warmupFormat
+	bw := bufio.NewWriter(gz)
+	written := 0
+	for i := len(keys) - 1; i >= 0 && written < n; i-- {
+		bw.WriteString(strconv.Itoa(len(keys[i])))
+		bw.WriteByte(':')
+		bw.WriteString(keys[i])
+		written++
+	}
+	if err := bw.Flush(); err != nil {
+		return 0, err
+	}
+	return written, gz.Close()
+}
+
+// SaveWarmup writes a snapshot (see WriteWarmup) to path, replacing it
+// atomically so a crash mid-write never leaves a truncated file behind.
+func (p *Parser) SaveWarmup(path string, n int) error {
+	tmp, err := os.CreateTemp(filepath.Dir(path), filepath.Base(path)+".tmp*")
+	if err != nil {
+		return err
+	}
+	defer os.Remove(tmp.Name()) // no-op once renamed
+	if _, err := p.WriteWarmup(tmp, n); err != nil {
+		tmp.Close()
+		return err
+	}
+	if err := tmp.Close(); err != nil {
+		return err
+	}
+	return os.Rename(tmp.Name(), path)
+}
+
+// ReplayWarmup parses up to max remaining entries of s (max <= 0: all of
+// them) into the cache, consuming them, and returns how many it parsed.
+// Replay stops early when the parser is closed, and once the cache is full
+// (see cacheFull), so the hottest entries (first in the snapshot) are
+// never evicted by colder ones from the same snapshot.
+func (p *Parser) ReplayWarmup(s *WarmupSnapshot, max int) int {
+	if p.cache == nil {
+		s.keys = nil
+		return 0
+	}
+	if max <= 0 || max > len(s.keys) {
+		max = len(s.keys)
+	}
+	done := 0
+	for done < max && p.ctx.Err() == nil && !p.cacheFull() {
+		ua, headers, signals, fields, _ := parseCacheKey(s.keys[done])
+		p.ParseFieldsShared(ua, headers, signals, fields)
+		done++
+	}
+	s.keys = s.keys[done:]
+	if p.cacheFull() || p.ctx.Err() != nil {
+		s.keys = nil
+	}
+	return done
+}
+
+// cacheFull reports whether the cache has reached its bound: LRUCacheSize
+// entries, or for a byte-budgeted cache the point where it starts evicting.
+func (p *Parser) cacheFull() bool {
+	if w, ok := p.cache.(*weightedCache); ok {
+		return w.full()
+	}
+	return p.cache.Len() >= p.config.LRUCacheSize
+}
+
+// Warmup replays a whole snapshot read from r (see ReadWarmup) and returns
+// the number of entries parsed.
+func (p *Parser) Warmup(r io.Reader) (int, error) {
+	s, err := ReadWarmup(r)
+	if err != nil {
+		return 0, err
+	}
+	return p.ReplayWarmup(s, 0), nil
+}
+
+// warmupFromFile replays Config.WarmupFile; run on its own goroutine by New.
+// A missing file is the normal first start and is not reported.
+func (p *Parser) warmupFromFile() {
+	f, err := os.Open(p.config.WarmupFile)
+	if errors.Is(err, os.ErrNotExist) {
+		return
+	}
+	if err != nil {
+		log.Printf("Warm-up snapshot skipped: %v", err)
+		return
+	}
+	defer f.Close()
+	n, err := p.Warmup(f)
+	if err != nil {
+		log.Printf("Warm-up snapshot skipped: %v", err)
+		return
+	}
+	log.Printf("Warm-up snapshot replayed: %d entries", n)
+}
+
+// parseCacheKey inverts buildCacheKey. Header values are the normalized
+// (lowercase-keyed) ones; empty headers are left out, which parses the same.
+func parseCacheKey(key string) (ua string, headers map[string]string, signals *Signals, fields Fields, ok bool) {
+	r := keyReader{s: key}
+	ua = r.field()
+	for _, name := range cacheKeyHeaders {
+		if v := r.field(); v != "" {
+			if headers == nil {
+				headers = make(map[string]string, len(cacheKeyHeaders))
+			}
+			headers[name] = v
+		}
+	}
+	if r.marker('S') {
+		signals = &Signals{}
+		signals.MaxTouchPoints = r.int()
+		signals.Platform = r.field()
+		signals.WebGLVendor = r.field()
+		signals.WebGLRenderer = r.field()
+		signals.Webdriver = r.marker('W')
+		if r.pos < len(r.s) && r.s[r.pos] >= '0' && r.s[r.pos] <= '9' {
+			signals.Screen = &ScreenInfo{W: r.int()}
+			signals.Screen.H = r.int()
+		}
+	}
+	if r.marker('F') {
+		fields = Fields(r.int())
+	}
+	if r.bad || r.pos != len(r.s) {
+		return "", nil, nil, AllFields, false
+	}
+	return ua, headers, signals, fields, true
+}
+
+// keyReader walks a buildCacheKey string; any malformation sets bad.
+type keyReader struct {
+	s   string
+	pos int
+	bad bool
+}
+
+func (r *keyReader) field() string {
+	colon := r.pos
+	for colon < len(r.s) && r.s[colon] != ':' {
+		colon++
+	}
+	n, err := strconv.Atoi(r.s[r.pos:colon])
+	if err != nil || colon == len(r.s) || n < 0 || n > len(r.s)-colon-1 {
+		r.bad = true
+		r.pos = len(r.s)
+		return ""
+	}
+	v := r.s[colon+1 : colon+1+n]
+	r.pos = colon + 1 + n
+	return v
+}
+
+func (r *keyReader) int() int {
+	f := r.field()
+	n, err := strconv.Atoi(f)
+	if err != nil && !r.bad {
+		r.bad = true
+	}
+	return n
+}
+
+func (r *keyReader) marker(c byte) bool {
+	if r.pos < len(r.s) && r.s[r.pos] == c {
+		r.pos++
+		return true
+	}
+	return false
+}
@@ -0,0 +1,141 @@
+package core
+
+import (
+	"bytes"
+	"os"
+	"path/filepath"
+	"reflect"
+	"sort"
+	"testing"
+	"time"
+)
+
+func TestParseCacheKeyRoundTrip(t *testing.T) {
+	cases := []struct {
+		headers map[string]string
+		signals *Signals
+		fields  Fields
+	}{
+		{},
+		{headers: map[string]string{"sec-ch-ua-platform": `"Windows"`, "x-requested-with": "com.example:app"}},
+		{signals: &Signals{}},
+		{signals: &Signals{MaxTouchPoints: 5, Platform: "MacIntel", WebGLVendor: "Apple",
+			WebGLRenderer: "Apple M2", Webdriver: true, Screen: &ScreenInfo{W: 1024, H: 1366}}},
+		{signals: &Signals{WebGLRenderer: "12:34"}, fields: FieldOS | FieldIsBot},
+	}
+	for i, c := range cases {
+		key := buildCacheKey(benchUAs[0], c.headers, c.signals, c.fields)
+		ua, headers, signals, fields, ok := parseCacheKey(key)
+		if !ok {
+			t.Fatalf("case %d: key %q did not decode", i, key)
+		}
+		if again := buildCacheKey(ua, headers, signals, fields); again != key {
+			t.Errorf("case %d: re-encoded key %q != %q", i, again, key)
+		}
+	}
+	for _, bad := range []string{"", "5:abc", "x:", buildCacheKey("ua", nil, nil, 0) + "junk"} {
+		if _, _, _, _, ok := parseCacheKey(bad); ok {
+			t.Errorf("malformed key %q decoded", bad)
+		}
+	}
+}
+
+func TestWarmupRestoresHottestKeys(t *testing.T) {
+	src := newTestParser(t, 100)
+	headers := map[string]string{"Sec-CH-UA-Platform": `"Windows"`}
+	signals := &Signals{MaxTouchPoints: 5}
+	for _, ua := range benchUAs {
+		src.ParseFull(ua, headers, nil)
+	}
+	src.ParseFull(benchUAs[1], nil, signals)
+	src.ParseFields(benchUAs[2], nil, nil, FieldBrowser)
+
+	var buf bytes.Buffer
+	n, err := src.WriteWarmup(&buf, 3)
+	if err != nil || n != 3 {
+		t.Fatalf("WriteWarmup = %d, %v; want 3 entries", n, err)
+	}
+	s, err := ReadWarmup(bytes.NewReader(buf.Bytes()))
+	if err != nil {
+		t.Fatalf("ReadWarmup: %v", err)
+	}
+	// Hottest first: the projected parse was the most recent.
+	if want := buildCacheKey(benchUAs[2], nil, nil, FieldBrowser); s.keys[0] != want {
+		t.Errorf("first entry %q, want the most recent key %q", s.keys[0], want)
+	}
+
+	dst := newTestParser(t, 100)
+	if n, err := dst.Warmup(bytes.NewReader(buf.Bytes())); err != nil || n != 3 {
+		t.Fatalf("Warmup = %d, %v; want 3", n, err)
+	}
+	got, want := dst.cache.Keys(), src.cache.Keys()[len(src.cache.Keys())-3:]
+	sort.Strings(got)
+	sort.Strings(want)
+	if !reflect.DeepEqual(got, want) {
+		t.Errorf("warmed keys %q, want %q", got, want)
+	}
+	if !reflect.DeepEqual(dst.ParseFull(benchUAs[1], nil, signals), src.ParseFull(benchUAs[1], nil, signals)) {
+		t.Error("warmed result differs from the original parse")
+	}
+}
+
+func TestWarmupStopsAtCacheCapacity(t *testing.T) {
+	src := newTestParser(t, 100)
+	for _, ua := range benchUAs {
+		src.Parse(ua, nil)
+	}
+	var buf bytes.Buffer
+	if _, err := src.WriteWarmup(&buf, 0); err != nil {
+		t.Fatalf("WriteWarmup: %v", err)
+	}
+	// Two concatenated snapshots (a WASM pool) are one valid snapshot.
+	twice := append(append([]byte{}, buf.Bytes()...), buf.Bytes()...)
+	s, err := ReadWarmup(bytes.NewReader(twice))
+	if err != nil || s.Len() != 2*len(benchUAs) {
+		t.Fatalf("ReadWarmup of concatenated snapshots = %v, %v", s, err)
+	}
+
+	dst := newTestParser(t, 2)
+	if n := dst.ReplayWarmup(s, 0); n != 2 || s.Len() != 0 {
+		t.Errorf("replayed %d (left %d), want 2 and nothing left once the cache is full", n, s.Len())
+	}
+	if _, ok := dst.cachedResult(benchUAs[len(benchUAs)-1], nil, nil, AllFields); !ok {
+		t.Error("hottest entry was not kept")
+	}
+}
+
+func TestWarmupFileSavedOnCloseAndReplayedOnNew(t *testing.T) {
+	path := filepath.Join(t.TempDir(), "warmup.gz")
+	cfg := Config{DisableAutoUpdate: true, LRUCacheSize: 100, WarmupFile: path}
+
+	first, err := New(cfg) // no file yet: nothing to replay
+	if err != nil {
+		t.Fatalf("Failed to create parser: %v", err)
+	}
+	for _, ua := range benchUAs {
+		first.Parse(ua, nil)
+	}
+	first.Close()
+	if _, err := os.Stat(path); err != nil {
+		t.Fatalf("Close did not save the snapshot: %v", err)
+	}
+
+	second, err := New(cfg)
+	if err != nil {
+		t.Fatalf("Failed to create parser: %v", err)
+	}
+	defer second.Close()
+	deadline := time.Now().Add(10 * time.Second)
+	for second.cache.Len() < len(benchUAs) {
+		if time.Now().After(deadline) {
+			t.Fatalf("background warm-up cached %d of %d entries", second.cache.Len(), len(benchUAs))
+		}
+		time.Sleep(5 * time.Millisecond)
+	}
+}
+
+func TestReadWarmupRejectsForeignData(t *testing.T) {
+	if _, err := ReadWarmup(bytes.NewReader([]byte("not gzip"))); err == nil {
+		t.Error("non-gzip input was accepted")
+	}
+}